@@ -0,0 +1,93 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Benchmarks for {@link ReactiveLock#guard(Mono)} and {@link ReactiveLock#guard(Flux)},
+ * compared to the equivalent composition with {@code usingWhen}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class GuardBenchmark {
+
+    /** The lock. */
+    private final AsyncLock lock = new AsyncLock();
+
+    /** The guarded Mono. */
+    private final Mono<Integer> mono = Mono.just( 1 );
+
+    /** The guarded Flux. */
+    private final Flux<Integer> flux = Flux.range( 0, 10 );
+
+    /**
+     * Guards a Mono with {@code usingWhen}.
+     *
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    public void usingWhenMono( final Blackhole bh ) {
+
+        Mono.usingWhen( lock.acquire(), l -> mono, l -> Mono.fromRunnable( l::release ) )
+                .subscribe( bh::consume );
+
+    }
+
+    /**
+     * Guards a Mono with the guard operator.
+     *
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    public void guardMono( final Blackhole bh ) {
+
+        lock.guard( mono ).subscribe( bh::consume );
+
+    }
+
+    /**
+     * Guards a Flux with {@code usingWhen}.
+     *
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    public void usingWhenFlux( final Blackhole bh ) {
+
+        Flux.usingWhen( lock.acquire(), l -> flux, l -> Mono.fromRunnable( l::release ) )
+                .subscribe( bh::consume );
+
+    }
+
+    /**
+     * Guards a Flux with the guard operator.
+     *
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    public void guardFlux( final Blackhole bh ) {
+
+        lock.guard( flux ).subscribe( bh::consume );
+
+    }
+
+}
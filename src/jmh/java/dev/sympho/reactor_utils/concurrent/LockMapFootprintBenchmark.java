@@ -0,0 +1,138 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.lang.management.ManagementFactory;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reactor.core.Disposable;
+
+/**
+ * Measures the heap retained by {@link AsyncLockMap} for each held key and for each
+ * acquisition queued on a held key.
+ *
+ * <p>The results are reported as the {@code bytesPerKey} and {@code bytesPerWaiter}
+ * secondary results; the time of the single shot is not meaningful. The keys and the
+ * arrays that hold the issued locks and the waiting subscriptions are allocated before
+ * measuring, so they are not included.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.SingleShotTime )
+@Warmup( iterations = 0 )
+@Measurement( iterations = 1 )
+@Fork( value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" } )
+public class LockMapFootprintBenchmark {
+
+    /** How many times to run the collector before measuring the heap. */
+    private static final int GC_RUNS = 5;
+
+    /** The number of keys to hold. */
+    @Param( { "1000000", "10000000" } )
+    public int keys;
+
+    /** The keys. */
+    private Integer[] keySet;
+
+    /** The issued locks. */
+    private AcquiredLock[] held;
+
+    /** The waiting acquisitions. */
+    private Disposable[] waiting;
+
+    /**
+     * Allocates the keys and the arrays that retain the locks and acquisitions.
+     */
+    @Setup( Level.Trial )
+    public void setUp() {
+
+        keySet = new Integer[keys];
+        for ( int i = 0; i < keys; i++ ) {
+            keySet[i] = i;
+        }
+        held = new AcquiredLock[keys];
+        waiting = new Disposable[keys];
+
+    }
+
+    /**
+     * Determines the heap in use after collecting garbage.
+     *
+     * @return The used heap, in bytes.
+     */
+    @SuppressWarnings( "DoNotCall" )
+    private static long used() {
+
+        for ( int i = 0; i < GC_RUNS; i++ ) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+    }
+
+    /**
+     * Holds every key, then queues one acquisition on each, measuring the heap after each
+     * step.
+     *
+     * @param footprint Where to report the results.
+     */
+    @Benchmark
+    public void footprint( final Footprint footprint ) {
+
+        final var map = new AsyncLockMap<Integer>();
+
+        final long empty = used();
+        for ( int i = 0; i < keys; i++ ) {
+            held[i] = map.tryAcquire( keySet[i] );
+        }
+        final long locked = used();
+        for ( int i = 0; i < keys; i++ ) {
+            waiting[i] = map.acquire( keySet[i] ).subscribe();
+        }
+        final long queued = used();
+
+        footprint.bytesPerKey = ( double ) ( locked - empty ) / keys;
+        footprint.bytesPerWaiter = ( double ) ( queued - locked ) / keys;
+
+        for ( int i = 0; i < keys; i++ ) {
+            waiting[i].dispose();
+            held[i].release();
+            held[i] = null;
+            waiting[i] = null;
+        }
+
+    }
+
+    /**
+     * The measured footprint.
+     *
+     * @since 1.0
+     */
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Footprint {
+
+        /** The retained bytes per held key. */
+        public double bytesPerKey;
+
+        /** The retained bytes per queued acquisition. */
+        public double bytesPerWaiter;
+
+        /** Creates a new instance. */
+        public Footprint() {}
+
+    }
+
+}
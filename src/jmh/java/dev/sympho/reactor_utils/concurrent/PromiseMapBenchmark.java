@@ -0,0 +1,191 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import reactor.core.publisher.Sinks;
+
+/**
+ * Benchmarks for matching a result to a pending request with {@link ReactivePromiseMap},
+ * compared to a map of {@link Sinks.One} with a timeout on each waiter. Run with the
+ * {@code gc} profiler to compare allocations.
+ *
+ * <p>The {@code Shared} variants use a single map from several threads (each with its own
+ * keys), to measure contention between threads.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+@State( Scope.Thread )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class PromiseMapBenchmark {
+
+    /** The number of distinct keys to cycle through. */
+    private static final int KEYS = 1024;
+
+    /** The number of threads used by the shared benchmarks. */
+    private static final int THREADS = 4;
+
+    /** The source of the key ranges of each thread. */
+    private static final AtomicInteger RANGES = new AtomicInteger();
+
+    /** How long a request waits for its result. */
+    private static final Duration TTL = Duration.ofSeconds( 30 );
+
+    /** The result. */
+    private static final Integer VALUE = 42;
+
+    /** The promise map. */
+    private final ReactivePromiseMap<Integer, Integer> promises = new ReactivePromiseMap<>( TTL );
+
+    /** The map of sinks. */
+    private final ConcurrentMap<Integer, Sinks.One<Integer>> sinks = new ConcurrentHashMap<>();
+
+    /** The keys. */
+    private final Integer[] keys = new Integer[KEYS];
+
+    /** The index of the next key. */
+    private int next;
+
+    /**
+     * Creates the keys.
+     */
+    @Setup
+    public void setUp() {
+
+        final int base = RANGES.getAndIncrement() * KEYS;
+        for ( int i = 0; i < KEYS; i++ ) {
+            keys[i] = base + i;
+        }
+
+    }
+
+    /**
+     * Picks the key for the next request.
+     *
+     * @return The key.
+     */
+    private Integer key() {
+
+        next = ( next + 1 ) % KEYS;
+        return keys[next];
+
+    }
+
+    /**
+     * Registers, subscribes to, and completes a promise.
+     *
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    public void promiseMap( final Blackhole bh ) {
+
+        final var key = key();
+        promises.await( key ).subscribe( bh::consume );
+        promises.complete( key, VALUE );
+
+    }
+
+    /**
+     * Registers, subscribes to, and completes a promise in a map shared between threads.
+     *
+     * @param shared The shared maps.
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    @Threads( THREADS )
+    public void promiseMapShared( final Shared shared, final Blackhole bh ) {
+
+        final var key = key();
+        shared.promises.await( key ).subscribe( bh::consume );
+        shared.promises.complete( key, VALUE );
+
+    }
+
+    /**
+     * Registers, subscribes to, and completes a sink.
+     *
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    public void sinkMap( final Blackhole bh ) {
+
+        sink( sinks, bh );
+
+    }
+
+    /**
+     * Registers, subscribes to, and completes a sink in a map shared between threads.
+     *
+     * @param shared The shared maps.
+     * @param bh The blackhole.
+     */
+    @Benchmark
+    @Threads( THREADS )
+    public void sinkMapShared( final Shared shared, final Blackhole bh ) {
+
+        sink( shared.sinks, bh );
+
+    }
+
+    /**
+     * Registers, subscribes to, and completes a sink.
+     *
+     * @param map The map to register the sink in.
+     * @param bh The blackhole.
+     */
+    private void sink( final ConcurrentMap<Integer, Sinks.One<Integer>> map,
+            final Blackhole bh ) {
+
+        final var key = key();
+        final Sinks.One<Integer> sink = Sinks.one();
+        map.put( key, sink );
+        sink.asMono()
+                .timeout( TTL )
+                .doFinally( s -> map.remove( key, sink ) )
+                .subscribe( bh::consume );
+
+        final var pending = map.remove( key );
+        if ( pending != null ) {
+            pending.tryEmitValue( VALUE );
+        }
+
+    }
+
+    /**
+     * Maps shared between the benchmark threads.
+     *
+     * @since 1.0
+     */
+    @State( Scope.Benchmark )
+    public static class Shared {
+
+        /** The promise map. */
+        final ReactivePromiseMap<Integer, Integer> promises = new ReactivePromiseMap<>( TTL );
+
+        /** The map of sinks. */
+        final ConcurrentMap<Integer, Sinks.One<Integer>> sinks = new ConcurrentHashMap<>();
+
+    }
+
+}
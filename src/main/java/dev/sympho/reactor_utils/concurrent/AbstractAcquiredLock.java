@@ -1,6 +1,8 @@
 package dev.sympho.reactor_utils.concurrent;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Base implementation for acquired locks.
@@ -10,8 +12,20 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 abstract class AbstractAcquiredLock implements AcquiredLock {
 
-    /** Whether the lock is currently active. */
-    private final AtomicBoolean active = new AtomicBoolean( true );
+    /** Updater for {@link #released}. */
+    private static final AtomicIntegerFieldUpdater<AbstractAcquiredLock> RELEASED =
+            AtomicIntegerFieldUpdater.newUpdater( AbstractAcquiredLock.class, "released" );
+
+    /**
+     * The event recording how long the lock is held, if enabled. Set before the lock is
+     * handed to its holder.
+     *
+     * @see FlightEvents#recordHold(AbstractAcquiredLock, Object, Object)
+     */
+    @Nullable LockHoldEvent hold;
+
+    /** Whether the lock was already released ({@code 1}) or not ({@code 0}). */
+    private volatile int released;
 
     /**
      * Performs the actual release of the lock.
@@ -21,8 +35,12 @@ abstract class AbstractAcquiredLock implements AcquiredLock {
     @Override
     public void release() {
 
-        if ( active.getAndSet( false ) ) {
+        if ( RELEASED.compareAndSet( this, 0, 1 ) ) {
             doRelease(); // Only release if currently active
+            final var event = hold;
+            if ( event != null ) {
+                event.commit();
+            }
         }
 
     }
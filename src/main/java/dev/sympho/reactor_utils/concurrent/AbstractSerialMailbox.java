@@ -0,0 +1,166 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import reactor.util.concurrent.Queues;
+
+/**
+ * Mailbox that runs {@link SerialTask tasks} one after another, consisting of a lock-free
+ * queue and a drain loop. Tasks are subscribed to from the drain loop, and the next task
+ * only starts after the previous one terminated (or was cancelled).
+ *
+ * <p>Implementations decide where the drain loop runs, keep track of the tasks that are
+ * pending, and may halt the mailbox, in which case queued tasks are rejected instead of
+ * started.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+abstract class AbstractSerialMailbox {
+
+    /** Field updater for {@link #wip}. */
+    private static final AtomicIntegerFieldUpdater<AbstractSerialMailbox> WIP =
+            AtomicIntegerFieldUpdater.newUpdater( AbstractSerialMailbox.class, "wip" );
+
+    /** The queued tasks. */
+    private final Queue<SerialTask<?>> queue;
+
+    /** Work-in-progress counter for the drain loop. */
+    private volatile int wip;
+
+    /**
+     * Whether a task is currently running. Set by the drain loop before a task is started,
+     * so a task that finishes (or is cancelled) while being started cannot leave it set.
+     */
+    private volatile boolean active;
+
+    /** Creates a new instance. */
+    protected AbstractSerialMailbox() {
+
+        this.queue = Queues.<SerialTask<?>>unboundedMultiproducer().get();
+
+    }
+
+    /**
+     * Determines whether a task is currently running.
+     *
+     * @return {@code true} if a task is running.
+     */
+    protected final boolean isActive() {
+
+        return active;
+
+    }
+
+    /**
+     * Enqueues a task. The task must have already been accounted for as pending.
+     *
+     * @param task The task.
+     */
+    protected final void enqueue( final SerialTask<?> task ) {
+
+        task.mailbox = this;
+        queue.offer( task );
+        signal();
+
+    }
+
+    /**
+     * Ensures the drain loop runs.
+     */
+    protected final void signal() {
+
+        if ( WIP.getAndIncrement( this ) == 0 ) {
+            schedule();
+        }
+
+    }
+
+    /**
+     * Starts queued tasks, as long as no task is running, or rejects them if the mailbox
+     * was halted.
+     */
+    protected final void drain() {
+
+        int missed = 1;
+        while ( true ) {
+
+            SerialTask<?> task;
+            if ( halted() ) {
+                while ( ( task = queue.poll() ) != null ) {
+                    released();
+                    task.reject( rejection() );
+                }
+            } else {
+                while ( !active && !halted() && ( task = queue.poll() ) != null ) {
+                    active = true;
+                    if ( task.start() ) {
+                        task.run(); // May finish synchronously and clear active
+                    } else { // Was cancelled while queued
+                        active = false;
+                        released();
+                    }
+                }
+            }
+
+            missed = WIP.addAndGet( this, -missed );
+            if ( missed == 0 ) {
+                break;
+            }
+
+        }
+
+        drained();
+
+    }
+
+    /**
+     * Handles the termination of the running task.
+     */
+    final void finished() {
+
+        active = false;
+        released();
+        signal();
+
+    }
+
+    /**
+     * Runs the drain loop, or arranges for it to run.
+     */
+    protected abstract void schedule();
+
+    /**
+     * Accounts for a task that will no longer run.
+     */
+    protected abstract void released();
+
+    /**
+     * Determines whether the mailbox was halted, so queued tasks should be rejected.
+     *
+     * @return {@code true} if halted. By default, never.
+     */
+    protected boolean halted() {
+
+        return false;
+
+    }
+
+    /**
+     * Creates the error issued to tasks that are rejected because the mailbox was halted.
+     *
+     * @return The error.
+     */
+    protected Throwable rejection() {
+
+        return new IllegalStateException( "Mailbox was halted" );
+
+    }
+
+    /**
+     * Called whenever the drain loop exits. By default, does nothing.
+     */
+    protected void drained() {}
+
+}
@@ -0,0 +1,463 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.interning.qual.UsesObjectEquals;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Concurrency limiter that automatically adjusts its limit based on the observed latency
+ * of the operations it guards, in order to keep throughput close to the capacity of the
+ * downstream system without overloading it. All methods of this class are thread-safe.
+ *
+ * <p>The limit is adjusted using an algorithm based on TCP Vegas: the minimum observed
+ * latency is taken as the latency of the system under no load, and the ratio between it and
+ * the latency of each operation is used to estimate how many operations are queued in the
+ * downstream system. The limit is increased while that estimate is small and decreased
+ * when it grows. Operations that fail are treated as a sign of overload, and also decrease
+ * the limit. Operations that are cancelled do not affect the limit.
+ *
+ * <p>Operations that are issued while the limit is reached wait in FIFO order.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    /** The default initial limit. */
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    /** The default maximum limit. */
+    public static final int DEFAULT_MAX_LIMIT = 1000;
+
+    /** Multiplier applied to the limit to determine how often to re-probe the no-load RTT. */
+    private static final int PROBE_FACTOR = 30;
+
+    /** Multiplier applied to the (logarithm of the) limit for the lower queue threshold. */
+    private static final int ALPHA_FACTOR = 3;
+
+    /** Multiplier applied to the (logarithm of the) limit for the upper queue threshold. */
+    private static final int BETA_FACTOR = 6;
+
+    /** The minimum limit. */
+    private final int minLimit;
+
+    /** The maximum limit. */
+    private final int maxLimit;
+
+    /** The scheduler used as a clock. */
+    private final Scheduler clock;
+
+    /** The operations waiting for a permit. */
+    private final ArrayDeque<Waiter> waiters;
+
+    /** The current limit. Writes must be synchronized on the instance. */
+    private volatile int limit;
+
+    /** The number of operations in progress. Writes must be synchronized on the instance. */
+    private volatile int inFlight;
+
+    /** The lowest latency observed since the last probe, in nanoseconds. */
+    private long minRtt;
+
+    /** The number of samples until the next probe. */
+    private long untilProbe;
+
+    /**
+     * Creates a new instance with default limits.
+     */
+    public AdaptiveConcurrencyLimiter() {
+
+        this( DEFAULT_INITIAL_LIMIT, 1, DEFAULT_MAX_LIMIT );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param initialLimit The initial limit.
+     * @param minLimit The minimum limit.
+     * @param maxLimit The maximum limit.
+     * @throws IllegalArgumentException if the limits are not positive, or the initial limit
+     *                                  is not between the minimum and maximum limits.
+     */
+    public AdaptiveConcurrencyLimiter( final int initialLimit, final int minLimit,
+            final int maxLimit ) throws IllegalArgumentException {
+
+        this( initialLimit, minLimit, maxLimit, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param initialLimit The initial limit.
+     * @param minLimit The minimum limit.
+     * @param maxLimit The maximum limit.
+     * @param clock The scheduler to use as a clock for measuring latency.
+     * @throws IllegalArgumentException if the limits are not positive, or the initial limit
+     *                                  is not between the minimum and maximum limits.
+     */
+    public AdaptiveConcurrencyLimiter( final int initialLimit, final int minLimit,
+            final int maxLimit, final Scheduler clock ) throws IllegalArgumentException {
+
+        if ( minLimit <= 0 ) {
+            throw new IllegalArgumentException( "Minimum limit must be positive." );
+        }
+        if ( initialLimit < minLimit || initialLimit > maxLimit ) {
+            throw new IllegalArgumentException(
+                    "Initial limit must be between the minimum and maximum limits." );
+        }
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.clock = Objects.requireNonNull( clock );
+        this.waiters = new ArrayDeque<>();
+        this.limit = initialLimit;
+        this.inFlight = 0;
+        this.minRtt = Long.MAX_VALUE;
+        this.untilProbe = ( long ) PROBE_FACTOR * initialLimit;
+
+    }
+
+    /**
+     * Retrieves the current limit.
+     *
+     * @return The maximum number of operations currently allowed to execute concurrently.
+     */
+    public int limit() {
+
+        return limit;
+
+    }
+
+    /**
+     * Retrieves the number of operations in progress.
+     *
+     * @return The number of operations currently executing.
+     */
+    public int inFlight() {
+
+        return inFlight;
+
+    }
+
+    /**
+     * Retrieves the number of operations waiting to execute.
+     *
+     * @return The number of operations waiting for the limit to allow them to execute.
+     */
+    public synchronized int waiting() {
+
+        return waiters.size();
+
+    }
+
+    /**
+     * Guards the execution of a mono, delaying subscription until the limit allows it.
+     *
+     * @param <T> The value type.
+     * @param mono The mono to guard.
+     * @return The guarded mono.
+     */
+    public <T> Mono<T> guard( final Mono<T> mono ) {
+
+        return Mono.usingWhen( acquire(), p -> mono,
+                Permit::success, ( p, e ) -> p.failure(), Permit::cancel );
+
+    }
+
+    /**
+     * Guards the execution of a flux, delaying subscription until the limit allows it.
+     * The latency of a flux is the time until it completes.
+     *
+     * @param <T> The value type.
+     * @param flux The flux to guard.
+     * @return The guarded flux.
+     */
+    public <T> Flux<T> guard( final Flux<T> flux ) {
+
+        return Flux.usingWhen( acquire(), p -> flux,
+                Permit::success, ( p, e ) -> p.failure(), Permit::cancel );
+
+    }
+
+    /**
+     * Retrieves the current time.
+     *
+     * @return The current time, in nanoseconds.
+     */
+    private long now() {
+
+        return clock.now( TimeUnit.NANOSECONDS );
+
+    }
+
+    /**
+     * Acquires a permit to execute an operation.
+     *
+     * @return A mono that issues the permit once the limit allows it.
+     */
+    private Mono<Permit> acquire() {
+
+        return Mono.create( sink -> {
+
+            final var waiter = new Waiter( sink );
+            final Permit permit;
+            synchronized ( this ) {
+                if ( waiters.isEmpty() && inFlight < limit ) {
+                    permit = issue();
+                } else {
+                    waiters.add( waiter );
+                    permit = null;
+                }
+            }
+
+            if ( permit != null ) {
+                sink.success( permit );
+            } else {
+                sink.onCancel( () -> cancel( waiter ) );
+            }
+
+        } );
+
+    }
+
+    /**
+     * Issues a new permit. Must be called while synchronized.
+     *
+     * @return The permit.
+     */
+    private Permit issue() {
+
+        inFlight++;
+        return new Permit( now(), inFlight );
+
+    }
+
+    /**
+     * Issues permits to waiters while the limit allows it. Must be called while
+     * synchronized.
+     *
+     * @return The waiters that were issued a permit, to be notified once no longer
+     *         synchronized.
+     */
+    private List<Waiter> drain() {
+
+        List<Waiter> ready = List.of();
+        while ( inFlight < limit && !waiters.isEmpty() ) {
+            final var waiter = waiters.remove();
+            waiter.permit = issue();
+            if ( ready.isEmpty() ) {
+                ready = new ArrayList<>();
+            }
+            ready.add( waiter );
+        }
+        return ready;
+
+    }
+
+    /**
+     * Notifies waiters that they were issued a permit.
+     *
+     * @param ready The waiters.
+     */
+    private static void grant( final List<Waiter> ready ) {
+
+        for ( final var waiter : ready ) {
+            final var permit = waiter.permit;
+            if ( permit != null ) {
+                waiter.sink.success( permit );
+            }
+        }
+
+    }
+
+    /**
+     * Handles a waiter that was cancelled.
+     *
+     * @param waiter The waiter.
+     */
+    private void cancel( final Waiter waiter ) {
+
+        final Permit permit;
+        synchronized ( this ) {
+            permit = waiters.remove( waiter ) ? null : waiter.permit;
+        }
+
+        if ( permit != null ) { // Cancelled after being issued a permit
+            release( permit, false, false );
+        }
+
+    }
+
+    /**
+     * Releases a permit.
+     *
+     * @param permit The permit.
+     * @param sample Whether the operation completed and should be used as a sample.
+     * @param dropped Whether the operation failed.
+     */
+    private void release( final Permit permit, final boolean sample, final boolean dropped ) {
+
+        final List<Waiter> ready;
+        synchronized ( this ) {
+
+            if ( permit.released ) {
+                return;
+            }
+            permit.released = true;
+            inFlight--;
+
+            if ( sample ) {
+                update( Math.max( now() - permit.start, 1 ), permit.inFlight, dropped );
+            }
+            ready = drain();
+
+        }
+        grant( ready );
+
+    }
+
+    /**
+     * Updates the limit based on a new sample. Must be called while synchronized.
+     *
+     * @param rtt The latency of the operation.
+     * @param concurrency The number of operations in progress when the operation started.
+     * @param dropped Whether the operation failed.
+     */
+    private void update( final long rtt, final int concurrency, final boolean dropped ) {
+
+        final int current = limit;
+
+        // Periodically reset the no-load estimate, so it can follow downstream changes
+        if ( --untilProbe <= 0 ) {
+            untilProbe = ( long ) PROBE_FACTOR * current;
+            minRtt = rtt;
+        }
+        minRtt = Math.min( minRtt, rtt );
+
+        final int step = Math.max( 1, ( int ) Math.log10( current ) );
+        final int next;
+        if ( dropped ) {
+            next = current - step;
+        } else if ( concurrency * 2 < current ) {
+            return; // Limit is not being exercised, so there is no information about it
+        } else {
+            final double queue = Math.ceil( current * ( 1 - ( double ) minRtt / rtt ) );
+            if ( queue <= Math.max( 1, ALPHA_FACTOR * step ) ) {
+                next = current + step;
+            } else if ( queue >= Math.max( 2, BETA_FACTOR * step ) ) {
+                next = current - step;
+            } else {
+                return;
+            }
+        }
+
+        limit = Math.min( maxLimit, Math.max( minLimit, next ) );
+
+    }
+
+    /**
+     * A caller waiting for a permit.
+     *
+     * @since 1.0
+     */
+    @UsesObjectEquals
+    private static final class Waiter {
+
+        /** The sink to issue the permit to. */
+        final MonoSink<Permit> sink;
+
+        /** The permit issued to the waiter, once issued. */
+        @Nullable Permit permit;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param sink The sink to issue the permit to.
+         */
+        Waiter( final MonoSink<Permit> sink ) {
+
+            this.sink = sink;
+
+        }
+
+    }
+
+    /**
+     * A permit to execute an operation.
+     *
+     * @since 1.0
+     */
+    private final class Permit {
+
+        /** When the operation started, in nanoseconds. */
+        final long start;
+
+        /** The number of operations in progress when the operation started. */
+        final int inFlight;
+
+        /** Whether the permit was released. Must be accessed while synchronized. */
+        boolean released;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param start When the operation started, in nanoseconds.
+         * @param inFlight The number of operations in progress when the operation started.
+         */
+        Permit( final long start, final int inFlight ) {
+
+            this.start = start;
+            this.inFlight = inFlight;
+            this.released = false;
+
+        }
+
+        /**
+         * Releases the permit after the operation completed successfully.
+         *
+         * @return A mono that performs the release.
+         */
+        Mono<Void> success() {
+
+            return Mono.fromRunnable( () -> release( this, true, false ) );
+
+        }
+
+        /**
+         * Releases the permit after the operation failed.
+         *
+         * @return A mono that performs the release.
+         */
+        Mono<Void> failure() {
+
+            return Mono.fromRunnable( () -> release( this, true, true ) );
+
+        }
+
+        /**
+         * Releases the permit after the operation was cancelled.
+         *
+         * @return A mono that performs the release.
+         */
+        Mono<Void> cancel() {
+
+            return Mono.fromRunnable( () -> release( this, false, false ) );
+
+        }
+
+    }
+
+}
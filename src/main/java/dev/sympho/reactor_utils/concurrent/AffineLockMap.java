@@ -0,0 +1,495 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.UnaryOperator;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+/**
+ * Map that provides mutual exclusion for guarded Monos by confining each key to one of a
+ * fixed set of serial workers, chosen by the hash of the key, instead of keeping any state
+ * per key.
+ *
+ * <p>{@link #guard(Object, Mono) Guarded Monos} are submitted to the worker of their key
+ * and subscribed to on it, one after the other; the next task of a worker only starts
+ * after the previous one terminated (or was cancelled). If the guarded work completes
+ * synchronously, the whole critical section runs on the worker thread and the next task
+ * follows directly on the same thread, so CPU-bound critical sections pay no locking cost
+ * and per-key state stays local to one thread. Work that does not complete synchronously
+ * still holds the worker until it terminates.
+ *
+ * <p>Since keys share workers, tasks for different keys may wait for each other; this mode
+ * is meant for short critical sections, where that is cheaper than tracking each key. For
+ * the same reason, this is <b>not</b> a {@link ReactiveLockMap}: locks of different keys
+ * would not be independent, so no locks are ever issued. A guarded Mono that guards
+ * another Mono on its own worker would wait for itself, so such a nested guard fails
+ * immediately with an {@link IllegalStateException} instead (nesting is detected through
+ * the subscriber context, so it is only detected if the nested guard is part of the
+ * guarded Mono).
+ *
+ * <p>Each worker may optionally be bounded to a maximum number of waiting tasks, in which
+ * case any task submitted while that many tasks are already waiting fails immediately with
+ * a {@link LockOverloadedException}. The {@link #queueDepth(int) queue depth} and number
+ * of {@link #rejected(int) rejections} of each worker are available for monitoring.
+ *
+ * @param <K> The key type.
+ * @see SerialExecutorMap
+ * @version 1.0
+ * @since 1.0
+ * @implNote Each worker has a mailbox, the same as those of {@link SerialExecutorMap},
+ *           that is drained on a {@link Scheduler.Worker} of the configured scheduler. With
+ *           the default {@link Schedulers#parallel() parallel} scheduler, each worker is
+ *           pinned to one thread.
+ */
+public final class AffineLockMap<K extends @NonNull Object> implements Disposable {
+
+    /** Value for the maximum number of waiters that indicates that there is no limit. */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /** Shift used to mix the high bits of key hashes into the low bits. */
+    private static final int HASH_SPREAD = 16;
+
+    /** Message of the error issued to tasks that are rejected due to disposal. */
+    private static final String DISPOSED = "Lock map was disposed";
+
+    /** The workers. */
+    private final Lane[] lanes;
+
+    /**
+     * Creates a new instance with one worker for each thread of the
+     * {@link Schedulers#parallel() parallel} scheduler.
+     */
+    public AffineLockMap() {
+
+        this( Schedulers.DEFAULT_POOL_SIZE );
+
+    }
+
+    /**
+     * Creates a new instance that runs on the {@link Schedulers#parallel() parallel}
+     * scheduler.
+     *
+     * @param workers The number of workers.
+     * @throws IllegalArgumentException if the number of workers is not positive.
+     */
+    public AffineLockMap( final int workers ) throws IllegalArgumentException {
+
+        this( workers, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param workers The number of workers.
+     * @param scheduler The scheduler to create the workers from.
+     * @throws IllegalArgumentException if the number of workers is not positive.
+     */
+    public AffineLockMap( final int workers, final Scheduler scheduler )
+            throws IllegalArgumentException {
+
+        this( workers, UNBOUNDED, scheduler );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param workers The number of workers.
+     * @param maxWaiters The maximum number of tasks that may be waiting for each worker
+     *                   at the same time, or {@link #UNBOUNDED} if there is no limit.
+     * @param scheduler The scheduler to create the workers from.
+     * @throws IllegalArgumentException if the number of workers is not positive or the
+     *                                  maximum is negative.
+     */
+    public AffineLockMap( final int workers, final int maxWaiters, final Scheduler scheduler )
+            throws IllegalArgumentException {
+
+        if ( workers <= 0 ) {
+            throw new IllegalArgumentException( "Number of workers must be positive." );
+        }
+        if ( maxWaiters < 0 ) {
+            throw new IllegalArgumentException( "Maximum waiters cannot be negative." );
+        }
+        Objects.requireNonNull( scheduler );
+
+        this.lanes = new Lane[workers];
+        for ( int i = 0; i < workers; i++ ) {
+            lanes[i] = new Lane( scheduler.createWorker(), maxWaiters );
+        }
+
+    }
+
+    /**
+     * Determines the number of workers.
+     *
+     * @return The number of workers.
+     */
+    public int workers() {
+
+        return lanes.length;
+
+    }
+
+    /**
+     * Determines the worker that a key is confined to.
+     *
+     * @param key The key.
+     * @return The index of the worker.
+     */
+    @SuppressWarnings( "signedness:shift.unsigned" ) // Mixing hash bits
+    public int workerOf( final K key ) {
+
+        final int h = key.hashCode();
+        return Math.floorMod( h ^ ( h >>> HASH_SPREAD ), lanes.length );
+
+    }
+
+    /**
+     * Determines the number of tasks waiting for a worker, not including the one currently
+     * running (if any).
+     *
+     * @param worker The index of the worker.
+     * @return The number of waiting tasks.
+     * @throws IndexOutOfBoundsException if there is no worker with the given index.
+     */
+    public int queueDepth( final int worker ) throws IndexOutOfBoundsException {
+
+        return lanes[Objects.checkIndex( worker, lanes.length )].depth();
+
+    }
+
+    /**
+     * Determines the number of tasks that were rejected by a worker because the maximum
+     * number of waiters was reached.
+     *
+     * @param worker The index of the worker.
+     * @return The number of rejected tasks.
+     * @throws IndexOutOfBoundsException if there is no worker with the given index.
+     */
+    public long rejected( final int worker ) throws IndexOutOfBoundsException {
+
+        return lanes[Objects.checkIndex( worker, lanes.length )].rejected;
+
+    }
+
+    /**
+     * Guards a Mono under the given key, subscribing to it on the worker of the key once
+     * all previously submitted tasks of that worker terminated. This ensures that only one
+     * subscription of all the keys that share the worker is active at any given time.
+     *
+     * <p>Each subscription to the returned Mono submits a separate task. If the
+     * subscription is cancelled before the task starts, the task is skipped; if it is
+     * cancelled while the task is running, the task is cancelled and the next task starts.
+     *
+     * <p>The returned Mono fails with an {@link IllegalStateException} if it is part of a
+     * Mono that is already guarded on the same worker, with a
+     * {@link LockOverloadedException} if the worker has too many waiting tasks, or with a
+     * {@link RejectedExecutionException} if the map was disposed.
+     *
+     * @param <T> The element type.
+     * @param key The key to guard the Mono under.
+     * @param source The Mono to guard.
+     * @return The guarded Mono.
+     */
+    public <T> Mono<T> guard( final K key, final Mono<T> source ) {
+
+        return new Submission<>( lane( key ), source );
+
+    }
+
+    /**
+     * Creates a function that {@link #guard(Object, Mono) guards} Monos under the given
+     * key.
+     *
+     * @param <T> The element type.
+     * @param key The key to guard Monos under.
+     * @return The function that transforms Monos into guarded Monos.
+     */
+    public <T> UnaryOperator<Mono<T>> guardMono( final K key ) {
+
+        return source -> guard( key, source );
+
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Tasks that are waiting when the map is disposed fail with a
+     * {@link RejectedExecutionException}, as do tasks submitted afterwards. Tasks that are
+     * running are not interrupted.
+     */
+    @Override
+    public void dispose() {
+
+        for ( final var lane : lanes ) {
+            lane.dispose();
+        }
+
+    }
+
+    @Override
+    public boolean isDisposed() {
+
+        return lanes[0].disposed;
+
+    }
+
+    /**
+     * Retrieves the worker of a key.
+     *
+     * @param key The key.
+     * @return The worker.
+     */
+    private Lane lane( final K key ) {
+
+        return lanes[workerOf( key )];
+
+    }
+
+    /**
+     * A Mono that submits a task to a worker once subscribed to.
+     *
+     * @param <T> The result type.
+     * @since 1.0
+     */
+    private static final class Submission<T> extends Mono<T> {
+
+        /** The worker. */
+        private final Lane lane;
+
+        /** The guarded Mono. */
+        private final Mono<T> source;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param lane The worker.
+         * @param source The guarded Mono.
+         */
+        Submission( final Lane lane, final Mono<T> source ) {
+
+            this.lane = lane;
+            this.source = source;
+
+        }
+
+        @Override
+        public void subscribe( final CoreSubscriber<? super T> actual ) {
+
+            final var task = new Task<T>( actual, source, lane );
+            actual.onSubscribe( task );
+            if ( actual.currentContext().hasKey( lane ) ) {
+                actual.onError( new IllegalStateException(
+                        "Nested guard on the same worker would never run" ) );
+            } else if ( lane.disposed ) {
+                actual.onError( new RejectedExecutionException( DISPOSED ) );
+            } else if ( !lane.offer( task ) ) {
+                actual.onError( new LockOverloadedException( lane.maxWaiters ) );
+            }
+
+        }
+
+    }
+
+    /**
+     * A serial worker, consisting of a mailbox whose drain loop runs on a
+     * {@link Scheduler.Worker}.
+     *
+     * @since 1.0
+     */
+    private static final class Lane extends AbstractSerialMailbox {
+
+        /** Field updater for {@link #pending}. */
+        private static final AtomicIntegerFieldUpdater<Lane> PENDING =
+                AtomicIntegerFieldUpdater.newUpdater( Lane.class, "pending" );
+
+        /** Field updater for {@link #rejected}. */
+        private static final AtomicLongFieldUpdater<Lane> REJECTED =
+                AtomicLongFieldUpdater.newUpdater( Lane.class, "rejected" );
+
+        /** The worker that the drain loop runs on. */
+        final Scheduler.Worker worker;
+
+        /** The maximum number of waiting tasks. */
+        final int maxWaiters;
+
+        /** The number of rejected tasks. */
+        volatile long rejected;
+
+        /** Whether the lane was disposed. */
+        volatile boolean disposed;
+
+        /** The number of tasks that were admitted but did not finish yet. */
+        private volatile int pending;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param worker The worker that the drain loop runs on.
+         * @param maxWaiters The maximum number of waiting tasks.
+         */
+        Lane( final Scheduler.Worker worker, final int maxWaiters ) {
+
+            this.worker = worker;
+            this.maxWaiters = maxWaiters;
+
+        }
+
+        /**
+         * Determines the number of waiting tasks.
+         *
+         * @return The number of waiting tasks.
+         */
+        int depth() {
+
+            return Math.max( 0, pending - ( isActive() ? 1 : 0 ) );
+
+        }
+
+        /**
+         * Registers a new task, if the waiter limit allows it.
+         *
+         * @return {@code true} if admitted.
+         */
+        private boolean admit() {
+
+            int current;
+            do {
+                current = pending;
+                if ( current > maxWaiters ) { // One running plus maxWaiters waiting
+                    REJECTED.incrementAndGet( this );
+                    return false;
+                }
+            } while ( !PENDING.compareAndSet( this, current, current + 1 ) );
+            return true;
+
+        }
+
+        /**
+         * Enqueues a task.
+         *
+         * @param task The task.
+         * @return {@code true} if the task was enqueued, {@code false} if it was rejected.
+         */
+        boolean offer( final SerialTask<?> task ) {
+
+            if ( !admit() ) {
+                return false;
+            }
+
+            enqueue( task );
+            return true;
+
+        }
+
+        /**
+         * Disposes the lane, failing the waiting tasks.
+         */
+        void dispose() {
+
+            disposed = true;
+            signal();
+
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * <p>Once the lane is disposed, the drain loop runs on the caller instead of being
+         * scheduled.
+         */
+        @Override
+        protected void schedule() {
+
+            if ( disposed ) {
+                drain();
+                return;
+            }
+
+            try {
+                worker.schedule( this::drain );
+            } catch ( final RejectedExecutionException e ) {
+                disposed = true; // Scheduler was disposed externally
+                drain();
+            }
+
+        }
+
+        @Override
+        protected void released() {
+
+            PENDING.decrementAndGet( this );
+
+        }
+
+        @Override
+        protected boolean halted() {
+
+            return disposed;
+
+        }
+
+        @Override
+        protected Throwable rejection() {
+
+            return new RejectedExecutionException( DISPOSED );
+
+        }
+
+        @Override
+        protected void drained() {
+
+            if ( disposed ) {
+                worker.dispose(); // Nothing will be scheduled anymore
+            }
+
+        }
+
+    }
+
+    /**
+     * A submitted task, which marks its worker as held in the context of the guarded Mono.
+     *
+     * @param <T> The result type.
+     * @since 1.0
+     */
+    private static final class Task<T> extends SerialTask<T> {
+
+        /** The context of the guarded Mono, which marks the worker as held. */
+        private final Context context;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The submitter.
+         * @param source The guarded Mono.
+         * @param lane The worker the task is submitted to.
+         */
+        Task( final CoreSubscriber<? super T> actual, final Mono<T> source, final Lane lane ) {
+
+            super( actual, source );
+            this.context = actual.currentContext().put( lane, lane );
+
+        }
+
+        @Override
+        public Context currentContext() {
+
+            return context;
+
+        }
+
+    }
+
+}
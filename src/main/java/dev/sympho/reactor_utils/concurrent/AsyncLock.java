@@ -1,6 +1,9 @@
 package dev.sympho.reactor_utils.concurrent;
 
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -10,11 +13,22 @@ import reactor.core.publisher.Mono;
 
 /**
  * Reactive lock that waits asynchronously.
+ * 
+ * <p>The lock may optionally be bounded to a maximum number of waiters, in which case any
+ * acquisition attempted while that many acquisitions are already waiting fails immediately
+ * with a {@link LockOverloadedException}. This bounds the latency and memory used by
+ * queued work when whoever holds the lock stalls.
+ *
+ * <p>Optimistic reads are supported; a stamp is only issued while the lock is neither
+ * held nor waited for, and is invalidated as soon as any acquisition is made.
  *
  * @version 1.0
  * @since 1.0
  */
-public final class AsyncLock extends AbstractReactiveLock {
+public final class AsyncLock extends AbstractReactiveLock implements OptimisticReactiveLock {
+
+    /** Value for the maximum number of waiters that indicates that there is no limit. */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
 
     /** 
      * The Mono that completes once the lock is available. 
@@ -22,9 +36,24 @@ public final class AsyncLock extends AbstractReactiveLock {
      */
     private final AtomicReference<@Nullable Mono<Void>> pending;
 
+    /** 
+     * Version of the lock, incremented after every acquisition is registered and after
+     * every release. Never {@link #INVALID_STAMP}.
+     */
+    private final AtomicLong version;
+
     /** Transformer applied to the aquisition mono before returning it. */
     private final LockTransformer transformer;
 
+    /** The maximum number of waiters. */
+    private final int maxWaiters;
+
+    /** 
+     * The number of issued locks that were not released yet (the holder and the waiters),
+     * or {@code null} if the number of waiters is unbounded.
+     */
+    private final @Nullable AtomicInteger outstanding;
+
     /**
      * Creates a new instance.
      */
@@ -42,18 +71,125 @@ public final class AsyncLock extends AbstractReactiveLock {
      */
     public AsyncLock( final LockTransformer transformer ) {
 
+        this( UNBOUNDED, transformer );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxWaiters The maximum number of acquisitions that may be waiting for the lock
+     *                   at the same time, or {@link #UNBOUNDED} if there is no limit.
+     * @throws IllegalArgumentException if the maximum is negative.
+     */
+    public AsyncLock( final int maxWaiters ) throws IllegalArgumentException {
+
+        this( maxWaiters, m -> m );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxWaiters The maximum number of acquisitions that may be waiting for the lock
+     *                   at the same time, or {@link #UNBOUNDED} if there is no limit.
+     * @param transformer A transformer to apply to the result of 
+     *                   {@link ReactiveLock#acquire()} before returning it.
+     * @throws IllegalArgumentException if the maximum is negative.
+     */
+    public AsyncLock( final int maxWaiters, final LockTransformer transformer )
+            throws IllegalArgumentException {
+
+        if ( maxWaiters < 0 ) {
+            throw new IllegalArgumentException( "Maximum waiters cannot be negative." );
+        }
+
         this.transformer = Objects.requireNonNull( transformer );
         this.pending = new AtomicReference<>();
+        this.version = new AtomicLong( INVALID_STAMP + 1 );
+        this.maxWaiters = maxWaiters;
+        this.outstanding = maxWaiters == UNBOUNDED ? null : new AtomicInteger();
+
+    }
+
+    /**
+     * Registers a new issued lock, if the waiter limit allows it.
+     *
+     * @return {@code true} if the lock may be issued.
+     */
+    private boolean admit() {
+
+        final var count = outstanding;
+        if ( count == null ) {
+            return true;
+        }
+
+        int current;
+        do {
+            current = count.get();
+            if ( current > maxWaiters ) { // One holder plus maxWaiters waiting
+                return false;
+            }
+        } while ( !count.compareAndSet( current, current + 1 ) );
+        return true;
+
+    }
+
+    /**
+     * Unregisters an issued lock that was released or that failed to be issued.
+     */
+    private void retire() {
+
+        final var count = outstanding;
+        if ( count != null ) {
+            count.decrementAndGet();
+        }
+
+    }
+
+    /**
+     * Determines the number of issued locks ahead of one that was just admitted.
+     *
+     * @return The number of locks, or {@link FlightEvents#UNKNOWN_DEPTH} if the number of
+     *         waiters is unbounded.
+     */
+    private int depth() {
+
+        final var count = outstanding;
+        return count == null ? FlightEvents.UNKNOWN_DEPTH : count.get() - 1;
+
+    }
+
+    @Override
+    public long tryOptimisticRead() {
+
+        final var stamp = version.get();
+        return pending.get() == null ? stamp : INVALID_STAMP;
+
+    }
+
+    @Override
+    public boolean validate( final long stamp ) {
+
+        VarHandle.acquireFence();
+        return stamp != INVALID_STAMP && version.get() == stamp;
 
     }
 
     @Override
     public @Nullable AcquiredLock tryAcquire() {
 
+        if ( !admit() ) {
+            return null;
+        }
+
         final var lock = new AcquiredLockImpl();
         if ( pending.compareAndSet( null, lock.doneMono() ) ) {
+            version.incrementAndGet();
+            FlightEvents.recordHold( lock, this, null );
             return lock;
         } else {
+            retire();
             return null;
         }
 
@@ -62,8 +198,16 @@ public final class AsyncLock extends AbstractReactiveLock {
     @Override
     public Mono<AcquiredLock> doAcquire() {
 
+        if ( !admit() ) {
+            final var rejected = Mono.<AcquiredLock>error(
+                    new LockOverloadedException( maxWaiters ) )
+                    .transform( transformer::transformAcquire );
+            return FlightEvents.recordWait( rejected, null, this, null, maxWaiters + 1 );
+        }
+
         final var lock = new AcquiredLockImpl();
         final var ready = pending.getAndSet( lock.doneMono() );
+        version.incrementAndGet(); // After registering, so issued stamps are invalidated
 
         final Mono<AcquiredLock> mono;
         if ( ready != null ) {
@@ -72,8 +216,12 @@ public final class AsyncLock extends AbstractReactiveLock {
             mono = Mono.just( lock );
         }
 
-        return mono.doOnCancel( () -> mono.subscribe( AcquiredLock::release ) )
+        final Mono<AcquiredLock> acquisition = mono.doOnCancel(
+                () -> mono.subscribe( AcquiredLock::release ) )
                 .transform( transformer::transformAcquire );
+        return FlightEvents.isWaitEnabled()
+                ? FlightEvents.recordWait( acquisition, lock, this, null, depth() )
+                : acquisition;
 
     }
 
@@ -93,6 +241,8 @@ public final class AsyncLock extends AbstractReactiveLock {
         protected void markReleased() {
 
             pending.compareAndSet( doneMono(), null ); // Only change if still latest
+            version.incrementAndGet();
+            retire();
 
         }
 
@@ -7,23 +7,41 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import dev.sympho.reactor_utils.concurrent.transformer.LockMapTransformer;
+import reactor.core.CoreSubscriber;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
 
 /**
  * Reactive lock map that asychronously waits for a lock to become available.
+ * 
+ * <p>The map may optionally be bounded to a maximum number of waiters per key, in which
+ * case any acquisition attempted while that many acquisitions are already waiting on the
+ * same key fails immediately with a {@link LockOverloadedException}.
  *
  * @param <K> The key type.
  * @version 1.0
  * @since 1.0
+ * @implNote All the state of a key is kept in a single node, which is also issued as the
+ *           lock to the acquisition that created it, and waiting acquisitions are queued in
+ *           an intrusive list in the node. This way, a held key only costs the map entry and
+ *           the node, and a waiting acquisition only costs its subscription (until it is
+ *           issued the lock). Cancelled acquisitions keep their place in the queue, and are
+ *           skipped when they reach the front.
  */
 public class AsyncLockMap<K extends @NonNull Object> extends AbstractReactiveLockMap<K> {
 
-    /** Pseudo-lock map. */
-    private final ConcurrentMap<K, Mono<Void>> locks;
+    /** Value for the maximum number of waiters that indicates that there is no limit. */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /** The nodes of the keys that are currently held. */
+    private final ConcurrentMap<K, Node> locks;
 
     /** Transformer applied to the aquisition mono before returning it. */
     private final LockMapTransformer<K> transformer;
 
+    /** The maximum number of waiters per key. */
+    private final int maxWaiters;
+
     /**
      * Creates a new instance.
      */
@@ -42,17 +60,80 @@ public class AsyncLockMap<K extends @NonNull Object> extends AbstractReactiveLoc
      */
     public AsyncLockMap( final LockMapTransformer<K> transformer ) {
 
+        this( UNBOUNDED, transformer );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxWaiters The maximum number of acquisitions that may be waiting for the lock
+     *                   of each key at the same time, or {@link #UNBOUNDED} if there is
+     *                   no limit.
+     * @throws IllegalArgumentException if the maximum is negative.
+     */
+    public AsyncLockMap( final int maxWaiters ) throws IllegalArgumentException {
+
+        this( maxWaiters, ( key, mono ) -> mono );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxWaiters The maximum number of acquisitions that may be waiting for the lock
+     *                   of each key at the same time, or {@link #UNBOUNDED} if there is
+     *                   no limit.
+     * @param transformer A transform function to apply to the result of 
+     *                    {@link ReactiveLockMap#acquire(Object)} before returning it.
+     *                    Also applies to {@link ReactiveLockMap#get(Object) inner locks}.
+     * @throws IllegalArgumentException if the maximum is negative.
+     */
+    public AsyncLockMap( final int maxWaiters, final LockMapTransformer<K> transformer )
+            throws IllegalArgumentException {
+
+        if ( maxWaiters < 0 ) {
+            throw new IllegalArgumentException( "Maximum waiters cannot be negative." );
+        }
+
         this.transformer = transformer;
         this.locks = new ConcurrentHashMap<>();
+        this.maxWaiters = maxWaiters;
+
+    }
+
+    /**
+     * Determines the number of keys that currently have a node.
+     *
+     * @return The number of nodes.
+     */
+    int nodes() {
+
+        return locks.size();
+
+    }
+
+    /**
+     * Determines the number of issued locks ahead of an acquisition that is about to be
+     * made for a key.
+     *
+     * @param key The key.
+     * @return The number of locks.
+     */
+    private int depth( final K key ) {
+
+        final var node = locks.get( key );
+        return node == null ? 0 : node.depth();
 
     }
 
     @Override
     public @Nullable AcquiredLock tryAcquire( final K key ) {
 
-        final var lock = new MapAcquiredLock( key );
-        if ( locks.putIfAbsent( key, lock.doneMono() ) == null ) {
-            return lock;
+        final var node = new Node( key );
+        if ( locks.putIfAbsent( key, node ) == null ) {
+            FlightEvents.recordHold( node, this, key );
+            return node;
         } else {
             return null;
         }
@@ -62,49 +143,271 @@ public class AsyncLockMap<K extends @NonNull Object> extends AbstractReactiveLoc
     @Override
     protected Mono<AcquiredLock> doAcquire( final K key ) {
 
-        final var lock = new MapAcquiredLock( key );
-        final var ready = locks.put( key, lock.doneMono() );
+        final Mono<AcquiredLock> acquisition = new Acquisition( key )
+                .transform( m -> transformer.transformAcquire( key, m ) );
+        return FlightEvents.isWaitEnabled()
+                ? FlightEvents.recordWait( acquisition, null, this, key, depth( key ) )
+                : acquisition;
+
+    }
+
+    /**
+     * Issues the lock of a key to an acquisition, or queues it if the key is held.
+     *
+     * @param key The key.
+     * @param waiter The acquisition.
+     */
+    private void admit( final K key, final Waiter waiter ) {
+
+        while ( true ) {
+
+            var node = locks.get( key );
+            if ( node == null ) {
+                final var created = new Node( key );
+                node = locks.putIfAbsent( key, created );
+                if ( node == null ) {
+                    FlightEvents.recordHold( created, this, key );
+                    waiter.complete( created );
+                    return;
+                }
+            }
+
+            switch ( node.enqueue( waiter ) ) {
+                case QUEUED:
+                    return;
+                case REJECTED:
+                    waiter.actual().onError( new LockOverloadedException( maxWaiters ) );
+                    return;
+                default: // Node was removed, try again
+                    break;
+            }
 
-        final Mono<AcquiredLock> mono;
-        if ( ready != null ) {
-            mono = ready.thenReturn( lock );
-        } else {
-            mono = Mono.just( lock );
         }
 
-        return mono.doOnCancel( () -> mono.subscribe( AcquiredLock::release ) )
-                .transform( m -> transformer.transformAcquire( key, m ) );
+    }
+
+    /**
+     * The result of queueing an acquisition on a node.
+     *
+     * @since 1.0
+     */
+    private enum Admission {
+
+        /** The acquisition was queued. */
+        QUEUED,
+
+        /** The acquisition was rejected due to the waiter limit. */
+        REJECTED,
+
+        /** The node was already removed from the map. */
+        REMOVED
 
     }
 
     /**
-     * The lock implementation.
+     * The acquisition of the lock for a key.
      *
      * @since 1.0
      */
-    private final class MapAcquiredLock extends AbstractReactiveAcquiredLock {
+    private final class Acquisition extends Mono<AcquiredLock> {
 
-        /** The key the lock is for. */
+        /** The key. */
         private final K key;
 
         /**
-         * Initializes a lock.
+         * Creates a new instance.
          *
-         * @param key The lock's key.
+         * @param key The key.
          */
-        MapAcquiredLock( final K key ) {
+        Acquisition( final K key ) {
 
             this.key = key;
 
         }
 
         @Override
-        protected void markReleased() {
+        public void subscribe( final CoreSubscriber<? super AcquiredLock> actual ) {
+
+            final var waiter = new Waiter( actual );
+            actual.onSubscribe( waiter );
+            admit( key, waiter );
+
+        }
+
+    }
+
+    /**
+     * An acquisition waiting to be issued a lock.
+     *
+     * @since 1.0
+     */
+    private static final class Waiter extends Operators.MonoSubscriber<AcquiredLock, AcquiredLock> {
+
+        /** The next waiter in the queue. Only accessed while holding the node monitor. */
+        @Nullable Waiter next;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The subscriber to issue the lock to.
+         */
+        @SuppressWarnings( "argument" ) // Weird inference
+        Waiter( final CoreSubscriber<? super AcquiredLock> actual ) {
+
+            super( actual );
+
+        }
+
+        @Override
+        protected void discard( final @Nullable AcquiredLock lock ) {
+
+            if ( lock != null ) {
+                lock.release(); // Issued after being cancelled
+            }
+
+        }
+
+    }
+
+    /**
+     * The state of a held key. It is also the lock issued to the acquisition that created
+     * it; later holders are issued a {@link MapAcquiredLock} that refers back to it.
+     *
+     * @since 1.0
+     */
+    private final class Node extends AbstractMapAcquiredLock {
+
+        /** The first waiter in the queue. */
+        private @Nullable Waiter head;
+
+        /** The last waiter in the queue. */
+        private @Nullable Waiter tail;
+
+        /** The number of queued waiters, including cancelled ones that were not skipped. */
+        private int waiting;
+
+        /** Whether the node was removed from the map. */
+        private boolean removed;
+
+        /**
+         * Creates a new node for a key that is held by its creator.
+         *
+         * @param key The key.
+         */
+        Node( final K key ) {
+
+            super( key );
+
+        }
+
+        /**
+         * Determines the number of issued locks in this node.
+         *
+         * @return The number of waiters plus the holder, or 0 if removed.
+         */
+        synchronized int depth() {
+
+            return removed ? 0 : waiting + 1;
+
+        }
+
+        /**
+         * Queues an acquisition to be issued the lock once the current holder releases it.
+         *
+         * @param waiter The acquisition.
+         * @return Whether the acquisition was queued.
+         */
+        synchronized Admission enqueue( final Waiter waiter ) {
+
+            if ( removed ) {
+                return Admission.REMOVED;
+            } else if ( waiting >= maxWaiters ) {
+                return Admission.REJECTED;
+            }
+
+            final var last = tail;
+            if ( last == null ) {
+                head = waiter;
+            } else {
+                last.next = waiter;
+            }
+            tail = waiter;
+            waiting++;
+            return Admission.QUEUED;
+
+        }
+
+        /**
+         * Unlocks the key, issuing the lock to the first waiter that was not cancelled, or
+         * removing this node if there is none.
+         */
+        void unlock() {
+
+            Waiter next;
+            synchronized ( this ) {
+                while ( ( next = head ) != null ) {
+                    head = next.next;
+                    next.next = null;
+                    waiting--;
+                    if ( !next.isCancelled() ) {
+                        break;
+                    }
+                }
+
+                if ( next == null ) {
+                    tail = null;
+                    removed = true;
+                    locks.remove( key, this );
+                    return;
+                } else if ( head == null ) {
+                    tail = null;
+                }
+            }
+
+            final var lock = new MapAcquiredLock( this );
+            FlightEvents.recordHold( lock, AsyncLockMap.this, key );
+            next.complete( lock ); // Released immediately if cancelled in the meantime
+
+        }
+
+        @Override
+        protected void doRelease() {
 
-            locks.remove( key, doneMono() ); // Only change map if still latest
+            unlock();
 
         }
 
-    } 
-    
+    }
+
+    /**
+     * The lock issued to holders after the one that created the node.
+     *
+     * @since 1.0
+     */
+    private final class MapAcquiredLock extends AbstractMapAcquiredLock {
+
+        /** The node of the key. */
+        private final Node node;
+
+        /**
+         * Initializes a lock.
+         *
+         * @param node The node of the key.
+         */
+        MapAcquiredLock( final Node node ) {
+
+            super( node.key );
+            this.node = node;
+
+        }
+
+        @Override
+        protected void doRelease() {
+
+            node.unlock();
+
+        }
+
+    }
+
 }
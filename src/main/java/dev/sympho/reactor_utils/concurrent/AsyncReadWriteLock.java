@@ -0,0 +1,328 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Reactive read/write lock that waits asynchronously.
+ *
+ * <p>Locks are granted in FIFO order: once a writer is waiting, readers that arrive after
+ * it wait as well, so writers are not starved by a continuous stream of readers. Upgrading
+ * a read lock does not wait, and so it takes precedence over waiting writers.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public final class AsyncReadWriteLock implements ReactiveReadWriteLock {
+
+    /** Error message for converting a lock that is no longer held. */
+    private static final String NOT_HELD = "Lock is no longer held.";
+
+    /** The waiting acquisitions, in arrival order. */
+    private final Queue<Waiter> waiters;
+
+    /** The number of held read locks. */
+    private int readers;
+
+    /** Whether the write lock is held. */
+    private boolean writer;
+
+    /**
+     * Creates a new instance.
+     */
+    public AsyncReadWriteLock() {
+
+        this.waiters = new ArrayDeque<>();
+
+    }
+
+    /**
+     * Determines whether a lock can be granted without waiting.
+     *
+     * @param write Whether the write lock is requested.
+     * @return {@code true} if the lock can be granted.
+     */
+    private boolean available( final boolean write ) {
+
+        return !writer && ( !write || readers == 0 );
+
+    }
+
+    /**
+     * Grants the lock to waiters at the head of the queue, for as long as possible.
+     *
+     * @return The waiters that were granted the lock, to be notified once outside the
+     *         monitor.
+     */
+    private List<Waiter> grant() {
+
+        final List<Waiter> ready = new ArrayList<>();
+        Waiter next;
+        while ( ( next = waiters.peek() ) != null && available( next.write() ) ) {
+            waiters.remove();
+            if ( next.write() ) {
+                writer = true;
+            } else {
+                readers++;
+            }
+            ready.add( next );
+        }
+        return ready;
+
+    }
+
+    /**
+     * Notifies waiters that were granted the lock.
+     *
+     * @param ready The waiters.
+     */
+    private void issue( final List<Waiter> ready ) {
+
+        for ( final var waiter : ready ) {
+            final var lock = waiter.write() ? new WriteLock() : new ReadLock();
+            waiter.sink().tryEmitValue( lock );
+        }
+
+    }
+
+    /**
+     * Acquires a lock if available, or else enqueues a waiter.
+     *
+     * @param write Whether to acquire the write lock.
+     * @return A Mono that issues the lock, immediately if it was available.
+     */
+    private synchronized Mono<AcquiredLock> request( final boolean write ) {
+
+        if ( waiters.isEmpty() && available( write ) ) {
+            if ( write ) {
+                writer = true;
+                return Mono.just( new WriteLock() );
+            } else {
+                readers++;
+                return Mono.just( new ReadLock() );
+            }
+        }
+
+        final var waiter = new Waiter( write, Sinks.one() );
+        waiters.add( waiter );
+        return waiter.sink().asMono();
+
+    }
+
+    /**
+     * Acquires a lock.
+     *
+     * @param write Whether to acquire the write lock.
+     * @return A Mono that issues the lock once acquired.
+     */
+    private Mono<AcquiredLock> acquire( final boolean write ) {
+
+        return Mono.defer( () -> {
+
+            final var mono = request( write );
+            return mono.doOnCancel( () -> mono.subscribe( AcquiredLock::release ) );
+
+        } );
+
+    }
+
+    @Override
+    public Mono<AcquiredReadLock> acquireRead() {
+
+        return acquire( false ).cast( AcquiredReadLock.class );
+
+    }
+
+    @Override
+    public synchronized @Nullable AcquiredReadLock tryAcquireRead() {
+
+        if ( waiters.isEmpty() && available( false ) ) {
+            readers++;
+            return new ReadLock();
+        } else {
+            return null;
+        }
+
+    }
+
+    @Override
+    public Mono<AcquiredWriteLock> acquireWrite() {
+
+        return acquire( true ).cast( AcquiredWriteLock.class );
+
+    }
+
+    @Override
+    public synchronized @Nullable AcquiredWriteLock tryAcquireWrite() {
+
+        if ( waiters.isEmpty() && available( true ) ) {
+            writer = true;
+            return new WriteLock();
+        } else {
+            return null;
+        }
+
+    }
+
+    /**
+     * Releases a read lock.
+     */
+    private void releaseRead() {
+
+        final List<Waiter> ready;
+        synchronized ( this ) {
+            readers--;
+            ready = grant();
+        }
+        issue( ready );
+
+    }
+
+    /**
+     * Releases the write lock.
+     */
+    private void releaseWrite() {
+
+        final List<Waiter> ready;
+        synchronized ( this ) {
+            writer = false;
+            ready = grant();
+        }
+        issue( ready );
+
+    }
+
+    /**
+     * An acquisition waiting for the lock.
+     *
+     * @param write Whether the write lock was requested.
+     * @param sink The sink to issue the lock through.
+     * @since 1.0
+     */
+    private record Waiter( boolean write, Sinks.One<AcquiredLock> sink ) {}
+
+    /**
+     * Base for the acquired lock implementations.
+     *
+     * @since 1.0
+     */
+    private abstract class BaseLock implements AcquiredLock {
+
+        /** Whether the lock is currently held through this instance. */
+        protected final AtomicBoolean active = new AtomicBoolean( true );
+
+        /**
+         * Performs the actual release of the lock.
+         */
+        protected abstract void doRelease();
+
+        /**
+         * Consumes this instance in order to convert it to another mode. Must be called
+         * while synchronized on the lock.
+         *
+         * @throws IllegalStateException if already released or converted.
+         */
+        protected void consume() throws IllegalStateException {
+
+            if ( !active.compareAndSet( true, false ) ) {
+                throw new IllegalStateException( NOT_HELD );
+            }
+
+        }
+
+        @Override
+        public void release() {
+
+            if ( active.getAndSet( false ) ) {
+                doRelease();
+            }
+
+        }
+
+    }
+
+    /**
+     * The read lock implementation.
+     *
+     * @since 1.0
+     */
+    private final class ReadLock extends BaseLock implements AcquiredReadLock {
+
+        /**
+         * Creates a new instance.
+         */
+        ReadLock() {}
+
+        @Override
+        protected void doRelease() {
+
+            releaseRead();
+
+        }
+
+        @Override
+        public @Nullable AcquiredWriteLock tryUpgrade() throws IllegalStateException {
+
+            synchronized ( AsyncReadWriteLock.this ) {
+                if ( readers != 1 ) {
+                    if ( !active.get() ) {
+                        throw new IllegalStateException( NOT_HELD );
+                    }
+                    return null;
+                }
+
+                consume();
+                readers = 0;
+                writer = true;
+            }
+            return new WriteLock();
+
+        }
+
+    }
+
+    /**
+     * The write lock implementation.
+     *
+     * @since 1.0
+     */
+    private final class WriteLock extends BaseLock implements AcquiredWriteLock {
+
+        /**
+         * Creates a new instance.
+         */
+        WriteLock() {}
+
+        @Override
+        protected void doRelease() {
+
+            releaseWrite();
+
+        }
+
+        @Override
+        public AcquiredReadLock downgrade() throws IllegalStateException {
+
+            final List<Waiter> ready;
+            synchronized ( AsyncReadWriteLock.this ) {
+                consume();
+                writer = false;
+                readers++;
+                ready = grant(); // Lets in readers at the head of the queue
+            }
+            issue( ready );
+            return new ReadLock();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,444 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.checkerframework.checker.interning.qual.UsesObjectEquals;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import dev.sympho.reactor_utils.concurrent.backend.LockBackend;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive lock map whose locks are also coordinated with other nodes (such as other
+ * processes) through a {@link LockBackend}.
+ *
+ * <p>Acquisitions made through the same map are first serialized locally, so only one of
+ * them contends for the backend at a time. Once the node owns a key in the backend, it
+ * keeps that ownership while any local acquisition of the key is held or waiting, and for
+ * a short linger period after the last one is released. Acquisitions made while the node
+ * already owns the key are thus issued without accessing the backend.
+ *
+ * <p>Backends cannot notify waiters across processes, so while the key is owned by another
+ * node, ownership is polled for periodically. Note that this gives no fairness guarantees
+ * between nodes, and that a node with a continuous stream of acquisitions for a key can
+ * keep it indefinitely.
+ *
+ * <p>{@link #tryAcquire(Object)} also attempts to take ownership from the backend, so it
+ * only fails if the lock is held locally or the key is owned by another node.
+ *
+ * <p>Backend calls are never made while holding internal locks of the map other than the
+ * local lock of the key. Attempts to take ownership made by {@link #acquire(Object)}, and
+ * relinquishing ownership after the linger time, run on a separate scheduler that
+ * defaults to {@link Schedulers#boundedElastic()}, so the backend may block. However,
+ * {@link #tryAcquire(Object)} calls the backend on the calling thread, and so does
+ * releasing a lock when the linger time is zero.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ */
+public class BackendLockMap<K extends @NonNull Object> extends AbstractReactiveLockMap<K> {
+
+    /** The default interval between attempts to take ownership from the backend. */
+    public static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMillis( 100 );
+
+    /** The default time that ownership is retained for after the last local release. */
+    public static final Duration DEFAULT_LINGER = Duration.ofMillis( 100 );
+
+    /** The backend. */
+    private final LockBackend<K> backend;
+
+    /** The map that serializes acquisitions within this node. */
+    private final AsyncLockMap<K> local;
+
+    /** The interval between attempts to take ownership from the backend. */
+    private final Duration pollInterval;
+
+    /** The time that ownership is retained after the last local release, in nanoseconds. */
+    private final long linger;
+
+    /** The scheduler used for polling and linger timers. */
+    private final Scheduler scheduler;
+
+    /** The scheduler used for calling the backend. */
+    private final Scheduler backendScheduler;
+
+    /**
+     * The local state of the keys that are in use locally or owned by this node. Entries
+     * are only added or removed while holding the map lock for their key (inside a compute
+     * call), and their ownership is only changed while holding the local lock of their key.
+     */
+    private final ConcurrentMap<K, Entry> entries;
+
+    /**
+     * Creates a new instance that uses the {@link #DEFAULT_POLL_INTERVAL default poll interval}
+     * and {@link #DEFAULT_LINGER default linger time}.
+     *
+     * @param backend The backend to coordinate with.
+     */
+    public BackendLockMap( final LockBackend<K> backend ) {
+
+        this( backend, DEFAULT_POLL_INTERVAL, DEFAULT_LINGER );
+
+    }
+
+    /**
+     * Creates a new instance that uses the {@link Schedulers#parallel() parallel scheduler}
+     * for timers.
+     *
+     * @param backend The backend to coordinate with.
+     * @param pollInterval The interval between attempts to take ownership of a key that is
+     *                     owned by another node.
+     * @param linger The time that ownership of a key is retained for after the last local
+     *               release, during which new acquisitions do not access the backend.
+     * @throws IllegalArgumentException if the poll interval is not positive or the linger
+     *                                  time is negative.
+     */
+    public BackendLockMap( final LockBackend<K> backend, final Duration pollInterval,
+            final Duration linger ) throws IllegalArgumentException {
+
+        this( backend, pollInterval, linger, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance that uses the {@link Schedulers#boundedElastic() bounded elastic
+     * scheduler} for calling the backend.
+     *
+     * @param backend The backend to coordinate with.
+     * @param pollInterval The interval between attempts to take ownership of a key that is
+     *                     owned by another node.
+     * @param linger The time that ownership of a key is retained for after the last local
+     *               release, during which new acquisitions do not access the backend.
+     * @param scheduler The scheduler to use for timers.
+     * @throws IllegalArgumentException if the poll interval is not positive or the linger
+     *                                  time is negative.
+     */
+    public BackendLockMap( final LockBackend<K> backend, final Duration pollInterval,
+            final Duration linger, final Scheduler scheduler ) throws IllegalArgumentException {
+
+        this( backend, pollInterval, linger, scheduler, Schedulers.boundedElastic() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param backend The backend to coordinate with.
+     * @param pollInterval The interval between attempts to take ownership of a key that is
+     *                     owned by another node.
+     * @param linger The time that ownership of a key is retained for after the last local
+     *               release, during which new acquisitions do not access the backend.
+     * @param scheduler The scheduler to use for timers.
+     * @param backendScheduler The scheduler to call the backend on. If the backend may
+     *                         block, it must support blocking tasks.
+     * @throws IllegalArgumentException if the poll interval is not positive or the linger
+     *                                  time is negative.
+     */
+    public BackendLockMap( final LockBackend<K> backend, final Duration pollInterval,
+            final Duration linger, final Scheduler scheduler, final Scheduler backendScheduler )
+            throws IllegalArgumentException {
+
+        if ( pollInterval.isNegative() || pollInterval.isZero() ) {
+            throw new IllegalArgumentException( "Poll interval must be positive." );
+        }
+        if ( linger.isNegative() ) {
+            throw new IllegalArgumentException( "Linger time cannot be negative." );
+        }
+
+        this.backend = Objects.requireNonNull( backend );
+        this.local = new AsyncLockMap<>();
+        this.pollInterval = pollInterval;
+        this.linger = linger.toNanos();
+        this.scheduler = Objects.requireNonNull( scheduler );
+        this.backendScheduler = Objects.requireNonNull( backendScheduler );
+        this.entries = new ConcurrentHashMap<>();
+
+    }
+
+    /**
+     * Determines whether this node currently owns the given key in the backend.
+     *
+     * @param key The key.
+     * @return {@code true} if the key is owned by this node.
+     */
+    public boolean isOwned( final K key ) {
+
+        final var entry = entries.get( key );
+        return entry != null && entry.owned;
+
+    }
+
+    /**
+     * Registers a local acquisition of a key, cancelling any pending linger timer.
+     *
+     * @param key The key.
+     * @return The entry of the key.
+     */
+    private Entry register( final K key ) {
+
+        final var entry = entries.compute( key, ( k, e ) -> {
+
+            final var current = e == null ? new Entry() : e;
+            current.users++;
+            current.generation++;
+            final var timer = current.timer;
+            if ( timer != null ) {
+                timer.dispose();
+                current.timer = null;
+            }
+            return current;
+
+        } );
+        return Objects.requireNonNull( entry );
+
+    }
+
+    /**
+     * Unregisters a local acquisition of a key, relinquishing ownership (immediately or
+     * after the linger time) if it was the last one. Must be called while holding the
+     * local lock of the key.
+     *
+     * @param key The key.
+     * @param entry The entry of the key.
+     */
+    @SuppressWarnings( "nullness:return" ) // Returning null removes the entry
+    private void unregister( final K key, final Entry entry ) {
+
+        entries.compute( key, ( k, e ) -> unregistered( k, entry ) );
+        if ( entry.relinquished ) {
+            backend.release( key );
+        }
+
+    }
+
+    /**
+     * Updates the entry of a key after a local acquisition was unregistered.
+     *
+     * @param key The key.
+     * @param entry The entry of the key.
+     * @return The entry to keep in the map, or {@code null} to remove it.
+     */
+    private @Nullable Entry unregistered( final K key, final Entry entry ) {
+
+        if ( --entry.users > 0 ) {
+            return entry;
+        }
+        if ( !entry.owned ) {
+            return null;
+        }
+        if ( linger == 0 ) {
+            relinquish( entry );
+            return null;
+        }
+
+        final var generation = entry.generation;
+        entry.timer = scheduler.schedule(
+                () -> backendScheduler.schedule( () -> expire( key, entry, generation ) ),
+                linger, TimeUnit.NANOSECONDS );
+        return entry;
+
+    }
+
+    /**
+     * Relinquishes the ownership of a key once the linger time expired, unless it was
+     * registered again in the meantime.
+     *
+     * @param key The key.
+     * @param entry The entry of the key.
+     * @param generation The generation of the entry when the timer was started.
+     */
+    @SuppressWarnings( "nullness:return" ) // Returning null removes the entry
+    private void expire( final K key, final Entry entry, final long generation ) {
+
+        final var held = local.tryAcquire( key );
+        if ( held == null ) {
+            return; // In use locally, so it was registered again
+        }
+
+        try {
+            entries.computeIfPresent( key, ( k, e ) -> expired( e, entry, generation ) );
+            if ( entry.relinquished ) {
+                backend.release( key );
+            }
+        } finally {
+            held.release();
+        }
+
+    }
+
+    /**
+     * Updates the entry of a key after a linger timer expired.
+     *
+     * @param current The current entry of the key.
+     * @param entry The entry the timer was started for.
+     * @param generation The generation of the entry when the timer was started.
+     * @return The entry to keep in the map, or {@code null} to remove it.
+     */
+    private @Nullable Entry expired( final Entry current, final Entry entry,
+            final long generation ) {
+
+        if ( current != entry || entry.generation != generation ) {
+            return current; // Stale timer
+        }
+        relinquish( entry );
+        return null;
+
+    }
+
+    /**
+     * Marks the ownership of a key as relinquished, as the entry is being removed. The
+     * caller must then release the key in the backend, once outside the compute call but
+     * still holding the local lock of the key. If the backend fails, the key is still
+     * considered relinquished by this node, and the failure is relayed to the caller.
+     *
+     * @param entry The entry of the key.
+     */
+    private static void relinquish( final Entry entry ) {
+
+        entry.owned = false;
+        entry.relinquished = true;
+        entry.timer = null;
+
+    }
+
+    /**
+     * Attempts to take ownership of a key, if not already owned by this node. Must be
+     * called while holding the local lock of the key.
+     *
+     * @param key The key.
+     * @param entry The entry of the key. Must be registered.
+     * @return {@code true} if this node owns the key.
+     */
+    private boolean claim( final K key, final Entry entry ) {
+
+        if ( !entry.owned ) {
+            entry.owned = backend.tryAcquire( key );
+        }
+        return entry.owned;
+
+    }
+
+    @Override
+    public @Nullable AcquiredLock tryAcquire( final K key ) {
+
+        final var entry = register( key );
+        final var held = local.tryAcquire( key );
+        if ( held == null ) {
+            unregister( key, entry );
+            return null;
+        }
+
+        final var lock = new BackendAcquiredLock( key, entry, held );
+        boolean claimed = false;
+        try {
+            claimed = claim( key, entry );
+        } finally {
+            if ( !claimed ) {
+                lock.release();
+            }
+        }
+        return claimed ? lock : null;
+
+    }
+
+    @Override
+    protected Mono<AcquiredLock> doAcquire( final K key ) {
+
+        final var entry = register( key );
+        final Mono<Boolean> attempt = Mono.defer( () -> entry.owned
+                ? Mono.just( true )
+                : Mono.fromCallable( () -> claim( key, entry ) ).subscribeOn( backendScheduler )
+        );
+        final Mono<AcquiredLock> mono = local.acquire( key )
+                .<AcquiredLock>map( held -> new BackendAcquiredLock( key, entry, held ) )
+                .flatMap( lock -> attempt.filter( Boolean::booleanValue )
+                        .repeatWhenEmpty( attempts -> attempts.concatMap(
+                                a -> Mono.delay( pollInterval, scheduler ) ) )
+                        .thenReturn( lock )
+                        .doOnError( e -> lock.release() )
+                )
+                .cache(); // Keep going on cancel so the lock can be released when acquired
+
+        return mono.doOnCancel( () -> mono.subscribe( AcquiredLock::release, e -> {} ) );
+
+    }
+
+    /**
+     * The local state of a key.
+     *
+     * @since 1.0
+     */
+    @UsesObjectEquals
+    private static final class Entry {
+
+        /** The number of local acquisitions that are held or waiting. */
+        int users;
+
+        /** Incremented on every registration, to detect stale linger timers. */
+        long generation;
+
+        /** Whether this node owns the key in the backend. */
+        volatile boolean owned;
+
+        /** Whether the entry was removed while owned, so the key must be released. */
+        boolean relinquished;
+
+        /** The pending linger timer, if any. */
+        @Nullable Disposable timer;
+
+        /** Creates a new instance. */
+        Entry() {}
+
+    }
+
+    /**
+     * The lock implementation.
+     *
+     * @since 1.0
+     */
+    private final class BackendAcquiredLock extends AbstractMapAcquiredLock {
+
+        /** The entry of the key. */
+        private final Entry entry;
+
+        /** The local lock. */
+        private final AcquiredLock held;
+
+        /**
+         * Initializes a lock.
+         *
+         * @param key The lock's key.
+         * @param entry The entry of the key.
+         * @param held The local lock.
+         */
+        BackendAcquiredLock( final K key, final Entry entry, final AcquiredLock held ) {
+
+            super( key );
+            this.entry = entry;
+            this.held = held;
+
+        }
+
+        @Override
+        protected void doRelease() {
+
+            try {
+                unregister( key, entry ); // Keep ownership if there is a local waiter
+            } finally {
+                held.release();
+            }
+
+        }
+
+    }
+
+}
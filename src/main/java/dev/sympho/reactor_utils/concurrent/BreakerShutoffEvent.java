@@ -0,0 +1,40 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for shutting off a reactive breaker.
+ *
+ * @see FlightEvents
+ * @version 1.0
+ * @since 1.0
+ */
+@Name( BreakerShutoffEvent.NAME )
+@Label( "Reactive Breaker Shutoff" )
+@Category( { FlightEvents.CATEGORY, "Breakers" } )
+@Description( "Shutting off a reactive breaker and cancelling what it monitors" )
+@StackTrace( false )
+final class BreakerShutoffEvent extends jdk.jfr.Event {
+
+    /** The event name. */
+    static final String NAME = "dev.sympho.reactor_utils.BreakerShutoff";
+
+    /** The breaker type. */
+    @Label( "Breaker Class" )
+    @Nullable Class<?> breakerClass;
+
+    /** The number of subscriptions and children that were cancelled. */
+    @Label( "Monitored" )
+    @Description( "Subscriptions and child breakers being monitored when shut off" )
+    int monitored;
+
+    /** Creates a new instance. */
+    BreakerShutoffEvent() {}
+
+}
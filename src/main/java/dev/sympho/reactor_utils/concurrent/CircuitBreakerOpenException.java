@@ -0,0 +1,41 @@
+package dev.sympho.reactor_utils.concurrent;
+
+/**
+ * Exception issued by a {@link ReactiveCircuitBreaker} to calls that are rejected because
+ * the circuit is currently open.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = -2846503170927781526L;
+
+    /** The state of the breaker when the call was rejected. */
+    private final ReactiveCircuitBreaker.State state;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param state The state of the breaker when the call was rejected.
+     */
+    public CircuitBreakerOpenException( final ReactiveCircuitBreaker.State state ) {
+
+        super( "Circuit breaker does not permit further calls (" + state + ")" );
+        this.state = state;
+
+    }
+
+    /**
+     * Retrieves the state of the breaker when the call was rejected.
+     *
+     * @return The state. Note that rejections in the {@link ReactiveCircuitBreaker.State#HALF_OPEN
+     *         half-open} state happen when all trial calls are already in progress.
+     */
+    public ReactiveCircuitBreaker.State getState() {
+
+        return state;
+
+    }
+
+}
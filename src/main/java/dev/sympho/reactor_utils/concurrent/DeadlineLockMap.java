@@ -0,0 +1,355 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.checkerframework.checker.interning.qual.UsesObjectEquals;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.ContextView;
+
+/**
+ * Reactive lock map that grants each lock to the waiter with the earliest deadline first,
+ * rather than in arrival order.
+ *
+ * <p>The deadline of an acquisition is the {@link Instant} stored in the subscriber
+ * context under {@link #DEADLINE_KEY}, for example:
+ *
+ * <pre>{@code
+ * map.guard( key, work )
+ *         .contextWrite( Context.of( DeadlineLockMap.DEADLINE_KEY, deadline ) )
+ * }</pre>
+ *
+ * <p>Acquisitions without a deadline are served after all acquisitions that have one, in
+ * arrival order. Acquisitions with the same deadline are also served in arrival order.
+ *
+ * <p>Acquisitions whose deadline already passed are dropped instead of being granted the
+ * lock, failing with a {@link LockDeadlineExceededException}. This happens when the
+ * acquisition is made, and when the lock is released while it is waiting; under overload,
+ * lock time is thus only spent on requests that can still complete in time. Waiters are not
+ * dropped while the lock is held, so callers that cannot wait past their deadline should
+ * also apply a {@link Mono#timeout(java.time.Duration) timeout}; cancelled waiters are
+ * removed from the queue immediately.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ */
+public class DeadlineLockMap<K extends @NonNull Object> extends AbstractReactiveLockMap<K> {
+
+    /** The context key of the deadline of an acquisition. The value must be an Instant. */
+    public static final String DEADLINE_KEY = DeadlineLockMap.class.getName() + ".deadline";
+
+    /** The deadline used for acquisitions that do not have one. */
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** The order in which waiters are served. */
+    private static final Comparator<Waiter> ORDER = Comparator.comparingLong( Waiter::deadline )
+            .thenComparingLong( Waiter::sequence );
+
+    /** The scheduler used as the clock. */
+    private final Scheduler clock;
+
+    /** The nodes of the keys that are currently locked or being locked. */
+    private final ConcurrentMap<K, Node> nodes;
+
+    /** The source of arrival sequence numbers. */
+    private final AtomicLong sequence;
+
+    /**
+     * Creates a new instance that uses the {@link Schedulers#parallel() parallel scheduler}
+     * as the clock.
+     */
+    public DeadlineLockMap() {
+
+        this( Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param clock The scheduler to use as the clock when checking deadlines.
+     */
+    public DeadlineLockMap( final Scheduler clock ) {
+
+        this.clock = Objects.requireNonNull( clock );
+        this.nodes = new ConcurrentHashMap<>();
+        this.sequence = new AtomicLong();
+
+    }
+
+    /**
+     * Determines the number of keys that currently have a node.
+     *
+     * @return The number of nodes.
+     */
+    int nodes() {
+
+        return nodes.size();
+
+    }
+
+    /**
+     * Retrieves the current time.
+     *
+     * @return The current time, in milliseconds since the epoch.
+     */
+    private long now() {
+
+        return clock.now( TimeUnit.MILLISECONDS );
+
+    }
+
+    /**
+     * Retrieves the deadline of an acquisition.
+     *
+     * @param context The context of the acquisition.
+     * @return The deadline, in milliseconds since the epoch.
+     */
+    private static long deadline( final ContextView context ) {
+
+        return context.hasKey( DEADLINE_KEY )
+                ? context.<Instant>get( DEADLINE_KEY ).toEpochMilli()
+                : NO_DEADLINE;
+
+    }
+
+    /**
+     * Retains the node of a key.
+     *
+     * @param key The key.
+     * @return The retained node.
+     */
+    private Node retain( final K key ) {
+
+        final var node = nodes.compute( key, ( k, n ) -> {
+
+            final var current = n == null ? new Node( k ) : n;
+            current.refs++;
+            return current;
+
+        } );
+        return Objects.requireNonNull( node );
+
+    }
+
+    /**
+     * Releases a reference to a node, discarding it if it was the last one.
+     *
+     * @param node The node.
+     */
+    @SuppressWarnings( "nullness:return" ) // Returning null removes the node
+    private void unretain( final Node node ) {
+
+        nodes.computeIfPresent( node.key, ( k, n ) -> --n.refs == 0 ? null : n );
+
+    }
+
+    @Override
+    public @Nullable AcquiredLock tryAcquire( final K key ) {
+
+        final var node = retain( key );
+        if ( node.tryLock() ) {
+            return new DeadlineAcquiredLock( node );
+        } else {
+            unretain( node );
+            return null;
+        }
+
+    }
+
+    @Override
+    protected Mono<AcquiredLock> doAcquire( final K key ) {
+
+        return Mono.deferContextual( ctx -> {
+
+            final long deadline = deadline( ctx );
+            if ( deadline < now() ) {
+                return Mono.error( new LockDeadlineExceededException(
+                        Instant.ofEpochMilli( deadline ) ) );
+            }
+
+            return retain( key ).lock( deadline );
+
+        } );
+
+    }
+
+    /**
+     * The lock state of a key.
+     *
+     * @since 1.0
+     */
+    @UsesObjectEquals
+    private final class Node {
+
+        /** The key. */
+        final K key;
+
+        /** The number of acquisitions that use the node. Only accessed within a compute. */
+        int refs;
+
+        /** The waiting acquisitions, in the order they are to be served. */
+        private final Queue<Waiter> waiters;
+
+        /** Whether the lock is held. */
+        private boolean held;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key.
+         */
+        Node( final K key ) {
+
+            this.key = key;
+            this.waiters = new PriorityQueue<>( ORDER );
+
+        }
+
+        /**
+         * Locks this node if it can be done immediately.
+         *
+         * @return {@code true} if locked.
+         */
+        synchronized boolean tryLock() {
+
+            if ( held ) {
+                return false;
+            } else {
+                held = true;
+                return true;
+            }
+
+        }
+
+        /**
+         * Locks this node.
+         *
+         * @param deadline The deadline of the acquisition.
+         * @return A Mono that issues the lock once acquired.
+         */
+        Mono<AcquiredLock> lock( final long deadline ) {
+
+            final Waiter waiter;
+            synchronized ( this ) {
+                if ( !held ) {
+                    held = true;
+                    return Mono.just( new DeadlineAcquiredLock( this ) );
+                }
+
+                waiter = new Waiter( deadline, sequence.getAndIncrement(), Sinks.one() );
+                waiters.add( waiter );
+            }
+
+            return waiter.sink().asMono().doOnCancel( () -> cancel( waiter ) );
+
+        }
+
+        /**
+         * Cancels a waiting acquisition.
+         *
+         * @param waiter The waiter.
+         */
+        private void cancel( final Waiter waiter ) {
+
+            final boolean removed;
+            synchronized ( this ) {
+                removed = waiters.remove( waiter );
+            }
+
+            if ( removed ) {
+                unretain( this );
+            } else { // Already granted or dropped
+                waiter.sink().asMono().subscribe( AcquiredLock::release, e -> {} );
+            }
+
+        }
+
+        /**
+         * Unlocks this node, granting the lock to the most urgent waiter whose deadline
+         * did not pass yet and dropping the waiters ahead of it.
+         */
+        void unlock() {
+
+            final List<Waiter> expired = new ArrayList<>();
+            Waiter next;
+            synchronized ( this ) {
+                final long now = now();
+                while ( ( next = waiters.poll() ) != null && next.deadline() < now ) {
+                    expired.add( next );
+                }
+                held = next != null;
+            }
+
+            for ( final var waiter : expired ) {
+                waiter.sink().tryEmitError( new LockDeadlineExceededException(
+                        Instant.ofEpochMilli( waiter.deadline() ) ) );
+                unretain( this );
+            }
+            if ( next != null ) {
+                next.sink().tryEmitValue( new DeadlineAcquiredLock( this ) );
+            }
+
+        }
+
+    }
+
+    /**
+     * An acquisition waiting for a key.
+     *
+     * @param deadline The deadline, in milliseconds since the epoch.
+     * @param sequence The arrival sequence number.
+     * @param sink The sink to issue the lock through.
+     * @since 1.0
+     */
+    private record Waiter( long deadline, long sequence, Sinks.One<AcquiredLock> sink ) {}
+
+    /**
+     * The lock implementation.
+     *
+     * @since 1.0
+     */
+    private final class DeadlineAcquiredLock extends AbstractMapAcquiredLock {
+
+        /** The node of the key. */
+        private final Node node;
+
+        /**
+         * Initializes a lock.
+         *
+         * @param node The node of the key.
+         */
+        DeadlineAcquiredLock( final Node node ) {
+
+            super( node.key );
+            this.node = node;
+
+        }
+
+        @Override
+        protected void doRelease() {
+
+            node.unlock();
+            unretain( node );
+
+        }
+
+    }
+
+}
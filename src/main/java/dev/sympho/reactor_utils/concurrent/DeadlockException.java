@@ -0,0 +1,46 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.List;
+
+/**
+ * Exception issued to an acquisition that was chosen as the victim to break a deadlock,
+ * that is, a cycle of owners that each wait for a lock held by the next one.
+ *
+ * @see dev.sympho.reactor_utils.concurrent.transformer.DeadlockDetector
+ * @version 1.0
+ * @since 1.0
+ */
+public class DeadlockException extends RuntimeException {
+
+    private static final long serialVersionUID = 4927381146253091637L;
+
+    /** The keys involved in the deadlock. */
+    private final List<?> keys;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param keys The keys involved in the deadlock, starting with the key that the victim
+     *             was waiting for, followed by the key that its holder was waiting for,
+     *             and so on.
+     */
+    public DeadlockException( final List<?> keys ) {
+
+        super( "Deadlock detected waiting for lock keys " + keys );
+        this.keys = List.copyOf( keys );
+
+    }
+
+    /**
+     * Retrieves the keys involved in the deadlock, starting with the key that the victim
+     * was waiting for, followed by the key that its holder was waiting for, and so on.
+     *
+     * @return The keys.
+     */
+    public List<?> getKeys() {
+
+        return keys;
+
+    }
+
+}
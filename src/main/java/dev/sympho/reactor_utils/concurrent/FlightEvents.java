@@ -0,0 +1,246 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.concurrent.TimeoutException;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Support for emitting JDK Flight Recorder events from the synchronization elements in this
+ * package.
+ *
+ * <p>Reactive waits never park a thread, so they are not visible to the built-in thread
+ * events of the flight recorder. The following events are emitted instead:
+ *
+ * <ul>
+ *   <li>{@value LockWaitEvent#NAME}: waiting to acquire a lock, with the queue depth and
+ *       how the wait ended.</li>
+ *   <li>{@value LockHoldEvent#NAME}: holding a lock.</li>
+ *   <li>{@value LatchAwaitEvent#NAME}: waiting on a latch.</li>
+ *   <li>{@value BreakerShutoffEvent#NAME}: shutting off a breaker.</li>
+ * </ul>
+ *
+ * <p>All events are enabled by default while recording, with a threshold of 20 ms for the
+ * waits and holds and no stack traces. Both can be changed per event through the recording
+ * settings, for example {@code dev.sympho.reactor_utils.LockWait#threshold=0 ms} or
+ * {@code dev.sympho.reactor_utils.LockHold#stackTrace=true}.
+ *
+ * <p>Whether an event is enabled is checked when the wait starts (or when the lock is
+ * issued, for holds), and nothing else is done if it is not, so the cost while not
+ * recording is a single check.
+ *
+ * <p>Note that a wait that is cancelled by a timeout applied downstream of
+ * {@link ReactiveLock#acquire()} (rather than by the lock's transformer) is recorded as
+ * cancelled, as the lock has no way of telling the two apart.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+final class FlightEvents {
+
+    /** The category of all the events. */
+    static final String CATEGORY = "Reactor Utils";
+
+    /** Queue depth of locks that do not track their waiters. */
+    static final int UNKNOWN_DEPTH = -1;
+
+    /** Outcome of a lock wait that issued the lock. */
+    static final String ACQUIRED = "acquired";
+
+    /** Outcome of a latch wait that saw the latch open. */
+    static final String OPENED = "opened";
+
+    /** Outcome of a wait that was cancelled. */
+    static final String CANCELLED = "cancelled";
+
+    /** Outcome of a wait that timed out. */
+    static final String TIMEOUT = "timeout";
+
+    /** Outcome of a lock wait that was rejected due to too many waiters. */
+    static final String OVERLOADED = "overloaded";
+
+    /** Outcome of a wait that failed with any other error. */
+    static final String FAILED = "failed";
+
+    /** Do not instantiate. */
+    private FlightEvents() {}
+
+    /**
+     * Determines the outcome of a wait that failed.
+     *
+     * @param error The error.
+     * @return The outcome.
+     */
+    private static String outcome( final Throwable error ) {
+
+        if ( error instanceof TimeoutException || error instanceof LockDeadlineExceededException ) {
+            return TIMEOUT;
+        } else if ( error instanceof LockOverloadedException ) {
+            return OVERLOADED;
+        } else {
+            return FAILED;
+        }
+
+    }
+
+    /**
+     * Converts a lock key to the form recorded in events.
+     *
+     * @param key The key.
+     * @return The recorded key.
+     */
+    private static @Nullable String key( final @Nullable Object key ) {
+
+        return key == null ? null : String.valueOf( key );
+
+    }
+
+    /**
+     * Ends a lock wait event, if not ended yet.
+     *
+     * @param event The event.
+     * @param outcome How the wait ended.
+     */
+    private static void end( final LockWaitEvent event, final String outcome ) {
+
+        if ( event.outcome == null ) { // Cancel may race with the lock being issued
+            event.outcome = outcome;
+            event.commit();
+        }
+
+    }
+
+    /**
+     * Ends a latch wait event, if not ended yet.
+     *
+     * @param event The event.
+     * @param outcome How the wait ended.
+     */
+    private static void end( final LatchAwaitEvent event, final String outcome ) {
+
+        if ( event.outcome == null ) {
+            event.outcome = outcome;
+            event.commit();
+        }
+
+    }
+
+    /**
+     * Determines whether lock wait events are being recorded.
+     *
+     * @return Whether lock wait events are being recorded.
+     */
+    static boolean isWaitEnabled() {
+
+        return new LockWaitEvent().isEnabled();
+
+    }
+
+    /**
+     * Records the wait of a lock acquisition. Must be called when the acquisition starts,
+     * that is, when the acquisition Mono is subscribed to.
+     *
+     * @param pending The acquisition.
+     * @param lock The lock to start {@link #recordHold(AbstractAcquiredLock, Object, Object)
+     *             recording the hold} of once issued, or {@code null} if none.
+     * @param source The lock (or lock map) that issues the lock.
+     * @param key The lock key, or {@code null} if not acquired from a lock map.
+     * @param depth The number of acquisitions ahead of this one, or {@link #UNKNOWN_DEPTH}.
+     * @return The recorded acquisition.
+     */
+    static Mono<AcquiredLock> recordWait( final Mono<AcquiredLock> pending,
+            final @Nullable AbstractAcquiredLock lock, final Object source,
+            final @Nullable Object key, final int depth ) {
+
+        final var event = new LockWaitEvent();
+        if ( !event.isEnabled() ) {
+            return pending;
+        }
+
+        event.lockClass = source.getClass();
+        event.key = key( key );
+        event.queueDepth = depth;
+        event.begin();
+
+        return pending.doOnNext( l -> {
+            if ( lock != null ) {
+                recordHold( lock, source, key );
+            }
+            end( event, ACQUIRED );
+        } ).doOnError( e -> end( event, outcome( e ) ) )
+                .doOnCancel( () -> end( event, CANCELLED ) );
+
+    }
+
+    /**
+     * Records how long a lock is held, starting now, if lock hold events are enabled.
+     * The event is committed once the lock is released.
+     *
+     * @param lock The lock.
+     * @param source The lock (or lock map) that issued the lock.
+     * @param key The lock key, or {@code null} if not acquired from a lock map.
+     */
+    static void recordHold( final AbstractAcquiredLock lock, final Object source,
+            final @Nullable Object key ) {
+
+        final var event = new LockHoldEvent();
+        if ( event.isEnabled() ) {
+            event.lockClass = source.getClass();
+            event.key = key( key );
+            event.begin();
+            lock.hold = event;
+        }
+
+    }
+
+    /**
+     * Records the wait on a latch. Whether the event is enabled is checked when this method
+     * is called, and the wait starts when the returned Mono is subscribed to.
+     *
+     * @param pending The wait.
+     * @param latch The latch.
+     * @return The recorded wait.
+     */
+    static Mono<Void> recordAwait( final Mono<Void> pending, final Object latch ) {
+
+        if ( !new LatchAwaitEvent().isEnabled() ) {
+            return pending;
+        }
+
+        return Mono.defer( () -> {
+
+            final var event = new LatchAwaitEvent();
+            event.latchClass = latch.getClass();
+            event.begin();
+
+            return pending.doOnSuccess( v -> end( event, OPENED ) )
+                    .doOnError( e -> end( event, outcome( e ) ) )
+                    .doOnCancel( () -> end( event, CANCELLED ) );
+
+        } );
+
+    }
+
+    /**
+     * Starts recording the shutoff of a breaker, if breaker events are enabled.
+     *
+     * @param breaker The breaker.
+     * @return The started event, to be {@link jdk.jfr.Event#commit() committed} once the
+     *         shutoff is done, or {@code null} if not enabled.
+     */
+    static @Nullable BreakerShutoffEvent beginShutoff( final ReactiveBreaker breaker ) {
+
+        final var event = new BreakerShutoffEvent();
+        if ( !event.isEnabled() ) {
+            return null;
+        }
+
+        event.breakerClass = breaker.getClass();
+        event.monitored = breaker.monitored();
+        event.begin();
+        return event;
+
+    }
+
+}
@@ -0,0 +1,77 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Flux that relays a source Flux while holding a lock.
+ *
+ * @param <T> The element type.
+ * @see GuardSubscriber
+ * @version 1.0
+ * @since 1.0
+ */
+final class FluxGuard<T> extends Flux<T> implements Scannable {
+
+    /** The lock acquisition. */
+    private final Mono<AcquiredLock> acquisition;
+
+    /** The guarded source. */
+    private final Flux<? extends T> source;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param acquisition The lock acquisition.
+     * @param source The guarded source.
+     */
+    private FluxGuard( final Mono<AcquiredLock> acquisition, final Flux<? extends T> source ) {
+
+        this.acquisition = acquisition;
+        this.source = source;
+
+    }
+
+    /**
+     * Guards a Flux with a lock.
+     *
+     * @param <T> The element type.
+     * @param acquisition The lock acquisition.
+     * @param source The Flux to guard.
+     * @return The guarded Flux.
+     */
+    static <T> Flux<T> guard( final Mono<AcquiredLock> acquisition,
+            final Flux<? extends T> source ) {
+
+        return onAssembly( new FluxGuard<>( acquisition, source ) );
+
+    }
+
+    @Override
+    public void subscribe( final CoreSubscriber<? super T> actual ) {
+
+        final var subscriber = new GuardSubscriber<T>( actual, source );
+        actual.onSubscribe( subscriber );
+        acquisition.subscribe( subscriber );
+
+    }
+
+    @Override
+    @SuppressWarnings( { "rawtypes", "interning:not.interned" } ) // Inherited, singletons
+    public @Nullable Object scanUnsafe( final Attr key ) {
+
+        if ( key == Attr.PARENT ) {
+            return source;
+        } else if ( key == Attr.RUN_STYLE ) {
+            return Attr.RunStyle.SYNC;
+        } else {
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,532 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.reactivestreams.Subscription;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.Context;
+
+/**
+ * Flux that relays a source Flux while holding a lock, re-acquiring the lock for each batch
+ * of elements.
+ *
+ * <p>The lock is acquired before elements are requested from the source (and before
+ * subscribing to it at all), and released once a batch is over and all the elements that
+ * were requested from the source have been received. A batch is over once it reaches the
+ * maximum size or lasts for the maximum time, or when the downstream has no outstanding
+ * demand, so a slow consumer does not keep the lock held while the source is idle.
+ *
+ * <p>When a batch is over and there is still demand, the next acquisition is started
+ * before the lock is released, so that with a fair lock, tasks that were waiting get a
+ * turn before the next batch even if the lock is handed over synchronously.
+ *
+ * <p>When batches are limited by time, elements are requested from the source one at a
+ * time so that the lock is never held for long past the end of the window.
+ *
+ * @param <T> The element type.
+ * @see ReactiveLock#guardEach(Flux, int)
+ * @see ReactiveLock#guardWindowed(Flux, java.time.Duration, Scheduler)
+ * @version 1.0
+ * @since 1.0
+ */
+final class FluxGuardBatched<T> extends Flux<T> implements Scannable {
+
+    /** Value for the maximum batch time that indicates there is no limit. */
+    static final long NO_WINDOW = 0;
+
+    /** The lock. */
+    private final ReactiveLock lock;
+
+    /** The guarded source. */
+    private final Flux<? extends T> source;
+
+    /** The maximum number of elements per batch. */
+    private final int batchSize;
+
+    /** The maximum time per batch, in nanoseconds, or {@link #NO_WINDOW}. */
+    private final long window;
+
+    /** The scheduler used as the clock. */
+    private final Scheduler clock;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lock The lock.
+     * @param source The guarded source.
+     * @param batchSize The maximum number of elements per batch.
+     * @param window The maximum time per batch, in nanoseconds, or {@link #NO_WINDOW}.
+     * @param clock The scheduler used as the clock.
+     */
+    private FluxGuardBatched( final ReactiveLock lock, final Flux<? extends T> source,
+            final int batchSize, final long window, final Scheduler clock ) {
+
+        this.lock = lock;
+        this.source = source;
+        this.batchSize = batchSize;
+        this.window = window;
+        this.clock = clock;
+
+    }
+
+    /**
+     * Guards a Flux with a lock, acquired for each batch.
+     *
+     * @param <T> The element type.
+     * @param lock The lock.
+     * @param source The Flux to guard.
+     * @param batchSize The maximum number of elements per batch.
+     * @param window The maximum time per batch, in nanoseconds, or {@link #NO_WINDOW}.
+     * @param clock The scheduler used as the clock.
+     * @return The guarded Flux.
+     */
+    static <T> Flux<T> guard( final ReactiveLock lock, final Flux<? extends T> source,
+            final int batchSize, final long window, final Scheduler clock ) {
+
+        return onAssembly( new FluxGuardBatched<>( lock, source, batchSize, window, clock ) );
+
+    }
+
+    @Override
+    public void subscribe( final CoreSubscriber<? super T> actual ) {
+
+        final var subscriber = new BatchSubscriber<T>( actual, this );
+        actual.onSubscribe( subscriber );
+        subscriber.drain();
+
+    }
+
+    @Override
+    @SuppressWarnings( { "rawtypes", "interning:not.interned" } ) // Inherited, singletons
+    public @Nullable Object scanUnsafe( final Attr key ) {
+
+        if ( key == Attr.PARENT ) {
+            return source;
+        } else if ( key == Attr.RUN_STYLE ) {
+            return Attr.RunStyle.SYNC;
+        } else {
+            return null;
+        }
+
+    }
+
+    /**
+     * Subscriber to the source, that also manages the lock.
+     *
+     * <p>All state transitions happen within {@link #drain()}, which is serialized.
+     *
+     * @param <T> The element type.
+     * @since 1.0
+     */
+    private static final class BatchSubscriber<T> implements CoreSubscriber<T>, Subscription,
+            Scannable {
+
+        /** Field updater for {@link #requested}. */
+        @SuppressWarnings( "rawtypes" )
+        private static final AtomicLongFieldUpdater<BatchSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater( BatchSubscriber.class, "requested" );
+
+        /** Field updater for {@link #outstanding}. */
+        @SuppressWarnings( "rawtypes" )
+        private static final AtomicLongFieldUpdater<BatchSubscriber> OUTSTANDING =
+                AtomicLongFieldUpdater.newUpdater( BatchSubscriber.class, "outstanding" );
+
+        /** Field updater for {@link #wip}. */
+        @SuppressWarnings( "rawtypes" )
+        private static final AtomicIntegerFieldUpdater<BatchSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater( BatchSubscriber.class, "wip" );
+
+        /** The downstream subscriber. */
+        private final CoreSubscriber<? super T> actual;
+
+        /** The operator configuration. */
+        private final FluxGuardBatched<T> parent;
+
+        /** The demand from downstream that was not yet requested from the source. */
+        private volatile long requested;
+
+        /** The number of elements requested from the source that were not received yet. */
+        private volatile long outstanding;
+
+        /** Work-in-progress counter for {@link #drain()}. */
+        private volatile int wip;
+
+        /** The subscription to the source, once subscribed. */
+        private volatile @Nullable Subscription upstream;
+
+        /** The subscription to the pending lock acquisition, if any. */
+        private volatile @Nullable Subscription acquisition;
+
+        /** The lock issued by the pending acquisition, if any. */
+        private volatile @Nullable AcquiredLock granted;
+
+        /** The error to terminate with, if any. */
+        private volatile @Nullable Throwable error;
+
+        /** Whether the stream should terminate. */
+        private volatile boolean done;
+
+        /** Whether the subscription was cancelled. */
+        private volatile boolean cancelled;
+
+        /** The held lock, if any. Only accessed within {@link #drain()}. */
+        private @Nullable AcquiredLock held;
+
+        /** Whether a lock acquisition is pending. Only accessed within {@link #drain()}. */
+        private boolean acquiring;
+
+        /** Whether the source was subscribed to. Only accessed within {@link #drain()}. */
+        private boolean subscribed;
+
+        /** Whether a terminal signal was sent. Only accessed within {@link #drain()}. */
+        private boolean terminated;
+
+        /** The elements requested in the current batch. Only accessed within drain. */
+        private long count;
+
+        /** When the current batch started. Only accessed within {@link #drain()}. */
+        private long start;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The downstream subscriber.
+         * @param parent The operator configuration.
+         */
+        BatchSubscriber( final CoreSubscriber<? super T> actual,
+                final FluxGuardBatched<T> parent ) {
+
+            this.actual = actual;
+            this.parent = parent;
+
+        }
+
+        /**
+         * Retrieves the current time.
+         *
+         * @return The current time, in nanoseconds.
+         */
+        private long now() {
+
+            return parent.clock.now( TimeUnit.NANOSECONDS );
+
+        }
+
+        /**
+         * Determines whether the current batch is over.
+         *
+         * @return {@code true} if no more elements should be requested in this batch.
+         */
+        private boolean batchOver() {
+
+            return count >= parent.batchSize
+                    || parent.window != NO_WINDOW && now() - start >= parent.window;
+
+        }
+
+        /**
+         * Releases the held lock, if any.
+         */
+        private void releaseHeld() {
+
+            final var lock = held;
+            if ( lock != null ) {
+                held = null;
+                lock.release();
+            }
+
+        }
+
+        /**
+         * Performs pending state transitions, serialized with other calls.
+         */
+        void drain() {
+
+            if ( WIP.getAndIncrement( this ) != 0 ) {
+                return;
+            }
+
+            int missed = 1;
+            do {
+                step();
+                missed = WIP.addAndGet( this, -missed );
+            } while ( missed != 0 );
+
+        }
+
+        /**
+         * Performs state transitions until waiting for a signal.
+         */
+        private void step() {
+
+            while ( true ) {
+
+                final var lock = granted;
+                if ( lock != null ) {
+                    granted = null;
+                    acquiring = false;
+                    held = lock;
+                    count = 0;
+                    start = now();
+                }
+
+                if ( cancelled ) {
+                    releaseHeld();
+                    return;
+                }
+
+                if ( done ) {
+                    releaseHeld();
+                    final var a = acquisition;
+                    if ( a != null ) {
+                        a.cancel(); // Lock is released by the acquisition once issued
+                    }
+                    if ( !terminated ) {
+                        terminated = true;
+                        final var e = error;
+                        if ( e == null ) {
+                            actual.onComplete();
+                        } else {
+                            actual.onError( e );
+                        }
+                    }
+                    return;
+                }
+
+                if ( held == null ) {
+                    if ( acquiring || requested == 0 ) {
+                        return;
+                    }
+                    acquiring = true;
+                    parent.lock.acquire().subscribe( new LockSubscriber() );
+                    continue;
+                }
+
+                final var s = upstream;
+                if ( s == null ) {
+                    if ( subscribed ) {
+                        return;
+                    }
+                    subscribed = true;
+                    parent.source.subscribe( this );
+                    continue;
+                }
+
+                if ( outstanding > 0 ) {
+                    return;
+                }
+
+                final long demand = requested;
+                if ( demand == 0 ) {
+                    releaseHeld();
+                    continue;
+                } else if ( batchOver() ) {
+                    // Queue up for the next batch before releasing, so that tasks that
+                    // the lock is handed to cannot take it again before this one
+                    acquiring = true;
+                    parent.lock.acquire().subscribe( new LockSubscriber() );
+                    releaseHeld();
+                    continue;
+                }
+
+                final long n = parent.window == NO_WINDOW
+                        ? Math.min( demand, parent.batchSize - count )
+                        : 1;
+                count += n;
+                if ( demand != Long.MAX_VALUE ) {
+                    REQUESTED.addAndGet( this, -n );
+                }
+                OUTSTANDING.addAndGet( this, n );
+                s.request( n );
+
+            }
+
+        }
+
+        /**
+         * Terminates the stream due to a lock acquisition that failed or completed without
+         * issuing a lock.
+         *
+         * @param e The error, or {@code null} if completed without a lock.
+         */
+        private void lockFailed( final @Nullable Throwable e ) {
+
+            error = e;
+            done = true;
+            final var s = upstream;
+            if ( s != null ) {
+                s.cancel();
+            }
+            drain();
+
+        }
+
+        @Override
+        public Context currentContext() {
+
+            return actual.currentContext();
+
+        }
+
+        @Override
+        public void onSubscribe( final Subscription s ) {
+
+            if ( Operators.validate( upstream, s ) ) {
+                upstream = s;
+                if ( cancelled ) {
+                    s.cancel();
+                }
+                drain();
+            }
+
+        }
+
+        @Override
+        public void onNext( final T t ) {
+
+            actual.onNext( t );
+            if ( OUTSTANDING.decrementAndGet( this ) == 0 ) {
+                drain();
+            }
+
+        }
+
+        @Override
+        public void onError( final Throwable t ) {
+
+            error = t;
+            done = true;
+            drain();
+
+        }
+
+        @Override
+        public void onComplete() {
+
+            done = true;
+            drain();
+
+        }
+
+        @Override
+        public void request( final long n ) {
+
+            if ( Operators.validate( n ) ) {
+                Operators.addCap( REQUESTED, this, n );
+                drain();
+            }
+
+        }
+
+        @Override
+        public void cancel() {
+
+            cancelled = true;
+
+            final var s = upstream;
+            if ( s != null ) {
+                s.cancel();
+            }
+            final var a = acquisition;
+            if ( a != null ) {
+                a.cancel(); // Lock is released by the acquisition once issued
+            }
+            drain();
+
+        }
+
+        @Override
+        @SuppressWarnings( { "rawtypes", "interning:not.interned" } ) // Inherited, singletons
+        public @Nullable Object scanUnsafe( final Attr key ) {
+
+            if ( key == Attr.ACTUAL ) {
+                return actual;
+            } else if ( key == Attr.PARENT ) {
+                return upstream;
+            } else if ( key == Attr.REQUESTED_FROM_DOWNSTREAM ) {
+                return requested;
+            } else if ( key == Attr.CANCELLED ) {
+                return cancelled;
+            } else if ( key == Attr.TERMINATED ) {
+                return done;
+            } else if ( key == Attr.ERROR ) {
+                return error;
+            } else if ( key == Attr.RUN_STYLE ) {
+                return Attr.RunStyle.SYNC;
+            } else {
+                return null;
+            }
+
+        }
+
+        /**
+         * Subscriber to a lock acquisition.
+         *
+         * @since 1.0
+         */
+        private final class LockSubscriber implements CoreSubscriber<AcquiredLock> {
+
+            /** Whether a lock was issued. */
+            private boolean issued;
+
+            /**
+             * Creates a new instance.
+             */
+            LockSubscriber() {}
+
+            @Override
+            public Context currentContext() {
+
+                return actual.currentContext();
+
+            }
+
+            @Override
+            public void onSubscribe( final Subscription s ) {
+
+                acquisition = s;
+                s.request( Long.MAX_VALUE );
+
+            }
+
+            @Override
+            public void onNext( final AcquiredLock lock ) {
+
+                issued = true;
+                acquisition = null;
+                granted = lock;
+                drain();
+
+            }
+
+            @Override
+            public void onError( final Throwable t ) {
+
+                acquisition = null;
+                lockFailed( t );
+
+            }
+
+            @Override
+            public void onComplete() {
+
+                if ( !issued ) {
+                    acquisition = null;
+                    lockFailed( null );
+                }
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,168 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+/**
+ * Subscriber that implements {@link ReactiveLock#guard(reactor.core.publisher.Mono) guarding}
+ * as a single operator: it first subscribes to the lock acquisition, then to the guarded
+ * source once the lock is issued, and releases the lock when the source terminates or the
+ * subscription is cancelled.
+ *
+ * <p>The same instance is the subscriber to both the acquisition and the source, and the
+ * subscription handed downstream. Requests made while the lock is being acquired are
+ * accumulated and forwarded to the source once it is subscribed to.
+ *
+ * <p>Acquiring the lock is an asynchronous boundary, so this operator does not support
+ * {@link reactor.core.Fuseable fusion} with either side.
+ *
+ * @param <T> The element type.
+ * @version 1.0
+ * @since 1.0
+ */
+final class GuardSubscriber<T> extends Operators.DeferredSubscription
+        implements CoreSubscriber<@Nullable Object> {
+
+    /** The downstream subscriber. */
+    private final CoreSubscriber<? super T> actual;
+
+    /** The guarded source. */
+    private final Publisher<? extends T> source;
+
+    /** The subscription to the lock acquisition, while it is pending. */
+    private volatile @Nullable Subscription acquisition;
+
+    /** The acquired lock. */
+    private volatile @Nullable AcquiredLock held;
+
+    /** Whether the lock was acquired and the source is being relayed. */
+    private boolean running;
+
+    /** Whether a terminal signal was sent downstream. */
+    private volatile boolean done;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param actual The downstream subscriber.
+     * @param source The guarded source.
+     */
+    GuardSubscriber( final CoreSubscriber<? super T> actual,
+            final Publisher<? extends T> source ) {
+
+        this.actual = actual;
+        this.source = source;
+
+    }
+
+    /**
+     * Releases the lock, if acquired.
+     */
+    private void release() {
+
+        final var lock = held;
+        if ( lock != null ) {
+            lock.release();
+        }
+
+    }
+
+    @Override
+    public Context currentContext() {
+
+        return actual.currentContext();
+
+    }
+
+    @Override
+    public void onSubscribe( final Subscription s ) {
+
+        if ( running ) {
+            set( s );
+        } else if ( Operators.validate( acquisition, s ) ) {
+            acquisition = s;
+            s.request( Long.MAX_VALUE );
+        }
+
+    }
+
+    @Override
+    @SuppressWarnings( "unchecked" ) // Only the acquisition issues locks
+    public void onNext( final @Nullable Object t ) {
+
+        if ( running ) {
+            actual.onNext( ( T ) t );
+        } else {
+            held = ( AcquiredLock ) t;
+        }
+
+    }
+
+    @Override
+    public void onError( final Throwable t ) {
+
+        release();
+        done = true;
+        actual.onError( t );
+
+    }
+
+    @Override
+    @SuppressWarnings( "signedness:argument" ) // Elements are relayed without inspection
+    public void onComplete() {
+
+        if ( running ) {
+            release();
+            done = true;
+            actual.onComplete();
+            return;
+        }
+
+        acquisition = null;
+        if ( held == null ) { // Nothing to guard without a lock
+            done = true;
+            actual.onComplete();
+        } else if ( isCancelled() ) {
+            release();
+        } else {
+            running = true;
+            source.subscribe( this );
+        }
+
+    }
+
+    @Override
+    public void cancel() {
+
+        super.cancel();
+
+        final var s = acquisition;
+        if ( s != null ) {
+            s.cancel(); // Lock is released by the acquisition once issued
+        }
+        release();
+
+    }
+
+    @Override
+    @SuppressWarnings( { "rawtypes", "interning:not.interned" } ) // Inherited, singletons
+    public @Nullable Object scanUnsafe( final Attr key ) {
+
+        if ( key == Attr.ACTUAL ) {
+            return actual;
+        } else if ( key == Attr.TERMINATED ) {
+            return done;
+        } else if ( key == Attr.RUN_STYLE ) {
+            return Attr.RunStyle.SYNC;
+        } else {
+            return super.scanUnsafe( key );
+        }
+
+    }
+
+}
@@ -0,0 +1,458 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.interning.qual.UsesObjectEquals;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Reactive lock map for path-like keys (such as {@code tenant/collection/document}), where
+ * locking a path also locks the subtree under it.
+ *
+ * <p>Locking a path takes a lock on every ancestor path along the way, in
+ * <i>intention</i> mode, before taking the lock on the path itself. Intention locks are
+ * compatible with each other, so paths in unrelated subtrees (including siblings) can be
+ * locked in parallel, but they conflict with a lock taken on the ancestor itself, so a
+ * path cannot be locked while anything under it is locked, and vice versa.
+ *
+ * <p>Paths can be locked in exclusive mode (through the methods inherited from
+ * {@link ReactiveLockMap}) or in shared mode (through {@link #acquireShared(String)} and
+ * {@link #tryAcquireShared(String)}). Shared locks on the same path, or on paths in the
+ * same subtree, do not exclude each other, but exclude any exclusive lock on the path, its
+ * ancestors, or its descendants.
+ *
+ * <p>Locks on each path are granted in FIFO order, so a waiting acquisition is not starved
+ * by compatible acquisitions made after it. As all acquisitions lock paths from the root
+ * down, acquiring a single lock can never deadlock with other acquisitions.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class HierarchicalLockMap extends AbstractReactiveLockMap<String> {
+
+    /** The default separator between path segments. */
+    public static final char DEFAULT_SEPARATOR = '/';
+
+    /** All lock modes. */
+    private static final Mode[] MODES = Mode.values();
+
+    /** The separator between path segments. */
+    private final char separator;
+
+    /** The nodes of the paths that are currently locked or being locked. */
+    private final ConcurrentMap<String, Node> nodes;
+
+    /**
+     * Creates a new instance that uses the {@link #DEFAULT_SEPARATOR default separator}.
+     */
+    public HierarchicalLockMap() {
+
+        this( DEFAULT_SEPARATOR );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param separator The separator between path segments.
+     */
+    public HierarchicalLockMap( final char separator ) {
+
+        this.separator = separator;
+        this.nodes = new ConcurrentHashMap<>();
+
+    }
+
+    /**
+     * Acquires the lock of the given path in shared mode.
+     *
+     * <p>Note that each subscription to the returned Mono will be a <i>different</i>
+     * acquisition of the lock. It is safe to cancel a subscription made to the returned
+     * Mono; the lock will be released as soon as it is acquired.
+     *
+     * @param path The path to acquire a lock for.
+     * @return A Mono that issues the lock once acquired.
+     */
+    public Mono<AcquiredLock> acquireShared( final String path ) {
+
+        return Mono.defer( () -> doAcquire( path, Mode.SHARED ) );
+
+    }
+
+    /**
+     * Acquires the lock of the given path in shared mode, if currently available.
+     *
+     * @param path The path to acquire a lock for.
+     * @return The acquired lock, or {@code null} if the lock is in use and could not be
+     *         acquired.
+     */
+    public @Nullable AcquiredLock tryAcquireShared( final String path ) {
+
+        return tryAcquire( path, Mode.SHARED );
+
+    }
+
+    /**
+     * Determines the number of paths that currently have a node.
+     *
+     * @return The number of nodes.
+     */
+    int nodes() {
+
+        return nodes.size();
+
+    }
+
+    @Override
+    public @Nullable AcquiredLock tryAcquire( final String path ) {
+
+        return tryAcquire( path, Mode.EXCLUSIVE );
+
+    }
+
+    /**
+     * Acquires the lock of a path, if currently available.
+     *
+     * @param path The path.
+     * @param mode The mode to lock with.
+     * @return The acquired lock, or {@code null} if not available.
+     */
+    private @Nullable AcquiredLock tryAcquire( final String path, final Mode mode ) {
+
+        final var retained = retain( path );
+        for ( int i = 0; i < retained.size(); i++ ) {
+            if ( !retained.get( i ).tryLock( mode( retained, i, mode ) ) ) {
+                for ( int j = i - 1; j >= 0; j-- ) {
+                    retained.get( j ).unlock( mode( retained, j, mode ) );
+                }
+                retained.forEach( this::unretain );
+                return null;
+            }
+        }
+
+        return new PathLock( path, retained, mode );
+
+    }
+
+    @Override
+    protected Mono<AcquiredLock> doAcquire( final String path ) {
+
+        return doAcquire( path, Mode.EXCLUSIVE );
+
+    }
+
+    /**
+     * Acquires the lock of a path.
+     *
+     * @param path The path.
+     * @param mode The mode to lock with.
+     * @return A Mono that issues the lock once acquired.
+     */
+    private Mono<AcquiredLock> doAcquire( final String path, final Mode mode ) {
+
+        final var retained = retain( path );
+        final Mono<AcquiredLock> mono = Flux.range( 0, retained.size() )
+                .concatMap( i -> retained.get( i ).lock( mode( retained, i, mode ) ) )
+                .then( Mono.<AcquiredLock>fromSupplier( () -> new PathLock(
+                        path, retained, mode ) ) )
+                .cache(); // Keep going on cancel so the lock can be released when acquired
+
+        return mono.doOnCancel( () -> mono.subscribe( AcquiredLock::release ) );
+
+    }
+
+    /**
+     * Retains the nodes of a path and all its ancestors, from the root down.
+     *
+     * @param path The path.
+     * @return The retained nodes.
+     */
+    private List<Node> retain( final String path ) {
+
+        final List<Node> retained = new ArrayList<>();
+        int idx = path.indexOf( separator );
+        while ( idx >= 0 ) {
+            retained.add( retain( path, idx ) );
+            idx = path.indexOf( separator, idx + 1 );
+        }
+        retained.add( retain( path, path.length() ) );
+        return retained;
+
+    }
+
+    /**
+     * Retains the node of a prefix of a path.
+     *
+     * @param path The path.
+     * @param end The end of the prefix.
+     * @return The retained node.
+     */
+    private Node retain( final String path, final int end ) {
+
+        final var node = nodes.compute( path.substring( 0, end ), ( k, n ) -> {
+
+            final var current = n == null ? new Node( k ) : n;
+            current.refs++;
+            return current;
+
+        } );
+        return Objects.requireNonNull( node );
+
+    }
+
+    /**
+     * Releases a reference to a node, discarding it if it was the last one.
+     *
+     * @param node The node.
+     */
+    @SuppressWarnings( "nullness:return" ) // Returning null removes the node
+    private void unretain( final Node node ) {
+
+        nodes.computeIfPresent( node.path, ( k, n ) -> --n.refs == 0 ? null : n );
+
+    }
+
+    /**
+     * Determines the mode to lock a node with.
+     *
+     * @param nodes The nodes being locked.
+     * @param idx The index of the node.
+     * @param mode The mode the path is being locked with.
+     * @return The mode to lock the node with.
+     */
+    private static Mode mode( final List<Node> nodes, final int idx, final Mode mode ) {
+
+        if ( idx == nodes.size() - 1 ) {
+            return mode;
+        } else {
+            return mode == Mode.SHARED ? Mode.INTENTION_SHARED : Mode.INTENTION_EXCLUSIVE;
+        }
+
+    }
+
+    /**
+     * The lock modes.
+     *
+     * @since 1.0
+     */
+    private enum Mode {
+
+        /** Intention to lock descendants in shared mode. */
+        INTENTION_SHARED,
+
+        /** Intention to lock descendants in exclusive mode. */
+        INTENTION_EXCLUSIVE,
+
+        /** Shared lock on the subtree. */
+        SHARED,
+
+        /** Exclusive lock on the subtree. */
+        EXCLUSIVE;
+
+        /**
+         * Determines whether this mode may be granted while another mode is granted.
+         *
+         * @param other The other mode.
+         * @return {@code true} if the modes are compatible.
+         */
+        boolean compatible( final Mode other ) {
+
+            return switch ( this ) {
+                case INTENTION_SHARED -> other != EXCLUSIVE;
+                case INTENTION_EXCLUSIVE -> other == INTENTION_SHARED
+                        || other == INTENTION_EXCLUSIVE;
+                case SHARED -> other == INTENTION_SHARED || other == SHARED;
+                case EXCLUSIVE -> false;
+            };
+
+        }
+
+    }
+
+    /**
+     * The lock state of a path.
+     *
+     * @since 1.0
+     */
+    @UsesObjectEquals
+    private static final class Node {
+
+        /** The path. */
+        final String path;
+
+        /** The number of acquisitions that use the node. Only accessed within a compute. */
+        int refs;
+
+        /** The number of granted locks in each mode. */
+        private final int[] granted;
+
+        /** The waiting acquisitions, in arrival order. */
+        private final Queue<Waiter> waiters;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param path The path.
+         */
+        Node( final String path ) {
+
+            this.path = path;
+            this.granted = new int[MODES.length];
+            this.waiters = new ArrayDeque<>();
+
+        }
+
+        /**
+         * Determines whether a mode is compatible with all granted modes. Must be called
+         * while synchronized on this node.
+         *
+         * @param mode The mode.
+         * @return {@code true} if the mode can be granted.
+         */
+        private boolean compatible( final Mode mode ) {
+
+            for ( final var other : MODES ) {
+                if ( granted[other.ordinal()] > 0 && !mode.compatible( other ) ) {
+                    return false;
+                }
+            }
+            return true;
+
+        }
+
+        /**
+         * Locks this node if it can be done immediately.
+         *
+         * @param mode The mode.
+         * @return {@code true} if locked.
+         */
+        synchronized boolean tryLock( final Mode mode ) {
+
+            if ( waiters.isEmpty() && compatible( mode ) ) {
+                granted[mode.ordinal()]++;
+                return true;
+            } else {
+                return false;
+            }
+
+        }
+
+        /**
+         * Locks this node.
+         *
+         * @param mode The mode.
+         * @return A Mono that completes once locked.
+         */
+        Mono<Void> lock( final Mode mode ) {
+
+            synchronized ( this ) {
+                if ( waiters.isEmpty() && compatible( mode ) ) {
+                    granted[mode.ordinal()]++;
+                    return Mono.empty();
+                }
+
+                final var waiter = new Waiter( mode );
+                waiters.add( waiter );
+                return waiter.sink.asMono();
+            }
+
+        }
+
+        /**
+         * Unlocks this node, granting the lock to waiters that became compatible.
+         *
+         * @param mode The mode the node was locked with.
+         */
+        void unlock( final Mode mode ) {
+
+            final List<Waiter> ready = new ArrayList<>();
+            synchronized ( this ) {
+                granted[mode.ordinal()]--;
+                Waiter next;
+                while ( ( next = waiters.peek() ) != null && compatible( next.mode ) ) {
+                    waiters.remove();
+                    granted[next.mode.ordinal()]++;
+                    ready.add( next );
+                }
+            }
+
+            ready.forEach( w -> w.sink.tryEmitEmpty() );
+
+        }
+
+    }
+
+    /**
+     * An acquisition waiting for a node.
+     *
+     * @param mode The requested mode.
+     * @param sink The sink to notify once granted.
+     * @since 1.0
+     */
+    private record Waiter( Mode mode, Sinks.Empty<Void> sink ) {
+
+        /**
+         * Creates a new instance.
+         *
+         * @param mode The requested mode.
+         */
+        Waiter( final Mode mode ) {
+
+            this( mode, Sinks.empty() );
+
+        }
+
+    }
+
+    /**
+     * The lock implementation.
+     *
+     * @since 1.0
+     */
+    private final class PathLock extends AbstractMapAcquiredLock {
+
+        /** The nodes of the path and its ancestors, from the root down. */
+        private final List<Node> locked;
+
+        /** The mode the path was locked with. */
+        private final Mode mode;
+
+        /**
+         * Initializes a lock.
+         *
+         * @param path The path.
+         * @param locked The locked nodes.
+         * @param mode The mode the path was locked with.
+         */
+        PathLock( final String path, final List<Node> locked, final Mode mode ) {
+
+            super( path );
+            this.locked = locked;
+            this.mode = mode;
+
+        }
+
+        @Override
+        protected void doRelease() {
+
+            for ( int i = locked.size() - 1; i >= 0; i-- ) {
+                final var node = locked.get( i );
+                node.unlock( mode( locked, i, mode ) );
+                unretain( node );
+            }
+
+        }
+
+    }
+
+}
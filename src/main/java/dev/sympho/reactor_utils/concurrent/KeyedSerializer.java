@@ -0,0 +1,484 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
+import reactor.core.publisher.SynchronousSink;
+import reactor.util.concurrent.Queues;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Operators for processing elements that must be serialized according to a key.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public final class KeyedSerializer {
+
+    /**
+     * The default maximum number of elements that are buffered while waiting for their key.
+     */
+    public static final int DEFAULT_PREFETCH = Queues.SMALL_BUFFER_SIZE;
+
+    /** Do not instantiate. */
+    private KeyedSerializer() {}
+
+    /**
+     * Maps each element of a Flux into a Publisher, such that the publishers for elements
+     * with the same key are subscribed to strictly in the order of the elements, each one
+     * only after the previous one terminated, while publishers for elements with different
+     * keys run in parallel. The results are merged as they are emitted.
+     *
+     * <p>Up to {@link #DEFAULT_PREFETCH} elements may be buffered while waiting for their
+     * key.
+     *
+     * @param <T> The source element type.
+     * @param <K> The key type.
+     * @param <R> The result type.
+     * @param source The source Flux.
+     * @param keyFn The function that determines the key of each element.
+     * @param fn The function that maps each element into the publisher to execute.
+     * @param maxConcurrency The maximum number of keys in progress at the same time.
+     * @return The Flux of results.
+     * @throws IllegalArgumentException if the maximum concurrency is not positive.
+     * @see #concatMapByKey(Flux, Function, Function, int, int)
+     */
+    public static <T, K extends @NonNull Object, R> Flux<R> concatMapByKey(
+            final Flux<T> source,
+            final Function<? super T, ? extends K> keyFn,
+            final Function<? super T, ? extends Publisher<? extends R>> fn,
+            final int maxConcurrency ) throws IllegalArgumentException {
+
+        return concatMapByKey( source, keyFn, fn, maxConcurrency, DEFAULT_PREFETCH );
+
+    }
+
+    /**
+     * Maps each element of a Flux into a Publisher, such that the publishers for elements
+     * with the same key are subscribed to strictly in the order of the elements, each one
+     * only after the previous one terminated, while publishers for elements with different
+     * keys run in parallel. The results are merged as they are emitted.
+     *
+     * <p>At most {@code maxConcurrency} keys are in progress at any time; elements whose
+     * key is already in progress are queued behind it, and elements of other keys wait
+     * until a key finishes. Only keys in progress count against the concurrency, so a hot
+     * key with a backlog only ever occupies one slot, and elements of other keys keep
+     * running next to it.
+     *
+     * <p>At most {@code maxConcurrency + prefetch} elements are requested from the source
+     * and not yet finished at any time, and more are requested as elements finish, so
+     * backpressure is preserved and the number of queued elements is bounded even if a key
+     * is hot.
+     *
+     * <p>Each subscription to the returned Flux serializes its elements independently.
+     *
+     * @param <T> The source element type.
+     * @param <K> The key type.
+     * @param <R> The result type.
+     * @param source The source Flux.
+     * @param keyFn The function that determines the key of each element.
+     * @param fn The function that maps each element into the publisher to execute.
+     * @param maxConcurrency The maximum number of keys in progress at the same time.
+     * @param prefetch How many elements may be buffered while waiting for their key, in
+     *                 addition to the ones in progress.
+     * @return The Flux of results.
+     * @throws IllegalArgumentException if the maximum concurrency is not positive, or the
+     *                                  prefetch is negative.
+     * @implNote Each subscription keeps a queue of elements for each key in progress, which
+     *           is discarded as soon as the key has no more elements. Keys are processed by
+     *           up to {@code maxConcurrency} lanes that are merged into the result; when a
+     *           lane runs out of elements for its key, it moves on to the next key that is
+     *           waiting for a lane, if any. No group is created for each key. This does not
+     *           build on the per-key ordering of {@link AsyncLockMap}: a lock map would hold
+     *           a waiter for every queued element, and each of those would take up one of
+     *           the {@code maxConcurrency} slots while merely waiting on its key, which is
+     *           what let a hot key starve the others. Elements that are still queued when
+     *           the subscription is cancelled or the source fails are
+     *           {@link Operators#onDiscard(Object, Context) discarded}.
+     */
+    public static <T, K extends @NonNull Object, R> Flux<R> concatMapByKey(
+            final Flux<T> source,
+            final Function<? super T, ? extends K> keyFn,
+            final Function<? super T, ? extends Publisher<? extends R>> fn,
+            final int maxConcurrency,
+            final int prefetch ) throws IllegalArgumentException {
+
+        if ( maxConcurrency <= 0 ) {
+            throw new IllegalArgumentException( "Maximum concurrency must be positive." );
+        }
+        if ( prefetch < 0 ) {
+            throw new IllegalArgumentException( "Prefetch must not be negative." );
+        }
+
+        Objects.requireNonNull( source );
+        Objects.requireNonNull( keyFn );
+        Objects.requireNonNull( fn );
+
+        final Flux<Map.Entry<K, T>> keyed = source.map( e -> Map.entry( keyFn.apply( e ), e ) );
+        return Flux.deferContextual( ctx -> new Dispatcher<T, K, R>(
+                keyed, fn, maxConcurrency, prefetch, ctx
+        ).results() );
+
+    }
+
+    /**
+     * Subscriber to the source that sorts elements into per-key queues, and starts lanes
+     * that process them.
+     *
+     * @param <T> The source element type.
+     * @param <K> The key type.
+     * @param <R> The result type.
+     * @since 1.0
+     */
+    private static final class Dispatcher<T, K extends @NonNull Object, R>
+            implements CoreSubscriber<Map.Entry<K, T>> {
+
+        /** Field updater for {@link #upstream}. */
+        @SuppressWarnings( "rawtypes" )
+        private static final AtomicReferenceFieldUpdater<Dispatcher, Subscription> UPSTREAM =
+                AtomicReferenceFieldUpdater.newUpdater( Dispatcher.class, Subscription.class,
+                        "upstream" );
+
+        /** Field updater for {@link #finished}. */
+        @SuppressWarnings( "rawtypes" )
+        private static final AtomicIntegerFieldUpdater<Dispatcher> FINISHED =
+                AtomicIntegerFieldUpdater.newUpdater( Dispatcher.class, "finished" );
+
+        /** The source elements, with their keys. */
+        private final Flux<Map.Entry<K, T>> source;
+
+        /** The function that maps each element into the publisher to execute. */
+        private final Function<? super T, ? extends Publisher<? extends R>> fn;
+
+        /** The maximum number of lanes. */
+        private final int maxConcurrency;
+
+        /** The number of elements initially requested from the source. */
+        private final int total;
+
+        /** The number of finished elements after which more are requested. */
+        private final int limit;
+
+        /** The context of the subscriber. */
+        private final Context context;
+
+        /** The sink that started lanes are emitted to. Only emitted to by source signals. */
+        private final Sinks.Many<Flux<R>> lanes;
+
+        /**
+         * The queued elements of each key that is in progress or waiting for a lane.
+         * Guarded by this instance.
+         */
+        private final Map<K, Queue<T>> queues;
+
+        /**
+         * The keys that are waiting for a lane, in order, with their queues. Guarded by this
+         * instance.
+         */
+        private final Queue<Map.Entry<K, Queue<T>>> waiting;
+
+        /** The number of running lanes. Guarded by this instance. */
+        private int running;
+
+        /**
+         * Whether the queued elements were discarded, so no more should be queued. Guarded
+         * by this instance.
+         */
+        private boolean cleared;
+
+        /** Whether the source terminated. Only accessed by source signals. */
+        private boolean done;
+
+        /** The subscription to the source. */
+        private volatile @Nullable Subscription upstream;
+
+        /** The number of elements finished since more were last requested. */
+        private volatile int finished;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param source The source elements, with their keys.
+         * @param fn The function that maps each element into the publisher to execute.
+         * @param maxConcurrency The maximum number of keys in progress at the same time.
+         * @param prefetch How many elements may be buffered while waiting for their key.
+         * @param context The context of the subscriber.
+         */
+        Dispatcher( final Flux<Map.Entry<K, T>> source,
+                final Function<? super T, ? extends Publisher<? extends R>> fn,
+                final int maxConcurrency, final int prefetch, final ContextView context ) {
+
+            this.source = source;
+            this.fn = fn;
+            this.maxConcurrency = maxConcurrency;
+            this.total = ( int ) Math.min( Integer.MAX_VALUE, ( long ) maxConcurrency + prefetch );
+            this.limit = total - ( total >> 2 );
+            this.context = Context.of( context );
+            this.lanes = Sinks.many().unicast().onBackpressureBuffer();
+            this.queues = new HashMap<>();
+            this.waiting = new ArrayDeque<>();
+            this.running = 0;
+            this.cleared = false;
+            this.done = false;
+
+        }
+
+        /**
+         * Creates the Flux that subscribes to the source and merges the results of the
+         * lanes.
+         *
+         * @return The results.
+         */
+        Flux<R> results() {
+
+            return lanes.asFlux()
+                    .doOnSubscribe( s -> source.subscribe( this ) )
+                    .doOnCancel( this::cancel )
+                    .flatMap( lane -> lane, maxConcurrency );
+
+        }
+
+        @Override
+        public Context currentContext() {
+
+            return context;
+
+        }
+
+        @Override
+        public void onSubscribe( final Subscription s ) {
+
+            if ( Operators.setOnce( UPSTREAM, this, s ) ) {
+                s.request( total == Integer.MAX_VALUE ? Long.MAX_VALUE : total );
+            }
+
+        }
+
+        @Override
+        public void onNext( final Map.Entry<K, T> keyed ) {
+
+            if ( done ) {
+                Operators.onNextDropped( keyed, context );
+                return;
+            }
+
+            final var key = keyed.getKey();
+            final var element = keyed.getValue();
+
+            final Queue<T> created;
+            synchronized ( this ) {
+
+                if ( cleared ) { // Cancelled concurrently
+                    Operators.onDiscard( element, context );
+                    return;
+                }
+
+                final var queue = queues.get( key );
+                if ( queue != null ) {
+                    queue.add( element );
+                    return;
+                }
+
+                created = new ArrayDeque<>();
+                created.add( element );
+                queues.put( key, created );
+
+                if ( running == maxConcurrency ) {
+                    waiting.add( Map.entry( key, created ) );
+                    return;
+                }
+                running++;
+
+            }
+
+            lanes.tryEmitNext( new Lane( key, created ).flux() );
+
+        }
+
+        @Override
+        public void onError( final Throwable t ) {
+
+            if ( done ) {
+                Operators.onErrorDropped( t, context );
+                return;
+            }
+            done = true;
+            clear();
+            lanes.tryEmitError( t );
+
+        }
+
+        @Override
+        public void onComplete() {
+
+            if ( done ) {
+                return;
+            }
+            done = true;
+            lanes.tryEmitComplete(); // Running lanes still drain the queued elements
+
+        }
+
+        /**
+         * Cancels the subscription to the source.
+         */
+        private void cancel() {
+
+            Operators.terminate( UPSTREAM, this );
+            clear();
+
+        }
+
+        /**
+         * Discards all queued elements. Lanes that are still running find their queues
+         * empty and finish.
+         */
+        private synchronized void clear() {
+
+            cleared = true;
+            for ( final var queue : queues.values() ) {
+                T element;
+                while ( ( element = queue.poll() ) != null ) {
+                    Operators.onDiscard( element, context );
+                }
+            }
+            queues.clear();
+            waiting.clear();
+
+        }
+
+        /**
+         * Accounts for a finished element, requesting more from the source if enough
+         * finished.
+         */
+        private void finished() {
+
+            int current;
+            int next;
+            do {
+                current = finished;
+                next = current + 1 == limit ? 0 : current + 1;
+            } while ( !FINISHED.compareAndSet( this, current, next ) );
+
+            final var s = upstream;
+            if ( next == 0 && s != null && total != Integer.MAX_VALUE ) {
+                s.request( limit );
+            }
+
+        }
+
+        /**
+         * Takes the next element for a lane, moving it to the next waiting key once its
+         * current key has no more elements.
+         *
+         * @param lane The lane.
+         * @return The next element, or {@code null} if there are no more elements for the
+         *         lane, in which case the lane is released.
+         */
+        private synchronized @Nullable T poll( final Lane lane ) {
+
+            final var element = lane.queue.poll();
+            if ( element != null ) {
+                return element;
+            }
+
+            queues.remove( lane.key );
+            final var next = waiting.poll();
+            if ( next == null ) {
+                running--;
+                return null;
+            }
+
+            lane.key = next.getKey();
+            lane.queue = next.getValue();
+            return lane.queue.poll(); // Never empty
+
+        }
+
+        /**
+         * A lane that processes the elements of one key at a time.
+         *
+         * @since 1.0
+         */
+        private final class Lane {
+
+            /** The key currently being processed. Guarded by the dispatcher. */
+            K key;
+
+            /** The queued elements of the current key. Guarded by the dispatcher. */
+            Queue<T> queue;
+
+            /** Whether an element was taken yet. */
+            private boolean started;
+
+            /**
+             * Creates a new instance.
+             *
+             * @param key The first key to process.
+             * @param queue The queued elements of the key.
+             */
+            Lane( final K key, final Queue<T> queue ) {
+
+                this.key = key;
+                this.queue = queue;
+                this.started = false;
+
+            }
+
+            /**
+             * Creates the Flux that processes the elements of this lane. The next element
+             * is only taken after the previous one finished.
+             *
+             * @return The results of the elements.
+             */
+            Flux<R> flux() {
+
+                return Flux.<T, Lane>generate( () -> this, Lane::next )
+                        .concatMap( fn, 0 );
+
+            }
+
+            /**
+             * Emits the next element, or completes if there are no more.
+             *
+             * @param sink The sink to emit to.
+             * @return This lane.
+             */
+            private Lane next( final SynchronousSink<T> sink ) {
+
+                if ( started ) {
+                    finished(); // The previous element finished
+                }
+                started = true;
+
+                final var element = poll( this );
+                if ( element == null ) {
+                    sink.complete();
+                } else {
+                    sink.next( element );
+                }
+                return this;
+
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,42 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event for the time spent waiting on a reactive latch.
+ *
+ * @see FlightEvents
+ * @version 1.0
+ * @since 1.0
+ */
+@Name( LatchAwaitEvent.NAME )
+@Label( "Reactive Latch Await" )
+@Category( { FlightEvents.CATEGORY, "Latches" } )
+@Description( "Waiting on a reactive latch, from subscription until the wait ended" )
+@Threshold( "20 ms" )
+@StackTrace( false )
+final class LatchAwaitEvent extends jdk.jfr.Event {
+
+    /** The event name. */
+    static final String NAME = "dev.sympho.reactor_utils.LatchAwait";
+
+    /** The latch type. */
+    @Label( "Latch Class" )
+    @Nullable Class<?> latchClass;
+
+    /** How the wait ended. */
+    @Label( "Outcome" )
+    @Description( "How the wait ended: opened, cancelled, timeout or failed" )
+    @Nullable String outcome;
+
+    /** Creates a new instance. */
+    LatchAwaitEvent() {}
+
+}
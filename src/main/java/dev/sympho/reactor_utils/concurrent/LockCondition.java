@@ -0,0 +1,77 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Condition that works with any {@link ReactiveLock}, by releasing the held lock while
+ * waiting and acquiring it again through the lock once signalled.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+final class LockCondition implements ReactiveCondition {
+
+    /** The associated lock. */
+    private final ReactiveLock lock;
+
+    /** The waiters, in the order they started waiting. */
+    private final Queue<Sinks.Empty<Void>> waiters;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param lock The associated lock.
+     */
+    LockCondition( final ReactiveLock lock ) {
+
+        this.lock = lock;
+        this.waiters = new ConcurrentLinkedQueue<>();
+
+    }
+
+    @Override
+    public Mono<AcquiredLock> await( final AcquiredLock held ) {
+
+        return Mono.defer( () -> {
+
+            final Sinks.Empty<Void> waiter = Sinks.empty();
+            waiters.add( waiter );
+            held.release();
+
+            return waiter.asMono()
+                    .doOnCancel( () -> {
+                        if ( !waiters.remove( waiter ) ) {
+                            signal(); // Was signalled already, pass it on
+                        }
+                    } )
+                    .then( lock.acquire() );
+
+        } );
+
+    }
+
+    @Override
+    public void signal() {
+
+        final var waiter = waiters.poll();
+        if ( waiter != null ) {
+            waiter.tryEmitEmpty();
+        }
+
+    }
+
+    @Override
+    public void signalAll() {
+
+        Sinks.Empty<Void> waiter;
+        while ( ( waiter = waiters.poll() ) != null ) {
+            waiter.tryEmitEmpty();
+        }
+
+    }
+
+}
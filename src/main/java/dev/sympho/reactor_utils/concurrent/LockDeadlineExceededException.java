@@ -0,0 +1,46 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Instant;
+
+/**
+ * Exception issued by a lock to an acquisition that is dropped because its deadline passed
+ * before the lock could be granted to it.
+ *
+ * <p>As it is meant to be issued to a large number of callers while overloaded, this
+ * exception does not record a stack trace.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class LockDeadlineExceededException extends RuntimeException {
+
+    private static final long serialVersionUID = -2380962115727781410L;
+
+    /** The deadline of the acquisition. */
+    private final Instant deadline;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param deadline The deadline of the acquisition.
+     */
+    public LockDeadlineExceededException( final Instant deadline ) {
+
+        super( "Deadline passed before the lock was acquired (" + deadline + ")",
+                null, false, false );
+        this.deadline = deadline;
+
+    }
+
+    /**
+     * Retrieves the deadline of the acquisition.
+     *
+     * @return The deadline.
+     */
+    public Instant getDeadline() {
+
+        return deadline;
+
+    }
+
+}
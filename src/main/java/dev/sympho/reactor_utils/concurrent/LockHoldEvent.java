@@ -0,0 +1,43 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event for the time a lock was held.
+ *
+ * <p>The event is committed in the thread that released the lock.
+ *
+ * @see FlightEvents
+ * @version 1.0
+ * @since 1.0
+ */
+@Name( LockHoldEvent.NAME )
+@Label( "Reactive Lock Hold" )
+@Category( { FlightEvents.CATEGORY, "Locks" } )
+@Description( "Holding a lock, from when it was issued until it was released" )
+@Threshold( "20 ms" )
+@StackTrace( false )
+final class LockHoldEvent extends jdk.jfr.Event {
+
+    /** The event name. */
+    static final String NAME = "dev.sympho.reactor_utils.LockHold";
+
+    /** The lock (or lock map) type. */
+    @Label( "Lock Class" )
+    @Nullable Class<?> lockClass;
+
+    /** The lock key, if acquired from a lock map. */
+    @Label( "Key" )
+    @Nullable String key;
+
+    /** Creates a new instance. */
+    LockHoldEvent() {}
+
+}
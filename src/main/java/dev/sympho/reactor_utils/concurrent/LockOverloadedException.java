@@ -0,0 +1,44 @@
+package dev.sympho.reactor_utils.concurrent;
+
+/**
+ * Exception issued by a lock to an acquisition that is rejected because the maximum number
+ * of waiters for the lock was reached.
+ *
+ * <p>As it is meant to be issued to a large number of callers while overloaded, this
+ * exception does not record a stack trace.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class LockOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 7141946307517384623L;
+
+    /** The maximum number of waiters of the lock. */
+    private final int maxWaiters;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxWaiters The maximum number of waiters of the lock.
+     */
+    public LockOverloadedException( final int maxWaiters ) {
+
+        super( "Lock already has the maximum number of waiters (" + maxWaiters + ")",
+                null, false, false );
+        this.maxWaiters = maxWaiters;
+
+    }
+
+    /**
+     * Retrieves the maximum number of waiters of the lock.
+     *
+     * @return The maximum number of waiters.
+     */
+    public int getMaxWaiters() {
+
+        return maxWaiters;
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event for the time spent waiting to acquire a reactive lock.
+ *
+ * <p>The event is committed when the wait ends, which for a successful acquisition is
+ * usually in the thread that released the previous holder.
+ *
+ * @see FlightEvents
+ * @version 1.0
+ * @since 1.0
+ */
+@Name( LockWaitEvent.NAME )
+@Label( "Reactive Lock Wait" )
+@Category( { FlightEvents.CATEGORY, "Locks" } )
+@Description( "Waiting to acquire a reactive lock, from subscription until the wait ended" )
+@Threshold( "20 ms" )
+@StackTrace( false )
+final class LockWaitEvent extends jdk.jfr.Event {
+
+    /** The event name. */
+    static final String NAME = "dev.sympho.reactor_utils.LockWait";
+
+    /** The lock (or lock map) type. */
+    @Label( "Lock Class" )
+    @Nullable Class<?> lockClass;
+
+    /** The lock key, if acquired from a lock map. */
+    @Label( "Key" )
+    @Nullable String key;
+
+    /** The number of acquisitions ahead of this one. */
+    @Label( "Queue Depth" )
+    @Description( "Acquisitions ahead of this one (including the holder), "
+            + "or -1 if the lock does not track them" )
+    int queueDepth;
+
+    /** How the wait ended. */
+    @Label( "Outcome" )
+    @Description( "How the wait ended: acquired, cancelled, timeout, overloaded or failed" )
+    @Nullable String outcome;
+
+    /** Creates a new instance. */
+    LockWaitEvent() {}
+
+}
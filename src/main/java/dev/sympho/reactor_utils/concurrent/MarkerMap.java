@@ -1,30 +1,278 @@
 package dev.sympho.reactor_utils.concurrent;
 
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.checkerframework.checker.interning.qual.UsesObjectEquals;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
 /**
  * Specialized map for storing unique markers in a concurrent environment.
  * All methods of this class are thread-safe.
- * 
+ *
  * <p>Marker instances are unique and one-off; that is, once a marker is removed from this map
  * (including if it is replaced), it cannot ever be inserted again.
  *
+ * <p>A map may optionally be bounded, in which case markers are automatically evicted once
+ * they are older than a given time-to-live and/or once the map holds more than a given number
+ * of markers (in which case the oldest markers are evicted first). An expired marker is treated
+ * as absent by all operations, even if it was not evicted yet.
+ *
+ * <p>Rather than polling, code that needs to wait for a competing operation to finish
+ * may use {@link #awaitRemoval(Object)} or {@link #awaitReplacement(Object, Marker)} to
+ * be notified when a marker leaves the map.
+ *
  * @param <K> The key type.
  * @version 1.0
  * @since 1.0
+ * @implNote In a bounded map, markers are tracked in insertion order and evicted by the
+ *           operations that place new markers, so eviction has an amortized constant cost
+ *           and requires no background task. Markers that expire while no new markers are
+ *           being placed are only removed once accessed or once placing resumes.
  */
 public final class MarkerMap<K extends @NonNull Object> {
 
+    /** Value for the maximum size that indicates that the map has no size limit. */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
     /** The backing map. */
     private final ConcurrentMap<K, Marker> markers = new ConcurrentHashMap<>();
 
-    /** Creates a new instance. */
-    public MarkerMap() {}
+    /** The eviction state, or {@code null} if the map is unbounded. */
+    private final @Nullable Eviction<K> eviction;
+
+    /** Creates a new unbounded instance. */
+    public MarkerMap() {
+
+        this.eviction = null;
+
+    }
+
+    /**
+     * Creates a new bounded instance.
+     *
+     * @param ttl How long a marker stays in the map after being placed, or {@code null}
+     *            if markers do not expire.
+     * @param maximumSize The maximum number of markers in the map, or {@link #UNBOUNDED}
+     *                    if the size is not limited.
+     * @throws IllegalArgumentException if the TTL or the maximum size are not positive.
+     */
+    public MarkerMap( final @Nullable Duration ttl, final int maximumSize )
+            throws IllegalArgumentException {
+
+        this( ttl, maximumSize, null );
+
+    }
+
+    /**
+     * Creates a new bounded instance.
+     *
+     * @param ttl How long a marker stays in the map after being placed, or {@code null}
+     *            if markers do not expire.
+     * @param maximumSize The maximum number of markers in the map, or {@link #UNBOUNDED}
+     *                    if the size is not limited.
+     * @param listener The listener to notify when a marker is evicted, if any.
+     * @throws IllegalArgumentException if the TTL or the maximum size are not positive.
+     */
+    public MarkerMap( final @Nullable Duration ttl, final int maximumSize,
+            final @Nullable EvictionListener<? super K> listener )
+            throws IllegalArgumentException {
+
+        this( ttl, maximumSize, listener, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new bounded instance.
+     *
+     * @param ttl How long a marker stays in the map after being placed, or {@code null}
+     *            if markers do not expire.
+     * @param maximumSize The maximum number of markers in the map, or {@link #UNBOUNDED}
+     *                    if the size is not limited.
+     * @param listener The listener to notify when a marker is evicted, if any.
+     * @param clock The scheduler to use as a time source for expiration.
+     * @throws IllegalArgumentException if the TTL or the maximum size are not positive.
+     */
+    public MarkerMap( final @Nullable Duration ttl, final int maximumSize,
+            final @Nullable EvictionListener<? super K> listener, final Scheduler clock )
+            throws IllegalArgumentException {
+
+        if ( ttl != null && ( ttl.isNegative() || ttl.isZero() ) ) {
+            throw new IllegalArgumentException( "TTL must be positive." );
+        }
+        if ( maximumSize <= 0 ) {
+            throw new IllegalArgumentException( "Maximum size must be positive." );
+        }
+
+        this.eviction = new Eviction<>(
+                ttl == null ? Long.MAX_VALUE : ttl.toNanos(),
+                maximumSize,
+                listener,
+                Objects.requireNonNull( clock )
+        );
+
+    }
+
+    /**
+     * Creates a new marker.
+     *
+     * @param key The key that the marker will be placed under.
+     * @return The marker.
+     */
+    private Marker newMarker( final K key ) {
+
+        final var ev = eviction;
+        return ev == null ? new Marker() : new TrackedMarker<>( key, ev.now() );
+
+    }
+
+    /**
+     * Determines if a marker is expired.
+     *
+     * @param marker The marker.
+     * @return {@code true} if the marker is expired.
+     */
+    private boolean isExpired( final Marker marker ) {
+
+        final var ev = eviction;
+        return ev != null && ev.isExpired( marker, ev.now() );
+
+    }
+
+    /**
+     * Evicts an expired marker, if it is still in the map.
+     *
+     * @param key The key of the marker.
+     * @param marker The marker.
+     */
+    private void expire( final K key, final Marker marker ) {
+
+        if ( markers.remove( key, marker ) ) {
+            evicted( key, marker, EvictionCause.EXPIRED );
+        }
+
+    }
+
+    /**
+     * Handles a marker that was evicted.
+     *
+     * @param key The key of the marker.
+     * @param marker The marker.
+     * @param cause The reason for the eviction.
+     */
+    private void evicted( final K key, final Marker marker, final EvictionCause cause ) {
+
+        marker.retire();
+
+        final var ev = eviction;
+        if ( ev != null && ev.listener != null ) {
+            ev.listener.onEviction( key, marker, cause );
+        }
+
+    }
+
+    /**
+     * Performs the bookkeeping for a marker that was just placed in the map.
+     *
+     * @param marker The marker.
+     */
+    @SuppressWarnings( "unchecked" ) // Bounded maps only create tracked markers
+    private void placed( final Marker marker ) {
+
+        final var ev = eviction;
+        if ( ev == null ) {
+            return;
+        }
+
+        ev.order.offer( ( TrackedMarker<K> ) marker );
+        ev.tracked.incrementAndGet();
+
+        if ( !ev.draining.compareAndSet( false, true ) ) {
+            return; // Someone else is already evicting
+        }
+
+        try {
+            drain( ev );
+        } finally {
+            ev.draining.set( false );
+        }
+
+    }
+
+    /**
+     * Evicts markers that are expired or exceed the maximum size, and discards tracking
+     * data for markers that are no longer in the map.
+     *
+     * @param ev The eviction state.
+     */
+    private void drain( final Eviction<K> ev ) {
+
+        final long now = ev.now();
+
+        TrackedMarker<K> head;
+        while ( ( head = ev.order.peek() ) != null ) {
+
+            final EvictionCause cause;
+            if ( markers.get( head.key ) != head ) {
+                cause = null; // Already removed
+            } else if ( ev.isExpired( head, now ) ) {
+                cause = EvictionCause.EXPIRED;
+            } else if ( markers.size() > ev.maximumSize ) {
+                cause = EvictionCause.SIZE;
+            } else {
+                break; // Oldest marker is still valid, so are all others
+            }
+
+            ev.order.poll();
+            ev.tracked.decrementAndGet();
+            if ( cause != null && markers.remove( head.key, head ) ) {
+                evicted( head.key, head, cause );
+            }
+
+        }
+
+        // Markers removed explicitly remain in the queue until they reach the head;
+        // compact once they outnumber the live ones to keep the queue proportional
+        // to the map
+        if ( ev.tracked.get() > 2 * markers.size() + Eviction.COMPACTION_SLACK ) {
+            ev.order.removeIf( m -> {
+                final boolean stale = markers.get( m.key ) != m;
+                if ( stale ) {
+                    ev.tracked.decrementAndGet();
+                }
+                return stale;
+            } );
+        }
+
+    }
+
+    /**
+     * Determines the number of markers being tracked for eviction.
+     *
+     * @return The number of tracked markers, or {@code 0} if the map is unbounded.
+     */
+    int tracked() {
+
+        final var ev = eviction;
+        return ev == null ? 0 : ev.tracked.get();
+
+    }
 
     /**
      * Places a new marker in the map. Any existing marker is replaced.
@@ -34,8 +282,12 @@ public final class MarkerMap<K extends @NonNull Object> {
      */
     public Marker place( final K key ) {
 
-        final var marker = new Marker();
-        markers.put( key, marker );
+        final var marker = newMarker( key );
+        final var previous = markers.put( key, marker );
+        if ( previous != null ) {
+            previous.retire();
+        }
+        placed( marker );
         return marker;
 
     }
@@ -48,8 +300,28 @@ public final class MarkerMap<K extends @NonNull Object> {
      */
     public @Nullable Marker placeIfAbsent( final K key ) {
 
-        final var marker = new Marker();
-        return markers.putIfAbsent( key, marker ) == null ? marker : null;
+        // Avoid allocating a marker if it would be discarded anyway
+        final var current = markers.get( key );
+        if ( current != null && !isExpired( current ) ) {
+            return null;
+        }
+
+        final var marker = newMarker( key );
+        while ( true ) {
+
+            final var existing = markers.putIfAbsent( key, marker );
+            if ( existing == null ) {
+                placed( marker );
+                return marker;
+            } else if ( !isExpired( existing ) ) {
+                return null;
+            } else if ( markers.replace( key, existing, marker ) ) {
+                evicted( key, existing, EvictionCause.EXPIRED );
+                placed( marker );
+                return marker;
+            }
+
+        }
 
     }
 
@@ -61,7 +333,12 @@ public final class MarkerMap<K extends @NonNull Object> {
      */
     public @Nullable Marker get( final K key ) {
 
-        return markers.get( key );
+        final var marker = markers.get( key );
+        if ( marker != null && isExpired( marker ) ) {
+            expire( key, marker );
+            return null;
+        }
+        return marker;
 
     }
 
@@ -73,7 +350,16 @@ public final class MarkerMap<K extends @NonNull Object> {
      */
     public @Nullable Marker remove( final K key ) {
 
-        return markers.remove( key );
+        final var marker = markers.remove( key );
+        if ( marker == null ) {
+            return null;
+        } else if ( isExpired( marker ) ) {
+            evicted( key, marker, EvictionCause.EXPIRED );
+            return null;
+        } else {
+            marker.retire();
+            return marker;
+        }
 
     }
 
@@ -86,7 +372,125 @@ public final class MarkerMap<K extends @NonNull Object> {
      */
     public boolean remove( final K key, final Marker marker ) {
 
-        return markers.remove( key, marker );
+        if ( !markers.remove( key, marker ) ) {
+            return false;
+        } else if ( isExpired( marker ) ) {
+            evicted( key, marker, EvictionCause.EXPIRED );
+            return false;
+        } else {
+            marker.retire();
+            return true;
+        }
+
+    }
+
+    /**
+     * Waits until the given marker leaves the map.
+     *
+     * @param key The key that the marker was placed under.
+     * @param marker The marker.
+     * @return A mono that completes once the marker leaves the map.
+     */
+    private Mono<Void> awaitRetired( final K key, final Marker marker ) {
+
+        final var retired = marker.retired();
+
+        final var ev = eviction;
+        if ( ev == null || ev.ttl == Long.MAX_VALUE ) {
+            return retired;
+        }
+
+        // Eviction is lazy, so make sure waiters are released when the marker expires
+        final var remaining = ( ( TrackedMarker<?> ) marker ).placedAt + ev.ttl - ev.now();
+        final var expiry = Mono.delay( Duration.ofNanos( Math.max( remaining, 0 ) ), ev.clock )
+                .doOnNext( t -> expire( key, marker ) )
+                .then();
+        return Mono.firstWithSignal( retired, expiry );
+
+    }
+
+    /**
+     * Waits until the marker currently under the given key is removed or replaced.
+     * If there is no marker under the key, the returned mono completes immediately.
+     *
+     * <p>The current marker is determined when the returned mono is subscribed to,
+     * rather than when this method is called.
+     *
+     * @param key The key to wait on.
+     * @return A mono that completes once the current marker under the key, if any, is
+     *         removed from the map (including if it is replaced or evicted).
+     * @implNote Since the map is only checked on subscription, each call allocates the
+     *           returned mono (a single small object), even if there is no marker under
+     *           the key. Subscribing to it while there is no marker does not allocate
+     *           anything further.
+     */
+    public Mono<Void> awaitRemoval( final K key ) {
+
+        return new Await( key, null );
+
+    }
+
+    /**
+     * Waits until the given marker is no longer the marker under the given key, due to
+     * being either removed or replaced. If it is already not in the map, the returned mono
+     * completes immediately.
+     *
+     * <p>Whether the marker is still in the map is checked when the returned mono is
+     * subscribed to, rather than when this method is called.
+     *
+     * @param key The key that the marker was placed under.
+     * @param marker The marker to wait on.
+     * @return A mono that completes once the marker is removed from the map (including if
+     *         it is replaced or evicted).
+     * @implNote Since the map is only checked on subscription, each call allocates the
+     *           returned mono (a single small object), even if the marker is no longer in
+     *           the map. Subscribing to it in that case does not allocate anything further.
+     */
+    public Mono<Void> awaitReplacement( final K key, final Marker marker ) {
+
+        return new Await( key, Objects.requireNonNull( marker ) );
+
+    }
+
+    /**
+     * Waits for a marker to leave the map, checking the map when subscribed to.
+     *
+     * @since 1.0
+     */
+    private final class Await extends Mono<Void> {
+
+        /** The key to wait on. */
+        private final K key;
+
+        /** The marker to wait on, or {@code null} to wait on the current marker. */
+        private final @Nullable Marker marker;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key to wait on.
+         * @param marker The marker to wait on, or {@code null} to wait on the marker that
+         *               is under the key once subscribed to.
+         */
+        Await( final K key, final @Nullable Marker marker ) {
+
+            this.key = key;
+            this.marker = marker;
+
+        }
+
+        @Override
+        @SuppressWarnings( "argument" ) // Weird inference
+        public void subscribe( final CoreSubscriber<? super Void> actual ) {
+
+            final var current = get( key );
+            if ( current == null || ( marker != null && current != marker ) ) {
+                Operators.complete( actual ); // Already gone, no need to allocate anything
+            } else {
+                awaitRetired( key, current ).subscribe( actual );
+            }
+
+        }
 
     }
 
@@ -96,11 +500,218 @@ public final class MarkerMap<K extends @NonNull Object> {
      * @since 1.0
      */
     @UsesObjectEquals
-    public static final class Marker {
+    public static class Marker {
+
+        /** Value of {@link #state} while the marker is in the map with no waiters. */
+        private static final Object IDLE = new Object();
+
+        /** Value of {@link #state} once the marker has left the map. */
+        private static final Object RETIRED = new Object();
+
+        /** Field updater for {@link #state}. */
+        private static final AtomicReferenceFieldUpdater<Marker, Object> STATE =
+                AtomicReferenceFieldUpdater.newUpdater( Marker.class, Object.class, "state" );
+
+        /**
+         * The marker state: {@link #IDLE} while in the map with no waiters, the sink used to
+         * notify waiters while in the map with waiters, or {@link #RETIRED} once it left
+         * the map.
+         */
+        private volatile Object state = IDLE;
 
         /** Creates a new instance. */
         private Marker() {}
 
+        /**
+         * Waits until this marker leaves the map.
+         *
+         * @return A mono that completes once the marker leaves the map.
+         */
+        @SuppressWarnings( { "unchecked", "interning" } ) // State is a sentinel or a sink
+        private Mono<Void> retired() {
+
+            Sinks.Empty<Void> sink = null;
+            while ( true ) {
+
+                final var current = state;
+                if ( current == RETIRED ) {
+                    return Mono.empty();
+                } else if ( current != IDLE ) {
+                    return ( ( Sinks.Empty<Void> ) current ).asMono();
+                }
+
+                if ( sink == null ) {
+                    sink = Sinks.empty();
+                }
+                if ( STATE.compareAndSet( this, IDLE, sink ) ) {
+                    return sink.asMono();
+                }
+
+            }
+
+        }
+
+        /**
+         * Marks this marker as having left the map, notifying any waiters.
+         */
+        @SuppressWarnings( { "unchecked", "interning" } ) // State is a sentinel or a sink
+        private void retire() {
+
+            final var previous = STATE.getAndSet( this, RETIRED );
+            if ( previous != IDLE && previous != RETIRED ) {
+                ( ( Sinks.Empty<Void> ) previous ).tryEmitEmpty();
+            }
+
+        }
+
     }
-    
+
+    /**
+     * A marker in a bounded map, which carries the data needed for eviction.
+     *
+     * @param <K> The key type.
+     * @since 1.0
+     */
+    private static final class TrackedMarker<K extends @NonNull Object> extends Marker {
+
+        /** The key that the marker was placed under. */
+        final K key;
+
+        /** When the marker was placed, in nanoseconds. */
+        final long placedAt;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key that the marker was placed under.
+         * @param placedAt When the marker was placed, in nanoseconds.
+         */
+        TrackedMarker( final K key, final long placedAt ) {
+
+            this.key = key;
+            this.placedAt = placedAt;
+
+        }
+
+    }
+
+    /**
+     * The eviction state of a bounded map.
+     *
+     * @param <K> The key type.
+     * @since 1.0
+     */
+    private static final class Eviction<K extends @NonNull Object> {
+
+        /** How many stale entries are tolerated in the queue before compacting it. */
+        static final int COMPACTION_SLACK = 64;
+
+        /** How long markers live, in nanoseconds. */
+        final long ttl;
+
+        /** The maximum number of markers. */
+        final int maximumSize;
+
+        /** The listener to notify of evictions, if any. */
+        final @Nullable EvictionListener<? super K> listener;
+
+        /** The scheduler used as a clock. */
+        final Scheduler clock;
+
+        /** The markers that were placed, in insertion order. */
+        final Queue<TrackedMarker<K>> order;
+
+        /** The number of markers in the queue. */
+        final AtomicInteger tracked;
+
+        /** Whether an eviction pass is in progress. */
+        final AtomicBoolean draining;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param ttl How long markers live, in nanoseconds.
+         * @param maximumSize The maximum number of markers.
+         * @param listener The listener to notify of evictions, if any.
+         * @param clock The scheduler used as a clock.
+         */
+        Eviction( final long ttl, final int maximumSize,
+                final @Nullable EvictionListener<? super K> listener, final Scheduler clock ) {
+
+            this.ttl = ttl;
+            this.maximumSize = maximumSize;
+            this.listener = listener;
+            this.clock = clock;
+            this.order = new ConcurrentLinkedQueue<>();
+            this.tracked = new AtomicInteger();
+            this.draining = new AtomicBoolean();
+
+        }
+
+        /**
+         * Retrieves the current time.
+         *
+         * @return The current time, in nanoseconds.
+         */
+        long now() {
+
+            return clock.now( TimeUnit.NANOSECONDS );
+
+        }
+
+        /**
+         * Determines if a marker is expired.
+         *
+         * @param marker The marker. Must have been created by a map that uses this state.
+         * @param now The current time, in nanoseconds.
+         * @return {@code true} if the marker is expired.
+         */
+        boolean isExpired( final Marker marker, final long now ) {
+
+            return ttl != Long.MAX_VALUE
+                    && now - ( ( TrackedMarker<?> ) marker ).placedAt >= ttl;
+
+        }
+
+    }
+
+    /**
+     * The reason why a marker was evicted.
+     *
+     * @since 1.0
+     */
+    public enum EvictionCause {
+
+        /** The marker expired. */
+        EXPIRED,
+
+        /** The map exceeded its maximum size. */
+        SIZE
+
+    }
+
+    /**
+     * Listener that is notified when a marker is evicted from a bounded map. It is not
+     * notified of markers that are explicitly removed or replaced.
+     *
+     * <p>The listener is invoked synchronously by the map operation that caused the eviction,
+     * so it should be fast and must not throw exceptions.
+     *
+     * @param <K> The key type.
+     * @since 1.0
+     */
+    @FunctionalInterface
+    public interface EvictionListener<K extends @NonNull Object> {
+
+        /**
+         * Handles a marker that was evicted.
+         *
+         * @param key The key that the marker was under.
+         * @param marker The marker.
+         * @param cause The reason for the eviction.
+         */
+        void onEviction( K key, Marker marker, EvictionCause cause );
+
+    }
+
 }
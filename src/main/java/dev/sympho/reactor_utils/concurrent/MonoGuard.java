@@ -0,0 +1,76 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Scannable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Mono that relays a source Mono while holding a lock.
+ *
+ * @param <T> The element type.
+ * @see GuardSubscriber
+ * @version 1.0
+ * @since 1.0
+ */
+final class MonoGuard<T> extends Mono<T> implements Scannable {
+
+    /** The lock acquisition. */
+    private final Mono<AcquiredLock> acquisition;
+
+    /** The guarded source. */
+    private final Mono<? extends T> source;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param acquisition The lock acquisition.
+     * @param source The guarded source.
+     */
+    private MonoGuard( final Mono<AcquiredLock> acquisition, final Mono<? extends T> source ) {
+
+        this.acquisition = acquisition;
+        this.source = source;
+
+    }
+
+    /**
+     * Guards a Mono with a lock.
+     *
+     * @param <T> The element type.
+     * @param acquisition The lock acquisition.
+     * @param source The Mono to guard.
+     * @return The guarded Mono.
+     */
+    static <T> Mono<T> guard( final Mono<AcquiredLock> acquisition,
+            final Mono<? extends T> source ) {
+
+        return onAssembly( new MonoGuard<>( acquisition, source ) );
+
+    }
+
+    @Override
+    public void subscribe( final CoreSubscriber<? super T> actual ) {
+
+        final var subscriber = new GuardSubscriber<T>( actual, source );
+        actual.onSubscribe( subscriber );
+        acquisition.subscribe( subscriber );
+
+    }
+
+    @Override
+    @SuppressWarnings( { "rawtypes", "interning:not.interned" } ) // Inherited, singletons
+    public @Nullable Object scanUnsafe( final Attr key ) {
+
+        if ( key == Attr.PARENT ) {
+            return source;
+        } else if ( key == Attr.RUN_STYLE ) {
+            return Attr.RunStyle.SYNC;
+        } else {
+            return null;
+        }
+
+    }
+
+}
@@ -31,7 +31,9 @@ public final class NonblockingLock implements Lock {
     public @Nullable AcquiredLock tryAcquire() {
 
         if ( available.getAndSet( false ) ) {
-            return new AcquiredLockImpl();
+            final var lock = new AcquiredLockImpl();
+            FlightEvents.recordHold( lock, this, null );
+            return lock;
         } else {
             return null;
         }
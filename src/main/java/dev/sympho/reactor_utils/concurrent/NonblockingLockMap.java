@@ -37,7 +37,9 @@ public final class NonblockingLockMap<K extends @NonNull Object> extends Abstrac
     public @Nullable AcquiredLock tryAcquire( final K key ) {
 
         if ( locks.put( key, LOCK_OBJ ) == null ) {
-            return new MapAcquiredLock( key );
+            final var lock = new MapAcquiredLock( key );
+            FlightEvents.recordHold( lock, this, key );
+            return lock;
         } else {
             return null;
         }
@@ -0,0 +1,74 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive lock that also supports optimistic reads, in the style of
+ * {@link java.util.concurrent.locks.StampedLock}.
+ *
+ * <p>An optimistic read does not acquire the lock and does not wait. Instead, the reader
+ * obtains a stamp before reading and, once done, validates that the lock was not acquired
+ * by anyone since the stamp was issued. If validation fails, the values read may be
+ * inconsistent and must be discarded (usually falling back to reading under the lock).
+ *
+ * <p>This is only worthwhile for reads that are short, have no side effects, and tolerate
+ * seeing inconsistent state before validation.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public interface OptimisticReactiveLock extends ReactiveLock {
+
+    /** The stamp issued when an optimistic read is not possible. Never validates. */
+    long INVALID_STAMP = 0;
+
+    /**
+     * Obtains a stamp for an optimistic read.
+     *
+     * @return The stamp, or {@link #INVALID_STAMP} if the lock is currently held or
+     *         being waited for.
+     */
+    long tryOptimisticRead();
+
+    /**
+     * Determines whether the lock was acquired since the given stamp was issued.
+     *
+     * <p>This method also acts as a load fence, so reads that were made before calling it
+     * are not reordered after the check.
+     *
+     * @param stamp The stamp obtained from {@link #tryOptimisticRead()}.
+     * @return {@code true} if the lock was not acquired since the stamp was issued, in
+     *         which case values read in the meantime are consistent.
+     */
+    boolean validate( long stamp );
+
+    /**
+     * Performs a read optimistically, falling back to performing it {@link #guard(Mono)
+     * under the lock} if the lock is busy or if it was acquired during the read.
+     *
+     * <p>The read is subscribed to once or twice, and errors it issues while the optimistic
+     * read is invalid are also discarded in favor of reading under the lock.
+     *
+     * @param <T> The element type.
+     * @param read The read to perform.
+     * @return A Mono that issues the result of a consistent read.
+     */
+    default <T> Mono<T> optimisticRead( final Mono<T> read ) {
+
+        return Mono.defer( () -> {
+
+            final long stamp = tryOptimisticRead();
+            if ( stamp == INVALID_STAMP ) {
+                return guard( read );
+            }
+
+            return read.materialize() // Validate regardless of how the read terminated
+                    .filter( signal -> validate( stamp ) )
+                    .switchIfEmpty( Mono.defer( () -> guard( read ).materialize() ) )
+                    .dematerialize();
+
+        } );
+
+    }
+
+}
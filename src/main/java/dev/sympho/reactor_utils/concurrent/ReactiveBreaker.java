@@ -1,25 +1,46 @@
 package dev.sympho.reactor_utils.concurrent;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
+import org.reactivestreams.Subscription;
 
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
-import reactor.core.publisher.Sinks.EmitResult;
 
 /**
  * A circuit breaker that is capable of monitoring any number of Mono publishers, then cancel
  * all of them on demand. Note that, to downstream subscribers of that mono, it will appear as
  * if the mono completed empty.
  *
- * <p>Note also that an instance of this class is single-use only; once {@link #shutoff()} is 
+ * <p>Note also that an instance of this class is single-use only; once {@link #shutoff()} is
  * called, any monos submitted for monitoring to the instance will be cancelled immediately.
  *
+ * <p>Breakers may be arranged in a tree by creating {@link #child() child breakers}, which
+ * are shut off together with their parent but may also be shut off on their own. This allows
+ * a group of related operations (for example, everything done on behalf of a session) to be
+ * shut off at once without tracking each of their breakers separately.
+ *
  * @version 1.0
  * @since 1.0
+ * @implNote Monitored subscriptions are tracked in a concurrent hash set, so registering and
+ *           unregistering a subscription (when it terminates or is cancelled) are constant-time
+ *           operations that do not contend with each other, no matter how many subscriptions
+ *           are being monitored at the same time.
  */
 public class ReactiveBreaker {
 
+    /**
+     * Parallelism threshold that causes {@link #shutoff()} to always run sequentially in the
+     * calling thread.
+     */
+    public static final long SEQUENTIAL = Long.MAX_VALUE;
+
     /** A cached closed breaker. */
     private static final ReactiveBreaker CLOSED = new ReactiveBreaker() {
 
@@ -31,48 +52,163 @@ public class ReactiveBreaker {
             return Mono.empty(); // Already closed
         }
 
+        @Override
+        public <T> Flux<T> monitor( final Flux<T> flux ) {
+            return Flux.empty(); // Already closed
+        }
+
+        @Override
+        public ReactiveBreaker child() {
+            return this; // Already closed
+        }
+
     };
 
-    /** The signal sink. */
-    private final Sinks.Empty<Void> sink;
+    /** Updater for {@link #off}. */
+    private static final AtomicIntegerFieldUpdater<ReactiveBreaker> OFF =
+            AtomicIntegerFieldUpdater.newUpdater( ReactiveBreaker.class, "off" );
+
+    /** The currently monitored subscriptions. */
+    private final ConcurrentHashMap<Registration, Boolean> registry;
+
+    /** The minimum amount of monitored subscriptions for shutoff to be done in parallel. */
+    private final long parallelismThreshold;
+
+    /** The signal that completes when the breaker is shut off. */
+    private final Mono<Void> signal;
+
+    /** The registration of this breaker in its parent, if it is a child breaker. */
+    private volatile @Nullable Registration parent;
+
+    /** Whether the breaker was shut off ({@code 1}) or not ({@code 0}). */
+    private volatile int off;
 
     /** Creates a new instance. */
     public ReactiveBreaker() {
 
-        this.sink = Sinks.empty();
+        this( SEQUENTIAL );
 
     }
 
     /**
-     * Cancels all monos monitored by this breaker.
-     * 
-     * <p>Calling this method on a breaker that is already shut off has no effect.
+     * Creates a new instance that cancels monitored subscriptions in parallel when shut off
+     * while monitoring a large amount of subscriptions.
      *
-     * @throws IllegalStateException if an error occurred.
+     * @param parallelismThreshold The (estimated) number of monitored subscriptions needed for
+     *                             {@link #shutoff()} to cancel them in parallel, using the
+     *                             {@link ForkJoinPool#commonPool() common pool}. Use
+     *                             {@link #SEQUENTIAL} to always cancel in the calling thread.
+     * @throws IllegalArgumentException if the threshold is not positive.
+     * @see ConcurrentHashMap#forEachKey(long, java.util.function.Consumer)
+     */
+    public ReactiveBreaker( final long parallelismThreshold ) throws IllegalArgumentException {
+
+        if ( parallelismThreshold <= 0 ) {
+            throw new IllegalArgumentException( "Parallelism threshold must be positive." );
+        }
+
+        this.registry = new ConcurrentHashMap<>();
+        this.parallelismThreshold = parallelismThreshold;
+        this.signal = new Signal();
+        this.parent = null;
+        this.off = 0;
+
+    }
+
+    /**
+     * Cancels all monos monitored by this breaker, and shuts off all of its
+     * {@link #child() children}.
+     *
+     * <p>Calling this method on a breaker that is already shut off has no effect.
      */
     @SideEffectFree // Technically can have side effects by proxy, but not the call itself
     public void shutoff() {
 
-        final var res = sink.tryEmitEmpty();
-        if ( res != EmitResult.OK && res != EmitResult.FAIL_TERMINATED ) {
-            throw new IllegalStateException( "Failed to break: " + res );
+        if ( OFF.compareAndSet( this, 0, 1 ) ) {
+
+            final var event = FlightEvents.beginShutoff( this );
+
+            final var registration = parent;
+            if ( registration != null ) {
+                registration.cancel(); // No longer needs to be notified
+            }
+
+            registry.forEachKey( parallelismThreshold, Registration::fire );
+
+            if ( event != null ) {
+                event.commit();
+            }
+
         }
 
     }
 
+    /**
+     * Creates a child breaker, which is shut off when this breaker is shut off. The child
+     * may also be shut off independently, which does not affect this breaker or any of
+     * its other children.
+     *
+     * <p>If this breaker is already shut off, the returned breaker is also already
+     * shut off.
+     *
+     * @return The new child breaker. It uses the same parallelism threshold as this breaker.
+     * @implNote A child breaker is tracked by its parent with a single registration, no matter
+     *           how many publishers the child is monitoring. That registration is removed when 
+     *           the child is shut off, so short-lived children do not accumulate in a 
+     *           long-lived parent.
+     */
+    public ReactiveBreaker child() {
+
+        final var child = new ReactiveBreaker( parallelismThreshold );
+        final var registration = new ChildRegistration( child );
+        child.parent = registration;
+        registration.register();
+        return child;
+
+    }
+
     /**
      * Monitors the given mono.
      *
+     * <p>If the breaker is already shut off, the returned mono completes empty immediately.
+     *
      * @param <T> The item type.
      * @param mono The mono to monitor.
      * @return The monitored mono.
      */
     @SideEffectFree
-    @SuppressWarnings( "unchecked" ) // Sink is always empty, generic doesn't matter
     public <T> Mono<T> monitor( final Mono<T> mono ) {
 
-        // Sink first in case it is already closed or closing
-        return Mono.firstWithSignal( ( Mono<T> ) sink.asMono(), mono );
+        return off == 0 ? mono.takeUntilOther( signal ) : Mono.empty();
+
+    }
+
+    /**
+     * Monitors the given flux. If the breaker is shut off while the flux is active, it is
+     * cancelled and completes after relaying any items that were already emitted.
+     *
+     * <p>If the breaker is already shut off, the returned flux completes empty immediately.
+     *
+     * @param <T> The item type.
+     * @param flux The flux to monitor.
+     * @return The monitored flux.
+     */
+    @SideEffectFree
+    public <T> Flux<T> monitor( final Flux<T> flux ) {
+
+        return off == 0 ? flux.takeUntilOther( signal ) : Flux.empty();
+
+    }
+
+    /**
+     * Determines the number of subscriptions currently being monitored, plus the number of
+     * children that were not shut off yet.
+     *
+     * @return The number of subscriptions and children.
+     */
+    int monitored() {
+
+        return registry.size();
 
     }
 
@@ -89,5 +225,164 @@ public class ReactiveBreaker {
         return CLOSED;
 
     }
-    
+
+    /**
+     * The signal that monitored publishers are bound to.
+     *
+     * @since 1.0
+     */
+    private final class Signal extends Mono<Void> {
+
+        /** Creates a new instance. */
+        Signal() {}
+
+        @Override
+        public void subscribe( final CoreSubscriber<? super Void> actual ) {
+
+            final var registration = new SubscriberRegistration( actual );
+            actual.onSubscribe( registration );
+            registration.register();
+
+        }
+
+    }
+
+    /**
+     * An entry in the registry of this breaker, which is notified when the breaker is 
+     * shut off.
+     *
+     * @since 1.0
+     */
+    private abstract class Registration {
+
+        /** Updater for {@link #done}. */
+        private static final AtomicIntegerFieldUpdater<Registration> DONE =
+                AtomicIntegerFieldUpdater.newUpdater( Registration.class, "done" );
+
+        /** Whether the registration was already terminated ({@code 1}) or not ({@code 0}). */
+        private volatile int done;
+
+        /**
+         * Creates a new instance.
+         */
+        Registration() {
+
+            this.done = 0;
+
+        }
+
+        /**
+         * Handles the breaker being shut off.
+         */
+        protected abstract void onShutoff();
+
+        /**
+         * Adds this registration to the registry, or notifies it immediately if the breaker
+         * is already shut off.
+         */
+        final void register() {
+
+            if ( off != 0 ) {
+                fire();
+                return;
+            }
+
+            registry.put( this, Boolean.TRUE );
+
+            if ( off != 0 ) { // Shutoff may have happened before registration
+                fire();
+            } else if ( done != 0 ) { // Cancelled before registration
+                registry.remove( this );
+            }
+
+        }
+
+        /**
+         * Notifies that the breaker was shut off, if not already terminated.
+         */
+        final void fire() {
+
+            if ( DONE.compareAndSet( this, 0, 1 ) ) {
+                registry.remove( this );
+                onShutoff();
+            }
+
+        }
+
+        /**
+         * Removes this registration without notifying it, if not already terminated.
+         */
+        public void cancel() {
+
+            if ( DONE.compareAndSet( this, 0, 1 ) ) {
+                registry.remove( this );
+            }
+
+        }
+
+    }
+
+    /**
+     * A subscription to the shutoff signal.
+     *
+     * @since 1.0
+     */
+    private final class SubscriberRegistration extends Registration implements Subscription {
+
+        /** The subscriber to notify. */
+        private final CoreSubscriber<? super Void> actual;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The subscriber to notify.
+         */
+        SubscriberRegistration( final CoreSubscriber<? super Void> actual ) {
+
+            this.actual = actual;
+
+        }
+
+        @Override
+        protected void onShutoff() {
+
+            actual.onComplete();
+
+        }
+
+        @Override
+        public void request( final long n ) {}
+
+    }
+
+    /**
+     * The registration of a child breaker.
+     *
+     * @since 1.0
+     */
+    private final class ChildRegistration extends Registration {
+
+        /** The child breaker. */
+        private final ReactiveBreaker child;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param child The child breaker.
+         */
+        ChildRegistration( final ReactiveBreaker child ) {
+
+            this.child = child;
+
+        }
+
+        @Override
+        protected void onShutoff() {
+
+            child.shutoff();
+
+        }
+
+    }
+
 }
@@ -0,0 +1,548 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.dataflow.qual.SideEffectFree;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A circuit breaker that, in addition to the terminal {@link #shutoff() shutoff} provided by
+ * {@link ReactiveBreaker}, tracks the outcome of monitored calls and stops admitting new calls
+ * while the downstream they call into appears to be unhealthy.
+ *
+ * <p>The breaker starts in the {@link State#CLOSED closed} state, where all calls are admitted
+ * and their outcomes are recorded in a sliding window of the most recent calls. Once the window
+ * contains enough calls and either the rate of failed calls or the rate of slow calls reaches
+ * the configured threshold, the breaker moves to the {@link State#OPEN open} state, where new
+ * calls fail immediately with a {@link CircuitBreakerOpenException}. After a configured amount
+ * of time, the breaker moves to the {@link State#HALF_OPEN half-open} state, where a limited
+ * number of trial calls is admitted; if the trial calls are healthy the breaker closes again,
+ * otherwise it re-opens.
+ *
+ * <p>Opening the circuit only affects calls made after the transition; calls that are already
+ * in progress are not interrupted. Use {@link #shutoff()} to interrupt all monitored calls.
+ *
+ * @version 1.0
+ * @since 1.0
+ * @implNote Call outcomes are recorded into a fixed-size ring of slots using only atomic
+ *           operations, so recording a call does not allocate nor block. Allocations only
+ *           happen on state transitions.
+ */
+public class ReactiveCircuitBreaker extends ReactiveBreaker {
+
+    /** The breaker configuration. */
+    private final Config config;
+
+    /** The scheduler used as a clock. */
+    private final Scheduler clock;
+
+    /** The current phase of the breaker. */
+    private final AtomicReference<Phase> phase;
+
+    /**
+     * Creates a new instance that uses the {@link Config#DEFAULT default configuration}.
+     */
+    public ReactiveCircuitBreaker() {
+
+        this( Config.DEFAULT );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param config The breaker configuration.
+     */
+    public ReactiveCircuitBreaker( final Config config ) {
+
+        this( config, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param config The breaker configuration.
+     * @param clock The scheduler to use as a time source.
+     */
+    public ReactiveCircuitBreaker( final Config config, final Scheduler clock ) {
+
+        this.config = Objects.requireNonNull( config );
+        this.clock = Objects.requireNonNull( clock );
+        this.phase = new AtomicReference<>( new Closed( config.windowSize() ) );
+
+    }
+
+    /**
+     * Retrieves the current state of the breaker.
+     *
+     * <p>Note that the transition from {@link State#OPEN open} to {@link State#HALF_OPEN
+     * half-open} is only made when a call is attempted, so this method may report the
+     * breaker as open even if the configured open duration already elapsed.
+     *
+     * @return The current state.
+     */
+    public State state() {
+
+        return phase.get().state();
+
+    }
+
+    /**
+     * Retrieves the current time from the clock.
+     *
+     * @return The current time, in nanoseconds.
+     */
+    private long now() {
+
+        return clock.now( TimeUnit.NANOSECONDS );
+
+    }
+
+    /**
+     * Attempts to admit a call.
+     *
+     * @return The phase that the call was admitted under, or {@code null} if it was rejected.
+     */
+    private @Nullable Phase admit() {
+
+        while ( true ) {
+
+            final var current = phase.get();
+            if ( current instanceof Open open ) {
+                if ( now() - open.openedAt < config.openDuration().toNanos() ) {
+                    return null;
+                }
+                phase.compareAndSet( current, new HalfOpen( config.halfOpenCalls() ) );
+            } else if ( current instanceof HalfOpen half ) {
+                return half.tryAdmit() ? current : null;
+            } else {
+                return current;
+            }
+
+        }
+
+    }
+
+    /**
+     * Records the outcome of a call.
+     *
+     * @param admitted The phase that the call was admitted under.
+     * @param start The time when the call started.
+     * @param failed Whether the call failed.
+     */
+    private void recordOutcome( final Phase admitted, final long start, final boolean failed ) {
+
+        final long end = now();
+        final boolean slow = end - start >= config.slowCallDuration().toNanos();
+
+        if ( admitted instanceof Closed closed ) {
+            if ( closed.window.add( failed, slow, config.minimumCalls(), config ) ) {
+                phase.compareAndSet( admitted, new Open( end ) );
+            }
+        } else if ( admitted instanceof HalfOpen half ) {
+            final var window = half.window;
+            final var unhealthy = window.add( failed, slow, config.halfOpenCalls(), config );
+            if ( unhealthy ) {
+                phase.compareAndSet( admitted, new Open( end ) );
+            } else if ( window.calls() >= config.halfOpenCalls() ) {
+                phase.compareAndSet( admitted, new Closed( config.windowSize() ) );
+            }
+        }
+
+    }
+
+    /**
+     * Creates the tracker for a call that was just admitted.
+     *
+     * @param admitted The phase that the call was admitted under.
+     * @return The tracker, to be invoked when the call terminates.
+     */
+    private Consumer<SignalType> track( final Phase admitted ) {
+
+        final long start = now();
+        return signal -> {
+            switch ( signal ) {
+                case ON_COMPLETE -> recordOutcome( admitted, start, false );
+                case ON_ERROR -> recordOutcome( admitted, start, true );
+                default -> {
+                    if ( admitted instanceof HalfOpen half ) {
+                        half.trials.incrementAndGet(); // Give back unused trial
+                    }
+                }
+            }
+        };
+
+    }
+
+    /**
+     * Monitors the given mono.
+     *
+     * <p>If the circuit is open when the returned mono is subscribed to, it fails with a
+     * {@link CircuitBreakerOpenException} without subscribing to the given mono. Otherwise,
+     * the outcome of the call is recorded when it terminates; cancelled calls are not
+     * recorded.
+     */
+    @Override
+    @SideEffectFree
+    public <T> Mono<T> monitor( final Mono<T> mono ) {
+
+        final var monitored = super.monitor( mono );
+        return Mono.defer( () -> {
+
+            final var admitted = admit();
+            if ( admitted == null ) {
+                return Mono.error( new CircuitBreakerOpenException( state() ) );
+            }
+            return monitored.doFinally( track( admitted ) );
+
+        } );
+
+    }
+
+    /**
+     * Monitors the given flux.
+     *
+     * <p>If the circuit is open when the returned flux is subscribed to, it fails with a
+     * {@link CircuitBreakerOpenException} without subscribing to the given flux. Otherwise,
+     * the outcome of the call is recorded when it terminates; cancelled calls are not
+     * recorded.
+     */
+    @Override
+    @SideEffectFree
+    public <T> Flux<T> monitor( final Flux<T> flux ) {
+
+        final var monitored = super.monitor( flux );
+        return Flux.defer( () -> {
+
+            final var admitted = admit();
+            if ( admitted == null ) {
+                return Flux.error( new CircuitBreakerOpenException( state() ) );
+            }
+            return monitored.doFinally( track( admitted ) );
+
+        } );
+
+    }
+
+    /**
+     * The state of a circuit breaker.
+     *
+     * @since 1.0
+     */
+    public enum State {
+
+        /** Calls are admitted and their outcomes recorded. */
+        CLOSED,
+
+        /** Calls are rejected. */
+        OPEN,
+
+        /** A limited number of trial calls are admitted to test if the circuit can close. */
+        HALF_OPEN
+
+    }
+
+    /**
+     * The configuration of a circuit breaker.
+     *
+     * @param failureRateThreshold The rate of failed calls, in the range {@code (0, 1]}, at
+     *                             which the circuit opens.
+     * @param slowCallRateThreshold The rate of slow calls, in the range {@code (0, 1]}, at
+     *                              which the circuit opens.
+     * @param slowCallDuration The duration after which a call is considered slow.
+     * @param windowSize The number of most recent calls considered while the circuit is closed.
+     * @param minimumCalls The minimum number of calls in the window before the failure and
+     *                     slow call rates are evaluated. Must not be larger than the window.
+     * @param openDuration How long the circuit stays open before allowing trial calls.
+     * @param halfOpenCalls The number of trial calls to admit while half-open.
+     * @since 1.0
+     */
+    public record Config(
+            float failureRateThreshold,
+            float slowCallRateThreshold,
+            Duration slowCallDuration,
+            int windowSize,
+            int minimumCalls,
+            Duration openDuration,
+            int halfOpenCalls
+    ) {
+
+        /**
+         * The default configuration. Opens the circuit when at least half of the last 100
+         * calls failed, or when all of them took over a minute; stays open for a minute, then
+         * tries 10 calls.
+         */
+        public static final Config DEFAULT = new Config(
+                0.5f, 1f, Duration.ofMinutes( 1 ),
+                100, 100,
+                Duration.ofMinutes( 1 ), 10
+        );
+
+        /**
+         * Validates the configuration.
+         *
+         * @throws IllegalArgumentException if a value is out of range.
+         */
+        public Config {
+
+            if ( !( failureRateThreshold > 0 && failureRateThreshold <= 1 ) ) {
+                throw new IllegalArgumentException( "Failure rate must be in (0, 1]." );
+            }
+            if ( !( slowCallRateThreshold > 0 && slowCallRateThreshold <= 1 ) ) {
+                throw new IllegalArgumentException( "Slow call rate must be in (0, 1]." );
+            }
+            if ( slowCallDuration.isNegative() || openDuration.isNegative() ) {
+                throw new IllegalArgumentException( "Durations must not be negative." );
+            }
+            if ( windowSize <= 0 || halfOpenCalls <= 0 ) {
+                throw new IllegalArgumentException( "Call counts must be positive." );
+            }
+            if ( minimumCalls <= 0 || minimumCalls > windowSize ) {
+                throw new IllegalArgumentException( "Minimum calls must be in [1, window]." );
+            }
+
+        }
+
+    }
+
+    /**
+     * A phase of the breaker. A new instance is created on every state transition, so that
+     * calls admitted in a previous phase do not affect the current one.
+     *
+     * @since 1.0
+     */
+    private abstract static class Phase {
+
+        /**
+         * Retrieves the state that this phase represents.
+         *
+         * @return The state.
+         */
+        abstract State state();
+
+    }
+
+    /**
+     * The closed phase.
+     *
+     * @since 1.0
+     */
+    private static final class Closed extends Phase {
+
+        /** The recorded outcomes. */
+        final Window window;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param size The size of the window.
+         */
+        Closed( final int size ) {
+
+            this.window = new Window( size );
+
+        }
+
+        @Override
+        State state() {
+            return State.CLOSED;
+        }
+
+    }
+
+    /**
+     * The open phase.
+     *
+     * @since 1.0
+     */
+    private static final class Open extends Phase {
+
+        /** When the circuit was opened. */
+        final long openedAt;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param openedAt When the circuit was opened.
+         */
+        Open( final long openedAt ) {
+
+            this.openedAt = openedAt;
+
+        }
+
+        @Override
+        State state() {
+            return State.OPEN;
+        }
+
+    }
+
+    /**
+     * The half-open phase.
+     *
+     * @since 1.0
+     */
+    private static final class HalfOpen extends Phase {
+
+        /** The outcomes of the trial calls. */
+        final Window window;
+
+        /** The number of trial calls that may still be admitted. */
+        final AtomicInteger trials;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param calls The number of trial calls.
+         */
+        HalfOpen( final int calls ) {
+
+            this.window = new Window( calls );
+            this.trials = new AtomicInteger( calls );
+
+        }
+
+        /**
+         * Attempts to admit a trial call.
+         *
+         * @return {@code true} if the call was admitted, {@code false} if all trial calls
+         *         were already admitted.
+         */
+        boolean tryAdmit() {
+
+            int remaining;
+            do {
+                remaining = trials.get();
+                if ( remaining <= 0 ) {
+                    return false;
+                }
+            } while ( !trials.compareAndSet( remaining, remaining - 1 ) );
+            return true;
+
+        }
+
+        @Override
+        State state() {
+            return State.HALF_OPEN;
+        }
+
+    }
+
+    /**
+     * Count-based sliding window of call outcomes.
+     *
+     * @since 1.0
+     */
+    private static final class Window {
+
+        /** Flag for a slot that contains an outcome. */
+        private static final int RECORDED = 1;
+
+        /** Flag for a failed call. */
+        private static final int FAILED = 2;
+
+        /** Flag for a slow call. */
+        private static final int SLOW = 4;
+
+        /** The outcome slots. */
+        private final AtomicIntegerArray slots;
+
+        /** The index of the next slot to write. */
+        private final AtomicLong next;
+
+        /** The number of recorded calls. */
+        private final AtomicInteger calls;
+
+        /** The number of failed calls. */
+        private final AtomicInteger failed;
+
+        /** The number of slow calls. */
+        private final AtomicInteger slow;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param size The number of slots.
+         */
+        Window( final int size ) {
+
+            this.slots = new AtomicIntegerArray( size );
+            this.next = new AtomicLong();
+            this.calls = new AtomicInteger();
+            this.failed = new AtomicInteger();
+            this.slow = new AtomicInteger();
+
+        }
+
+        /**
+         * Retrieves the number of recorded calls.
+         *
+         * @return The number of calls.
+         */
+        int calls() {
+
+            return calls.get();
+
+        }
+
+        /**
+         * Records an outcome, evicting the oldest outcome if the window is full.
+         *
+         * @param isFailed Whether the call failed.
+         * @param isSlow Whether the call was slow.
+         * @param minimum The minimum number of calls required for the rates to be evaluated.
+         * @param config The configuration to use.
+         * @return {@code true} if, after recording the outcome, the window has at least the
+         *         minimum number of calls and either rate reached its threshold.
+         */
+        boolean add( final boolean isFailed, final boolean isSlow, final int minimum,
+                final Config config ) {
+
+            final int outcome = RECORDED | ( isFailed ? FAILED : 0 ) | ( isSlow ? SLOW : 0 );
+            final int slot = ( int ) ( next.getAndIncrement() % slots.length() );
+            final int evicted = slots.getAndSet( slot, outcome );
+
+            final int total = evicted == 0 ? calls.incrementAndGet() : calls.get();
+            final int failures = failed.addAndGet( flag( outcome, FAILED )
+                    - flag( evicted, FAILED ) );
+            final int slows = slow.addAndGet( flag( outcome, SLOW ) - flag( evicted, SLOW ) );
+
+            if ( total < minimum ) {
+                return false;
+            }
+            return failures >= config.failureRateThreshold() * total
+                    || slows >= config.slowCallRateThreshold() * total;
+
+        }
+
+        /**
+         * Determines whether an outcome has a flag.
+         *
+         * @param outcome The outcome.
+         * @param flag The flag.
+         * @return {@code 1} if the outcome has the flag, {@code 0} otherwise.
+         */
+        private static int flag( final int outcome, final int flag ) {
+
+            return ( outcome & flag ) == 0 ? 0 : 1;
+
+        }
+
+    }
+
+}
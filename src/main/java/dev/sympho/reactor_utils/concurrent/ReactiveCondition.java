@@ -0,0 +1,76 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.function.BooleanSupplier;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Condition variable associated with a {@link ReactiveLock}, allowing a task that holds the
+ * lock to wait for another task to signal a change in the state guarded by the lock.
+ *
+ * <p>As with {@link java.util.concurrent.locks.Condition}, spurious wakeups are possible
+ * (for example, another task may acquire the lock and change the state between the signal
+ * and the waiter re-acquiring the lock), so the awaited state should always be checked
+ * again after waking up. {@link #awaitUntil(AcquiredLock, BooleanSupplier)} takes care of
+ * that.
+ *
+ * @see ReactiveLock#newCondition()
+ * @version 1.0
+ * @since 1.0
+ */
+public interface ReactiveCondition {
+
+    /**
+     * Releases the given lock and waits until this condition is signalled, then re-acquires
+     * the lock.
+     *
+     * <p>The wait is registered before the lock is released, so a signal made by a task
+     * that acquires the lock afterwards is never missed. The lock is released when the
+     * returned Mono is subscribed to.
+     *
+     * <p>It is safe to cancel a subscription to the returned Mono. If it is cancelled
+     * while waiting for a signal, any signal it received is passed on to another waiter.
+     *
+     * @param lock The held lock of the associated {@link ReactiveLock}.
+     * @return A Mono that issues the re-acquired lock once signalled.
+     */
+    Mono<AcquiredLock> await( AcquiredLock lock );
+
+    /**
+     * Wakes up the waiter that has been waiting for the longest time, if any.
+     *
+     * <p>This should be called while holding the associated lock, after changing the
+     * guarded state. Signals made while no task is waiting are lost.
+     */
+    void signal();
+
+    /**
+     * Wakes up all current waiters.
+     *
+     * <p>This should be called while holding the associated lock, after changing the
+     * guarded state. Signals made while no task is waiting are lost.
+     */
+    void signalAll();
+
+    /**
+     * Waits until the given condition holds, {@link #await(AcquiredLock) waiting} for a
+     * signal each time it is checked and found to not hold.
+     *
+     * <p>The condition is always checked while holding the lock.
+     *
+     * @param lock The held lock of the associated {@link ReactiveLock}.
+     * @param condition The condition to wait for.
+     * @return A Mono that issues the held lock once the condition holds (which may be the
+     *         given lock, if it already holds).
+     */
+    default Mono<AcquiredLock> awaitUntil( final AcquiredLock lock,
+            final BooleanSupplier condition ) {
+
+        return Mono.defer( () -> condition.getAsBoolean()
+                ? Mono.just( lock )
+                : await( lock ).flatMap( l -> awaitUntil( l, condition ) )
+        );
+
+    }
+
+}
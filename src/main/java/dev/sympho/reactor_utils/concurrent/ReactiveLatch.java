@@ -119,7 +119,7 @@ public class ReactiveLatch implements Function<Object, Publisher<Void>> {
     @Pure
     public Mono<Void> await() {
 
-        return sink.asMono()
+        return FlightEvents.recordAwait( sink.asMono(), this )
                 .transform( transformer::transformAwait );
 
     }
@@ -0,0 +1,431 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import dev.sympho.reactor_utils.concurrent.transformer.LatchTransformer;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+/**
+ * Map of {@link ReactiveLatch reactive latches}, where each key has an independent latch.
+ * All methods of this class are thread-safe.
+ *
+ * <p>The latch of a key is created on first use, and needs to be counted down the
+ * configured number of times to open. Once it opens (or is failed), it is removed from
+ * the map as soon as the callers that were waiting on it are notified; that is, using the
+ * same key afterwards starts a new latch, which needs to be counted down the full number
+ * of times again. In particular, awaiting a key after its latch opened waits for the
+ * <i>next</i> latch, and failing a key that has no latch has no effect.
+ *
+ * @param <K> The key type.
+ * @see ReactiveLatch
+ * @version 1.0
+ * @since 1.0
+ * @implNote All the state of a key is kept in a single node, and waiting callers are kept
+ *           in an intrusive list in the node, so a waiting caller only costs its
+ *           subscription. A node that has not been counted down is indistinguishable from
+ *           a new one, so it is removed as soon as its last waiter is cancelled; hence,
+ *           the map only holds keys that have waiters or were partially counted down.
+ */
+public final class ReactiveLatchMap<K extends @NonNull Object> {
+
+    /** The nodes of the keys that currently have a latch. */
+    private final ConcurrentMap<K, Node> latches;
+
+    /** How many times each latch needs to be counted down to open. */
+    private final long needed;
+
+    /** Transformer applied to the await mono before returning it. */
+    private final LatchTransformer transformer;
+
+    /**
+     * Creates a new map where each latch opens after counting down a given number of times.
+     *
+     * @param needed How many times {@link #countDown(Object)} needs to be called on a key
+     *               before its latch opens.
+     * @throws IllegalArgumentException if the given value is not positive (>0).
+     */
+    public ReactiveLatchMap( final long needed ) throws IllegalArgumentException {
+
+        this( needed, m -> m );
+
+    }
+
+    /**
+     * Creates a new map where each latch opens after counting down a given number of times.
+     *
+     * @param needed How many times {@link #countDown(Object)} needs to be called on a key
+     *               before its latch opens.
+     * @param transformer A transform function to apply to the result of
+     *                    {@link #await(Object)} before returning it.
+     * @throws IllegalArgumentException if the given value is not positive (>0).
+     */
+    public ReactiveLatchMap( final long needed, final LatchTransformer transformer )
+            throws IllegalArgumentException {
+
+        if ( needed <= 0 ) {
+            throw new IllegalArgumentException( "Latch must require a positive number." );
+        }
+
+        this.latches = new ConcurrentHashMap<>();
+        this.needed = needed;
+        this.transformer = Objects.requireNonNull( transformer );
+
+    }
+
+    /**
+     * Creates a new map where each latch opens after {@link #countDown(Object)} is called
+     * once on its key.
+     */
+    public ReactiveLatchMap() {
+
+        this( 1L );
+
+    }
+
+    /**
+     * Creates a new map where each latch opens after {@link #countDown(Object)} is called
+     * once on its key.
+     *
+     * @param transformer A transform function to apply to the result of
+     *                    {@link #await(Object)} before returning it.
+     */
+    public ReactiveLatchMap( final LatchTransformer transformer ) {
+
+        this( 1L, transformer );
+
+    }
+
+    /**
+     * Determines the number of keys that currently have a latch.
+     *
+     * @return The number of latches.
+     */
+    int latches() {
+
+        return latches.size();
+
+    }
+
+    /**
+     * Creates a Mono that emits a completion signal when the latch of the given key opens,
+     * or an error signal if it is failed.
+     *
+     * <p>The latch is created (if needed) when the returned Mono is subscribed to, rather
+     * than when this method is called.
+     *
+     * @param key The key.
+     * @return The Mono to wait on.
+     */
+    public Mono<Void> await( final K key ) {
+
+        return FlightEvents.recordAwait( new Await( key ), this )
+                .transform( transformer::transformAwait );
+
+    }
+
+    /**
+     * Counts down the latch of the given key, creating it if needed. If its internal counter
+     * reaches zero, the latch opens and is removed.
+     *
+     * @param key The key.
+     */
+    public void countDown( final K key ) {
+
+        while ( true ) {
+
+            var node = latches.get( key );
+            if ( node == null ) {
+                if ( needed == 1 ) {
+                    return; // Would open immediately with no one to notify
+                }
+                node = latches.computeIfAbsent( key, Node::new );
+            }
+
+            final @Nullable Waiter opened;
+            synchronized ( node ) {
+                if ( node.removed ) {
+                    continue; // Latch opened or failed concurrently, try again
+                }
+                if ( --node.remaining > 0 ) {
+                    return;
+                }
+                opened = node.remove();
+            }
+
+            signal( opened, null );
+            return;
+
+        }
+
+    }
+
+    /**
+     * Fails the latch of the given key, issuing an error signal to those waiting on it and
+     * removing it.
+     *
+     * <p>Has no effect if the key does not have a latch.
+     *
+     * @param key The key.
+     * @param error The error to issue.
+     */
+    public void fail( final K key, final Throwable error ) {
+
+        while ( true ) {
+
+            final var node = latches.get( key );
+            if ( node == null ) {
+                return;
+            }
+
+            final @Nullable Waiter failed;
+            synchronized ( node ) {
+                if ( node.removed ) {
+                    continue; // Latch opened or failed concurrently, try again
+                }
+                failed = node.remove();
+            }
+
+            signal( failed, error );
+            return;
+
+        }
+
+    }
+
+    /**
+     * Notifies the waiters of a removed node.
+     *
+     * @param head The first waiter, if any.
+     * @param error The error to issue, or {@code null} to issue a completion.
+     */
+    private void signal( final @Nullable Waiter head, final @Nullable Throwable error ) {
+
+        var waiter = head;
+        while ( waiter != null ) {
+
+            final var next = waiter.next;
+            waiter.prev = null;
+            waiter.next = null;
+
+            if ( !waiter.isCancelled() ) {
+                if ( error == null ) {
+                    waiter.onComplete();
+                } else {
+                    waiter.onError( error );
+                }
+            }
+
+            waiter = next;
+
+        }
+
+    }
+
+    /**
+     * Waits on the latch of a key.
+     *
+     * @since 1.0
+     */
+    private final class Await extends Mono<Void> {
+
+        /** The key. */
+        private final K key;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key.
+         */
+        Await( final K key ) {
+
+            this.key = key;
+
+        }
+
+        @Override
+        public void subscribe( final CoreSubscriber<? super Void> actual ) {
+
+            final var waiter = new Waiter( actual );
+            actual.onSubscribe( waiter );
+
+            Node node;
+            do {
+                node = latches.computeIfAbsent( key, Node::new );
+            } while ( !node.enqueue( waiter ) );
+
+            if ( waiter.isCancelled() ) {
+                node.dequeue( waiter ); // Cancelled before being linked
+            }
+
+        }
+
+    }
+
+    /**
+     * A caller waiting on a latch.
+     *
+     * @since 1.0
+     */
+    private final class Waiter extends Operators.MonoSubscriber<Void, Void> {
+
+        /** The previous waiter in the list. Only accessed while holding the node monitor. */
+        @Nullable Waiter prev;
+
+        /** The next waiter in the list. Only accessed while holding the node monitor. */
+        @Nullable Waiter next;
+
+        /** Whether the waiter is in the list. Only accessed while holding the node monitor. */
+        boolean queued;
+
+        /** The node this waiter was queued on, if queued yet. */
+        private volatile @Nullable Node node;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The subscriber to notify.
+         */
+        @SuppressWarnings( "argument" ) // Weird inference
+        Waiter( final CoreSubscriber<? super Void> actual ) {
+
+            super( actual );
+
+        }
+
+        @Override
+        public void cancel() {
+
+            super.cancel();
+            final var n = node;
+            if ( n != null ) {
+                n.dequeue( this );
+            }
+
+        }
+
+    }
+
+    /**
+     * The latch of a key. All access must be synchronized on the instance.
+     *
+     * @since 1.0
+     */
+    private final class Node {
+
+        /** The key. */
+        private final K key;
+
+        /** How many more times the latch needs to be counted down. */
+        private long remaining;
+
+        /** The first waiter. */
+        private @Nullable Waiter head;
+
+        /** The last waiter. */
+        private @Nullable Waiter tail;
+
+        /** Whether the node was removed from the map. */
+        private boolean removed;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key.
+         */
+        Node( final K key ) {
+
+            this.key = key;
+            this.remaining = needed;
+
+        }
+
+        /**
+         * Adds a waiter to the list.
+         *
+         * @param waiter The waiter.
+         * @return {@code true} if the waiter was added, {@code false} if the node was
+         *         already removed from the map.
+         */
+        synchronized boolean enqueue( final Waiter waiter ) {
+
+            if ( removed ) {
+                return false;
+            }
+
+            final var last = tail;
+            if ( last == null ) {
+                head = waiter;
+            } else {
+                last.next = waiter;
+                waiter.prev = last;
+            }
+            tail = waiter;
+            waiter.queued = true;
+            waiter.node = this;
+            return true;
+
+        }
+
+        /**
+         * Removes a cancelled waiter from the list, removing this node from the map if
+         * it is left unused.
+         *
+         * @param waiter The waiter.
+         */
+        synchronized void dequeue( final Waiter waiter ) {
+
+            if ( removed || !waiter.queued ) {
+                return; // Already notified or dequeued
+            }
+
+            final var before = waiter.prev;
+            final var after = waiter.next;
+            if ( before == null ) {
+                head = after;
+            } else {
+                before.next = after;
+            }
+            if ( after == null ) {
+                tail = before;
+            } else {
+                after.prev = before;
+            }
+            waiter.prev = null;
+            waiter.next = null;
+            waiter.queued = false;
+
+            if ( head == null && remaining == needed ) {
+                remove();
+            }
+
+        }
+
+        /**
+         * Removes this node from the map, detaching its waiters. Must be called while
+         * holding the monitor.
+         *
+         * @return The first waiter, if any. The list may be traversed without holding the
+         *         monitor.
+         */
+        @Nullable Waiter remove() {
+
+            removed = true;
+            latches.remove( key, this );
+
+            final var first = head;
+            head = null;
+            tail = null;
+            return first;
+
+        }
+
+    }
+
+}
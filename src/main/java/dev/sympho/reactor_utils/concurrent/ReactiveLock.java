@@ -1,7 +1,11 @@
 package dev.sympho.reactor_utils.concurrent;
 
+import java.time.Duration;
+
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 /**
  * Lock that allows waiting for availability using reactive streams.
@@ -34,6 +38,21 @@ public interface ReactiveLock extends Lock {
      */
     Mono<AcquiredLock> acquire();
 
+    /**
+     * Creates a new condition associated with this lock.
+     *
+     * <p>Awaiting the condition releases the held lock while waiting and re-acquires it
+     * through {@link #acquire()} once signalled, so waiters re-enter the lock in the same
+     * order as any other acquisition.
+     *
+     * @return The new condition.
+     */
+    default ReactiveCondition newCondition() {
+
+        return new LockCondition( this );
+
+    }
+
     /**
      * Guards a Mono with this lock, acquiring the lock before subscribing to the Mono
      * and releasing the lock when it completes. This ensures that only one subscription
@@ -42,14 +61,12 @@ public interface ReactiveLock extends Lock {
      * @param <T> The element type.
      * @param source The Mono to guard.
      * @return The guarded Mono.
+     * @implNote Acquiring, relaying and releasing are performed by a single operator,
+     *           which is lighter than composing them with {@link Mono#usingWhen}.
      */
     default <T> Mono<T> guard( final Mono<T> source ) {
 
-        return Mono.usingWhen( 
-                acquire(), // Acquire lock
-                l -> source, // Relay mono
-                l -> Mono.fromRunnable( l::release ) // Release lock
-        );
+        return MonoGuard.guard( acquire(), source );
 
     }
 
@@ -61,14 +78,87 @@ public interface ReactiveLock extends Lock {
      * @param <T> The element type.
      * @param source The Flux to guard.
      * @return The guarded Flux.
+     * @implNote Acquiring, relaying and releasing are performed by a single operator,
+     *           which is lighter than composing them with {@link Flux#usingWhen}.
      */
     default <T> Flux<T> guard( final Flux<T> source ) {
 
-        return Flux.usingWhen( 
-                acquire(), // Acquire lock
-                l -> source, // Relay flux
-                l -> Mono.fromRunnable( l::release ) // Release lock
-        );
+        return FluxGuard.guard( acquire(), source );
+
+    }
+
+    /**
+     * Guards a Flux with this lock, acquiring the lock separately for each batch of up to
+     * the given number of elements.
+     *
+     * <p>The lock is acquired before the source is subscribed to and before each batch is
+     * requested from it, and released once all the elements of the batch have been received.
+     * A batch may end early if the downstream has no outstanding demand, so that the lock is
+     * not held while waiting for a slow consumer.
+     *
+     * <p>This allows other tasks to acquire the lock between batches of a long stream,
+     * trading off fairness against the overhead of acquiring the lock.
+     *
+     * @param <T> The element type.
+     * @param source The Flux to guard.
+     * @param batchSize The maximum number of elements to receive per acquisition.
+     * @return The guarded Flux.
+     * @throws IllegalArgumentException if the batch size is not positive.
+     */
+    default <T> Flux<T> guardEach( final Flux<T> source, final int batchSize )
+            throws IllegalArgumentException {
+
+        if ( batchSize <= 0 ) {
+            throw new IllegalArgumentException( "Batch size must be positive." );
+        }
+        return FluxGuardBatched.guard( this, source, batchSize, FluxGuardBatched.NO_WINDOW,
+                Schedulers.parallel() );
+
+    }
+
+    /**
+     * Guards a Flux with this lock, acquiring the lock separately for each window of time,
+     * using the {@link Schedulers#parallel() parallel scheduler} as the clock.
+     *
+     * @param <T> The element type.
+     * @param source The Flux to guard.
+     * @param window The maximum time to hold the lock for per acquisition.
+     * @return The guarded Flux.
+     * @throws IllegalArgumentException if the window is not positive.
+     * @see #guardWindowed(Flux, Duration, Scheduler)
+     */
+    default <T> Flux<T> guardWindowed( final Flux<T> source, final Duration window )
+            throws IllegalArgumentException {
+
+        return guardWindowed( source, window, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Guards a Flux with this lock, acquiring the lock separately for each window of time.
+     *
+     * <p>The lock is acquired before the source is subscribed to and before each window,
+     * and no more elements are requested from the source once the window is over; the
+     * lock is then released as soon as the element that was already requested is received.
+     * Elements are requested one at a time, so the lock may be held past the end of the
+     * window for as long as it takes the source to produce one element. A window may also
+     * end early if the downstream has no outstanding demand.
+     *
+     * @param <T> The element type.
+     * @param source The Flux to guard.
+     * @param window The maximum time to hold the lock for per acquisition.
+     * @param clock The scheduler to use as the clock.
+     * @return The guarded Flux.
+     * @throws IllegalArgumentException if the window is not positive.
+     */
+    default <T> Flux<T> guardWindowed( final Flux<T> source, final Duration window,
+            final Scheduler clock ) throws IllegalArgumentException {
+
+        if ( window.isNegative() || window.isZero() ) {
+            throw new IllegalArgumentException( "Window must be positive." );
+        }
+        return FluxGuardBatched.guard( this, source, Integer.MAX_VALUE, window.toNanos(),
+                clock );
 
     }
 
@@ -0,0 +1,562 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Map of pending promises, used to match results that are delivered out-of-band (such as
+ * responses on a multiplexed connection) to the callers waiting for them.
+ * All methods of this class are thread-safe.
+ *
+ * <p>A promise is registered under a key by {@link #await(Object)}, and is settled by
+ * the first call to {@link #complete(Object, Object)} or {@link #fail(Object, Throwable)}
+ * for that key, or by expiring once the configured time-to-live elapses (in which case
+ * it fails with a {@link TimeoutException}). Settled promises are removed from the map, so
+ * a key may be reused afterwards.
+ *
+ * <p>Unlike most Monos, the one returned by {@link #await(Object)} registers the promise
+ * when it is created rather than when it is subscribed to, so a result that is delivered
+ * before the caller subscribes is not lost; it is retained by the returned Mono instead.
+ * This allows the typical pattern of registering a promise, sending a request, and then
+ * subscribing to the promise.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ * @version 1.0
+ * @since 1.0
+ * @implNote Each promise is a single node that holds its outcome and an intrusive list of
+ *           its subscribers, so a promise costs the map entry and the node, plus the
+ *           subscription of each subscriber; no sink is allocated. Cancelled subscribers
+ *           are only dropped once the promise is settled, which happens at the latest when
+ *           it expires. As all promises have the same time-to-live, pending promises are
+ *           kept in intrusive lists in registration order, which is also their expiration
+ *           order. So that registering and settling promises from several threads does not
+ *           contend on a single lock, the lists are striped by key hash (much like the
+ *           segments of a {@link ConcurrentHashMap}), with at least as many stripes as
+ *           there are processors; each stripe has its own lock and its own timer, armed
+ *           only while the stripe has pending promises.
+ */
+public final class ReactivePromiseMap<K extends @NonNull Object, V extends @NonNull Object> {
+
+    /**
+     * The minimum delay of the expiration timer, in nanoseconds. Promises may expire up to
+     * this much later than their deadline, so that the timer does not fire once per promise
+     * when promises are registered at a high rate.
+     */
+    private static final long RESOLUTION = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    /**
+     * The number of expiration stripes. A power of two that is larger than the number of
+     * processors.
+     */
+    private static final int STRIPES =
+            Integer.highestOneBit( Runtime.getRuntime().availableProcessors() ) << 1;
+
+    /** The shift used to mix the high bits of key hashes into the stripe index. */
+    private static final int SPREAD = 16;
+
+    /** The pending promises. */
+    private final ConcurrentMap<K, Node> promises;
+
+    /** How long promises stay pending before expiring. */
+    private final Duration ttl;
+
+    /** The scheduler used as a clock and for expiring promises. */
+    private final Scheduler scheduler;
+
+    /** The expiration stripes. */
+    private final List<Expiry> stripes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ttl How long a promise stays pending before expiring.
+     * @throws IllegalArgumentException if the TTL is not positive.
+     */
+    public ReactivePromiseMap( final Duration ttl ) throws IllegalArgumentException {
+
+        this( ttl, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param ttl How long a promise stays pending before expiring.
+     * @param scheduler The scheduler to use as a clock and to expire promises.
+     * @throws IllegalArgumentException if the TTL is not positive.
+     */
+    public ReactivePromiseMap( final Duration ttl, final Scheduler scheduler )
+            throws IllegalArgumentException {
+
+        if ( ttl.isNegative() || ttl.isZero() ) {
+            throw new IllegalArgumentException( "TTL must be positive." );
+        }
+
+        this.promises = new ConcurrentHashMap<>();
+        this.ttl = ttl;
+        this.scheduler = Objects.requireNonNull( scheduler );
+        this.stripes = new ArrayList<>( STRIPES );
+        for ( int i = 0; i < STRIPES; i++ ) {
+            this.stripes.add( new Expiry() );
+        }
+
+    }
+
+    /**
+     * Retrieves the current time.
+     *
+     * @return The current time, in nanoseconds.
+     */
+    private long now() {
+
+        return scheduler.now( TimeUnit.NANOSECONDS );
+
+    }
+
+    /**
+     * Determines the expiration stripe of a key.
+     *
+     * @param key The key.
+     * @return The stripe.
+     */
+    private Expiry stripe( final K key ) {
+
+        final int h = key.hashCode();
+        return stripes.get( ( h ^ ( h >> SPREAD ) ) & ( STRIPES - 1 ) );
+
+    }
+
+    /**
+     * Determines the number of pending promises.
+     *
+     * @return The number of promises.
+     */
+    int size() {
+
+        return promises.size();
+
+    }
+
+    /**
+     * Registers a promise under the given key, and creates a Mono that emits its value once
+     * it is completed, or an error signal if it fails or expires.
+     *
+     * <p>If there is already a pending promise under the key, the returned Mono waits on
+     * that promise instead (and thus shares its expiration).
+     *
+     * <p>The promise is registered immediately, rather than when the returned Mono is
+     * subscribed to. The returned Mono may be subscribed to any number of times, with all
+     * subscribers receiving the same outcome; subscribing after the promise was settled
+     * receives the outcome immediately.
+     *
+     * @param key The key.
+     * @return The Mono to wait on.
+     */
+    public Mono<V> await( final K key ) {
+
+        var node = promises.get( key );
+        if ( node == null ) {
+            final var created = new Node( key, now() + ttl.toNanos(), stripe( key ) );
+            node = promises.putIfAbsent( key, created );
+            if ( node == null ) {
+                created.expiry.add( created );
+                node = created;
+            }
+        }
+        return new Promise( node );
+
+    }
+
+    /**
+     * Completes the pending promise under the given key, issuing the given value to those
+     * waiting on it.
+     *
+     * @param key The key.
+     * @param value The value to issue.
+     * @return {@code true} if a pending promise was completed, {@code false} if there was
+     *         no pending promise under the key.
+     */
+    public boolean complete( final K key, final V value ) {
+
+        final var node = promises.remove( key );
+        if ( node == null ) {
+            return false;
+        }
+
+        node.expiry.remove( node );
+        node.settle( value, null );
+        return true;
+
+    }
+
+    /**
+     * Fails the pending promise under the given key, issuing the given error to those
+     * waiting on it.
+     *
+     * @param key The key.
+     * @param error The error to issue.
+     * @return {@code true} if a pending promise was failed, {@code false} if there was
+     *         no pending promise under the key.
+     */
+    public boolean fail( final K key, final Throwable error ) {
+
+        final var node = promises.remove( key );
+        if ( node == null ) {
+            return false;
+        }
+
+        node.expiry.remove( node );
+        node.settle( null, error );
+        return true;
+
+    }
+
+    /**
+     * Waits on a promise.
+     *
+     * @since 1.0
+     */
+    private final class Promise extends Mono<V> {
+
+        /** The promise. */
+        private final Node node;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param node The promise.
+         */
+        Promise( final Node node ) {
+
+            this.node = node;
+
+        }
+
+        @Override
+        public void subscribe( final CoreSubscriber<? super V> actual ) {
+
+            final var waiter = new Waiter( actual );
+            actual.onSubscribe( waiter );
+            node.subscribe( waiter );
+
+        }
+
+    }
+
+    /**
+     * A subscriber waiting on a promise.
+     *
+     * @since 1.0
+     */
+    private final class Waiter extends Operators.MonoSubscriber<V, V> {
+
+        /** The next waiter in the list. Only accessed while holding the node monitor. */
+        @Nullable Waiter next;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The subscriber to notify.
+         */
+        @SuppressWarnings( "argument" ) // Weird inference
+        Waiter( final CoreSubscriber<? super V> actual ) {
+
+            super( actual );
+
+        }
+
+        /**
+         * Issues the outcome of the promise.
+         *
+         * @param value The value, if completed.
+         * @param error The error, if failed. Ignored if the value is given.
+         */
+        void signal( final @Nullable V value, final @Nullable Throwable error ) {
+
+            if ( value != null ) {
+                complete( value );
+            } else if ( error != null && !isCancelled() ) {
+                onError( error );
+            }
+
+        }
+
+    }
+
+    /**
+     * A promise. The outcome and the subscribers are only accessed while holding the
+     * monitor of the instance; the links in the expiration list are only accessed while
+     * holding the monitor of its {@link Expiry stripe}.
+     *
+     * @since 1.0
+     */
+    private final class Node {
+
+        /** The key. */
+        final K key;
+
+        /** When the promise expires, in nanoseconds. */
+        final long deadline;
+
+        /** The expiration stripe. */
+        final Expiry expiry;
+
+        /** The previous promise in the expiration list. */
+        @Nullable Node before;
+
+        /** The next promise in the expiration list. */
+        @Nullable Node after;
+
+        /** Whether the promise is in the expiration list. */
+        boolean tracked;
+
+        /** Whether the promise was already removed from the expiration list, if ever added. */
+        boolean untracked;
+
+        /** The value, if completed. */
+        private @Nullable V value;
+
+        /** The error, if failed. */
+        private @Nullable Throwable error;
+
+        /** The subscribers waiting on the promise, in reverse subscription order. */
+        private @Nullable Waiter waiters;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key.
+         * @param deadline When the promise expires, in nanoseconds.
+         * @param expiry The expiration stripe.
+         */
+        Node( final K key, final long deadline, final Expiry expiry ) {
+
+            this.key = key;
+            this.deadline = deadline;
+            this.expiry = expiry;
+
+        }
+
+        /**
+         * Adds a subscriber, or issues the outcome to it if the promise was settled.
+         *
+         * @param waiter The subscriber.
+         */
+        void subscribe( final Waiter waiter ) {
+
+            final @Nullable V v;
+            final @Nullable Throwable e;
+            synchronized ( this ) {
+                v = value;
+                e = error;
+                if ( v == null && e == null ) {
+                    waiter.next = waiters;
+                    waiters = waiter;
+                    return;
+                }
+            }
+
+            waiter.signal( v, e );
+
+        }
+
+        /**
+         * Settles the promise, issuing the outcome to its subscribers. Must only be called
+         * by the caller that removed the promise from the map.
+         *
+         * @param v The value, if completed.
+         * @param e The error, if failed.
+         */
+        void settle( final @Nullable V v, final @Nullable Throwable e ) {
+
+            @Nullable Waiter waiter;
+            synchronized ( this ) {
+                value = v;
+                error = e;
+                waiter = waiters;
+                waiters = null;
+            }
+
+            while ( waiter != null ) {
+                final var next = waiter.next;
+                waiter.next = null;
+                waiter.signal( v, e );
+                waiter = next;
+            }
+
+        }
+
+    }
+
+    /**
+     * A stripe of the pending promises, in expiration order, and the timer that expires
+     * them. All access must be synchronized on the instance.
+     *
+     * @since 1.0
+     */
+    private final class Expiry implements Runnable {
+
+        /** The promise that expires first. */
+        private @Nullable Node head;
+
+        /** The promise that expires last. */
+        private @Nullable Node tail;
+
+        /** The timer for expiring the first promise, if armed. */
+        private @Nullable Disposable timer;
+
+        /** Creates a new instance. */
+        Expiry() {}
+
+        /**
+         * Adds a promise, arming the timer if needed. Has no effect if the promise was
+         * already settled.
+         *
+         * @param node The promise.
+         */
+        synchronized void add( final Node node ) {
+
+            if ( node.untracked ) {
+                return; // Settled before being added
+            }
+
+            final var last = tail;
+            if ( last == null ) {
+                head = node;
+            } else {
+                last.after = node;
+                node.before = last;
+            }
+            tail = node;
+            node.tracked = true;
+
+            if ( timer == null ) {
+                arm( node.deadline );
+            }
+
+        }
+
+        /**
+         * Removes a promise that is being settled.
+         *
+         * @param node The promise.
+         */
+        synchronized void remove( final Node node ) {
+
+            node.untracked = true;
+            if ( !node.tracked ) {
+                return;
+            }
+
+            final var previous = node.before;
+            final var next = node.after;
+            if ( previous == null ) {
+                head = next;
+            } else {
+                previous.after = next;
+            }
+            if ( next == null ) {
+                tail = previous;
+            } else {
+                next.before = previous;
+            }
+            node.before = null;
+            node.after = null;
+            node.tracked = false;
+
+        }
+
+        /**
+         * Arms the timer. Must be called while holding the monitor.
+         *
+         * @param deadline When to fire, in nanoseconds. The timer fires no earlier than
+         *                 {@link #RESOLUTION} from now.
+         */
+        private void arm( final long deadline ) {
+
+            timer = scheduler.schedule( this, Math.max( deadline - now(), RESOLUTION ),
+                    TimeUnit.NANOSECONDS );
+
+        }
+
+        /**
+         * Detaches the promises that expired. The timer is re-armed for the next promise
+         * to expire, if any.
+         *
+         * @return The first promise that expired, linked to the others through
+         *         {@link Node#after}, if any.
+         */
+        private synchronized @Nullable Node detachExpired() {
+
+            timer = null;
+            final long now = now();
+
+            final var first = head;
+            @Nullable Node last = null;
+            var node = first;
+            while ( node != null && node.deadline - now <= 0 ) {
+                node.tracked = false;
+                node.untracked = true;
+                last = node;
+                node = node.after;
+            }
+
+            if ( last == null ) {
+                if ( first != null ) {
+                    arm( first.deadline );
+                }
+                return null;
+            }
+
+            last.after = null;
+            head = node;
+            if ( node == null ) {
+                tail = null;
+            } else {
+                node.before = null;
+                arm( node.deadline );
+            }
+            return first;
+
+        }
+
+        /**
+         * Expires the promises that reached their deadline.
+         */
+        @Override
+        public void run() {
+
+            var node = detachExpired();
+            while ( node != null ) {
+                final var next = node.after;
+                node.before = null;
+                node.after = null;
+                if ( promises.remove( node.key, node ) ) { // Else settled concurrently
+                    node.settle( null, new TimeoutException(
+                            "Promise was not settled within " + ttl ) );
+                }
+                node = next;
+            }
+
+        }
+
+    }
+
+}
@@ -0,0 +1,506 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.checkerframework.checker.interning.qual.UsesObjectEquals;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Map of token-bucket rate limiters, where each key has an independent bucket.
+ * All methods of this class are thread-safe.
+ *
+ * <p>Each bucket holds up to a configured number of permits (its capacity, which is the
+ * maximum burst size), and is refilled continuously at a configured rate. Buckets start
+ * full. Permits are granted to waiters in FIFO order, and a non-blocking acquisition never
+ * overtakes a waiter.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ * @implNote The level of a bucket is not stored directly, but rather computed from the
+ *           time at which the bucket would be full again, so refilling does not require
+ *           any timer. A timer is only scheduled while a bucket has waiters, and there is
+ *           at most one per bucket regardless of the number of waiters. As a full bucket is
+ *           indistinguishable from a new one, full buckets without waiters are evicted
+ *           from the map by an amortized sweep performed during acquisitions.
+ */
+public final class ReactiveRateLimiterMap<K extends @NonNull Object> {
+
+    /** The minimum number of operations between sweeps for idle buckets. */
+    private static final int MIN_SWEEP_INTERVAL = 64;
+
+    /** The buckets. */
+    private final ConcurrentMap<K, Bucket> buckets;
+
+    /** The maximum number of permits in a bucket. */
+    private final long capacity;
+
+    /** The time it takes to refill one permit, in nanoseconds. */
+    private final long interval;
+
+    /** The time it takes to refill an empty bucket, in nanoseconds. */
+    private final long burst;
+
+    /** The scheduler used as a clock and for waking up waiters. */
+    private final Scheduler scheduler;
+
+    /** The number of operations since the last sweep. */
+    private final AtomicInteger operations;
+
+    /** Whether a sweep is in progress. */
+    private final AtomicBoolean sweeping;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The maximum number of permits in a bucket.
+     * @param refillPermits The number of permits added to a bucket per refill period.
+     * @param refillPeriod The refill period.
+     * @throws IllegalArgumentException if any of the values is not positive, or the refill
+     *                                  rate is higher than one permit per nanosecond.
+     */
+    public ReactiveRateLimiterMap( final long capacity, final long refillPermits,
+            final Duration refillPeriod ) throws IllegalArgumentException {
+
+        this( capacity, refillPermits, refillPeriod, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param capacity The maximum number of permits in a bucket.
+     * @param refillPermits The number of permits added to a bucket per refill period.
+     * @param refillPeriod The refill period.
+     * @param scheduler The scheduler to use as a clock and to wake up waiters.
+     * @throws IllegalArgumentException if any of the values is not positive, or the refill
+     *                                  rate is higher than one permit per nanosecond.
+     */
+    public ReactiveRateLimiterMap( final long capacity, final long refillPermits,
+            final Duration refillPeriod, final Scheduler scheduler )
+            throws IllegalArgumentException {
+
+        if ( capacity <= 0 ) {
+            throw new IllegalArgumentException( "Capacity must be positive." );
+        }
+        if ( refillPermits <= 0 ) {
+            throw new IllegalArgumentException( "Refill amount must be positive." );
+        }
+        if ( refillPeriod.isNegative() || refillPeriod.isZero() ) {
+            throw new IllegalArgumentException( "Refill period must be positive." );
+        }
+
+        this.capacity = capacity;
+        this.interval = refillPeriod.toNanos() / refillPermits;
+        if ( interval <= 0 ) {
+            throw new IllegalArgumentException( "Refill rate is too high." );
+        }
+        this.burst = Math.multiplyExact( capacity, interval );
+        this.scheduler = Objects.requireNonNull( scheduler );
+
+        this.buckets = new ConcurrentHashMap<>();
+        this.operations = new AtomicInteger();
+        this.sweeping = new AtomicBoolean();
+
+    }
+
+    /**
+     * Retrieves the current time.
+     *
+     * @return The current time, in nanoseconds.
+     */
+    private long now() {
+
+        return scheduler.now( TimeUnit.NANOSECONDS );
+
+    }
+
+    /**
+     * Validates a number of permits.
+     *
+     * @param amount The number of permits.
+     * @throws IllegalArgumentException if the number is not positive or exceeds the
+     *                                  capacity.
+     */
+    private void validate( final long amount ) throws IllegalArgumentException {
+
+        if ( amount <= 0 || amount > capacity ) {
+            throw new IllegalArgumentException(
+                    "Permits must be between 1 and " + capacity + ": " + amount );
+        }
+
+    }
+
+    /**
+     * Executes an operation on the bucket of a key, creating it if necessary.
+     *
+     * @param <R> The result type.
+     * @param key The key.
+     * @param operation The operation. It is executed while holding the bucket's monitor.
+     * @return The result of the operation.
+     */
+    private <R> R withBucket( final K key, final Function<Bucket, R> operation ) {
+
+        sweepIfNeeded();
+
+        while ( true ) {
+            final var bucket = buckets.computeIfAbsent( key, k -> new Bucket() );
+            synchronized ( bucket ) {
+                if ( !bucket.evicted ) {
+                    return operation.apply( bucket );
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Sweeps the map for idle buckets, if enough operations happened since the last sweep.
+     */
+    private void sweepIfNeeded() {
+
+        final int ops = operations.incrementAndGet();
+        if ( ops < Math.max( MIN_SWEEP_INTERVAL, buckets.size() ) ) {
+            return;
+        }
+        if ( !sweeping.compareAndSet( false, true ) ) {
+            return;
+        }
+
+        try {
+            operations.set( 0 );
+            final long now = now();
+            buckets.forEach( ( key, bucket ) -> {
+                synchronized ( bucket ) {
+                    if ( bucket.isIdle( now ) ) {
+                        bucket.evicted = true;
+                        buckets.remove( key, bucket );
+                    }
+                }
+            } );
+        } finally {
+            sweeping.set( false );
+        }
+
+    }
+
+    /**
+     * Acquires a permit for the given key, waiting until one is available.
+     *
+     * @param key The key.
+     * @return A mono that completes once the permit is acquired.
+     * @see #acquire(Object, long)
+     */
+    public Mono<Void> acquire( final K key ) {
+
+        return acquire( key, 1 );
+
+    }
+
+    /**
+     * Acquires permits for the given key, waiting until they are available.
+     *
+     * <p>If the returned mono is cancelled before completing, no permits are consumed.
+     *
+     * @param key The key.
+     * @param amount The number of permits to acquire.
+     * @return A mono that completes once the permits are acquired.
+     * @throws IllegalArgumentException if the number of permits is not positive or exceeds
+     *                                  the bucket capacity.
+     */
+    public Mono<Void> acquire( final K key, final long amount ) throws IllegalArgumentException {
+
+        validate( amount );
+
+        return Mono.create( sink -> {
+
+            final var waiter = new Waiter( amount, sink );
+            final var bucket = withBucket( key, b -> b.tryAcquire( amount, now() ) ? null
+                    : b.enqueue( waiter ) );
+            if ( bucket == null ) {
+                sink.success();
+            } else {
+                sink.onCancel( () -> bucket.cancel( waiter ) );
+            }
+
+        } );
+
+    }
+
+    /**
+     * Attempts to acquire a permit for the given key without waiting.
+     *
+     * @param key The key.
+     * @return {@code true} if the permit was acquired.
+     * @see #tryAcquire(Object, long)
+     */
+    public boolean tryAcquire( final K key ) {
+
+        return tryAcquire( key, 1 );
+
+    }
+
+    /**
+     * Attempts to acquire permits for the given key without waiting. This fails if there
+     * are not enough permits available, or if there are other callers already waiting for
+     * permits on the same key.
+     *
+     * @param key The key.
+     * @param amount The number of permits to acquire.
+     * @return {@code true} if the permits were acquired.
+     * @throws IllegalArgumentException if the number of permits is not positive or exceeds
+     *                                  the bucket capacity.
+     */
+    public boolean tryAcquire( final K key, final long amount )
+            throws IllegalArgumentException {
+
+        validate( amount );
+        return withBucket( key, b -> b.tryAcquire( amount, now() ) );
+
+    }
+
+    /**
+     * Determines how many permits are currently available for the given key.
+     *
+     * @param key The key.
+     * @return The number of available permits.
+     */
+    public long available( final K key ) {
+
+        final var bucket = buckets.get( key );
+        if ( bucket == null ) {
+            return capacity;
+        }
+        synchronized ( bucket ) {
+            return bucket.evicted ? capacity : bucket.available( now() );
+        }
+
+    }
+
+    /**
+     * Determines the number of buckets currently in the map.
+     *
+     * @return The number of buckets.
+     */
+    int size() {
+
+        return buckets.size();
+
+    }
+
+    /**
+     * A caller waiting for permits.
+     *
+     * @since 1.0
+     */
+    @UsesObjectEquals
+    private static final class Waiter {
+
+        /** The number of permits requested. */
+        final long amount;
+
+        /** The sink to notify once the permits are granted. */
+        final MonoSink<Void> sink;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param amount The number of permits requested.
+         * @param sink The sink to notify once the permits are granted.
+         */
+        Waiter( final long amount, final MonoSink<Void> sink ) {
+
+            this.amount = amount;
+            this.sink = sink;
+
+        }
+
+    }
+
+    /**
+     * The token bucket of a single key. All access must be synchronized on the instance.
+     *
+     * @since 1.0
+     */
+    private final class Bucket {
+
+        /** The callers waiting for permits, in arrival order. */
+        private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+
+        /** The time at which the bucket will be full, in nanoseconds. */
+        private long fullAt = Long.MIN_VALUE;
+
+        /** The timer for waking up the first waiter, if any. */
+        private @Nullable Disposable timer;
+
+        /** Whether the bucket was removed from the map. */
+        private boolean evicted;
+
+        /** Creates a new instance. */
+        Bucket() {}
+
+        /**
+         * Determines if the bucket can be evicted.
+         *
+         * @param now The current time.
+         * @return {@code true} if the bucket is full and has no waiters.
+         */
+        boolean isIdle( final long now ) {
+
+            return waiters.isEmpty() && fullAt <= now;
+
+        }
+
+        /**
+         * Determines how many permits are available.
+         *
+         * @param now The current time.
+         * @return The number of available permits.
+         */
+        long available( final long now ) {
+
+            final long deficit = Math.max( fullAt - now, 0 );
+            return ( burst - deficit ) / interval;
+
+        }
+
+        /**
+         * Determines when the given number of permits will be available.
+         *
+         * @param amount The number of permits.
+         * @param now The current time.
+         * @return The time at which the permits will be available.
+         */
+        private long readyAt( final long amount, final long now ) {
+
+            return Math.max( fullAt, now ) + amount * interval - burst;
+
+        }
+
+        /**
+         * Attempts to take permits, if there are no waiters.
+         *
+         * @param amount The number of permits.
+         * @param now The current time.
+         * @return {@code true} if the permits were taken.
+         */
+        boolean tryAcquire( final long amount, final long now ) {
+
+            return waiters.isEmpty() && take( amount, now );
+
+        }
+
+        /**
+         * Attempts to take permits.
+         *
+         * @param amount The number of permits.
+         * @param now The current time.
+         * @return {@code true} if the permits were taken.
+         */
+        private boolean take( final long amount, final long now ) {
+
+            if ( readyAt( amount, now ) > now ) {
+                return false;
+            }
+            fullAt = Math.max( fullAt, now ) + amount * interval;
+            return true;
+
+        }
+
+        /**
+         * Adds a waiter to the queue.
+         *
+         * @param waiter The waiter.
+         * @return This bucket.
+         */
+        Bucket enqueue( final Waiter waiter ) {
+
+            waiters.add( waiter );
+            if ( waiters.size() == 1 ) {
+                schedule( now() );
+            }
+            return this;
+
+        }
+
+        /**
+         * (Re)schedules the timer to wake up the first waiter, if any.
+         *
+         * @param now The current time.
+         */
+        private void schedule( final long now ) {
+
+            final var current = timer;
+            if ( current != null ) {
+                current.dispose();
+            }
+
+            final var head = waiters.peek();
+            if ( head == null ) {
+                timer = null;
+            } else {
+                final long delay = readyAt( head.amount, now ) - now;
+                timer = scheduler.schedule( this::wakeUp, delay, TimeUnit.NANOSECONDS );
+            }
+
+        }
+
+        /**
+         * Grants permits to as many waiters as possible, in order.
+         */
+        private void wakeUp() {
+
+            final List<Waiter> granted = new ArrayList<>();
+            synchronized ( this ) {
+
+                final long now = now();
+
+                Waiter head;
+                while ( ( head = waiters.peek() ) != null && take( head.amount, now ) ) {
+                    granted.add( waiters.remove() );
+                }
+                schedule( now );
+
+            }
+
+            // Notify outside the lock, as subscribers may continue synchronously
+            granted.forEach( w -> w.sink.success() );
+
+        }
+
+        /**
+         * Removes a waiter that cancelled.
+         *
+         * @param waiter The waiter.
+         */
+        synchronized void cancel( final Waiter waiter ) {
+
+            final var wasHead = waiters.peek() == waiter;
+            if ( !waiters.remove( waiter ) || !wasHead ) {
+                return;
+            }
+
+            schedule( now() ); // The next waiter may need a smaller amount
+
+        }
+
+    }
+
+}
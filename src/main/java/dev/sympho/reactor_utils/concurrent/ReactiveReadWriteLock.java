@@ -0,0 +1,160 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Pair of locks where the read lock may be held by any number of readers at the same time,
+ * as long as the write lock is not held.
+ *
+ * <p>Held locks may change mode without being released: a write lock can always be
+ * {@link AcquiredWriteLock#downgrade() downgraded} to a read lock, and a read lock can
+ * {@link AcquiredReadLock#tryUpgrade() try to be upgraded} to a write lock. This allows
+ * check-then-update flows to only take the write lock when an update turns out to be
+ * necessary, without letting other writers in between the check and the update.
+ *
+ * <p>As with {@link ReactiveLock}, the locks are <b>NOT reentrant</b>.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public interface ReactiveReadWriteLock {
+
+    /**
+     * Acquires the read lock.
+     *
+     * <p>Each subscription to the returned Mono is a different acquisition, and it is safe
+     * to cancel a subscription; if a cancellation is detected, the lock will be released as
+     * soon as it is acquired.
+     *
+     * @return A Mono that issues the read lock once acquired.
+     */
+    Mono<AcquiredReadLock> acquireRead();
+
+    /**
+     * Acquires the read lock, if currently available.
+     *
+     * @return The acquired lock, or {@code null} if it could not be acquired.
+     */
+    @Nullable AcquiredReadLock tryAcquireRead();
+
+    /**
+     * Acquires the write lock.
+     *
+     * <p>Each subscription to the returned Mono is a different acquisition, and it is safe
+     * to cancel a subscription; if a cancellation is detected, the lock will be released as
+     * soon as it is acquired.
+     *
+     * @return A Mono that issues the write lock once acquired.
+     */
+    Mono<AcquiredWriteLock> acquireWrite();
+
+    /**
+     * Acquires the write lock, if currently available.
+     *
+     * @return The acquired lock, or {@code null} if it could not be acquired.
+     */
+    @Nullable AcquiredWriteLock tryAcquireWrite();
+
+    /**
+     * Retrieves a view of the read lock as a plain reactive lock, for use with APIs that
+     * need a lock (such as {@link ReactiveLock#guard(Mono)}).
+     *
+     * @return The read lock.
+     */
+    default ReactiveLock readLock() {
+
+        return new ReactiveLock() {
+
+            @Override
+            public @Nullable AcquiredLock tryAcquire() {
+
+                return tryAcquireRead();
+
+            }
+
+            @Override
+            public Mono<AcquiredLock> acquire() {
+
+                return acquireRead().cast( AcquiredLock.class );
+
+            }
+
+        };
+
+    }
+
+    /**
+     * Retrieves a view of the write lock as a plain reactive lock, for use with APIs that
+     * need a lock (such as {@link ReactiveLock#guard(Mono)}).
+     *
+     * @return The write lock.
+     */
+    default ReactiveLock writeLock() {
+
+        return new ReactiveLock() {
+
+            @Override
+            public @Nullable AcquiredLock tryAcquire() {
+
+                return tryAcquireWrite();
+
+            }
+
+            @Override
+            public Mono<AcquiredLock> acquire() {
+
+                return acquireWrite().cast( AcquiredLock.class );
+
+            }
+
+        };
+
+    }
+
+    /**
+     * An acquired read lock.
+     *
+     * @since 1.0
+     */
+    interface AcquiredReadLock extends AcquiredLock {
+
+        /**
+         * Attempts to atomically convert this read lock into a write lock, which is only
+         * possible if there are no other readers.
+         *
+         * <p>If successful, this lock is consumed (as if released, but without the lock
+         * becoming available to anyone else), and the returned lock must be released
+         * instead.
+         *
+         * @return The write lock, or {@code null} if there are other readers, in which case
+         *         this lock is still held.
+         * @throws IllegalStateException if this lock was already released or converted.
+         */
+        @Nullable AcquiredWriteLock tryUpgrade() throws IllegalStateException;
+
+    }
+
+    /**
+     * An acquired write lock.
+     *
+     * @since 1.0
+     */
+    interface AcquiredWriteLock extends AcquiredLock {
+
+        /**
+         * Atomically converts this write lock into a read lock, letting other waiting
+         * readers in but no writers.
+         *
+         * <p>This lock is consumed (as if released, but without the lock becoming available
+         * to writers), and the returned lock must be released instead.
+         *
+         * @return The read lock.
+         * @throws IllegalStateException if this lock was already released or converted.
+         */
+        AcquiredReadLock downgrade() throws IllegalStateException;
+
+    }
+
+}
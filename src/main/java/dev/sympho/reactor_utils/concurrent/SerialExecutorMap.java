@@ -0,0 +1,240 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Executes tasks such that tasks submitted under the same key run one after another, in
+ * submission order, while tasks under different keys run independently. All methods of
+ * this class are thread-safe.
+ *
+ * <p>Each key with pending tasks has a mailbox, consisting of a lock-free queue and a
+ * drain loop that runs on the configured scheduler. Tasks are subscribed to from the drain
+ * loop, and the next task of a key only starts after the previous one terminated (or was
+ * cancelled). Mailboxes are discarded as soon as they have no pending tasks.
+ *
+ * <p>Compared to using a {@link ReactiveLockMap} to serialize tasks, this avoids allocating
+ * a lock and its completion signal for each task, and tasks that complete synchronously
+ * are executed in a single batch by the drain loop.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ */
+public final class SerialExecutorMap<K extends @NonNull Object> {
+
+    /** The mailboxes of the keys that have pending tasks. */
+    private final ConcurrentMap<K, Mailbox<K>> mailboxes;
+
+    /** The scheduler that tasks are started on. */
+    private final Scheduler scheduler;
+
+    /**
+     * Creates a new instance that starts tasks on the {@link Schedulers#parallel() parallel}
+     * scheduler.
+     */
+    public SerialExecutorMap() {
+
+        this( Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param scheduler The scheduler to start tasks on.
+     */
+    public SerialExecutorMap( final Scheduler scheduler ) {
+
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.scheduler = Objects.requireNonNull( scheduler );
+
+    }
+
+    /**
+     * Submits a task to be executed after all previously submitted tasks under the same
+     * key terminated.
+     *
+     * <p>The task is enqueued when the returned Mono is subscribed to, and the result
+     * of the task is relayed by the returned Mono. Each subscription enqueues a separate
+     * execution. If the subscription is cancelled before the task starts, the task is
+     * skipped; if it is cancelled while the task is running, the task is cancelled and the
+     * next task starts.
+     *
+     * @param <T> The result type.
+     * @param key The key to serialize the task under.
+     * @param task The task.
+     * @return A Mono that executes the task and relays its result.
+     */
+    public <T> Mono<T> submit( final K key, final Mono<T> task ) {
+
+        return new Submission<>( key, task );
+
+    }
+
+    /**
+     * Determines the number of keys that currently have a mailbox.
+     *
+     * @return The number of mailboxes.
+     */
+    int mailboxes() {
+
+        return mailboxes.size();
+
+    }
+
+    /**
+     * Enqueues a task in the mailbox of the given key.
+     *
+     * @param key The key.
+     * @param task The task.
+     */
+    private void enqueue( final K key, final SerialTask<?> task ) {
+
+        while ( true ) {
+            final var mailbox = mailboxes.computeIfAbsent( key,
+                    k -> new Mailbox<>( k, mailboxes, scheduler ) );
+            if ( mailbox.offer( task ) ) {
+                return;
+            }
+            // Mailbox is being discarded, wait for it to be replaced
+        }
+
+    }
+
+    /**
+     * A Mono that submits a task once subscribed to.
+     *
+     * @param <T> The result type.
+     * @since 1.0
+     */
+    private final class Submission<T> extends Mono<T> {
+
+        /** The key. */
+        private final K key;
+
+        /** The task. */
+        private final Mono<T> source;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key.
+         * @param source The task.
+         */
+        Submission( final K key, final Mono<T> source ) {
+
+            this.key = key;
+            this.source = source;
+
+        }
+
+        @Override
+        public void subscribe( final CoreSubscriber<? super T> actual ) {
+
+            final var task = new SerialTask<T>( actual, source );
+            actual.onSubscribe( task );
+            enqueue( key, task );
+
+        }
+
+    }
+
+    /**
+     * The mailbox of a key.
+     *
+     * @param <K> The key type.
+     * @since 1.0
+     */
+    private static final class Mailbox<K extends @NonNull Object> extends AbstractSerialMailbox {
+
+        /** Value of {@link #pending} once the mailbox was discarded. */
+        private static final int DEAD = -1;
+
+        /** Field updater for {@link #pending}. */
+        @SuppressWarnings( "rawtypes" )
+        private static final AtomicIntegerFieldUpdater<Mailbox> PENDING =
+                AtomicIntegerFieldUpdater.newUpdater( Mailbox.class, "pending" );
+
+        /** The key of this mailbox. */
+        private final K key;
+
+        /** The map that contains this mailbox. */
+        private final ConcurrentMap<K, Mailbox<K>> mailboxes;
+
+        /** The scheduler that tasks are started on. */
+        private final Scheduler scheduler;
+
+        /** The number of tasks that were enqueued but did not finish yet, or {@link #DEAD}. */
+        private volatile int pending;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key of the mailbox.
+         * @param mailboxes The map that contains the mailbox.
+         * @param scheduler The scheduler to start tasks on.
+         */
+        Mailbox( final K key, final ConcurrentMap<K, Mailbox<K>> mailboxes,
+                final Scheduler scheduler ) {
+
+            this.key = key;
+            this.mailboxes = mailboxes;
+            this.scheduler = scheduler;
+
+        }
+
+        /**
+         * Enqueues a task.
+         *
+         * @param task The task.
+         * @return {@code true} if the task was enqueued, {@code false} if the mailbox was
+         *         discarded.
+         */
+        boolean offer( final SerialTask<?> task ) {
+
+            int current;
+            do {
+                current = pending;
+                if ( current == DEAD ) {
+                    return false;
+                }
+            } while ( !PENDING.compareAndSet( this, current, current + 1 ) );
+
+            enqueue( task );
+            return true;
+
+        }
+
+        @Override
+        protected void schedule() {
+
+            scheduler.schedule( this::drain );
+
+        }
+
+        /**
+         * Accounts for a task that will no longer run, discarding the mailbox if it was the
+         * last one.
+         */
+        @Override
+        protected void released() {
+
+            if ( PENDING.decrementAndGet( this ) == 0 && PENDING.compareAndSet( this, 0, DEAD ) ) {
+                mailboxes.remove( key, this );
+            }
+
+        }
+
+    }
+
+}
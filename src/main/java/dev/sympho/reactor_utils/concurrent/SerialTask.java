@@ -0,0 +1,188 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.reactivestreams.Subscription;
+
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+/**
+ * A task submitted to an {@link AbstractSerialMailbox}, which is both the subscription
+ * handed to the submitter and the subscriber to the task itself.
+ *
+ * <p>The task is skipped if cancelled while queued; if cancelled while running (including
+ * while it is being started), the task is cancelled and the mailbox is notified so that
+ * the next task can start.
+ *
+ * @param <T> The result type.
+ * @version 1.0
+ * @since 1.0
+ */
+class SerialTask<T> extends Operators.MonoSubscriber<T, T> {
+
+    /** State of a task that was not started yet. */
+    private static final int QUEUED = 0;
+
+    /** State of a task that is running. */
+    private static final int RUNNING = 1;
+
+    /** State of a task that terminated or was cancelled. */
+    private static final int DONE = 2;
+
+    /** Field updater for {@link #state}. */
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicIntegerFieldUpdater<SerialTask> STATE =
+            AtomicIntegerFieldUpdater.newUpdater( SerialTask.class, "state" );
+
+    /** The mailbox the task was enqueued in. */
+    @MonotonicNonNull AbstractSerialMailbox mailbox;
+
+    /** The task to execute. */
+    private final Mono<T> source;
+
+    /** The subscription to the task, once running. */
+    private @MonotonicNonNull Subscription upstream;
+
+    /** The execution state. */
+    private volatile int state;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param actual The submitter.
+     * @param source The task to execute.
+     */
+    @SuppressWarnings( "argument" ) // Weird inference
+    SerialTask( final CoreSubscriber<? super T> actual, final Mono<T> source ) {
+
+        super( actual );
+        this.source = source;
+
+    }
+
+    /**
+     * Marks the task as started.
+     *
+     * @return {@code true} if the task should run, {@code false} if it was cancelled.
+     */
+    final boolean start() {
+
+        return STATE.compareAndSet( this, QUEUED, RUNNING );
+
+    }
+
+    /**
+     * Runs the task.
+     */
+    final void run() {
+
+        source.subscribe( this );
+
+    }
+
+    /**
+     * Fails the task without running it, unless it was cancelled.
+     *
+     * @param error The error to issue.
+     */
+    final void reject( final Throwable error ) {
+
+        if ( STATE.compareAndSet( this, QUEUED, DONE ) ) {
+            actual.onError( error );
+        }
+
+    }
+
+    /**
+     * Marks the task as done.
+     *
+     * @return {@code true} if the task was running and is now done.
+     */
+    private boolean finish() {
+
+        return STATE.compareAndSet( this, RUNNING, DONE );
+
+    }
+
+    /**
+     * Notifies the mailbox that the task finished, so the next one can start.
+     */
+    private void finished() {
+
+        final var m = mailbox;
+        if ( m != null ) { // Always set before the task runs
+            m.finished();
+        }
+
+    }
+
+    @Override
+    public final void onSubscribe( final Subscription s ) {
+
+        if ( Operators.validate( upstream, s ) ) {
+            upstream = s;
+            if ( state == DONE ) { // Cancelled before the task subscribed
+                s.cancel();
+            } else {
+                s.request( Long.MAX_VALUE );
+            }
+        }
+
+    }
+
+    @Override
+    public final void onNext( final T t ) {
+
+        setValue( t );
+
+    }
+
+    @Override
+    public final void onComplete() {
+
+        if ( finish() ) {
+            finished();
+            final var v = value;
+            if ( v == null ) {
+                actual.onComplete();
+            } else {
+                complete( v );
+            }
+        }
+
+    }
+
+    @Override
+    public final void onError( final Throwable t ) {
+
+        if ( finish() ) {
+            finished();
+            actual.onError( t );
+        } else {
+            Operators.onErrorDropped( t, currentContext() );
+        }
+
+    }
+
+    @Override
+    public final void cancel() {
+
+        super.cancel();
+        if ( STATE.compareAndSet( this, QUEUED, DONE ) ) {
+            return; // Will be skipped by the mailbox
+        }
+
+        if ( finish() ) {
+            final var s = upstream;
+            if ( s != null ) {
+                s.cancel();
+            }
+            finished();
+        }
+
+    }
+
+}
@@ -0,0 +1,401 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Variant of {@link MarkerMap} that identifies markers by {@code long} stamps rather than
+ * by marker objects. All methods of this class are thread-safe.
+ *
+ * <p>As with {@link MarkerMap}, stamps are unique and one-off; once a stamp is removed from
+ * this map (including if it is replaced), it will never be issued again by the same map.
+ * The value {@link #NONE} is never issued, and is used to indicate the absence of a marker.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ * @implNote Placing and removing markers does not allocate (other than when the table
+ *           needs to grow). The map is split into segments, each an open-addressing hash
+ *           table with parallel key and stamp arrays guarded by its own monitor, and each
+ *           issuing stamps from its own counter, so that there is no global point of
+ *           contention.
+ */
+public final class StampedMarkerMap<K extends @NonNull Object> {
+
+    /** Stamp value that indicates the absence of a marker. */
+    public static final long NONE = 0;
+
+    /** The initial capacity of each segment. */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /** Segments are shrunk once they are less than 1/SHRINK_RATIO full. */
+    private static final int SHRINK_RATIO = 8;
+
+    /** The default number of segments per available processor. */
+    private static final int SEGMENTS_PER_PROCESSOR = 4;
+
+    /** The maximum number of bits used to select a segment. */
+    private static final int MAX_SEGMENT_BITS = 16;
+
+    /** The shift used to fold the high bits of a hash code into the low bits. */
+    private static final int HASH_FOLD_SHIFT = 16;
+
+    /** The multiplier used to spread hash codes (the 32-bit golden ratio). */
+    private static final int HASH_MULTIPLIER = 0x9E3779B9;
+
+    /** The segments. */
+    private final Segment[] segments;
+
+    /**
+     * Creates a new instance with a concurrency level suitable for the number of
+     * available processors.
+     */
+    public StampedMarkerMap() {
+
+        this( Runtime.getRuntime().availableProcessors() * SEGMENTS_PER_PROCESSOR );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param concurrencyLevel The estimated number of threads that concurrently access the
+     *                         map. The map is split into at least this many segments.
+     * @throws IllegalArgumentException if the concurrency level is not positive.
+     */
+    public StampedMarkerMap( final int concurrencyLevel ) throws IllegalArgumentException {
+
+        if ( concurrencyLevel <= 0 ) {
+            throw new IllegalArgumentException( "Concurrency level must be positive." );
+        }
+
+        final int bits = Integer.SIZE - Integer.numberOfLeadingZeros( concurrencyLevel - 1 );
+        final int count = 1 << Math.max( 1, Math.min( bits, MAX_SEGMENT_BITS ) );
+
+        this.segments = new Segment[count];
+        for ( int i = 0; i < count; i++ ) {
+            segments[i] = new Segment( i, count );
+        }
+
+    }
+
+    /**
+     * Computes the hash of a key.
+     *
+     * @param key The key.
+     * @return The hash.
+     */
+    private static int hash( final Object key ) {
+
+        final int h = key.hashCode();
+        return ( h ^ ( h >> HASH_FOLD_SHIFT ) ) * HASH_MULTIPLIER;
+
+    }
+
+    /**
+     * Determines the segment that holds a key.
+     *
+     * @param hash The hash of the key.
+     * @return The segment.
+     */
+    private Segment segment( final int hash ) {
+
+        // Use the high bits, as the low bits select the slot within the segment
+        final long index = Integer.toUnsignedLong( hash ) * segments.length;
+        return segments[( int ) ( index >> Integer.SIZE )];
+
+    }
+
+    /**
+     * Places a new marker in the map. Any existing marker is replaced.
+     *
+     * @param key The key to place the marker under.
+     * @return The stamp of the marker.
+     */
+    public long place( final K key ) {
+
+        final int h = hash( key );
+        return segment( h ).place( key, h, true );
+
+    }
+
+    /**
+     * Places a new marker in the map, if there is currently no marker on the given key.
+     *
+     * @param key The key to place the marker under.
+     * @return The stamp of the marker, or {@link #NONE} if there is already a marker under
+     *         the given key.
+     */
+    public long placeIfAbsent( final K key ) {
+
+        final int h = hash( key );
+        return segment( h ).place( key, h, false );
+
+    }
+
+    /**
+     * Retrieves the stamp of the marker under the given key, if any.
+     *
+     * @param key The key to get the current marker for.
+     * @return The stamp of the marker, or {@link #NONE} if there no marker under the
+     *         given key.
+     */
+    public long get( final K key ) {
+
+        final int h = hash( key );
+        return segment( h ).get( key, h );
+
+    }
+
+    /**
+     * Removes the marker under the given key, if any.
+     *
+     * @param key The key to remove the current marker for.
+     * @return The stamp of the removed marker, or {@link #NONE} if there no marker under
+     *         the given key.
+     */
+    public long remove( final K key ) {
+
+        final int h = hash( key );
+        return segment( h ).remove( key, h, NONE );
+
+    }
+
+    /**
+     * Removes the marker under the given key, if it matches the given stamp.
+     *
+     * @param key The key to remove the current marker for.
+     * @param stamp The stamp to check for.
+     * @return {@code true} if the marker was removed.
+     */
+    public boolean remove( final K key, final long stamp ) {
+
+        if ( stamp == NONE ) {
+            return false;
+        }
+
+        final int h = hash( key );
+        return segment( h ).remove( key, h, stamp ) != NONE;
+
+    }
+
+    /**
+     * Determines the number of markers currently in the map.
+     *
+     * @return The number of markers.
+     * @apiNote The result is only a snapshot under concurrent modification.
+     */
+    public int size() {
+
+        int size = 0;
+        for ( final var segment : segments ) {
+            synchronized ( segment ) {
+                size += segment.size;
+            }
+        }
+        return size;
+
+    }
+
+    /**
+     * A segment of the map, consisting of a linear-probing hash table.
+     *
+     * @since 1.0
+     */
+    private static final class Segment {
+
+        /** The keys in the table. Empty slots are {@code null}. */
+        private @Nullable Object[] keys;
+
+        /** The stamps in the table, at the same index as their keys. */
+        private long[] stamps;
+
+        /** The number of markers in the table. */
+        private int size;
+
+        /** The last stamp issued by this segment. */
+        private long stamp;
+
+        /** The amount to increment the stamp by between issues. */
+        private final long stampIncrement;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param index The index of the segment.
+         * @param count The number of segments.
+         */
+        Segment( final int index, final int count ) {
+
+            this.keys = new Object[INITIAL_CAPACITY];
+            this.stamps = new long[INITIAL_CAPACITY];
+            this.size = 0;
+            this.stamp = index + 1 - count; // First stamp is index + 1, so never NONE
+            this.stampIncrement = count;
+
+        }
+
+        /**
+         * Finds the slot of a key.
+         *
+         * @param key The key.
+         * @param hash The hash of the key.
+         * @return The slot of the key, or the slot where it should be inserted, encoded as
+         *         {@code -(slot + 1)}, if it is not in the table.
+         */
+        private int find( final Object key, final int hash ) {
+
+            final var table = keys;
+            final int mask = table.length - 1;
+
+            int i = hash & mask;
+            while ( true ) {
+                final var k = table[i];
+                if ( k == null ) {
+                    return -( i + 1 );
+                } else if ( k.equals( key ) ) {
+                    return i;
+                }
+                i = ( i + 1 ) & mask;
+            }
+
+        }
+
+        /**
+         * Rebuilds the table with the given capacity.
+         *
+         * @param capacity The new capacity. Must be a power of two larger than the size.
+         */
+        private void resize( final int capacity ) {
+
+            final var oldKeys = keys;
+            final var oldStamps = stamps;
+
+            final @Nullable Object[] newKeys = new Object[capacity];
+            final long[] newStamps = new long[capacity];
+            final int mask = capacity - 1;
+
+            for ( int j = 0; j < oldKeys.length; j++ ) {
+                final var k = oldKeys[j];
+                if ( k != null ) {
+                    int i = hash( k ) & mask;
+                    while ( newKeys[i] != null ) {
+                        i = ( i + 1 ) & mask;
+                    }
+                    newKeys[i] = k;
+                    newStamps[i] = oldStamps[j];
+                }
+            }
+
+            keys = newKeys;
+            stamps = newStamps;
+
+        }
+
+        /**
+         * Places a new marker.
+         *
+         * @param key The key.
+         * @param hash The hash of the key.
+         * @param replace Whether to replace an existing marker.
+         * @return The new stamp, or {@link #NONE} if there was an existing marker and
+         *         {@code replace} is {@code false}.
+         */
+        synchronized long place( final Object key, final int hash, final boolean replace ) {
+
+            int i = find( key, hash );
+            if ( i >= 0 ) {
+                if ( !replace ) {
+                    return NONE;
+                }
+            } else {
+                if ( size + 1 > keys.length - ( keys.length >> 2 ) ) { // Max load factor 0.75
+                    resize( keys.length * 2 );
+                    i = find( key, hash );
+                }
+                i = -( i + 1 );
+                keys[i] = key;
+                size++;
+            }
+
+            stamp += stampIncrement;
+            stamps[i] = stamp;
+            return stamp;
+
+        }
+
+        /**
+         * Retrieves the current stamp of a key.
+         *
+         * @param key The key.
+         * @param hash The hash of the key.
+         * @return The stamp, or {@link #NONE} if absent.
+         */
+        synchronized long get( final Object key, final int hash ) {
+
+            final int i = find( key, hash );
+            return i >= 0 ? stamps[i] : NONE;
+
+        }
+
+        /**
+         * Removes the marker of a key.
+         *
+         * @param key The key.
+         * @param hash The hash of the key.
+         * @param expected The stamp that the marker must have, or {@link #NONE} to remove
+         *                 any marker.
+         * @return The removed stamp, or {@link #NONE} if nothing was removed.
+         */
+        synchronized long remove( final Object key, final int hash, final long expected ) {
+
+            final int slot = find( key, hash );
+            if ( slot < 0 ) {
+                return NONE;
+            }
+
+            final long removed = stamps[slot];
+            if ( expected != NONE && expected != removed ) {
+                return NONE;
+            }
+
+            // Backward-shift deletion, so no tombstones are needed
+            final var table = keys;
+            final int mask = table.length - 1;
+            int free = slot;
+            int j = slot;
+            while ( true ) {
+
+                j = ( j + 1 ) & mask;
+                final var k = table[j];
+                if ( k == null ) {
+                    break;
+                }
+
+                // Move the entry back unless its ideal slot lies cyclically in (free, j]
+                final int ideal = hash( k ) & mask;
+                final boolean stays = free <= j
+                        ? free < ideal && ideal <= j
+                        : free < ideal || ideal <= j;
+                if ( !stays ) {
+                    table[free] = k;
+                    stamps[free] = stamps[j];
+                    free = j;
+                }
+
+            }
+            table[free] = null;
+            stamps[free] = NONE;
+            size--;
+
+            if ( table.length > INITIAL_CAPACITY && size * SHRINK_RATIO < table.length ) {
+                resize( table.length / 2 );
+            }
+
+            return removed;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+package dev.sympho.reactor_utils.concurrent.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Backend that uses OS-level file locks in a shared directory, so that processes on the
+ * same host can coordinate through it.
+ *
+ * <p>Each key is mapped to a lock file in the directory, which is created on first use and
+ * never deleted (deleting a lock file cannot be done safely while other processes may be
+ * opening it). The ownership of a key is held by an exclusive lock on the whole file, which
+ * the operating system releases automatically if the owning process exits.
+ *
+ * <p>Multiple instances in the same process that use the same directory also exclude each
+ * other. As on some platforms closing any channel to a file releases all the locks that the
+ * process holds on it, instances in the same process never open a lock file that is held by
+ * another instance.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ * @apiNote File locks are advisory on most platforms, and may not be reliable on network
+ *          file systems.
+ */
+public final class FileLockBackend<K extends @NonNull Object> implements LockBackend<K> {
+
+    /** Extension of the lock files. */
+    private static final String EXTENSION = ".lock";
+
+    /** The lock files held by any instance in this process. */
+    private static final ConcurrentMap<Path, FileLockBackend<?>> IN_USE =
+            new ConcurrentHashMap<>();
+
+    /** The directory that contains the lock files. */
+    private final Path directory;
+
+    /** The function that determines the lock file name of each key. */
+    private final Function<? super K, String> naming;
+
+    /** The file locks currently held by this node, by key. */
+    private final ConcurrentMap<K, FileLock> held;
+
+    /**
+     * Creates a new instance that names lock files after the URL-safe Base64 encoding of
+     * the {@link Object#toString() string representation} of each key.
+     *
+     * @param directory The directory to keep lock files in. It must already exist.
+     */
+    public FileLockBackend( final Path directory ) {
+
+        this( directory, key -> Base64.getUrlEncoder().withoutPadding().encodeToString(
+                key.toString().getBytes( StandardCharsets.UTF_8 ) ) + EXTENSION );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param directory The directory to keep lock files in. It must already exist.
+     * @param naming The function that determines the name of the lock file of each key.
+     *               Distinct keys should map to distinct names; keys that share a name also
+     *               share a lock.
+     */
+    public FileLockBackend( final Path directory, final Function<? super K, String> naming ) {
+
+        this.directory = directory.toAbsolutePath().normalize();
+        this.naming = Objects.requireNonNull( naming );
+        this.held = new ConcurrentHashMap<>();
+
+    }
+
+    /**
+     * Determines the path of the lock file of a key.
+     *
+     * @param key The key.
+     * @return The path.
+     */
+    private Path path( final K key ) {
+
+        return directory.resolve( naming.apply( key ) );
+
+    }
+
+    /**
+     * @throws UncheckedIOException if the lock file could not be opened or locked.
+     */
+    @Override
+    @SuppressWarnings( "builder:required.method.not.called" ) // Closed on release
+    public boolean tryAcquire( final K key ) throws UncheckedIOException {
+
+        final var path = path( key );
+        if ( IN_USE.putIfAbsent( path, this ) != null ) {
+            return false; // Held by another instance in this process
+        }
+
+        boolean locked = false;
+        try {
+
+            final var channel = FileChannel.open( path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE );
+            try {
+                final var lock = channel.tryLock();
+                if ( lock != null ) {
+                    held.put( key, lock );
+                    locked = true;
+                }
+            } finally {
+                if ( !locked ) {
+                    channel.close();
+                }
+            }
+            return locked;
+
+        } catch ( final IOException e ) {
+            throw new UncheckedIOException( "Failed to lock " + path, e );
+        } finally {
+            if ( !locked ) {
+                IN_USE.remove( path, this );
+            }
+        }
+
+    }
+
+    /**
+     * @throws UncheckedIOException if the lock file could not be unlocked or closed.
+     */
+    @Override
+    public void release( final K key ) throws UncheckedIOException {
+
+        final var lock = held.remove( key );
+        if ( lock == null ) {
+            return;
+        }
+
+        final var path = path( key );
+        try {
+            lock.channel().close(); // Also releases the lock
+        } catch ( final IOException e ) {
+            throw new UncheckedIOException( "Failed to unlock " + path, e );
+        } finally {
+            IN_USE.remove( path, this );
+        }
+
+    }
+
+}
@@ -0,0 +1,80 @@
+package dev.sympho.reactor_utils.concurrent.backend;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * Backend that keeps ownership in memory, shared between the nodes created through
+ * {@link #peer()}.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ * @apiNote This backend cannot coordinate separate processes. It is meant as a stand-in for
+ *          a real backend in tests, using a peer for each simulated node.
+ */
+public final class InMemoryLockBackend<K extends @NonNull Object> implements LockBackend<K> {
+
+    /** The owner of each owned key. */
+    private final ConcurrentMap<K, InMemoryLockBackend<K>> owners;
+
+    /**
+     * Creates a new instance with its own store.
+     */
+    public InMemoryLockBackend() {
+
+        this( new ConcurrentHashMap<>() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param owners The store to use.
+     */
+    private InMemoryLockBackend( final ConcurrentMap<K, InMemoryLockBackend<K>> owners ) {
+
+        this.owners = owners;
+
+    }
+
+    /**
+     * Creates another node that shares the store of this one.
+     *
+     * @return The new node.
+     */
+    public InMemoryLockBackend<K> peer() {
+
+        return new InMemoryLockBackend<>( owners );
+
+    }
+
+    /**
+     * Determines whether the given key is owned by any node that shares this store.
+     *
+     * @param key The key.
+     * @return {@code true} if the key is owned.
+     */
+    public boolean isOwned( final K key ) {
+
+        return owners.containsKey( key );
+
+    }
+
+    @Override
+    public boolean tryAcquire( final K key ) {
+
+        return owners.putIfAbsent( key, this ) == null;
+
+    }
+
+    @Override
+    public void release( final K key ) {
+
+        owners.remove( key, this );
+
+    }
+
+}
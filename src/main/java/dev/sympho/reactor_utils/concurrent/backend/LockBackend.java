@@ -0,0 +1,44 @@
+package dev.sympho.reactor_utils.concurrent.backend;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A store that records which node owns the lock of each key, where a node is a single
+ * instance of this type (usually one per process).
+ *
+ * <p>A backend only arbitrates ownership between nodes; serializing the tasks within a
+ * node, waiting for a lock to become available, and issuing locks are left to the lock map
+ * that uses the backend. A node never attempts to acquire a key that it already owns.
+ *
+ * <p>Methods of this type are never called concurrently for the same key by the same
+ * node, but may be called concurrently for different keys. They are not called while the
+ * lock map holds internal locks shared between keys. Depending on the lock map
+ * configuration and the operation, they may be called from non-blocking threads (see
+ * {@link dev.sympho.reactor_utils.concurrent.BackendLockMap}), so they should not block
+ * for longer than necessary. Failures should be reported through unchecked exceptions,
+ * which are relayed to the caller that triggered the operation, if any.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ */
+public interface LockBackend<K extends @NonNull Object> {
+
+    /**
+     * Attempts to take ownership of the given key for this node, without waiting.
+     *
+     * @param key The key.
+     * @return {@code true} if this node now owns the key, {@code false} if it is currently
+     *         owned by another node.
+     */
+    boolean tryAcquire( K key );
+
+    /**
+     * Relinquishes the ownership of the given key by this node. Does nothing if the key
+     * is not owned by this node.
+     *
+     * @param key The key.
+     */
+    void release( K key );
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Stores that hold lock ownership outside of a single lock map, allowing locks to be
+ * coordinated between processes.
+ */
+package dev.sympho.reactor_utils.concurrent.backend;
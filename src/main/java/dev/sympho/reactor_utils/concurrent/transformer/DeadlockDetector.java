@@ -0,0 +1,507 @@
+package dev.sympho.reactor_utils.concurrent.transformer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.reactivestreams.Subscription;
+
+import dev.sympho.reactor_utils.concurrent.AcquiredLock;
+import dev.sympho.reactor_utils.concurrent.DeadlockException;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A transformer that detects deadlocks between acquisitions and breaks them by failing
+ * one of the acquisitions involved with a {@link DeadlockException}.
+ *
+ * <p>Acquisitions are attributed to an owner through an arbitrary token (such as a request
+ * ID) stored in the subscriber context under {@link #OWNER_KEY}; acquisitions made without
+ * an owner are not tracked. An owner may wait on multiple acquisitions at the same time.
+ * The detector keeps the wait-for graph formed by the keys each owner is waiting for and
+ * the owner that holds each key, which only costs a couple of map updates per acquisition.
+ * Acquisitions that do not complete immediately start a check timer, which searches the
+ * graph for a cycle once the acquisition has been waiting for longer than the check
+ * interval, and again at every interval after that; acquisitions that are issued the lock
+ * immediately never start it. The acquisition that finds the cycle is the victim.
+ *
+ * <p>An owner that acquires a key it already holds is also detected as deadlocked, as
+ * locks are not reentrant.
+ *
+ * <p>The same instance may be used with multiple {@link LockMapTransformer lock maps} and
+ * (through {@link #forLock(Object)}) {@link LockTransformer locks} in order to detect
+ * deadlocks that span them, as long as they do not share keys.
+ *
+ * @param <K> The key type.
+ * @version 1.0
+ * @since 1.0
+ */
+public class DeadlockDetector<K extends @NonNull Object> implements LockMapTransformer<K> {
+
+    /** The context key of the owner of an acquisition. */
+    public static final String OWNER_KEY = DeadlockDetector.class.getName() + ".owner";
+
+    /** The default interval between checks while an acquisition is waiting. */
+    public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds( 1 );
+
+    /** Updater for {@link Wait#finished}. */
+    @SuppressWarnings( "rawtypes" )
+    private static final AtomicIntegerFieldUpdater<DeadlockDetector.Wait> FINISHED =
+            AtomicIntegerFieldUpdater.newUpdater( DeadlockDetector.Wait.class, "finished" );
+
+    /** The interval between checks while an acquisition is waiting. */
+    private final Duration checkInterval;
+
+    /** The scheduler used for check timers. */
+    private final Scheduler scheduler;
+
+    /** The acquisitions that each owner is waiting on. */
+    private final ConcurrentMap<Object, List<Wait>> waiting;
+
+    /** The owner that holds each key. */
+    private final ConcurrentMap<K, Object> holders;
+
+    /**
+     * Creates a new instance that uses the {@link #DEFAULT_CHECK_INTERVAL default check
+     * interval}.
+     */
+    public DeadlockDetector() {
+
+        this( DEFAULT_CHECK_INTERVAL );
+
+    }
+
+    /**
+     * Creates a new instance that uses the {@link Schedulers#parallel() parallel scheduler}
+     * for check timers.
+     *
+     * @param checkInterval The interval between checks while an acquisition is waiting.
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public DeadlockDetector( final Duration checkInterval ) throws IllegalArgumentException {
+
+        this( checkInterval, Schedulers.parallel() );
+
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param checkInterval The interval between checks while an acquisition is waiting.
+     * @param scheduler The scheduler to use for check timers.
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public DeadlockDetector( final Duration checkInterval, final Scheduler scheduler )
+            throws IllegalArgumentException {
+
+        if ( checkInterval.isNegative() || checkInterval.isZero() ) {
+            throw new IllegalArgumentException( "Check interval must be positive." );
+        }
+
+        this.checkInterval = checkInterval;
+        this.scheduler = Objects.requireNonNull( scheduler );
+        this.waiting = new ConcurrentHashMap<>();
+        this.holders = new ConcurrentHashMap<>();
+
+    }
+
+    /**
+     * Derives a lock transformer that tracks a lock as if it were the given key.
+     *
+     * @param key The key that identifies the lock.
+     * @return The transformer.
+     */
+    public LockTransformer forLock( final K key ) {
+
+        return p -> transformAcquire( key, p );
+
+    }
+
+    /**
+     * Registers a waiting acquisition in the wait-for graph.
+     *
+     * @param wait The acquisition.
+     */
+    private void addWait( final Wait wait ) {
+
+        waiting.compute( wait.owner, ( o, waits ) -> {
+
+            if ( waits == null ) {
+                return List.of( wait );
+            }
+            final var updated = new ArrayList<Wait>( waits.size() + 1 );
+            updated.addAll( waits );
+            updated.add( wait );
+            return List.copyOf( updated );
+
+        } );
+
+    }
+
+    /**
+     * Removes a waiting acquisition from the wait-for graph.
+     *
+     * @param wait The acquisition.
+     */
+    @SuppressWarnings( { "nullness:return", "interning:not.interned" } ) // Null removes
+    private void removeWait( final Wait wait ) {
+
+        waiting.computeIfPresent( wait.owner, ( o, waits ) -> {
+
+            final var updated = waits.stream()
+                    .filter( w -> w != wait )
+                    .toList();
+            return updated.isEmpty() ? null : updated;
+
+        } );
+
+    }
+
+    /**
+     * Searches for a cycle in the wait-for graph that goes through the given acquisition,
+     * and if one is found, finishes the acquisition (removing it from the graph) so no other
+     * owner detects the same cycle.
+     *
+     * @param wait The acquisition.
+     * @return The keys in the cycle, starting with the acquisition's, or {@code null} if
+     *         none was found or the acquisition finished concurrently.
+     */
+    private synchronized @Nullable List<K> findCycle( final Wait wait ) {
+
+        final List<K> keys = new ArrayList<>();
+        if ( !search( wait.owner, wait.key, keys, new HashSet<>() ) || !wait.finish() ) {
+            return null;
+        }
+        return keys;
+
+    }
+
+    /**
+     * Searches the wait-for graph, depth-first, for a path from a key back to an owner.
+     *
+     * @param owner The owner.
+     * @param key The key to search from.
+     * @param path The keys in the current path. On success, it contains the keys in the
+     *             path found; otherwise it is left unchanged.
+     * @param visited The owners that were already visited.
+     * @return {@code true} if a path was found.
+     */
+    private boolean search( final Object owner, final K key, final List<K> path,
+            final Set<Object> visited ) {
+
+        path.add( key );
+
+        final var holder = holders.get( key );
+        if ( holder != null ) {
+            if ( holder.equals( owner ) ) {
+                return true;
+            }
+            if ( visited.add( holder ) ) { // Else cycle that does not include the owner
+                for ( final var next : waiting.getOrDefault( holder, List.of() ) ) {
+                    if ( search( owner, next.key, path, visited ) ) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        path.remove( path.size() - 1 );
+        return false;
+
+    }
+
+    @Override
+    public Mono<AcquiredLock> transformAcquire( final K key, final Mono<AcquiredLock> pending ) {
+
+        return new Detection( key, pending );
+
+    }
+
+    /**
+     * Tracks an acquisition, if it has an owner.
+     *
+     * @since 1.0
+     */
+    private final class Detection extends Mono<AcquiredLock> {
+
+        /** The key. */
+        private final K key;
+
+        /** The acquisition. */
+        private final Mono<AcquiredLock> pending;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param key The key.
+         * @param pending The acquisition.
+         */
+        Detection( final K key, final Mono<AcquiredLock> pending ) {
+
+            this.key = key;
+            this.pending = pending;
+
+        }
+
+        @Override
+        @SuppressWarnings( "argument" ) // Weird inference
+        public void subscribe( final CoreSubscriber<? super AcquiredLock> actual ) {
+
+            final var ctx = actual.currentContext();
+            if ( !ctx.hasKey( OWNER_KEY ) ) {
+                pending.subscribe( actual );
+                return;
+            }
+            final Object owner = Objects.requireNonNull( ctx.get( OWNER_KEY ) );
+
+            final var wait = new Wait( actual, key, owner );
+            addWait( wait ); // Before it can be cancelled, so the edge is always removed
+            actual.onSubscribe( wait );
+            if ( wait.isFinished() ) {
+                return; // Cancelled while subscribing
+            }
+            pending.subscribe( wait );
+            if ( !wait.isFinished() ) { // Only check acquisitions that actually wait
+                wait.arm();
+            }
+
+        }
+
+    }
+
+    /**
+     * An acquisition that is being tracked, which is also the subscriber to the underlying
+     * acquisition and the subscription handed downstream. It stays in the wait-for graph
+     * until it finishes.
+     *
+     * @since 1.0
+     */
+    private final class Wait extends Operators.MonoSubscriber<AcquiredLock, AcquiredLock>
+            implements Runnable {
+
+        /** The key. */
+        final K key;
+
+        /** The owner. */
+        final Object owner;
+
+        /** Whether the acquisition finished (1) or not (0). */
+        private volatile int finished;
+
+        /** The subscription to the underlying acquisition. */
+        private volatile @Nullable Subscription upstream;
+
+        /** The check timer, if armed. */
+        private volatile @Nullable Disposable timer;
+
+        /**
+         * Creates a new instance.
+         *
+         * @param actual The downstream subscriber.
+         * @param key The key.
+         * @param owner The owner.
+         */
+        @SuppressWarnings( "argument" ) // Weird inference
+        Wait( final CoreSubscriber<? super AcquiredLock> actual, final K key,
+                final Object owner ) {
+
+            super( actual );
+            this.key = key;
+            this.owner = owner;
+
+        }
+
+        /**
+         * Determines whether the acquisition finished.
+         *
+         * @return {@code true} if finished.
+         */
+        boolean isFinished() {
+
+            return finished != 0;
+
+        }
+
+        /**
+         * Marks the acquisition as finished, removing it from the wait-for graph and
+         * stopping the check timer.
+         *
+         * @return {@code true} if this call finished the acquisition, {@code false} if it
+         *         was already finished.
+         */
+        @SuppressWarnings( "unchecked" ) // Raw updater
+        boolean finish() {
+
+            if ( !FINISHED.compareAndSet( this, 0, 1 ) ) {
+                return false;
+            }
+
+            removeWait( this );
+            final var t = timer;
+            if ( t != null ) {
+                t.dispose();
+            }
+            return true;
+
+        }
+
+        /**
+         * Starts the check timer.
+         */
+        void arm() {
+
+            final var t = scheduler.schedulePeriodically( this,
+                    checkInterval.toNanos(), checkInterval.toNanos(), TimeUnit.NANOSECONDS );
+            timer = t;
+            if ( isFinished() ) { // Raced with finish()
+                t.dispose();
+            }
+
+        }
+
+        @Override
+        public void run() {
+
+            if ( isFinished() ) {
+                return;
+            }
+
+            final var cycle = findCycle( this );
+            if ( cycle != null ) {
+                final var s = upstream;
+                if ( s != null ) {
+                    s.cancel();
+                }
+                actual.onError( new DeadlockException( cycle ) );
+            }
+
+        }
+
+        @Override
+        public void onSubscribe( final Subscription s ) {
+
+            if ( Operators.validate( upstream, s ) ) {
+                upstream = s;
+                s.request( Long.MAX_VALUE );
+            }
+
+        }
+
+        @Override
+        public void onNext( final AcquiredLock lock ) {
+
+            if ( finish() ) {
+                complete( new TrackedLock( key, owner, lock ) );
+            } else {
+                lock.release(); // Issued after failing or being cancelled
+            }
+
+        }
+
+        @Override
+        public void onError( final Throwable t ) {
+
+            if ( finish() ) {
+                actual.onError( t );
+            } else {
+                Operators.onErrorDropped( t, actual.currentContext() );
+            }
+
+        }
+
+        @Override
+        public void onComplete() {
+
+            if ( finish() ) {
+                actual.onComplete();
+            }
+
+        }
+
+        @Override
+        public void cancel() {
+
+            super.cancel();
+            finish();
+            final var s = upstream;
+            if ( s != null ) {
+                s.cancel();
+            }
+
+        }
+
+        @Override
+        protected void discard( final @Nullable AcquiredLock lock ) {
+
+            if ( lock != null ) {
+                lock.release(); // Issued after being cancelled
+            }
+
+        }
+
+    }
+
+    /**
+     * Lock wrapper that tracks its holder until released.
+     *
+     * @since 1.0
+     */
+    private final class TrackedLock implements AcquiredLock {
+
+        /** The key. */
+        private final K key;
+
+        /** The owner. */
+        private final Object owner;
+
+        /** The wrapped lock. */
+        private final AcquiredLock lock;
+
+        /** Whether the lock was released. */
+        private final AtomicBoolean released;
+
+        /**
+         * Creates a new instance, registering the owner as the holder of the key.
+         *
+         * @param key The key.
+         * @param owner The owner.
+         * @param lock The wrapped lock.
+         */
+        TrackedLock( final K key, final Object owner, final AcquiredLock lock ) {
+
+            this.key = key;
+            this.owner = owner;
+            this.lock = lock;
+            this.released = new AtomicBoolean();
+
+            holders.put( key, owner );
+
+        }
+
+        @Override
+        public void release() {
+
+            if ( released.compareAndSet( false, true ) ) {
+                holders.remove( key, owner );
+                lock.release();
+            }
+
+        }
+
+    }
+
+}
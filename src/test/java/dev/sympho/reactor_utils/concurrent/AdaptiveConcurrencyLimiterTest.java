@@ -0,0 +1,167 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for {@link AdaptiveConcurrencyLimiter}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    /** The initial limit. */
+    private static final int INITIAL = 10;
+
+    /** The clock used by the limiter. */
+    private VirtualTimeScheduler clock;
+
+    /** The limiter under test. */
+    private AdaptiveConcurrencyLimiter dut;
+
+    /**
+     * Creates the DUT.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        clock = VirtualTimeScheduler.create();
+        dut = new AdaptiveConcurrencyLimiter( INITIAL, 1, 100, clock );
+
+    }
+
+    /**
+     * Runs a batch of calls that saturate the limit, waiting for them to finish.
+     *
+     * @param latency The latency of each call.
+     * @param fail Whether the calls fail.
+     */
+    private void runBatch( final Duration latency, final boolean fail ) {
+
+        final var calls = dut.limit();
+        final List<Disposable> running = new ArrayList<>();
+        for ( int i = 0; i < calls; i++ ) {
+            final Mono<Long> call = fail
+                    ? Mono.delay( latency, clock ).then( Mono.error( new IllegalStateException() ) )
+                    : Mono.delay( latency, clock );
+            running.add( dut.guard( call ).onErrorResume( e -> Mono.empty() ).subscribe() );
+        }
+        clock.advanceTimeBy( latency );
+        assertThat( running ).allMatch( Disposable::isDisposed );
+
+    }
+
+    /**
+     * Tests that the number of concurrent executions is limited.
+     */
+    @Test
+    public void testLimited() {
+
+        final List<Disposable> running = new ArrayList<>();
+        for ( int i = 0; i < INITIAL + 5; i++ ) {
+            running.add( dut.guard( Mono.delay( Duration.ofMillis( 10 ), clock ) ).subscribe() );
+        }
+
+        assertThat( dut.inFlight() ).isEqualTo( INITIAL );
+        assertThat( dut.waiting() ).isEqualTo( 5 );
+
+        clock.advanceTimeBy( Duration.ofMillis( 10 ) );
+        assertThat( dut.inFlight() ).isEqualTo( 5 );
+        assertThat( dut.waiting() ).isZero();
+
+        clock.advanceTimeBy( Duration.ofMillis( 10 ) );
+        assertThat( dut.inFlight() ).isZero();
+        assertThat( running ).allMatch( Disposable::isDisposed );
+
+    }
+
+    /**
+     * Tests that the limit grows while latency is stable.
+     */
+    @Test
+    public void testGrow() {
+
+        for ( int i = 0; i < 10; i++ ) {
+            runBatch( Duration.ofMillis( 10 ), false );
+        }
+
+        assertThat( dut.limit() ).isGreaterThan( INITIAL );
+
+    }
+
+    /**
+     * Tests that the limit shrinks when latency increases.
+     */
+    @Test
+    public void testShrinkOnLatency() {
+
+        runBatch( Duration.ofMillis( 10 ), false );
+        final var peak = dut.limit();
+
+        runBatch( Duration.ofMillis( 100 ), false );
+        runBatch( Duration.ofMillis( 100 ), false );
+
+        assertThat( dut.limit() ).isLessThan( peak );
+
+    }
+
+    /**
+     * Tests that the limit shrinks when calls fail.
+     */
+    @Test
+    public void testShrinkOnFailure() {
+
+        runBatch( Duration.ofMillis( 10 ), true );
+
+        assertThat( dut.limit() ).isEqualTo( 1 );
+
+    }
+
+    /**
+     * Tests that the limit does not grow when it is not being used.
+     */
+    @Test
+    public void testAppLimited() {
+
+        for ( int i = 0; i < 100; i++ ) {
+            dut.guard( Mono.delay( Duration.ofMillis( 10 ), clock ) ).subscribe();
+            clock.advanceTimeBy( Duration.ofMillis( 10 ) );
+        }
+
+        assertThat( dut.limit() ).isEqualTo( INITIAL );
+
+    }
+
+    /**
+     * Tests that cancelling waiting or running calls releases their permits.
+     */
+    @Test
+    public void testCancel() {
+
+        final List<Disposable> running = new ArrayList<>();
+        for ( int i = 0; i < INITIAL + 5; i++ ) {
+            running.add( dut.guard( Flux.never() ).subscribe() );
+        }
+        assertThat( dut.inFlight() ).isEqualTo( INITIAL );
+
+        running.forEach( Disposable::dispose );
+
+        assertThat( dut.inFlight() ).isZero();
+        assertThat( dut.waiting() ).isZero();
+        assertThat( dut.limit() ).isEqualTo( INITIAL );
+
+    }
+
+}
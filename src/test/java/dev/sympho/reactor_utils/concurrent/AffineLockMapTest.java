@@ -0,0 +1,322 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.PublisherProbe;
+
+/**
+ * Test driver for {@link AffineLockMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class AffineLockMapTest {
+
+    /** The key used in tests. */
+    private static final String KEY = "key";
+
+    /**
+     * Tests that guarded Monos of a key run one at a time on the same thread.
+     */
+    @Test
+    public void testGuardConfined() {
+
+        final var scheduler = Schedulers.newParallel( "affine-test", 4 );
+        final var map = new AffineLockMap<String>( 4, scheduler );
+        try {
+
+            final var threads = ConcurrentHashMap.<String>newKeySet();
+            final var running = new AtomicInteger();
+            final var overlapped = new AtomicInteger();
+            final int[] counter = { 0 }; // Deliberately unsynchronized
+
+            final var tasks = IntStream.range( 0, 1000 )
+                    .mapToObj( i -> map.guard( KEY, Mono.fromCallable( () -> {
+                        if ( running.incrementAndGet() > 1 ) {
+                            overlapped.incrementAndGet();
+                        }
+                        threads.add( Thread.currentThread().getName() );
+                        final int result = counter[0]++;
+                        running.decrementAndGet();
+                        return result;
+                    } ) ) )
+                    .toList();
+
+            StepVerifier.create( Flux.merge( Flux.fromIterable( tasks ), 16 ) )
+                    .expectNextCount( 1000 )
+                    .expectComplete()
+                    .verify( Duration.ofSeconds( 10 ) );
+
+            assertThat( counter[0] ).isEqualTo( 1000 );
+            assertThat( overlapped ).hasValue( 0 );
+            assertThat( threads ).hasSize( 1 );
+
+        } finally {
+            map.dispose();
+            scheduler.dispose();
+        }
+
+    }
+
+    /**
+     * Tests that a guarded Mono that does not complete synchronously holds the worker
+     * until it terminates.
+     */
+    @Test
+    public void testGuardAsync() {
+
+        final var map = new AffineLockMap<String>( 1, Schedulers.immediate() );
+
+        StepVerifier.withVirtualTime( () -> Flux.merge(
+                        map.guard( "a", Mono.just( "a" ).delayElement( Duration.ofSeconds( 2 ) ) ),
+                        map.guard( "b", Mono.just( "b" ).delayElement( Duration.ofSeconds( 1 ) ) )
+                ) )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 2 ) )
+                .expectNext( "a" )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( "b" )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that a guard nested in a guarded Mono fails if it would wait for its own worker,
+     * without holding up the worker, and runs normally on another worker.
+     */
+    @Test
+    public void testNested() {
+
+        final var map = new AffineLockMap<String>( 2, Schedulers.immediate() );
+        final var other = IntStream.range( 0, 100 )
+                .mapToObj( i -> "other" + i )
+                .filter( k -> map.workerOf( k ) != map.workerOf( KEY ) )
+                .findFirst()
+                .orElseThrow();
+
+        StepVerifier.create( map.guard( KEY, map.guard( KEY, Mono.just( 1 ) ) ) )
+                .verifyError( IllegalStateException.class );
+        StepVerifier.create( map.guard( KEY, map.guard( other, Mono.just( 1 ) ) ) )
+                .expectNext( 1 )
+                .verifyComplete();
+        StepVerifier.create( map.guard( KEY, Mono.just( 2 ) ) )
+                .expectNext( 2 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that cancelled tasks are skipped.
+     */
+    @Test
+    public void testCancelQueued() {
+
+        final var map = new AffineLockMap<String>( 1, Schedulers.immediate() );
+        final Sinks.Empty<Void> gate = Sinks.empty();
+        final var held = map.guard( KEY, gate.asMono() ).toFuture();
+
+        final var probe = PublisherProbe.<Integer>empty();
+        map.guard( KEY, probe.mono() ).subscribe().dispose();
+        final var next = map.guard( KEY, Mono.just( 1 ) ).toFuture();
+        gate.tryEmitEmpty();
+
+        assertThat( held ).isCompleted();
+        probe.assertWasNotSubscribed();
+        assertThat( next ).isCompletedWithValue( 1 );
+        assertThat( map.queueDepth( 0 ) ).isZero();
+
+    }
+
+    /**
+     * Tests that a task cancelled while it is being started releases its worker, so the
+     * following tasks still run.
+     */
+    @Test
+    public void testCancelStarting() {
+
+        final var map = new AffineLockMap<String>( 1, Schedulers.immediate() );
+        final Sinks.Empty<Void> gate = Sinks.empty();
+        map.guard( KEY, gate.asMono() ).subscribe();
+
+        final var subscription = new AtomicReference<Subscription>();
+        final var cancelled = map.guard( KEY, Mono.defer( () -> {
+            subscription.get().cancel(); // Cancelled after starting, before subscribing
+            return Mono.just( 0 );
+        } ) ).doOnSubscribe( subscription::set ).toFuture();
+        final var next = map.guard( "other", Mono.just( 1 ) ).toFuture();
+
+        gate.tryEmitEmpty();
+        assertThat( cancelled ).isNotDone();
+        assertThat( next ).isCompletedWithValue( 1 );
+        assertThat( map.queueDepth( 0 ) ).isZero();
+
+    }
+
+    /**
+     * Tests that tasks cancelled concurrently with being started never leave their worker
+     * stuck.
+     */
+    @Test
+    public void testCancelStartingConcurrent() {
+
+        final var map = new AffineLockMap<String>( 1 );
+        try {
+
+            for ( int i = 0; i < 2000; i++ ) {
+                final var cancelled = map.guard( "key" + i, Mono.just( i ) ).subscribe();
+                Schedulers.parallel().schedule( cancelled::dispose );
+            }
+
+            StepVerifier.create( map.guard( KEY, Mono.just( -1 ) ) )
+                    .expectNext( -1 )
+                    .expectComplete()
+                    .verify( Duration.ofSeconds( 10 ) );
+
+        } finally {
+            map.dispose();
+        }
+
+    }
+
+    /**
+     * Tests that tasks submitted while the maximum number of waiters is reached are
+     * rejected and counted.
+     */
+    @Test
+    public void testBounded() {
+
+        final var map = new AffineLockMap<String>( 1, 1, Schedulers.immediate() );
+        final Sinks.Empty<Void> gate = Sinks.empty();
+        map.guard( KEY, gate.asMono() ).subscribe();
+
+        final var waiting = map.guard( KEY, Mono.just( 1 ) ).toFuture();
+        StepVerifier.create( map.guard( KEY, Mono.just( 2 ) ) )
+                .verifyError( LockOverloadedException.class );
+        assertThat( map.queueDepth( 0 ) ).isOne();
+        assertThat( map.rejected( 0 ) ).isOne();
+
+        gate.tryEmitEmpty();
+        assertThat( waiting ).isCompletedWithValue( 1 );
+
+    }
+
+    /**
+     * Tests that keys are assigned to valid workers consistently.
+     */
+    @Test
+    public void testWorkerOf() {
+
+        final var map = new AffineLockMap<String>( 3, Schedulers.immediate() );
+        final Set<Integer> workers = ConcurrentHashMap.newKeySet();
+        for ( int i = 0; i < 100; i++ ) {
+            final var key = "key" + i;
+            final int worker = map.workerOf( key );
+            assertThat( worker ).isBetween( 0, 2 ).isEqualTo( map.workerOf( key ) );
+            workers.add( worker );
+        }
+        assertThat( workers ).hasSize( map.workers() );
+        assertThatExceptionOfType( IndexOutOfBoundsException.class )
+                .isThrownBy( () -> map.queueDepth( 3 ) );
+
+    }
+
+    /**
+     * Tests that tasks submitted after disposal are rejected.
+     */
+    @Test
+    public void testDisposed() {
+
+        final var scheduler = Schedulers.newSingle( "affine-test" );
+        final var map = new AffineLockMap<String>( 2, scheduler );
+        map.dispose();
+        scheduler.dispose();
+
+        assertThat( map.isDisposed() ).isTrue();
+        StepVerifier.create( map.guard( KEY, Mono.just( 1 ) ) )
+                .verifyError( RejectedExecutionException.class );
+
+    }
+
+    /**
+     * Tests that tasks waiting when the map is disposed fail, while the running task
+     * finishes normally.
+     */
+    @Test
+    public void testDisposeQueued() {
+
+        final var map = new AffineLockMap<String>( 1, Schedulers.immediate() );
+        final Sinks.Empty<Void> gate = Sinks.empty();
+        final var running = map.guard( KEY, gate.asMono() ).toFuture();
+        final var probe = PublisherProbe.of( Mono.just( 1 ) );
+        final var waiting = map.guard( KEY, probe.mono() ).toFuture();
+
+        map.dispose();
+        assertThat( waiting ).isCompletedExceptionally();
+        assertThatThrownBy( waiting::join ).hasCauseInstanceOf( RejectedExecutionException.class );
+        assertThat( running ).isNotDone();
+
+        gate.tryEmitEmpty();
+        assertThat( running ).isCompleted();
+        probe.assertWasNotSubscribed();
+        assertThat( map.queueDepth( 0 ) ).isZero();
+
+    }
+
+    /**
+     * Tests that tasks waiting on a worker whose scheduler was disposed fail once the
+     * running task finishes.
+     */
+    @Test
+    public void testSchedulerDisposed() {
+
+        final var scheduler = Schedulers.newSingle( "affine-test" );
+        final var map = new AffineLockMap<String>( 1, scheduler );
+        final Sinks.Empty<Void> gate = Sinks.empty();
+        final var started = new CountDownLatch( 1 );
+        final var running = map.guard( KEY, gate.asMono()
+                .doOnSubscribe( s -> started.countDown() ) ).toFuture();
+        final var waiting = map.guard( KEY, Mono.just( 1 ) ).toFuture();
+
+        assertThatNoException().isThrownBy( () -> started.await( 10, TimeUnit.SECONDS ) );
+        scheduler.dispose();
+        gate.tryEmitEmpty();
+
+        assertThat( running ).isCompleted();
+        assertThat( waiting ).isCompletedExceptionally();
+        assertThatThrownBy( waiting::join ).hasCauseInstanceOf( RejectedExecutionException.class );
+        assertThat( map.isDisposed() ).isTrue();
+
+    }
+
+    /**
+     * Tests that invalid configurations are rejected.
+     */
+    @Test
+    public void testInvalid() {
+
+        final var scheduler = Schedulers.immediate();
+        assertThatIllegalArgumentException().isThrownBy( () -> new AffineLockMap<>( 0 ) );
+        assertThatIllegalArgumentException().isThrownBy(
+                () -> new AffineLockMap<>( 1, -1, scheduler ) );
+
+    }
+
+}
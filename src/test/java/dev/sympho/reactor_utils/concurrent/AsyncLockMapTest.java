@@ -1,6 +1,13 @@
 package dev.sympho.reactor_utils.concurrent;
 
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+
 import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import reactor.test.StepVerifier;
 
 /**
  * Test driver for {@link AsyncLockMap}.
@@ -10,6 +17,9 @@ import org.junit.jupiter.api.Nested;
  */
 public class AsyncLockMapTest extends AbstractReactiveLockMapTest<AsyncLockMap<String>> {
 
+    /** The key used in tests. */
+    private static final String KEY = "key";
+
     @Override
     public AsyncLockMap<String> makeLocks() {
 
@@ -17,6 +27,80 @@ public class AsyncLockMapTest extends AbstractReactiveLockMapTest<AsyncLockMap<S
 
     }
 
+    /**
+     * Tests that cancelled waiters are skipped when the lock is released, and that the
+     * key is discarded once the last holder releases it.
+     */
+    @Test
+    public void testCancelledSkipped() {
+
+        final var map = makeLocks();
+        final var held = map.tryAcquire( KEY );
+        assertThat( held ).isNotNull();
+
+        final var first = map.acquire( KEY ).toFuture();
+        final var cancelled = map.acquire( KEY ).toFuture();
+        final var last = map.acquire( KEY ).toFuture();
+        cancelled.cancel( true );
+
+        held.release();
+        assertThat( first ).isCompleted();
+        assertThat( last ).isNotDone();
+
+        first.join().release();
+        assertThat( last ).isCompleted();
+        assertThat( map.nodes() ).isOne();
+
+        last.join().release();
+        assertThat( map.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that releasing a lock again does not release the lock issued to the next holder.
+     */
+    @Test
+    public void testReleaseTwice() {
+
+        final var map = makeLocks();
+        final var held = map.tryAcquire( KEY );
+        assertThat( held ).isNotNull();
+
+        final var next = map.acquire( KEY ).toFuture();
+        held.release();
+        held.release();
+
+        assertThat( next ).isCompleted();
+        assertThat( map.tryAcquire( KEY ) ).isNull();
+
+        next.join().release();
+        next.join().release();
+        assertThat( map.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that a lock issued before being requested is released if the acquisition is
+     * cancelled.
+     */
+    @Test
+    public void testCancelUnrequested() {
+
+        final var map = makeLocks();
+        final var held = map.tryAcquire( KEY );
+        assertThat( held ).isNotNull();
+
+        StepVerifier.create( map.acquire( KEY ), 0 )
+                .expectSubscription()
+                .then( held::release )
+                .expectNoEvent( Duration.ofMillis( 10 ) )
+                .thenCancel()
+                .verify();
+
+        assertThat( map.nodes() ).isZero();
+
+    }
+
     /**
      * Tests for the map itself.
      *
@@ -1,5 +1,14 @@
 package dev.sympho.reactor_utils.concurrent;
 
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
 /**
  * Test driver for {@link AsyncLock}.
  *
@@ -14,5 +23,89 @@ public class AsyncLockTest extends AbstractReactiveLockTest<AsyncLock> {
         return new AsyncLock();
 
     }
-    
+
+    /**
+     * Tests that optimistic read stamps are only issued while the lock is free, and are
+     * invalidated by any acquisition.
+     */
+    @Test
+    public void testOptimisticStamp() {
+
+        final var stamp = lock.tryOptimisticRead();
+        assertThat( stamp ).isNotEqualTo( OptimisticReactiveLock.INVALID_STAMP );
+        assertThat( lock.validate( stamp ) ).isTrue();
+        assertThat( lock.validate( OptimisticReactiveLock.INVALID_STAMP ) ).isFalse();
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+        assertThat( lock.validate( stamp ) ).isFalse();
+        assertThat( lock.tryOptimisticRead() ).isEqualTo( OptimisticReactiveLock.INVALID_STAMP );
+
+        final var waiting = lock.acquire().toFuture();
+        held.release();
+        assertThat( lock.tryOptimisticRead() ).isEqualTo( OptimisticReactiveLock.INVALID_STAMP );
+
+        waiting.join().release();
+        final var after = lock.tryOptimisticRead();
+        assertThat( after ).isNotEqualTo( OptimisticReactiveLock.INVALID_STAMP );
+        assertThat( lock.validate( after ) ).isTrue();
+
+    }
+
+    /**
+     * Tests that an optimistic read that does not conflict does not acquire the lock.
+     */
+    @Test
+    public void testOptimisticRead() {
+
+        final var reads = new AtomicInteger();
+        StepVerifier.create( lock.optimisticRead( Mono.fromCallable( reads::incrementAndGet ) ) )
+                .expectNext( 1 )
+                .verifyComplete();
+
+        StepVerifier.create( lock.optimisticRead( Mono.empty() ) )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that an optimistic read that conflicts with a writer is repeated under the lock.
+     */
+    @Test
+    public void testOptimisticReadConflict() {
+
+        final var reads = new AtomicInteger();
+        final var read = Mono.fromCallable( () -> {
+            if ( reads.incrementAndGet() == 1 ) {
+                final var writer = lock.tryAcquire(); // Writer intervenes during first read
+                assertThat( writer ).isNotNull();
+                writer.release();
+                throw new IllegalStateException( "Inconsistent read" );
+            }
+            return reads.get();
+        } );
+
+        StepVerifier.create( lock.optimisticRead( read ) )
+                .expectNext( 2 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that an optimistic read made while the lock is held waits for the lock.
+     */
+    @Test
+    public void testOptimisticReadBusy() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        final var result = lock.optimisticRead( Mono.just( "value" ) ).toFuture();
+        assertThat( result ).isNotDone();
+
+        held.release();
+        assertThat( result ).isCompletedWithValue( "value" );
+
+    }
+
 }
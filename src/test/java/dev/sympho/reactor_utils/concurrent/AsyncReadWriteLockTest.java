@@ -0,0 +1,194 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test driver for {@link AsyncReadWriteLock}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class AsyncReadWriteLockTest {
+
+    /** The device under test. */
+    private AsyncReadWriteLock dut;
+
+    /**
+     * Sets up the device under test.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        dut = new AsyncReadWriteLock();
+
+    }
+
+    /**
+     * Tests that readers share the lock while the writer excludes everyone.
+     */
+    @Test
+    public void testShared() {
+
+        final var read1 = dut.tryAcquireRead();
+        final var read2 = dut.tryAcquireRead();
+        assertThat( read1 ).isNotNull();
+        assertThat( read2 ).isNotNull();
+        assertThat( dut.tryAcquireWrite() ).isNull();
+
+        final var write = dut.acquireWrite().toFuture();
+        read1.release();
+        assertThat( write ).isNotDone();
+        read2.release();
+        assertThat( write ).isCompleted();
+
+        assertThat( dut.tryAcquireRead() ).isNull();
+        assertThat( dut.tryAcquireWrite() ).isNull();
+        write.join().release();
+
+        final var read3 = dut.tryAcquireRead();
+        assertThat( read3 ).isNotNull();
+        read3.release();
+
+    }
+
+    /**
+     * Tests that readers arriving after a waiting writer wait for it.
+     */
+    @Test
+    public void testWriterPreference() {
+
+        final var read = dut.tryAcquireRead();
+        assertThat( read ).isNotNull();
+
+        final var write = dut.acquireWrite().toFuture();
+        final var lateRead = dut.acquireRead().toFuture();
+        assertThat( dut.tryAcquireRead() ).isNull();
+
+        read.release();
+        assertThat( write ).isCompleted();
+        assertThat( lateRead ).isNotDone();
+
+        write.join().release();
+        assertThat( lateRead ).isCompleted();
+        lateRead.join().release();
+
+    }
+
+    /**
+     * Tests that downgrading lets waiting readers in, but not writers.
+     */
+    @Test
+    public void testDowngrade() {
+
+        final var write = dut.tryAcquireWrite();
+        assertThat( write ).isNotNull();
+
+        final var waitingRead = dut.acquireRead().toFuture();
+        final var waitingWrite = dut.acquireWrite().toFuture();
+        final var lateRead = dut.acquireRead().toFuture();
+
+        final var read = write.downgrade();
+        assertThat( waitingRead ).isCompleted();
+        assertThat( waitingWrite ).isNotDone();
+        assertThat( lateRead ).isNotDone();
+        assertThatIllegalStateException().isThrownBy( write::downgrade );
+
+        write.release(); // Already converted, no effect
+        assertThat( waitingWrite ).isNotDone();
+
+        read.release();
+        waitingRead.join().release();
+        assertThat( waitingWrite ).isCompleted();
+        waitingWrite.join().release();
+        assertThat( lateRead ).isCompleted();
+        lateRead.join().release();
+
+    }
+
+    /**
+     * Tests that a read lock can only be upgraded while it is the only reader.
+     */
+    @Test
+    public void testUpgrade() {
+
+        final var read1 = dut.tryAcquireRead();
+        final var read2 = dut.tryAcquireRead();
+        assertThat( read1 ).isNotNull();
+        assertThat( read2 ).isNotNull();
+
+        assertThat( read1.tryUpgrade() ).isNull();
+        read2.release();
+
+        final var waitingWrite = dut.acquireWrite().toFuture();
+        final var write = read1.tryUpgrade();
+        assertThat( write ).isNotNull();
+        assertThatIllegalStateException().isThrownBy( read1::tryUpgrade );
+
+        read1.release(); // Already converted, no effect
+        assertThat( dut.tryAcquireRead() ).isNull();
+        assertThat( waitingWrite ).isNotDone();
+
+        write.release();
+        assertThat( waitingWrite ).isCompleted();
+        waitingWrite.join().release();
+
+    }
+
+    /**
+     * Tests that released locks cannot be converted.
+     */
+    @Test
+    public void testConvertReleased() {
+
+        final var read = dut.tryAcquireRead();
+        assertThat( read ).isNotNull();
+        read.release();
+        assertThatIllegalStateException().isThrownBy( read::tryUpgrade );
+
+        final var write = dut.tryAcquireWrite();
+        assertThat( write ).isNotNull();
+        write.release();
+        assertThatIllegalStateException().isThrownBy( write::downgrade );
+
+    }
+
+    /**
+     * Tests that a cancelled acquisition releases the lock once acquired.
+     */
+    @Test
+    public void testCancel() {
+
+        final var write = dut.tryAcquireWrite();
+        assertThat( write ).isNotNull();
+
+        dut.acquireWrite().subscribe().dispose();
+        write.release();
+
+        final var again = dut.tryAcquireWrite();
+        assertThat( again ).isNotNull();
+        again.release();
+
+    }
+
+    /**
+     * Tests for the write lock as a plain lock.
+     *
+     * @since 1.0
+     */
+    @Nested
+    public class WriteLockTest extends AbstractReactiveLockTest<ReactiveLock> {
+
+        @Override
+        public ReactiveLock makeLock() {
+
+            return new AsyncReadWriteLock().writeLock();
+
+        }
+
+    }
+
+}
@@ -0,0 +1,271 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import dev.sympho.reactor_utils.concurrent.backend.InMemoryLockBackend;
+import dev.sympho.reactor_utils.concurrent.backend.LockBackend;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for {@link BackendLockMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class BackendLockMapTest extends AbstractReactiveLockMapTest<BackendLockMap<String>> {
+
+    /** The poll interval used for multi-node tests. */
+    private static final Duration POLL = Duration.ofSeconds( 1 );
+
+    /** The linger time used for multi-node tests. */
+    private static final Duration LINGER = Duration.ofSeconds( 2 );
+
+    /** The scheduler used for multi-node tests. */
+    private VirtualTimeScheduler scheduler;
+
+    /** The backend of the first node. */
+    private InMemoryLockBackend<String> backend;
+
+    /** The first node. */
+    private BackendLockMap<String> node1;
+
+    /** The second node. */
+    private BackendLockMap<String> node2;
+
+    /**
+     * Creates a map that calls the in-memory backend directly, as it never blocks.
+     */
+    @Override
+    public BackendLockMap<String> makeLocks() {
+
+        return new BackendLockMap<>( new InMemoryLockBackend<>(),
+                BackendLockMap.DEFAULT_POLL_INTERVAL, BackendLockMap.DEFAULT_LINGER,
+                Schedulers.parallel(), Schedulers.immediate() );
+
+    }
+
+    /**
+     * Sets up the nodes for multi-node tests.
+     */
+    @BeforeEach
+    public void setUpNodes() {
+
+        scheduler = VirtualTimeScheduler.create();
+        backend = new InMemoryLockBackend<>();
+        node1 = new BackendLockMap<>( backend, POLL, LINGER, scheduler, scheduler );
+        node2 = new BackendLockMap<>( backend.peer(), POLL, LINGER, scheduler, scheduler );
+
+    }
+
+    /**
+     * Disposes the scheduler for multi-node tests.
+     */
+    @AfterEach
+    public void tearDownNodes() {
+
+        scheduler.dispose();
+
+    }
+
+    /**
+     * Tests that a lock held by one node excludes the other node until it is relinquished.
+     */
+    @Test
+    public void testExclusion() {
+
+        final var held = node1.tryAcquire( "key" );
+        assertThat( held ).isNotNull();
+        assertThat( node2.tryAcquire( "key" ) ).isNull();
+
+        final var other = node2.tryAcquire( "other" );
+        assertThat( other ).isNotNull();
+        other.release();
+
+        final var waiting = node2.acquire( "key" ).toFuture();
+        scheduler.advanceTimeBy( POLL.multipliedBy( 5 ) );
+        assertThat( waiting ).isNotDone();
+
+        held.release();
+        assertThat( node1.isOwned( "key" ) ).isTrue();
+        scheduler.advanceTimeBy( LINGER );
+        assertThat( node1.isOwned( "key" ) ).isFalse();
+
+        scheduler.advanceTimeBy( POLL );
+        assertThat( waiting ).isCompleted();
+        assertThat( node2.isOwned( "key" ) ).isTrue();
+        assertThat( node1.tryAcquire( "key" ) ).isNull();
+
+        waiting.join().release();
+        scheduler.advanceTimeBy( LINGER );
+        assertThat( backend.isOwned( "key" ) ).isFalse();
+
+    }
+
+    /**
+     * Tests that ownership is retained while local acquisitions are waiting and during the
+     * linger time, so that they do not contend with other nodes.
+     */
+    @Test
+    public void testLinger() {
+
+        final var held = node1.tryAcquire( "key" );
+        assertThat( held ).isNotNull();
+
+        final var local = node1.acquire( "key" ).toFuture();
+        final var remote = node2.acquire( "key" ).toFuture();
+
+        held.release();
+        assertThat( local ).isCompleted();
+        scheduler.advanceTimeBy( POLL );
+        assertThat( remote ).isNotDone();
+
+        local.join().release();
+        scheduler.advanceTimeBy( LINGER.dividedBy( 2 ) );
+
+        StepVerifier.create( node1.acquire( "key" ) )
+                .assertNext( AcquiredLock::release )
+                .verifyComplete();
+        scheduler.advanceTimeBy( LINGER.dividedBy( 2 ) );
+        assertThat( remote ).isNotDone(); // Linger was restarted
+
+        scheduler.advanceTimeBy( LINGER );
+        assertThat( remote ).isCompleted();
+        remote.join().release();
+
+    }
+
+    /**
+     * Tests that an acquisition cancelled while waiting for another node releases the
+     * lock once acquired.
+     */
+    @Test
+    public void testCancel() {
+
+        final var held = node1.tryAcquire( "key" );
+        assertThat( held ).isNotNull();
+
+        final var waiting = node2.acquire( "key" ).subscribe();
+        waiting.dispose();
+
+        held.release();
+        scheduler.advanceTimeBy( LINGER.plus( POLL ) );
+        scheduler.advanceTimeBy( LINGER );
+        assertThat( backend.isOwned( "key" ) ).isFalse();
+
+    }
+
+    /**
+     * Tests that the local lock is released even if the backend fails to release the key.
+     */
+    @Test
+    public void testReleaseFailure() {
+
+        final var failing = new LockBackend<String>() {
+
+            @Override
+            public boolean tryAcquire( final String key ) {
+                return backend.tryAcquire( key );
+            }
+
+            @Override
+            public void release( final String key ) {
+                backend.release( key );
+                throw new IllegalStateException( "Release failed" );
+            }
+
+        };
+        final var map = new BackendLockMap<>( failing, POLL, Duration.ZERO, scheduler, scheduler );
+
+        final var held = map.tryAcquire( "key" );
+        assertThat( held ).isNotNull();
+        assertThatIllegalStateException().isThrownBy( held::release );
+        assertThat( map.isOwned( "key" ) ).isFalse();
+
+        StepVerifier.create( map.acquire( "key" ) )
+                .assertNext( lock -> assertThatIllegalStateException().isThrownBy( lock::release ) )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that acquisitions call the backend on the backend scheduler.
+     */
+    @Test
+    public void testBackendScheduler() {
+
+        final var threads = new CopyOnWriteArrayList<String>();
+        final var tracking = new LockBackend<String>() {
+
+            @Override
+            public boolean tryAcquire( final String key ) {
+                threads.add( Thread.currentThread().getName() );
+                return backend.tryAcquire( key );
+            }
+
+            @Override
+            public void release( final String key ) {
+                backend.release( key );
+            }
+
+        };
+        final var backendScheduler = Schedulers.newSingle( "backend-test" );
+        try {
+
+            final var map = new BackendLockMap<>( tracking, POLL, LINGER, scheduler,
+                    backendScheduler );
+            StepVerifier.create( map.acquire( "key" ) )
+                    .assertNext( AcquiredLock::release )
+                    .expectComplete()
+                    .verify( Duration.ofSeconds( 5 ) );
+            assertThat( threads ).singleElement().asString().startsWith( "backend-test" );
+
+        } finally {
+            backendScheduler.dispose();
+        }
+
+    }
+
+    /**
+     * Tests that invalid configurations are rejected.
+     */
+    @Test
+    public void testInvalid() {
+
+        assertThatIllegalArgumentException().isThrownBy( () -> new BackendLockMap<>(
+                backend, Duration.ZERO, LINGER ) );
+        assertThatIllegalArgumentException().isThrownBy( () -> new BackendLockMap<>(
+                backend, POLL, Duration.ofSeconds( -1 ) ) );
+
+    }
+
+    /**
+     * Tests for the map itself.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests.
+     */
+    @Nested
+    public class MapTest extends AbstractReactiveMapTest {}
+
+    /**
+     * Tests for a lock backed by the map.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests.
+     */
+    @Nested
+    public class MapLockTest extends AbstractReactiveMapLockTest {}
+
+}
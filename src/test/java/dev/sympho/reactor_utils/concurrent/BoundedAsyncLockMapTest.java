@@ -0,0 +1,77 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import reactor.test.StepVerifier;
+
+/**
+ * Test driver for {@link AsyncLockMap} with a bounded number of waiters.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class BoundedAsyncLockMapTest extends AbstractReactiveLockMapTest<AsyncLockMap<String>> {
+
+    /** The maximum number of waiters. */
+    private static final int MAX_WAITERS = 2;
+
+    @Override
+    public AsyncLockMap<String> makeLocks() {
+
+        return new AsyncLockMap<>( MAX_WAITERS );
+
+    }
+
+    /**
+     * Tests that acquisitions beyond the maximum number of waiters are rejected, independently
+     * for each key.
+     */
+    @Test
+    public void testOverload() {
+
+        final var holder = map.acquire( "a" ).block();
+        final var waiter1 = map.acquire( "a" ).toFuture();
+        final var waiter2 = map.acquire( "a" ).toFuture();
+
+        StepVerifier.create( map.acquire( "a" ) )
+                .verifyError( LockOverloadedException.class );
+        assertThat( map.tryAcquire( "a" ) ).isNull();
+
+        final var other = map.tryAcquire( "b" );
+        assertThat( other ).isNotNull();
+        other.release();
+
+        holder.release();
+        waiter1.join().release();
+        waiter2.join().release();
+
+        StepVerifier.create( map.acquire( "a" ) )
+                .assertNext( AcquiredLock::release )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests for the map itself.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests. 
+     */
+    @Nested
+    public class MapTest extends AbstractReactiveMapTest {}
+
+    /**
+     * Tests for a lock backed by the map.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests. 
+     */
+    @Nested
+    public class MapLockTest extends AbstractReactiveMapLockTest {}
+
+}
@@ -0,0 +1,99 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.test.StepVerifier;
+
+/**
+ * Test driver for {@link AsyncLock} with a bounded number of waiters.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class BoundedAsyncLockTest extends AbstractReactiveLockTest<AsyncLock> {
+
+    /** The maximum number of waiters. */
+    private static final int MAX_WAITERS = 2;
+
+    @Override
+    public AsyncLock makeLock() {
+
+        return new AsyncLock( MAX_WAITERS );
+
+    }
+
+    /**
+     * Tests that acquisitions beyond the maximum number of waiters are rejected, and that
+     * the lock accepts waiters again once the queue drains.
+     */
+    @Test
+    public void testOverload() {
+
+        final var holder = lock.acquire().block();
+        final var waiter1 = lock.acquire().toFuture();
+        final var waiter2 = lock.acquire().toFuture();
+
+        StepVerifier.create( lock.acquire() )
+                .verifyErrorSatisfies( e -> assertThat( e )
+                        .isInstanceOfSatisfying( LockOverloadedException.class,
+                                ex -> assertThat( ex.getMaxWaiters() ).isEqualTo( MAX_WAITERS )
+                        ) );
+        assertThat( lock.tryAcquire() ).isNull();
+
+        holder.release();
+        assertThat( waiter1 ).isCompleted();
+        final var waiter3 = lock.acquire().toFuture();
+        assertThat( waiter3 ).isNotDone();
+
+        waiter1.join().release();
+        waiter2.join().release();
+        waiter3.join().release();
+
+        final var free = lock.tryAcquire();
+        assertThat( free ).isNotNull();
+        free.release();
+
+    }
+
+    /**
+     * Tests that cancelled waiters stop counting towards the limit once their turn passes.
+     */
+    @Test
+    public void testCancelledWaiters() {
+
+        final var holder = lock.acquire().block();
+        lock.acquire().subscribe().dispose();
+        lock.acquire().subscribe().dispose();
+
+        StepVerifier.create( lock.acquire() )
+                .verifyError( LockOverloadedException.class );
+
+        holder.release();
+        StepVerifier.create( lock.acquire() )
+                .assertNext( AcquiredLock::release )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that a lock with no waiters allowed can still be held.
+     */
+    @Test
+    public void testNoWaiters() {
+
+        final var exclusive = new AsyncLock( 0 );
+        final var holder = exclusive.acquire().block();
+
+        StepVerifier.create( exclusive.acquire() )
+                .verifyError( LockOverloadedException.class );
+
+        holder.release();
+        StepVerifier.create( exclusive.acquire() )
+                .assertNext( AcquiredLock::release )
+                .verifyComplete();
+
+    }
+
+}
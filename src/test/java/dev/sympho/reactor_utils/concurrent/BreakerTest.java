@@ -187,4 +187,161 @@ public class BreakerTest {
         
     }
     
+    /**
+     * Tests that the breaker cancels a monitored flux, relaying items emitted before
+     * it was shut off.
+     */
+    @Test
+    public void testFlux() {
+
+        StepVerifier.withVirtualTime( () -> Flux.interval( Duration.ofSeconds( 1 ) )
+                        .transform( dut::monitor )
+                )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( 0L )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( 1L )
+                .expectNoEvent( Duration.ofMillis( 500 ) )
+                .then( dut::shutoff )
+                .verifyComplete();
+
+        assertThat( dut.monitored() ).isZero();
+
+    }
+
+    /**
+     * Tests that monos monitored after the breaker is shut off complete immediately.
+     */
+    @Test
+    public void testAfterShutoff() {
+
+        dut.shutoff();
+
+        StepVerifier.create( Mono.never().transform( dut::monitor ) )
+                .verifyComplete();
+        StepVerifier.create( Flux.never().transform( dut::monitor ) )
+                .verifyComplete();
+
+        assertThat( dut.monitored() ).isZero();
+
+    }
+
+    /**
+     * Tests that monitored subscriptions stop being tracked once they terminate or are 
+     * cancelled.
+     */
+    @Test
+    public void testUnregister() {
+
+        final var done = Mono.just( 1 ).transform( dut::monitor ).block();
+        assertThat( done ).isEqualTo( 1 );
+        assertThat( dut.monitored() ).isZero();
+
+        final var pending = Mono.never().transform( dut::monitor ).subscribe();
+        assertThat( dut.monitored() ).isOne();
+
+        pending.dispose();
+        assertThat( dut.monitored() ).isZero();
+
+    }
+
+    /**
+     * Tests shutting off a breaker that monitors a large number of subscriptions in parallel.
+     */
+    @Test
+    public void testParallel() {
+
+        final var breaker = new ReactiveBreaker( 1 );
+        final var count = 10_000;
+
+        final var result = Flux.range( 0, count )
+                .flatMap( i -> Mono.<Integer>never().transform( breaker::monitor ), count )
+                .count()
+                .toFuture();
+
+        assertThat( breaker.monitored() ).isEqualTo( count );
+        assertThat( result ).isNotDone();
+
+        breaker.shutoff();
+
+        assertThat( result ).succeedsWithin( Duration.ofSeconds( 10 ) ).isEqualTo( 0L );
+        assertThat( breaker.monitored() ).isZero();
+
+    }
+    
+    /**
+     * Tests that shutting off a breaker also shuts off its descendants.
+     */
+    @Test
+    public void testChildCascade() {
+
+        final var child = dut.child();
+        final var grandchild = child.child();
+
+        final var pending1 = Mono.never().transform( child::monitor ).subscribe();
+        final var pending2 = Mono.never().transform( child::monitor ).subscribe();
+        final var pending3 = Flux.never().transform( grandchild::monitor ).subscribe();
+
+        assertThat( dut.monitored() ).isOne();
+        assertThat( child.monitored() ).isEqualTo( 3 );
+        assertThat( grandchild.monitored() ).isOne();
+
+        dut.shutoff();
+
+        assertThat( pending1.isDisposed() ).isTrue();
+        assertThat( pending2.isDisposed() ).isTrue();
+        assertThat( pending3.isDisposed() ).isTrue();
+        assertThat( dut.monitored() ).isZero();
+        assertThat( child.monitored() ).isZero();
+        assertThat( grandchild.monitored() ).isZero();
+
+    }
+
+    /**
+     * Tests that shutting off a child breaker does not affect its parent or siblings.
+     */
+    @Test
+    public void testChildIndependent() {
+
+        final var child1 = dut.child();
+        final var child2 = dut.child();
+
+        final var pending1 = Mono.never().transform( child1::monitor ).subscribe();
+        final var pending2 = Mono.never().transform( child2::monitor ).subscribe();
+        final var pending3 = Mono.never().transform( dut::monitor ).subscribe();
+
+        assertThat( dut.monitored() ).isEqualTo( 3 );
+
+        child1.shutoff();
+
+        assertThat( pending1.isDisposed() ).isTrue();
+        assertThat( pending2.isDisposed() ).isFalse();
+        assertThat( pending3.isDisposed() ).isFalse();
+        assertThat( dut.monitored() ).isEqualTo( 2 );
+
+        dut.shutoff();
+
+        assertThat( pending2.isDisposed() ).isTrue();
+        assertThat( pending3.isDisposed() ).isTrue();
+
+    }
+
+    /**
+     * Tests that children of a breaker that is already shut off are also shut off.
+     */
+    @Test
+    public void testChildAfterShutoff() {
+
+        dut.shutoff();
+
+        StepVerifier.create( Mono.never().transform( dut.child()::monitor ) )
+                .verifyComplete();
+        StepVerifier.create( Mono.never().transform( ReactiveBreaker.off().child()::monitor ) )
+                .verifyComplete();
+
+        assertThat( dut.monitored() ).isZero();
+
+    }
+
 }
@@ -0,0 +1,287 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for {@link ReactiveCircuitBreaker}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class CircuitBreakerTest {
+
+    /** The configuration used for tests. */
+    private static final ReactiveCircuitBreaker.Config CONFIG = new ReactiveCircuitBreaker.Config(
+            0.5f, 0.5f, Duration.ofSeconds( 1 ),
+            4, 4,
+            Duration.ofSeconds( 10 ), 2
+    );
+
+    /** The clock used by the breaker. */
+    private VirtualTimeScheduler clock;
+
+    /** The breaker under test. */
+    private ReactiveCircuitBreaker dut;
+
+    /** The number of times a call was actually made. */
+    private AtomicInteger made;
+
+    /**
+     * Creates the DUT.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        clock = VirtualTimeScheduler.create();
+        dut = new ReactiveCircuitBreaker( CONFIG, clock );
+        made = new AtomicInteger();
+
+    }
+
+    /**
+     * Makes a call through the breaker.
+     *
+     * @param fail Whether the call should fail.
+     * @param delay How long the call takes.
+     * @return The monitored call.
+     */
+    private Mono<Integer> call( final boolean fail, final Duration delay ) {
+
+        final Mono<Integer> source = fail
+                ? Mono.error( new IllegalStateException( "fail" ) )
+                : Mono.just( 1 );
+        return Mono.delay( delay, clock )
+                .doOnNext( d -> made.incrementAndGet() )
+                .then( source )
+                .transform( dut::monitor );
+
+    }
+
+    /**
+     * Makes a call through the breaker, waiting for it to terminate.
+     *
+     * @param fail Whether the call should fail.
+     * @param delay How long the call takes.
+     */
+    private void run( final boolean fail, final Duration delay ) {
+
+        call( fail, delay ).onErrorResume( IllegalStateException.class, e -> Mono.empty() )
+                .subscribe();
+        clock.advanceTimeBy( delay );
+
+    }
+
+    /**
+     * Makes a fast call through the breaker, waiting for it to terminate.
+     *
+     * @param fail Whether the call should fail.
+     */
+    private void run( final boolean fail ) {
+
+        run( fail, Duration.ZERO );
+
+    }
+
+    /**
+     * Verifies that a call is rejected.
+     */
+    private void verifyRejected() {
+
+        final var before = made.get();
+        StepVerifier.create( call( false, Duration.ZERO ) )
+                .verifyError( CircuitBreakerOpenException.class );
+        assertThat( made.get() ).isEqualTo( before );
+
+    }
+
+    /**
+     * Tests that the circuit stays closed while the failure rate is below the threshold.
+     */
+    @Test
+    public void testHealthy() {
+
+        for ( int i = 0; i < 10; i++ ) {
+            run( i % 4 == 0 );
+        }
+
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.CLOSED );
+        StepVerifier.create( call( false, Duration.ZERO ) )
+                .expectNext( 1 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that the circuit does not open before the minimum number of calls.
+     */
+    @Test
+    public void testMinimumCalls() {
+
+        run( true );
+        run( true );
+        run( true );
+
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.CLOSED );
+
+        run( false );
+
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.OPEN );
+
+    }
+
+    /**
+     * Tests that the circuit opens when the failure rate reaches the threshold, and rejects
+     * calls while open.
+     */
+    @Test
+    public void testOpenOnFailures() {
+
+        run( false );
+        run( true );
+        run( false );
+        run( true );
+
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.OPEN );
+        verifyRejected();
+
+    }
+
+    /**
+     * Tests that the circuit opens when the slow call rate reaches the threshold.
+     */
+    @Test
+    public void testOpenOnSlowCalls() {
+
+        run( false, Duration.ofSeconds( 2 ) );
+        run( false );
+        run( false, Duration.ofSeconds( 2 ) );
+        run( false );
+
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.OPEN );
+        verifyRejected();
+
+    }
+
+    /**
+     * Tests that only the most recent calls are considered.
+     */
+    @Test
+    public void testSlidingWindow() {
+
+        run( true );
+        run( false );
+        run( false );
+        run( false );
+
+        for ( int i = 0; i < 10; i++ ) {
+            run( false );
+        }
+        run( true );
+        run( true );
+
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.OPEN );
+
+    }
+
+    /**
+     * Tests that the circuit closes after healthy trial calls.
+     */
+    @Test
+    public void testHalfOpenClose() {
+
+        for ( int i = 0; i < 4; i++ ) {
+            run( true );
+        }
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.OPEN );
+
+        clock.advanceTimeBy( Duration.ofSeconds( 9 ) );
+        verifyRejected();
+
+        clock.advanceTimeBy( Duration.ofSeconds( 1 ) );
+
+        final var trial1 = call( false, Duration.ofMillis( 100 ) ).subscribe();
+        final var trial2 = call( false, Duration.ofMillis( 100 ) ).subscribe();
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.HALF_OPEN );
+        verifyRejected(); // Trials exhausted
+
+        clock.advanceTimeBy( Duration.ofMillis( 100 ) );
+        assertThat( trial1.isDisposed() ).isTrue();
+        assertThat( trial2.isDisposed() ).isTrue();
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.CLOSED );
+
+        run( true ); // New window
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.CLOSED );
+
+    }
+
+    /**
+     * Tests that the circuit re-opens after unhealthy trial calls.
+     */
+    @Test
+    public void testHalfOpenReopen() {
+
+        for ( int i = 0; i < 4; i++ ) {
+            run( true );
+        }
+        clock.advanceTimeBy( Duration.ofSeconds( 10 ) );
+
+        run( false );
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.HALF_OPEN );
+        run( true );
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.OPEN );
+
+        verifyRejected();
+
+    }
+
+    /**
+     * Tests that cancelled trial calls give back their permit.
+     */
+    @Test
+    public void testHalfOpenCancel() {
+
+        for ( int i = 0; i < 4; i++ ) {
+            run( true );
+        }
+        clock.advanceTimeBy( Duration.ofSeconds( 10 ) );
+
+        final var trial1 = call( false, Duration.ofSeconds( 1 ) ).subscribe();
+        final var trial2 = call( false, Duration.ofSeconds( 1 ) ).subscribe();
+        verifyRejected();
+        verifyRejected();
+        trial1.dispose();
+        trial2.dispose();
+
+        run( false );
+        run( false );
+        assertThat( dut.state() ).isEqualTo( ReactiveCircuitBreaker.State.CLOSED );
+
+    }
+
+    /**
+     * Tests that the breaker can still be shut off.
+     */
+    @Test
+    public void testShutoff() {
+
+        final var pending = call( false, Duration.ofSeconds( 5 ) ).subscribe();
+        dut.shutoff();
+
+        assertThat( pending.isDisposed() ).isTrue();
+        StepVerifier.create( call( false, Duration.ZERO ) )
+                .verifyComplete();
+        assertThat( made.get() ).isZero();
+
+    }
+
+}
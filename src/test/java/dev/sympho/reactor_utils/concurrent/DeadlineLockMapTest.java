@@ -0,0 +1,177 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import reactor.test.scheduler.VirtualTimeScheduler;
+import reactor.util.context.Context;
+
+/**
+ * Test driver for {@link DeadlineLockMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class DeadlineLockMapTest extends AbstractReactiveLockMapTest<DeadlineLockMap<String>> {
+
+    /** The key used for tests. */
+    private static final String KEY = "key";
+
+    /** The clock used by the deadline tests. */
+    private final VirtualTimeScheduler clock = VirtualTimeScheduler.create();
+
+    /** The map used by the deadline tests. */
+    private final DeadlineLockMap<String> timed = new DeadlineLockMap<>( clock );
+
+    @Override
+    public DeadlineLockMap<String> makeLocks() {
+
+        return new DeadlineLockMap<>();
+
+    }
+
+    /**
+     * Acquires the lock of the test key with a deadline.
+     *
+     * @param deadline The deadline, relative to the current time.
+     * @return The future for the acquisition.
+     */
+    private CompletableFuture<AcquiredLock> acquire( final Duration deadline ) {
+
+        final var at = Instant.ofEpochMilli( clock.now( TimeUnit.MILLISECONDS ) )
+                .plus( deadline );
+        return timed.acquire( KEY )
+                .contextWrite( Context.of( DeadlineLockMap.DEADLINE_KEY, at ) )
+                .toFuture();
+
+    }
+
+    /**
+     * Tests that waiters are served in deadline order, with waiters without a deadline
+     * served last in arrival order.
+     */
+    @Test
+    public void testOrder() {
+
+        final var held = timed.tryAcquire( KEY );
+        assertThat( held ).isNotNull();
+
+        final var none1 = timed.acquire( KEY ).toFuture();
+        final var late = acquire( Duration.ofSeconds( 30 ) );
+        final var none2 = timed.acquire( KEY ).toFuture();
+        final var early = acquire( Duration.ofSeconds( 10 ) );
+        final var tie = acquire( Duration.ofSeconds( 10 ) );
+
+        held.release();
+        assertThat( early ).isCompleted();
+        assertThat( tie ).isNotDone();
+
+        early.join().release();
+        assertThat( tie ).isCompleted();
+        tie.join().release();
+        assertThat( late ).isCompleted();
+        late.join().release();
+        assertThat( none1 ).isCompleted();
+        assertThat( none2 ).isNotDone();
+        none1.join().release();
+        assertThat( none2 ).isCompleted();
+        none2.join().release();
+
+        assertThat( timed.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that waiters whose deadline passed are dropped instead of granted the lock.
+     */
+    @Test
+    public void testExpired() {
+
+        final var held = timed.tryAcquire( KEY );
+        assertThat( held ).isNotNull();
+
+        final var expiring = acquire( Duration.ofSeconds( 1 ) );
+        final var viable = acquire( Duration.ofSeconds( 10 ) );
+
+        clock.advanceTimeBy( Duration.ofSeconds( 5 ) );
+        assertThat( expiring ).isNotDone(); // Only dropped once the lock is released
+
+        held.release();
+        assertThatThrownBy( expiring::join )
+                .isInstanceOf( CompletionException.class )
+                .cause()
+                .isInstanceOf( LockDeadlineExceededException.class );
+        assertThat( viable ).isCompleted();
+
+        viable.join().release();
+        assertThat( timed.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that acquisitions made after their deadline fail immediately, even if the lock
+     * is available.
+     */
+    @Test
+    public void testAlreadyExpired() {
+
+        final var expired = acquire( Duration.ofSeconds( -1 ) );
+        assertThat( expired ).isCompletedExceptionally();
+        assertThat( timed.nodes() ).isZero();
+
+        final var lock = timed.tryAcquire( KEY );
+        assertThat( lock ).isNotNull();
+        lock.release();
+
+    }
+
+    /**
+     * Tests that cancelled waiters are removed from the queue.
+     */
+    @Test
+    public void testCancel() {
+
+        final var held = timed.tryAcquire( KEY );
+        assertThat( held ).isNotNull();
+
+        final var cancelled = acquire( Duration.ofSeconds( 1 ) );
+        final var waiting = acquire( Duration.ofSeconds( 10 ) );
+
+        cancelled.cancel( true );
+        held.release();
+        assertThat( waiting ).isCompleted();
+
+        waiting.join().release();
+        assertThat( timed.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests for the map itself.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests.
+     */
+    @Nested
+    public class MapTest extends AbstractReactiveMapTest {}
+
+    /**
+     * Tests for a lock backed by the map.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests.
+     */
+    @Nested
+    public class MapLockTest extends AbstractReactiveMapLockTest {}
+
+}
@@ -0,0 +1,260 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Test driver for the flight recorder events emitted through {@link FlightEvents}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class FlightEventsTest {
+
+    /** Directory to dump recordings to. */
+    @TempDir
+    Path dir;
+
+    /** The recording. */
+    private Recording recording;
+
+    /**
+     * Starts recording all events without a threshold.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        recording = new Recording();
+        recording.enable( LockWaitEvent.NAME ).withoutThreshold();
+        recording.enable( LockHoldEvent.NAME ).withoutThreshold();
+        recording.enable( LatchAwaitEvent.NAME ).withoutThreshold();
+        recording.enable( BreakerShutoffEvent.NAME );
+        recording.start();
+
+    }
+
+    /**
+     * Discards the recording.
+     */
+    @AfterEach
+    public void tearDown() {
+
+        recording.close();
+
+    }
+
+    /**
+     * Stops the recording (if not stopped yet) and reads the recorded events of a type.
+     *
+     * @param name The event name.
+     * @return The events.
+     * @throws IOException if the recording could not be read.
+     */
+    private List<RecordedEvent> events( final String name ) throws IOException {
+
+        if ( recording.getState() == RecordingState.RUNNING ) {
+            recording.stop();
+        }
+        final var file = dir.resolve( "recording.jfr" );
+        recording.dump( file );
+        return RecordingFile.readAllEvents( file ).stream()
+                .filter( e -> e.getEventType().getName().equals( name ) )
+                .toList();
+
+    }
+
+    /**
+     * Tests that waiting for and holding a lock are recorded.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testLock() throws IOException {
+
+        final var lock = new AsyncLock();
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        final var waiting = lock.acquire().toFuture();
+        held.release();
+        waiting.join().release();
+
+        final var waits = events( LockWaitEvent.NAME );
+        assertThat( waits ).singleElement().satisfies( e -> {
+            assertThat( e.getClass( "lockClass" ).getName() )
+                    .isEqualTo( AsyncLock.class.getName() );
+            assertThat( e.getString( "key" ) ).isNull();
+            assertThat( e.getInt( "queueDepth" ) ).isEqualTo( FlightEvents.UNKNOWN_DEPTH );
+            assertThat( e.getString( "outcome" ) ).isEqualTo( FlightEvents.ACQUIRED );
+        } );
+        assertThat( events( LockHoldEvent.NAME ) ).hasSize( 2 );
+
+    }
+
+    /**
+     * Tests that the queue depth and rejections of bounded locks are recorded.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testBounded() throws IOException {
+
+        final var lock = new AsyncLock( 1 );
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        final var waiting = lock.acquire().toFuture();
+        StepVerifier.create( lock.acquire() )
+                .verifyError( LockOverloadedException.class );
+        held.release();
+        waiting.join().release();
+
+        assertThat( events( LockWaitEvent.NAME ) )
+                .extracting( e -> e.getInt( "queueDepth" ), e -> e.getString( "outcome" ) )
+                .containsExactlyInAnyOrder(
+                        tuple( 1, FlightEvents.ACQUIRED ),
+                        tuple( 2, FlightEvents.OVERLOADED )
+                );
+
+    }
+
+    /**
+     * Tests that cancelled waits are recorded with the key.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testCancel() throws IOException {
+
+        final var locks = new AsyncLockMap<String>();
+        final var held = locks.tryAcquire( "key" );
+        assertThat( held ).isNotNull();
+
+        locks.acquire( "key" ).subscribe().dispose();
+        held.release();
+
+        assertThat( events( LockWaitEvent.NAME ) ).singleElement().satisfies( e -> {
+            assertThat( e.getString( "key" ) ).isEqualTo( "key" );
+            assertThat( e.getString( "outcome" ) ).isEqualTo( FlightEvents.CANCELLED );
+        } );
+
+    }
+
+    /**
+     * Tests that waits that time out in the transformer are recorded as timed out.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testTimeout() throws IOException {
+
+        final var lock = new AsyncLock( m -> m.timeout( Duration.ofMillis( 10 ) ) );
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        StepVerifier.create( lock.acquire() )
+                .verifyError( TimeoutException.class );
+        held.release();
+
+        assertThat( events( LockWaitEvent.NAME ) ).singleElement()
+                .satisfies( e -> assertThat( e.getString( "outcome" ) )
+                        .isEqualTo( FlightEvents.TIMEOUT ) );
+
+    }
+
+    /**
+     * Tests that holding a non-blocking lock is recorded.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testNonblocking() throws IOException {
+
+        final var locks = new NonblockingLockMap<Integer>();
+        final var held = locks.tryAcquire( 42 );
+        assertThat( held ).isNotNull();
+        held.release();
+
+        assertThat( events( LockHoldEvent.NAME ) ).singleElement().satisfies( e -> {
+            assertThat( e.getClass( "lockClass" ).getName() )
+                    .isEqualTo( NonblockingLockMap.class.getName() );
+            assertThat( e.getString( "key" ) ).isEqualTo( "42" );
+        } );
+
+    }
+
+    /**
+     * Tests that waiting on a latch is recorded.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testLatch() throws IOException {
+
+        final var opened = new ReactiveLatch();
+        final var waiting = opened.await().toFuture();
+        opened.countDown();
+        waiting.join();
+
+        final var failed = new ReactiveLatch();
+        StepVerifier.create( failed.await() )
+                .then( () -> failed.fail( new IllegalStateException() ) )
+                .verifyError( IllegalStateException.class );
+
+        assertThat( events( LatchAwaitEvent.NAME ) )
+                .extracting( e -> e.getString( "outcome" ) )
+                .containsExactlyInAnyOrder( FlightEvents.OPENED, FlightEvents.FAILED );
+
+    }
+
+    /**
+     * Tests that shutting off a breaker is recorded.
+     *
+     * @throws IOException if the recording could not be read.
+     */
+    @Test
+    public void testBreaker() throws IOException {
+
+        final var breaker = new ReactiveBreaker();
+        breaker.monitor( Mono.never() ).subscribe();
+        breaker.monitor( Mono.never() ).subscribe();
+        breaker.shutoff();
+
+        assertThat( events( BreakerShutoffEvent.NAME ) ).singleElement()
+                .satisfies( e -> assertThat( e.getInt( "monitored" ) ).isEqualTo( 2 ) );
+
+    }
+
+    /**
+     * Tests that nothing is added to acquisitions while not recording.
+     */
+    @Test
+    public void testDisabled() {
+
+        recording.stop();
+
+        final var pending = Mono.<AcquiredLock>never();
+        assertThat( FlightEvents.isWaitEnabled() ).isFalse();
+        assertThat( FlightEvents.recordWait( pending, null, this, null, 0 ) )
+                .isSameAs( pending );
+
+    }
+
+}
@@ -0,0 +1,325 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Scannable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.PublisherProbe;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for the guard operations of {@link ReactiveLock}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class GuardTest {
+
+    /** The lock. */
+    private AsyncLock lock;
+
+    /**
+     * Sets up the lock.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        lock = new AsyncLock();
+
+    }
+
+    /**
+     * Checks that the lock is available, then releases it again.
+     */
+    private void assertAvailable() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+        held.release();
+
+    }
+
+    /**
+     * Tests that guarded Monos do not overlap.
+     */
+    @Test
+    public void testMono() {
+
+        StepVerifier.withVirtualTime( () -> Flux.merge(
+                lock.guard( Mono.delay( Duration.ofSeconds( 2 ) ).thenReturn( 1 ) ),
+                lock.guard( Mono.delay( Duration.ofSeconds( 1 ) ).thenReturn( 2 ) )
+        ) ).expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 2 ) )
+                .expectNext( 1 )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( 2 )
+                .verifyComplete();
+
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that requests made while waiting for the lock are relayed to the source.
+     */
+    @Test
+    public void testFluxBackpressure() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        StepVerifier.create( lock.guard( Flux.range( 0, 5 ) ), 0 )
+                .expectSubscription()
+                .thenRequest( 2 )
+                .expectNoEvent( Duration.ofMillis( 10 ) )
+                .then( held::release )
+                .expectNext( 0, 1 )
+                .then( () -> assertThat( lock.tryAcquire() ).isNull() )
+                .thenRequest( 3 )
+                .expectNext( 2, 3, 4 )
+                .verifyComplete();
+
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that the lock is released when the source fails.
+     */
+    @Test
+    public void testError() {
+
+        StepVerifier.create( lock.guard( Mono.error( new IllegalStateException() ) ) )
+                .verifyError( IllegalStateException.class );
+
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that cancelling while waiting for the lock does not subscribe to the source or
+     * leak the lock.
+     */
+    @Test
+    public void testCancelWaiting() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        final var probe = PublisherProbe.<Integer>empty();
+        lock.guard( probe.mono() ).subscribe().dispose();
+        held.release();
+
+        probe.assertWasNotSubscribed();
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that cancelling while the source runs cancels it and releases the lock.
+     */
+    @Test
+    public void testCancelRunning() {
+
+        final var probe = PublisherProbe.<Integer>of( Mono.never() );
+        final var subscription = lock.guard( probe.mono() ).subscribe();
+        probe.assertWasSubscribed();
+        assertThat( lock.tryAcquire() ).isNull();
+
+        subscription.dispose();
+        probe.assertWasCancelled();
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that nothing is guarded if the lock acquisition completes without a lock.
+     */
+    @Test
+    public void testNoLock() {
+
+        final ReactiveLock empty = new AsyncLock( m -> Mono.empty() );
+        final var probe = PublisherProbe.<Integer>empty();
+
+        StepVerifier.create( empty.guard( probe.mono() ) )
+                .verifyComplete();
+        probe.assertWasNotSubscribed();
+
+    }
+
+    /**
+     * Tests that the guarded publishers and their subscriber are scannable.
+     */
+    @Test
+    public void testScannable() {
+
+        final var source = Flux.range( 0, 3 );
+        final var guarded = lock.guard( source );
+
+        assertThat( Scannable.from( guarded ).scan( Scannable.Attr.PARENT ) ).isSameAs( source );
+        assertThat( Scannable.from( guarded ).scan( Scannable.Attr.RUN_STYLE ) )
+                .isEqualTo( Scannable.Attr.RunStyle.SYNC );
+
+        StepVerifier.create( guarded, 0 )
+                .consumeSubscriptionWith( s -> {
+                    final var scanned = Scannable.from( s );
+                    assertThat( scanned.scan( Scannable.Attr.TERMINATED ) ).isFalse();
+                    assertThat( scanned.scan( Scannable.Attr.ACTUAL ) ).isNotNull();
+                } )
+                .thenRequest( 3 )
+                .expectNext( 0, 1, 2 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Guards a Flux per batch with a lock that counts acquisitions, mapping each element to
+     * the number of the acquisition it was received under.
+     *
+     * @param source The source.
+     * @param guard The guard to apply.
+     * @return The acquisition number of each element.
+     */
+    private static Flux<Integer> tagged( final Flux<Integer> source,
+            final BiFunction<ReactiveLock, Flux<Integer>, Flux<Integer>> guard ) {
+
+        final var acquisitions = new AtomicInteger();
+        final var counted = new AsyncLock(
+                m -> m.doOnNext( l -> acquisitions.incrementAndGet() ) );
+        return guard.apply( counted, source ).map( i -> acquisitions.get() );
+
+    }
+
+    /**
+     * Tests that guardEach acquires the lock for each batch.
+     */
+    @Test
+    public void testEachBatches() {
+
+        StepVerifier.create( tagged( Flux.range( 0, 5 ), ( l, f ) -> l.guardEach( f, 2 ) ) )
+                .expectNext( 1, 1, 2, 2, 3 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that guardEach lets waiting tasks in between batches.
+     */
+    @Test
+    public void testEachInterleaved() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        final List<String> produced = new ArrayList<>();
+        final var a = lock.guardEach( Flux.just( "a0", "a1", "a2", "a3" )
+                .doOnNext( produced::add ), 2 );
+        final var b = lock.guardEach( Flux.just( "b0", "b1", "b2", "b3" )
+                .doOnNext( produced::add ), 2 );
+        final var done = Flux.merge( a, b ).then().toFuture();
+        held.release();
+
+        assertThat( done ).isCompleted();
+        assertThat( produced ).containsExactly( "a0", "a1", "b0", "b1", "a2", "a3", "b2", "b3" );
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that guardEach does not hold the lock while there is no demand.
+     */
+    @Test
+    public void testEachBackpressure() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+
+        final var probe = PublisherProbe.of( Flux.range( 0, 10 ) );
+        StepVerifier.create( lock.guardEach( probe.flux(), 5 ), 0 )
+                .expectSubscription()
+                .thenRequest( 2 )
+                .then( probe::assertWasNotSubscribed )
+                .then( held::release )
+                .expectNext( 0, 1 )
+                .then( this::assertAvailable )
+                .thenRequest( 8 )
+                .expectNext( 2, 3, 4, 5, 6, 7, 8, 9 )
+                .verifyComplete();
+
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that cancelling a Flux guarded per batch releases the lock.
+     */
+    @Test
+    public void testEachCancel() {
+
+        StepVerifier.create( lock.guardEach( Flux.range( 0, 10 ), 5 ), 0 )
+                .thenRequest( 3 )
+                .expectNext( 0, 1, 2 )
+                .thenCancel()
+                .verify();
+
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that errors in a Flux guarded per batch are relayed and release the lock.
+     */
+    @Test
+    public void testEachError() {
+
+        final var source = Flux.range( 0, 3 )
+                .concatWith( Flux.error( new IllegalStateException() ) );
+        StepVerifier.create( lock.guardEach( source, 2 ) )
+                .expectNext( 0, 1, 2 )
+                .verifyError( IllegalStateException.class );
+
+        assertAvailable();
+
+    }
+
+    /**
+     * Tests that guardWindowed acquires the lock for each window.
+     */
+    @Test
+    public void testWindowed() {
+
+        StepVerifier.withVirtualTime( () -> tagged(
+                Flux.range( 0, 6 ).delayElements( Duration.ofSeconds( 1 ) ),
+                ( l, f ) -> l.guardWindowed( f, Duration.ofMillis( 2500 ),
+                        VirtualTimeScheduler.get() )
+        ) ).thenAwait( Duration.ofSeconds( 6 ) )
+                .expectNext( 1, 1, 1, 2, 2, 2 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that invalid batch configurations are rejected.
+     */
+    @Test
+    public void testBatchInvalid() {
+
+        final var source = Flux.range( 0, 3 );
+        assertThatIllegalArgumentException().isThrownBy( () -> lock.guardEach( source, 0 ) );
+        assertThatIllegalArgumentException().isThrownBy(
+                () -> lock.guardWindowed( source, Duration.ZERO ) );
+
+    }
+
+}
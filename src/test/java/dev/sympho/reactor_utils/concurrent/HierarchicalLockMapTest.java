@@ -0,0 +1,165 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test driver for {@link HierarchicalLockMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class HierarchicalLockMapTest extends AbstractReactiveLockMapTest<HierarchicalLockMap> {
+
+    @Override
+    public HierarchicalLockMap makeLocks() {
+
+        return new HierarchicalLockMap();
+
+    }
+
+    /**
+     * Tests that locking a path excludes its ancestors and descendants, but not its
+     * siblings.
+     */
+    @Test
+    public void testSubtree() {
+
+        final var doc = map.tryAcquire( "tenant/coll/doc" );
+        assertThat( doc ).isNotNull();
+
+        assertThat( map.tryAcquire( "tenant" ) ).isNull();
+        assertThat( map.tryAcquire( "tenant/coll" ) ).isNull();
+        assertThat( map.tryAcquire( "tenant/coll/doc" ) ).isNull();
+        assertThat( map.tryAcquire( "tenant/coll/doc/sub" ) ).isNull();
+
+        final var sibling = map.tryAcquire( "tenant/coll/other" );
+        assertThat( sibling ).isNotNull();
+        final var cousin = map.tryAcquire( "tenant/other" );
+        assertThat( cousin ).isNotNull();
+
+        final var waiting = map.acquire( "tenant" ).toFuture();
+        doc.release();
+        sibling.release();
+        assertThat( waiting ).isNotDone();
+        cousin.release();
+        assertThat( waiting ).isCompleted();
+
+        assertThat( map.tryAcquire( "tenant/coll" ) ).isNull();
+        waiting.join().release();
+        assertThat( map.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that shared locks exclude exclusive locks in the same subtree, but not each
+     * other.
+     */
+    @Test
+    public void testShared() {
+
+        final var coll = map.tryAcquireShared( "tenant/coll" );
+        assertThat( coll ).isNotNull();
+        final var doc = map.tryAcquireShared( "tenant/coll/doc" );
+        assertThat( doc ).isNotNull();
+
+        assertThat( map.tryAcquire( "tenant/coll/doc" ) ).isNull();
+        assertThat( map.tryAcquire( "tenant" ) ).isNull();
+
+        final var other = map.tryAcquire( "tenant/other" );
+        assertThat( other ).isNotNull();
+        other.release();
+
+        coll.release();
+        assertThat( map.tryAcquire( "tenant/coll/doc" ) ).isNull();
+        doc.release();
+
+        final var exclusive = map.tryAcquire( "tenant/coll/doc" );
+        assertThat( exclusive ).isNotNull();
+        assertThat( map.tryAcquireShared( "tenant/coll" ) ).isNull();
+        exclusive.release();
+        assertThat( map.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that a waiting acquisition is not overtaken by later compatible acquisitions.
+     */
+    @Test
+    public void testFifo() {
+
+        final var doc = map.tryAcquire( "tenant/coll/doc" );
+        assertThat( doc ).isNotNull();
+
+        final var tenant = map.acquire( "tenant" ).toFuture();
+        final var other = map.acquire( "tenant/other" ).toFuture();
+        assertThat( map.tryAcquire( "tenant/third" ) ).isNull();
+
+        doc.release();
+        assertThat( tenant ).isCompleted();
+        assertThat( other ).isNotDone();
+
+        tenant.join().release();
+        assertThat( other ).isCompleted();
+        other.join().release();
+        assertThat( map.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that cancelling a waiting acquisition releases the lock once acquired.
+     */
+    @Test
+    public void testCancel() {
+
+        final var doc = map.tryAcquire( "tenant/coll/doc" );
+        assertThat( doc ).isNotNull();
+
+        map.acquire( "tenant" ).subscribe().dispose();
+        doc.release();
+
+        final var tenant = map.tryAcquire( "tenant" );
+        assertThat( tenant ).isNotNull();
+        tenant.release();
+        assertThat( map.nodes() ).isZero();
+
+    }
+
+    /**
+     * Tests that a custom separator is used to split paths.
+     */
+    @Test
+    public void testSeparator() {
+
+        final var dotted = new HierarchicalLockMap( '.' );
+        final var doc = dotted.tryAcquire( "tenant.doc" );
+        assertThat( doc ).isNotNull();
+        assertThat( dotted.tryAcquire( "tenant" ) ).isNull();
+        assertThat( dotted.tryAcquire( "tenant/doc" ) ).isNotNull();
+        doc.release();
+
+    }
+
+    /**
+     * Tests for the map itself.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests.
+     */
+    @Nested
+    public class MapTest extends AbstractReactiveMapTest {}
+
+    /**
+     * Tests for a lock backed by the map.
+     *
+     * @since 1.0
+     * @apiNote This needs to be nested within the implementation class due to Surefire reports
+     *          not working well with inherited nested tests.
+     */
+    @Nested
+    public class MapLockTest extends AbstractReactiveMapLockTest {}
+
+}
@@ -0,0 +1,198 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Test driver for {@link KeyedSerializer}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class KeyedSerializerTest {
+
+    /**
+     * Tests that elements with the same key run in order and one at a time, while elements
+     * with different keys run in parallel.
+     */
+    @Test
+    public void testOrdering() {
+
+        final var source = List.of( "a1", "b1", "a2", "b2", "a3" );
+
+        StepVerifier.withVirtualTime( () -> KeyedSerializer.concatMapByKey(
+                        Flux.fromIterable( source ),
+                        e -> e.charAt( 0 ),
+                        e -> Mono.just( e ).delayElement( Duration.ofSeconds( 1 ) ),
+                        10
+                ) )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNextMatches( e -> e.endsWith( "1" ) )
+                .expectNextMatches( e -> e.endsWith( "1" ) )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNextMatches( e -> e.endsWith( "2" ) )
+                .expectNextMatches( e -> e.endsWith( "2" ) )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( "a3" )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that the number of keys in progress, and the number of elements requested from
+     * the source, are bounded.
+     */
+    @Test
+    public void testBounded() {
+
+        final var emitted = new AtomicInteger();
+        final var started = new AtomicInteger();
+        final var pending = KeyedSerializer.concatMapByKey(
+                Flux.range( 0, 100 ).doOnNext( i -> emitted.incrementAndGet() ),
+                i -> i % 3 == 0 ? "hot" : "k" + i,
+                i -> Mono.never().doOnSubscribe( s -> started.incrementAndGet() ),
+                4,
+                8
+        ).subscribe();
+
+        assertThat( emitted.get() ).isEqualTo( 12 );
+        assertThat( started.get() ).isEqualTo( 4 );
+        pending.dispose();
+
+        final var running = new AtomicInteger();
+        final var maxRunning = new AtomicInteger();
+        final var result = KeyedSerializer.concatMapByKey(
+                Flux.range( 0, 100 ),
+                i -> i % 3 == 0 ? "hot" : "k" + i,
+                i -> Mono.delay( Duration.ofMillis( 1 ) )
+                        .doOnSubscribe( s -> maxRunning.accumulateAndGet(
+                                running.incrementAndGet(), Math::max ) )
+                        .doOnTerminate( running::decrementAndGet )
+                        .thenReturn( i ),
+                4,
+                2
+        );
+
+        StepVerifier.create( result.collectList() )
+                .assertNext( l -> assertThat( l ).hasSize( 100 ) )
+                .verifyComplete();
+        assertThat( maxRunning.get() ).isLessThanOrEqualTo( 4 );
+
+    }
+
+    /**
+     * Tests that a hot key with a backlog only occupies one slot, so elements of other keys
+     * keep running next to it.
+     */
+    @Test
+    public void testHotKey() {
+
+        final var source = List.of( "hot0", "hot1", "hot2", "hot3", "hot4",
+                "cold5", "cold6", "cold7", "cold8", "cold9" );
+
+        StepVerifier.withVirtualTime( () -> KeyedSerializer.concatMapByKey(
+                        Flux.fromIterable( source ),
+                        e -> e.startsWith( "hot" ) ? "hot" : e,
+                        e -> Mono.just( e ).delayElement( Duration.ofSeconds(
+                                e.startsWith( "hot" ) ? 10 : 1 ) ),
+                        2
+                ) )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( "cold5" )
+                .thenAwait( Duration.ofSeconds( 4 ) )
+                .expectNext( "cold6", "cold7", "cold8", "cold9" )
+                .expectNoEvent( Duration.ofSeconds( 5 ) )
+                .expectNext( "hot0" )
+                .thenAwait( Duration.ofSeconds( 40 ) )
+                .expectNext( "hot1", "hot2", "hot3", "hot4" )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that a failed element releases its key for the following elements.
+     */
+    @Test
+    public void testErrorContinue() {
+
+        StepVerifier.create( KeyedSerializer.concatMapByKey(
+                        Flux.just( 1, 2, 3 ),
+                        i -> "key",
+                        i -> i == 2
+                                ? Mono.<Integer>error( new IllegalStateException() )
+                                        .onErrorResume( e -> Mono.empty() )
+                                : Mono.just( i ),
+                        2
+                ) )
+                .expectNext( 1, 3 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that elements still queued when the subscription is cancelled are discarded.
+     */
+    @Test
+    public void testDiscardOnCancel() {
+
+        final var discarded = new CopyOnWriteArrayList<Integer>();
+        final var pending = KeyedSerializer.concatMapByKey(
+                Flux.range( 0, 6 ),
+                i -> i % 2,
+                i -> Mono.never(),
+                1
+        ).doOnDiscard( Integer.class, discarded::add ).subscribe();
+
+        assertThat( discarded ).isEmpty();
+        pending.dispose();
+        assertThat( discarded ).containsExactlyInAnyOrder( 1, 2, 3, 4, 5 );
+
+    }
+
+    /**
+     * Tests that elements still queued when the source fails are discarded.
+     */
+    @Test
+    public void testDiscardOnError() {
+
+        final var discarded = new CopyOnWriteArrayList<Integer>();
+        StepVerifier.create( KeyedSerializer.concatMapByKey(
+                        Flux.range( 0, 6 ).concatWith( Flux.error( new IllegalStateException() ) ),
+                        i -> i % 2,
+                        i -> Mono.never(),
+                        1
+                ).doOnDiscard( Integer.class, discarded::add ) )
+                .expectSubscription()
+                .verifyError( IllegalStateException.class );
+
+        // The source fails while subscribing, before any lane starts
+        assertThat( discarded ).containsExactlyInAnyOrder( 0, 1, 2, 3, 4, 5 );
+
+    }
+
+    /**
+     * Tests that invalid concurrency and prefetch values are rejected.
+     */
+    @Test
+    public void testInvalidConcurrency() {
+
+        assertThatIllegalArgumentException().isThrownBy( () -> KeyedSerializer.concatMapByKey(
+                Flux.just( 1 ), i -> i, Mono::just, 0 ) );
+        assertThatIllegalArgumentException().isThrownBy( () -> KeyedSerializer.concatMapByKey(
+                Flux.just( 1 ), i -> i, Mono::just, 1, -1 ) );
+
+    }
+
+}
@@ -0,0 +1,320 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for {@link MarkerMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class MarkerMapTest {
+
+    /** The clock used by bounded maps. */
+    private VirtualTimeScheduler clock;
+
+    /** The evictions observed by the listener. */
+    private List<String> evictions;
+
+    /**
+     * Sets up the test environment.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        clock = VirtualTimeScheduler.create();
+        evictions = new ArrayList<>();
+
+    }
+
+    /**
+     * Creates a bounded map that records evictions.
+     *
+     * @param ttl The TTL.
+     * @param maximumSize The maximum size.
+     * @return The map.
+     */
+    private MarkerMap<String> bounded( final Duration ttl, final int maximumSize ) {
+
+        return new MarkerMap<>( ttl, maximumSize,
+                ( key, marker, cause ) -> evictions.add( key + ":" + cause ), clock );
+
+    }
+
+    /**
+     * Tests the basic operations of an unbounded map.
+     */
+    @Test
+    public void testUnbounded() {
+
+        final var dut = new MarkerMap<String>();
+
+        final var m1 = dut.place( "a" );
+        assertThat( dut.get( "a" ) ).isSameAs( m1 );
+        assertThat( dut.placeIfAbsent( "a" ) ).isNull();
+
+        final var m2 = dut.place( "a" );
+        assertThat( m2 ).isNotSameAs( m1 );
+        assertThat( dut.remove( "a", m1 ) ).isFalse();
+        assertThat( dut.remove( "a", m2 ) ).isTrue();
+        assertThat( dut.get( "a" ) ).isNull();
+
+        final var m3 = dut.placeIfAbsent( "a" );
+        assertThat( m3 ).isNotNull();
+        assertThat( dut.remove( "a" ) ).isSameAs( m3 );
+        assertThat( dut.tracked() ).isZero();
+
+    }
+
+    /**
+     * Tests that the oldest markers are evicted once the maximum size is exceeded.
+     */
+    @Test
+    public void testMaximumSize() {
+
+        final var dut = bounded( null, 2 );
+
+        final var a = dut.place( "a" );
+        final var b = dut.place( "b" );
+        final var c = dut.place( "c" );
+
+        assertThat( dut.get( "a" ) ).isNull();
+        assertThat( dut.get( "b" ) ).isSameAs( b );
+        assertThat( dut.get( "c" ) ).isSameAs( c );
+        assertThat( dut.remove( "a", a ) ).isFalse();
+        assertThat( evictions ).containsExactly( "a:SIZE" );
+
+        dut.remove( "b" );
+        dut.place( "d" );
+        assertThat( dut.get( "c" ) ).isSameAs( c );
+        assertThat( evictions ).containsExactly( "a:SIZE" );
+
+    }
+
+    /**
+     * Tests that markers expire after the TTL.
+     */
+    @Test
+    public void testExpiry() {
+
+        final var dut = bounded( Duration.ofSeconds( 10 ), MarkerMap.UNBOUNDED );
+
+        final var a = dut.place( "a" );
+        clock.advanceTimeBy( Duration.ofSeconds( 5 ) );
+        final var b = dut.place( "b" );
+
+        clock.advanceTimeBy( Duration.ofSeconds( 5 ) );
+        assertThat( dut.get( "a" ) ).isNull();
+        assertThat( dut.get( "b" ) ).isSameAs( b );
+        assertThat( dut.remove( "a", a ) ).isFalse();
+        assertThat( evictions ).containsExactly( "a:EXPIRED" );
+
+        clock.advanceTimeBy( Duration.ofSeconds( 5 ) );
+        assertThat( dut.remove( "b", b ) ).isFalse();
+        assertThat( evictions ).containsExactly( "a:EXPIRED", "b:EXPIRED" );
+
+    }
+
+    /**
+     * Tests that an expired marker does not block placing a new one.
+     */
+    @Test
+    public void testPlaceIfAbsentExpired() {
+
+        final var dut = bounded( Duration.ofSeconds( 10 ), MarkerMap.UNBOUNDED );
+
+        final var a = dut.place( "a" );
+        assertThat( dut.placeIfAbsent( "a" ) ).isNull();
+
+        clock.advanceTimeBy( Duration.ofSeconds( 10 ) );
+        final var replacement = dut.placeIfAbsent( "a" );
+        assertThat( replacement ).isNotNull().isNotSameAs( a );
+        assertThat( dut.get( "a" ) ).isSameAs( replacement );
+        assertThat( evictions ).containsExactly( "a:EXPIRED" );
+
+    }
+
+    /**
+     * Tests that expired markers are evicted when new markers are placed, even if they
+     * are never accessed again.
+     */
+    @Test
+    public void testEvictOnWrite() {
+
+        final var dut = bounded( Duration.ofSeconds( 10 ), MarkerMap.UNBOUNDED );
+
+        for ( int i = 0; i < 100; i++ ) {
+            dut.place( "old" + i );
+        }
+        clock.advanceTimeBy( Duration.ofSeconds( 10 ) );
+        dut.place( "new" );
+
+        assertThat( evictions ).hasSize( 100 );
+        assertThat( dut.tracked() ).isOne();
+
+    }
+
+    /**
+     * Tests that explicitly removed markers do not accumulate in the eviction order.
+     */
+    @Test
+    public void testCompaction() {
+
+        final var dut = bounded( null, 1000 );
+        final var pinned = dut.place( "pinned" );
+
+        for ( int i = 0; i < 10_000; i++ ) {
+            final var key = "k" + i;
+            final var marker = dut.place( key );
+            assertThat( dut.remove( key, marker ) ).isTrue();
+        }
+
+        assertThat( dut.tracked() ).isLessThan( 200 );
+        assertThat( dut.get( "pinned" ) ).isSameAs( pinned );
+        assertThat( evictions ).isEmpty();
+
+    }
+
+    /**
+     * Tests that waiting on an absent key completes immediately, with the shared empty
+     * subscription (so nothing is allocated on subscription).
+     *
+     * <p>The returned monos are lazy, so unlike an {@link Mono#empty()} they are not
+     * shared instances; see {@link #testAwaitLazy()}.
+     */
+    @Test
+    public void testAwaitAbsent() {
+
+        final var dut = new MarkerMap<String>();
+
+        final var removal = new AtomicReference<Subscription>();
+        final var removed = dut.awaitRemoval( "a" )
+                .doOnSubscribe( removal::set )
+                .toFuture();
+        assertThat( removed ).isCompleted();
+        assertThat( removal.get() ).isSameAs( Operators.emptySubscription() );
+
+        final var marker = dut.place( "a" );
+        dut.remove( "a" );
+        final var replacement = new AtomicReference<Subscription>();
+        final var replaced = dut.awaitReplacement( "a", marker )
+                .doOnSubscribe( replacement::set )
+                .toFuture();
+        assertThat( replaced ).isCompleted();
+        assertThat( replacement.get() ).isSameAs( Operators.emptySubscription() );
+
+    }
+
+    /**
+     * Tests that the map is only checked once waiting is subscribed to.
+     */
+    @Test
+    public void testAwaitLazy() {
+
+        final var dut = new MarkerMap<String>();
+        final var removal = dut.awaitRemoval( "a" );
+        final var marker = dut.place( "a" );
+        final var replacement = dut.awaitReplacement( "a", marker );
+        dut.remove( "a" );
+        final var next = dut.place( "a" );
+
+        final var waiter = removal.toFuture();
+        assertThat( waiter ).isNotDone();
+        assertThat( replacement.toFuture() ).isCompleted();
+
+        dut.remove( "a", next );
+        assertThat( waiter ).isCompleted();
+
+    }
+
+    /**
+     * Tests that waiters are notified when a marker is removed.
+     */
+    @Test
+    public void testAwaitRemoval() {
+
+        final var dut = new MarkerMap<String>();
+        final var marker = dut.place( "a" );
+
+        final var waiter1 = dut.awaitRemoval( "a" ).toFuture();
+        final var waiter2 = dut.awaitReplacement( "a", marker ).toFuture();
+        assertThat( waiter1 ).isNotDone();
+        assertThat( waiter2 ).isNotDone();
+
+        assertThat( dut.remove( "a", marker ) ).isTrue();
+        assertThat( waiter1 ).isCompleted();
+        assertThat( waiter2 ).isCompleted();
+
+    }
+
+    /**
+     * Tests that waiters are notified when a marker is replaced.
+     */
+    @Test
+    public void testAwaitReplacement() {
+
+        final var dut = new MarkerMap<String>();
+        final var marker = dut.place( "a" );
+
+        final var waiter = dut.awaitReplacement( "a", marker ).toFuture();
+        final var replacement = dut.place( "a" );
+        assertThat( waiter ).isCompleted();
+
+        final var next = dut.awaitRemoval( "a" ).toFuture();
+        assertThat( dut.remove( "a", marker ) ).isFalse();
+        assertThat( next ).isNotDone();
+        assertThat( dut.remove( "a" ) ).isSameAs( replacement );
+        assertThat( next ).isCompleted();
+
+    }
+
+    /**
+     * Tests that waiters are notified when a marker is evicted.
+     */
+    @Test
+    public void testAwaitEviction() {
+
+        final var dut = bounded( null, 1 );
+        dut.place( "a" );
+
+        final var waiter = dut.awaitRemoval( "a" ).toFuture();
+        dut.place( "b" );
+        assertThat( waiter ).isCompleted();
+
+    }
+
+    /**
+     * Tests that waiters are notified when a marker expires, even if the map is not
+     * otherwise accessed.
+     */
+    @Test
+    public void testAwaitExpiry() {
+
+        final var dut = bounded( Duration.ofSeconds( 10 ), MarkerMap.UNBOUNDED );
+        final var marker = dut.place( "a" );
+
+        StepVerifier.withVirtualTime( () -> dut.awaitReplacement( "a", marker ), () -> clock, 1 )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 9 ) )
+                .thenAwait( Duration.ofSeconds( 1 ) )
+                .verifyComplete();
+
+        assertThat( evictions ).containsExactly( "a:EXPIRED" );
+
+    }
+
+}
@@ -0,0 +1,142 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for {@link ReactiveRateLimiterMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class RateLimiterMapTest {
+
+    /** The scheduler used by the limiter. */
+    private VirtualTimeScheduler scheduler;
+
+    /** The limiter under test. */
+    private ReactiveRateLimiterMap<String> dut;
+
+    /**
+     * Creates the DUT, with buckets of 3 permits refilled at 1 permit per second.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        scheduler = VirtualTimeScheduler.create();
+        dut = new ReactiveRateLimiterMap<>( 3, 1, Duration.ofSeconds( 1 ), scheduler );
+
+    }
+
+    /**
+     * Tests that buckets start full, are refilled over time, and are independent per key.
+     */
+    @Test
+    public void testTryAcquire() {
+
+        assertThat( dut.tryAcquire( "a", 2 ) ).isTrue();
+        assertThat( dut.tryAcquire( "a" ) ).isTrue();
+        assertThat( dut.tryAcquire( "a" ) ).isFalse();
+        assertThat( dut.tryAcquire( "b", 3 ) ).isTrue();
+
+        scheduler.advanceTimeBy( Duration.ofMillis( 1500 ) );
+        assertThat( dut.available( "a" ) ).isOne();
+        assertThat( dut.tryAcquire( "a", 2 ) ).isFalse();
+        assertThat( dut.tryAcquire( "a" ) ).isTrue();
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 10 ) );
+        assertThat( dut.available( "a" ) ).isEqualTo( 3 );
+
+    }
+
+    /**
+     * Tests that waiters are granted permits in order as the bucket refills.
+     */
+    @Test
+    public void testAcquire() {
+
+        assertThat( dut.tryAcquire( "a", 3 ) ).isTrue();
+
+        final var first = dut.acquire( "a", 2 ).toFuture();
+        final var second = dut.acquire( "a" ).toFuture();
+        assertThat( dut.tryAcquire( "a" ) ).isFalse();
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 1 ) );
+        assertThat( first ).isNotDone();
+        assertThat( dut.tryAcquire( "a" ) ).isFalse(); // No barging
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 1 ) );
+        assertThat( first ).isCompleted();
+        assertThat( second ).isNotDone();
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 1 ) );
+        assertThat( second ).isCompleted();
+        assertThat( dut.available( "a" ) ).isZero();
+
+    }
+
+    /**
+     * Tests that a cancelled waiter does not consume permits or block later waiters.
+     */
+    @Test
+    public void testCancel() {
+
+        assertThat( dut.tryAcquire( "a", 3 ) ).isTrue();
+
+        final var big = dut.acquire( "a", 3 ).subscribe();
+        final var small = dut.acquire( "a" ).toFuture();
+
+        scheduler.advanceTimeBy( Duration.ofMillis( 500 ) );
+        big.dispose();
+
+        scheduler.advanceTimeBy( Duration.ofMillis( 500 ) );
+        assertThat( small ).isCompleted();
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 3 ) );
+        assertThat( dut.available( "a" ) ).isEqualTo( 3 );
+
+    }
+
+    /**
+     * Tests that invalid permit counts are rejected.
+     */
+    @Test
+    public void testInvalidPermits() {
+
+        assertThatIllegalArgumentException().isThrownBy( () -> dut.acquire( "a", 4 ) );
+        assertThatIllegalArgumentException().isThrownBy( () -> dut.tryAcquire( "a", 0 ) );
+
+    }
+
+    /**
+     * Tests that idle buckets are evicted.
+     */
+    @Test
+    public void testEviction() {
+
+        for ( int i = 0; i < 1000; i++ ) {
+            assertThat( dut.tryAcquire( "k" + i ) ).isTrue();
+        }
+        scheduler.advanceTimeBy( Duration.ofSeconds( 1 ) );
+
+        assertThat( dut.tryAcquire( "busy", 3 ) ).isTrue();
+        final var waiter = dut.acquire( "busy" ).toFuture();
+        for ( int i = 0; i < 2000; i++ ) {
+            dut.tryAcquire( "other" );
+        }
+        assertThat( dut.size() ).isLessThanOrEqualTo( 2 );
+        assertThat( dut.available( "k0" ) ).isEqualTo( 3 );
+        assertThat( waiter ).isNotDone();
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 1 ) );
+        assertThat( waiter ).isCompleted();
+
+    }
+
+}
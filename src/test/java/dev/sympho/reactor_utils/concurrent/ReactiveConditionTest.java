@@ -0,0 +1,163 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * Test driver for {@link ReactiveCondition}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class ReactiveConditionTest {
+
+    /** The lock. */
+    private AsyncLock lock;
+
+    /** The device under test. */
+    private ReactiveCondition dut;
+
+    /**
+     * Sets up the device under test.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        lock = new AsyncLock();
+        dut = lock.newCondition();
+
+    }
+
+    /**
+     * Acquires the lock, failing if it is not available.
+     *
+     * @return The acquired lock.
+     */
+    private AcquiredLock hold() {
+
+        final var held = lock.tryAcquire();
+        assertThat( held ).isNotNull();
+        return held;
+
+    }
+
+    /**
+     * Tests that awaiting releases the lock, and that the waiter re-acquires it once
+     * signalled.
+     */
+    @Test
+    public void testAwait() {
+
+        final var waiting = dut.await( hold() ).toFuture();
+        assertThat( waiting ).isNotDone();
+
+        final var signaller = hold();
+        dut.signal();
+        assertThat( waiting ).isNotDone(); // Still waiting for the lock
+
+        signaller.release();
+        assertThat( waiting ).isCompleted();
+        assertThat( lock.tryAcquire() ).isNull();
+        waiting.join().release();
+
+    }
+
+    /**
+     * Tests that signal wakes waiters one at a time in order, and signalAll wakes all.
+     */
+    @Test
+    public void testSignalOrder() {
+
+        final var first = dut.await( hold() ).toFuture();
+        final var second = dut.await( hold() ).toFuture();
+        final var third = dut.await( hold() ).toFuture();
+
+        dut.signal();
+        assertThat( first ).isCompleted();
+        assertThat( second ).isNotDone();
+
+        final var held = first.join();
+        dut.signalAll();
+        held.release();
+        assertThat( second ).isCompleted();
+        assertThat( third ).isNotDone();
+
+        second.join().release();
+        assertThat( third ).isCompleted();
+        third.join().release();
+
+    }
+
+    /**
+     * Tests that signals made while nobody waits are lost.
+     */
+    @Test
+    public void testSignalLost() {
+
+        dut.signal();
+        dut.signalAll();
+
+        StepVerifier.create( dut.await( hold() ) )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofMillis( 50 ) )
+                .thenCancel()
+                .verify();
+
+    }
+
+    /**
+     * Tests that a signal received by a cancelled waiter is passed on.
+     */
+    @Test
+    public void testCancel() {
+
+        final var cancelled = dut.await( hold() ).subscribe();
+        final var waiting = dut.await( hold() ).toFuture();
+
+        cancelled.dispose();
+        dut.signal();
+        assertThat( waiting ).isCompleted();
+        waiting.join().release();
+
+    }
+
+    /**
+     * Tests a producer/consumer exchange using awaitUntil.
+     */
+    @Test
+    public void testProducerConsumer() {
+
+        final int count = 100;
+        final Queue<Integer> buffer = new ArrayDeque<>();
+
+        final var consumer = Flux.range( 0, count )
+                .concatMap( i -> lock.acquire()
+                        .flatMap( l -> dut.awaitUntil( l, () -> !buffer.isEmpty() ) )
+                        .flatMap( l -> l.releaseAfter( Mono.fromCallable( buffer::remove ) ) )
+                );
+
+        final var producer = Flux.range( 0, count )
+                .publishOn( Schedulers.parallel() )
+                .concatMap( i -> lock.guard( Mono.fromRunnable( () -> {
+                    buffer.add( i );
+                    dut.signal();
+                } ) ) );
+
+        StepVerifier.create( Flux.merge( consumer, producer.then( Mono.empty() ) ).collectList() )
+                .assertNext( l -> assertThat( l ).isSorted().hasSize( count ) )
+                .verifyComplete();
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+/**
+ * Test driver for {@link ReactiveLatchMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class ReactiveLatchMapTest {
+
+    /** The key used in tests. */
+    private static final String KEY = "key";
+
+    /**
+     * Tests that a latch opens after being counted down enough times, independently of
+     * other keys, and is then removed.
+     */
+    @Test
+    public void testCountDown() {
+
+        final var map = new ReactiveLatchMap<String>( 2 );
+        final var first = map.await( KEY ).toFuture();
+        final var second = map.await( KEY ).toFuture();
+        final var other = map.await( "other" ).toFuture();
+        assertThat( map.latches() ).isEqualTo( 2 );
+
+        map.countDown( KEY );
+        assertThat( first ).isNotDone();
+        map.countDown( KEY );
+        assertThat( first ).isCompleted();
+        assertThat( second ).isCompleted();
+        assertThat( other ).isNotDone();
+        assertThat( map.latches() ).isOne();
+
+    }
+
+    /**
+     * Tests that using a key after its latch opened starts a new latch.
+     */
+    @Test
+    public void testReopen() {
+
+        final var map = new ReactiveLatchMap<String>( 2 );
+        map.countDown( KEY );
+        assertThat( map.latches() ).isOne();
+        map.countDown( KEY );
+        assertThat( map.latches() ).isZero();
+
+        final var next = map.await( KEY ).toFuture();
+        map.countDown( KEY );
+        assertThat( next ).isNotDone();
+        map.countDown( KEY );
+        assertThat( next ).isCompleted();
+
+    }
+
+    /**
+     * Tests that counting down a binary latch without waiters does not leave an entry.
+     */
+    @Test
+    public void testBinary() {
+
+        final var map = new ReactiveLatchMap<String>();
+        map.countDown( KEY );
+        assertThat( map.latches() ).isZero();
+
+        final var waiting = map.await( KEY ).toFuture();
+        map.countDown( KEY );
+        assertThat( waiting ).isCompleted();
+        assertThat( map.latches() ).isZero();
+
+    }
+
+    /**
+     * Tests that failing a latch issues the error to its waiters and removes it.
+     */
+    @Test
+    public void testFail() {
+
+        final var map = new ReactiveLatchMap<String>( 2 );
+        map.countDown( KEY );
+
+        StepVerifier.create( map.await( KEY ) )
+                .then( () -> map.fail( KEY, new IllegalStateException() ) )
+                .verifyError( IllegalStateException.class );
+        assertThat( map.latches() ).isZero();
+
+        map.fail( KEY, new IllegalStateException() );
+        assertThat( map.latches() ).isZero();
+
+    }
+
+    /**
+     * Tests that a latch without progress is removed once all its waiters cancel, while
+     * one that was counted down is kept.
+     */
+    @Test
+    public void testCancel() {
+
+        final var map = new ReactiveLatchMap<String>( 2 );
+        final var first = map.await( KEY ).subscribe();
+        final var second = map.await( KEY ).subscribe();
+        final var third = map.await( KEY ).subscribe();
+
+        second.dispose();
+        first.dispose();
+        assertThat( map.latches() ).isOne();
+        third.dispose();
+        assertThat( map.latches() ).isZero();
+
+        map.countDown( KEY );
+        map.await( KEY ).subscribe().dispose();
+        assertThat( map.latches() ).isOne();
+        final var waiting = map.await( KEY ).toFuture();
+        map.countDown( KEY );
+        assertThat( waiting ).isCompleted();
+        assertThat( map.latches() ).isZero();
+
+    }
+
+    /**
+     * Tests that the transformer is applied to waiters, and that waiters it cancels are
+     * removed.
+     */
+    @Test
+    public void testTransformer() {
+
+        final var map = new ReactiveLatchMap<String>( m -> m.timeout( Duration.ofSeconds( 1 ) ) );
+
+        StepVerifier.withVirtualTime( () -> map.await( KEY ) )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .verifyError( TimeoutException.class );
+        assertThat( map.latches() ).isZero();
+
+    }
+
+    /**
+     * Tests that no entries are leaked when latches are awaited, counted down and
+     * cancelled concurrently.
+     */
+    @Test
+    public void testConcurrent() {
+
+        final var map = new ReactiveLatchMap<Integer>( 2 );
+        final var keys = 64;
+
+        final var waits = Flux.range( 0, 1000 )
+                .flatMap( i -> map.await( i % keys )
+                        .timeout( Duration.ofMillis( i % 3 ), Mono.empty() )
+                        .subscribeOn( Schedulers.parallel() ) );
+        final var counts = Flux.range( 0, 32 * keys )
+                .flatMap( i -> Mono.fromRunnable( () -> map.countDown( i % keys ) )
+                        .subscribeOn( Schedulers.parallel() ) );
+
+        StepVerifier.create( Flux.merge( waits, counts ) )
+                .expectComplete()
+                .verify( Duration.ofSeconds( 10 ) );
+
+        // Each key was counted down an even number of times
+        assertThat( map.latches() ).isZero();
+        IntStream.range( 0, keys ).forEach( map::countDown );
+        assertThat( map.latches() ).isEqualTo( keys );
+
+    }
+
+    /**
+     * Tests that invalid counts are rejected.
+     */
+    @Test
+    public void testInvalid() {
+
+        assertThatIllegalArgumentException().isThrownBy( () -> new ReactiveLatchMap<>( 0 ) );
+
+    }
+
+}
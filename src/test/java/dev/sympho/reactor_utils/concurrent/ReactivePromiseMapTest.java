@@ -0,0 +1,219 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+/**
+ * Test driver for {@link ReactivePromiseMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class ReactivePromiseMapTest {
+
+    /** The key used in tests. */
+    private static final String KEY = "key";
+
+    /** The scheduler used by the map. */
+    private VirtualTimeScheduler scheduler;
+
+    /** The map under test. */
+    private ReactivePromiseMap<String, Integer> dut;
+
+    /**
+     * Creates the DUT, with promises that expire after 1 second.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        scheduler = VirtualTimeScheduler.create();
+        dut = new ReactivePromiseMap<>( Duration.ofSeconds( 1 ), scheduler );
+
+    }
+
+    /**
+     * Tests that completing a promise issues the value to all its subscribers and removes it.
+     */
+    @Test
+    public void testComplete() {
+
+        final var promise = dut.await( KEY );
+        final var first = promise.toFuture();
+        final var second = dut.await( KEY ).toFuture();
+        assertThat( dut.size() ).isOne();
+
+        assertThat( dut.complete( KEY, 42 ) ).isTrue();
+        assertThat( first ).isCompletedWithValue( 42 );
+        assertThat( second ).isCompletedWithValue( 42 );
+        assertThat( dut.size() ).isZero();
+
+        assertThat( dut.complete( KEY, 43 ) ).isFalse();
+        assertThat( promise.toFuture() ).isCompletedWithValue( 42 );
+
+    }
+
+    /**
+     * Tests that a value delivered before subscribing is not lost.
+     */
+    @Test
+    public void testCompleteBeforeSubscribe() {
+
+        final var promise = dut.await( KEY );
+        assertThat( dut.complete( KEY, 42 ) ).isTrue();
+
+        StepVerifier.create( promise )
+                .expectNext( 42 )
+                .verifyComplete();
+
+    }
+
+    /**
+     * Tests that failing a promise issues the error to its subscribers and removes it.
+     */
+    @Test
+    public void testFail() {
+
+        final var promise = dut.await( KEY );
+        StepVerifier.create( promise )
+                .then( () -> assertThat( dut.fail( KEY, new IllegalStateException() ) ).isTrue() )
+                .verifyError( IllegalStateException.class );
+        assertThat( dut.size() ).isZero();
+        assertThat( dut.fail( KEY, new IllegalStateException() ) ).isFalse();
+
+        StepVerifier.create( promise )
+                .verifyError( IllegalStateException.class );
+
+    }
+
+    /**
+     * Tests that promises expire in order once their time-to-live elapses, and that a key
+     * may be reused afterwards.
+     */
+    @Test
+    public void testExpire() {
+
+        final var first = dut.await( "a" ).toFuture();
+        scheduler.advanceTimeBy( Duration.ofMillis( 500 ) );
+        final var second = dut.await( "b" ).toFuture();
+        final var third = dut.await( "c" ).toFuture();
+        assertThat( dut.complete( "c", 3 ) ).isTrue();
+
+        scheduler.advanceTimeBy( Duration.ofMillis( 500 ) );
+        assertThat( first ).isCompletedExceptionally();
+        assertThatThrownBy( first::join ).hasCauseInstanceOf( TimeoutException.class );
+        assertThat( second ).isNotDone();
+        assertThat( dut.size() ).isOne();
+
+        scheduler.advanceTimeBy( Duration.ofMillis( 500 ) );
+        assertThat( second ).isCompletedExceptionally();
+        assertThat( third ).isCompletedWithValue( 3 );
+        assertThat( dut.size() ).isZero();
+
+        final var reused = dut.await( "a" ).toFuture();
+        assertThat( dut.complete( "a", 1 ) ).isTrue();
+        assertThat( reused ).isCompletedWithValue( 1 );
+        scheduler.advanceTimeBy( Duration.ofSeconds( 2 ) );
+        assertThat( reused ).isCompletedWithValue( 1 );
+
+    }
+
+    /**
+     * Tests that promises whose keys fall in different expiration stripes all expire, and
+     * that settling some of them does not affect the others.
+     */
+    @Test
+    public void testExpireStriped() {
+
+        final var map = new ReactivePromiseMap<Integer, Integer>( Duration.ofSeconds( 1 ),
+                scheduler );
+        final var pending = Flux.range( 0, 1000 )
+                .map( map::await )
+                .collectList()
+                .block();
+        assertThat( pending ).isNotNull();
+
+        for ( int i = 0; i < 1000; i += 2 ) {
+            assertThat( map.complete( i, i ) ).isTrue();
+        }
+        assertThat( map.size() ).isEqualTo( 500 );
+
+        scheduler.advanceTimeBy( Duration.ofSeconds( 1 ) );
+        assertThat( map.size() ).isZero();
+        for ( int i = 0; i < 1000; i++ ) {
+            final var result = pending.get( i ).toFuture();
+            if ( i % 2 == 0 ) {
+                assertThat( result ).isCompletedWithValue( i );
+            } else {
+                assertThat( result ).isCompletedExceptionally();
+            }
+        }
+
+    }
+
+    /**
+     * Tests that cancelled subscribers are not notified, while others still are.
+     */
+    @Test
+    public void testCancel() {
+
+        final var promise = dut.await( KEY );
+        final var cancelled = promise.subscribe( v -> fail( "Received value" ),
+                e -> fail( "Received error" ) );
+        final var waiting = promise.toFuture();
+        cancelled.dispose();
+
+        assertThat( dut.complete( KEY, 42 ) ).isTrue();
+        assertThat( waiting ).isCompletedWithValue( 42 );
+
+    }
+
+    /**
+     * Tests that promises registered and completed concurrently are all matched.
+     */
+    @Test
+    public void testConcurrent() {
+
+        final var map = new ReactivePromiseMap<Integer, Integer>( Duration.ofSeconds( 10 ),
+                Schedulers.parallel() );
+
+        final var results = Flux.range( 0, 1000 )
+                .flatMap( i -> {
+                    final var promise = map.await( i );
+                    Mono.fromRunnable( () -> map.complete( i, i ) )
+                            .subscribeOn( Schedulers.parallel() )
+                            .subscribe();
+                    return promise;
+                } )
+                .reduce( 0L, ( sum, i ) -> sum + i );
+
+        StepVerifier.create( results )
+                .expectNext( 999L * 1000 / 2 )
+                .expectComplete()
+                .verify( Duration.ofSeconds( 10 ) );
+        assertThat( map.size() ).isZero();
+
+    }
+
+    /**
+     * Tests that invalid configurations are rejected.
+     */
+    @Test
+    public void testInvalid() {
+
+        assertThatIllegalArgumentException().isThrownBy(
+                () -> new ReactivePromiseMap<>( Duration.ZERO ) );
+
+    }
+
+}
@@ -0,0 +1,240 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.PublisherProbe;
+
+/**
+ * Test driver for {@link SerialExecutorMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class SerialExecutorMapTest {
+
+    /** The device under test. */
+    private SerialExecutorMap<String> dut;
+
+    /**
+     * Sets up the device under test.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        dut = new SerialExecutorMap<>( Schedulers.immediate() );
+
+    }
+
+    /**
+     * Creates a task that emits the given value after a delay.
+     *
+     * @param value The value to emit.
+     * @param seconds The delay, in seconds.
+     * @return The task.
+     */
+    private static Mono<String> delayed( final String value, final int seconds ) {
+
+        return Mono.just( value ).delayElement( Duration.ofSeconds( seconds ) );
+
+    }
+
+    /**
+     * Tests that tasks under the same key run in order and one at a time, while tasks under
+     * different keys run in parallel.
+     */
+    @Test
+    public void testOrdering() {
+
+        StepVerifier.withVirtualTime( () -> Flux.merge(
+                        dut.submit( "a", delayed( "a1", 1 ) ),
+                        dut.submit( "b", delayed( "b1", 2 ) ),
+                        dut.submit( "a", delayed( "a2", 1 ) ),
+                        dut.submit( "a", delayed( "a3", 1 ) )
+                ) )
+                .expectSubscription()
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( "a1" )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( "b1", "a2" )
+                .expectNoEvent( Duration.ofSeconds( 1 ) )
+                .expectNext( "a3" )
+                .verifyComplete();
+
+        assertThat( dut.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that tasks that complete synchronously all run, in order.
+     */
+    @Test
+    public void testSynchronous() {
+
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        StepVerifier.create( Flux.range( 0, 1000 )
+                        .flatMap( i -> dut.submit( "key", Mono.fromCallable( () -> {
+                            order.add( i );
+                            return i;
+                        } ) ) )
+                        .count() )
+                .expectNext( 1000L )
+                .verifyComplete();
+
+        assertThat( order ).isSorted().hasSize( 1000 );
+        assertThat( dut.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that tasks submitted concurrently from multiple threads never overlap.
+     */
+    @Test
+    public void testConcurrentSubmit() {
+
+        final var executor = new SerialExecutorMap<String>();
+        final var running = new AtomicInteger();
+        final var overlap = new AtomicBoolean();
+
+        final var result = Flux.range( 0, 1000 )
+                .parallel()
+                .runOn( Schedulers.parallel() )
+                .flatMap( i -> executor.submit( "key", Mono.fromCallable( () -> {
+                    if ( running.incrementAndGet() > 1 ) {
+                        overlap.set( true );
+                    }
+                    running.decrementAndGet();
+                    return i;
+                } ) ) )
+                .sequential()
+                .count();
+
+        StepVerifier.create( result )
+                .expectNext( 1000L )
+                .verifyComplete();
+
+        assertThat( overlap ).isFalse();
+        assertThat( executor.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that an error in a task is relayed and does not block the following tasks.
+     */
+    @Test
+    public void testError() {
+
+        StepVerifier.create( dut.submit( "key", Mono.error( new IllegalStateException() ) ) )
+                .verifyError( IllegalStateException.class );
+        StepVerifier.create( dut.submit( "key", Mono.empty() ) )
+                .verifyComplete();
+
+        assertThat( dut.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that a task cancelled while queued is skipped.
+     */
+    @Test
+    public void testCancelQueued() {
+
+        final var first = PublisherProbe.<String>of( Mono.never() );
+        final var second = PublisherProbe.<String>empty();
+
+        final var running = dut.submit( "key", first.mono() ).subscribe();
+        final var queued = dut.submit( "key", second.mono() ).subscribe();
+        assertThat( dut.mailboxes() ).isOne();
+
+        queued.dispose();
+        running.dispose();
+
+        first.assertWasCancelled();
+        second.assertWasNotSubscribed();
+        assertThat( dut.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that cancelling a running task cancels it and starts the next one.
+     */
+    @Test
+    public void testCancelRunning() {
+
+        final var first = PublisherProbe.<String>of( Mono.never() );
+
+        final var running = dut.submit( "key", first.mono() ).subscribe();
+        StepVerifier.create( dut.submit( "key", Mono.just( "next" ) ) )
+                .expectSubscription()
+                .then( running::dispose )
+                .expectNext( "next" )
+                .verifyComplete();
+
+        first.assertWasCancelled();
+        assertThat( dut.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that a task cancelled while it is being started releases its key, so the
+     * following tasks still run.
+     */
+    @Test
+    public void testCancelStarting() {
+
+        final var gate = PublisherProbe.<String>of( Mono.never() );
+        final var running = dut.submit( "key", gate.mono() ).subscribe();
+
+        final var subscription = new AtomicReference<Subscription>();
+        final var cancelled = dut.submit( "key", Mono.defer( () -> {
+            subscription.get().cancel(); // Cancelled after starting, before subscribing
+            return Mono.just( "cancelled" );
+        } ) ).doOnSubscribe( subscription::set ).toFuture();
+        final var next = dut.submit( "key", Mono.just( "next" ) ).toFuture();
+
+        running.dispose();
+        assertThat( cancelled ).isNotDone();
+        assertThat( next ).isCompletedWithValue( "next" );
+        assertThat( dut.mailboxes() ).isZero();
+
+    }
+
+    /**
+     * Tests that tasks cancelled concurrently with being started never leave their key
+     * stuck.
+     */
+    @Test
+    public void testCancelStartingConcurrent() {
+
+        final var executor = new SerialExecutorMap<String>();
+        for ( int i = 0; i < 2000; i++ ) {
+
+            final var cancelled = executor.submit( "key", Mono.just( i ) )
+                    .subscribeOn( Schedulers.parallel() )
+                    .subscribe();
+            Schedulers.parallel().schedule( cancelled::dispose );
+
+        }
+
+        StepVerifier.create( executor.submit( "key", Mono.just( -1 ) ) )
+                .expectNext( -1 )
+                .expectComplete()
+                .verify( Duration.ofSeconds( 10 ) );
+
+    }
+
+}
@@ -0,0 +1,135 @@
+package dev.sympho.reactor_utils.concurrent;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test driver for {@link StampedMarkerMap}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class StampedMarkerMapTest {
+
+    /** The map under test. */
+    private StampedMarkerMap<Object> dut;
+
+    /**
+     * Creates the DUT.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        dut = new StampedMarkerMap<>( 2 );
+
+    }
+
+    /**
+     * Creates a test key. Keys with the same remainder modulo 7 have the same hash code,
+     * in order to force collisions.
+     *
+     * @param i The key index.
+     * @return The key.
+     */
+    private static String key( final int i ) {
+
+        // "Aa" and "BB" have the same hash code
+        final var key = new StringBuilder();
+        for ( int bit = 0; bit < 8; bit++ ) {
+            key.append( ( ( i / 7 ) & ( 1 << bit ) ) == 0 ? "Aa" : "BB" );
+        }
+        return key.append( i % 7 ).toString();
+
+    }
+
+    /**
+     * Tests the basic operations.
+     */
+    @Test
+    public void testBasic() {
+
+        assertThat( dut.get( "a" ) ).isEqualTo( StampedMarkerMap.NONE );
+
+        final var s1 = dut.place( "a" );
+        assertThat( s1 ).isNotEqualTo( StampedMarkerMap.NONE );
+        assertThat( dut.get( "a" ) ).isEqualTo( s1 );
+        assertThat( dut.placeIfAbsent( "a" ) ).isEqualTo( StampedMarkerMap.NONE );
+
+        final var s2 = dut.place( "a" );
+        assertThat( s2 ).isNotEqualTo( s1 );
+        assertThat( dut.remove( "a", s1 ) ).isFalse();
+        assertThat( dut.remove( "a", s2 ) ).isTrue();
+        assertThat( dut.get( "a" ) ).isEqualTo( StampedMarkerMap.NONE );
+        assertThat( dut.remove( "a", StampedMarkerMap.NONE ) ).isFalse();
+
+        final var s3 = dut.placeIfAbsent( "a" );
+        assertThat( s3 ).isNotIn( StampedMarkerMap.NONE, s1, s2 );
+        assertThat( dut.remove( "a" ) ).isEqualTo( s3 );
+        assertThat( dut.remove( "a" ) ).isEqualTo( StampedMarkerMap.NONE );
+        assertThat( dut.size() ).isZero();
+
+    }
+
+    /**
+     * Tests that the table grows and shrinks correctly, including with colliding keys.
+     */
+    @Test
+    public void testResize() {
+
+        final var count = 1000;
+        final var stamps = new long[count];
+        for ( int i = 0; i < count; i++ ) {
+            stamps[i] = dut.place( key( i ) );
+        }
+        assertThat( dut.size() ).isEqualTo( count );
+
+        for ( int i = 0; i < count; i += 2 ) {
+            assertThat( dut.remove( key( i ), stamps[i] ) ).isTrue();
+        }
+        assertThat( dut.size() ).isEqualTo( count / 2 );
+
+        for ( int i = 0; i < count; i++ ) {
+            final var expected = i % 2 == 0 ? StampedMarkerMap.NONE : stamps[i];
+            assertThat( dut.get( key( i ) ) ).isEqualTo( expected );
+        }
+
+        for ( int i = 1; i < count; i += 2 ) {
+            assertThat( dut.remove( key( i ) ) ).isEqualTo( stamps[i] );
+        }
+        assertThat( dut.size() ).isZero();
+
+    }
+
+    /**
+     * Tests that stamps are unique across keys and threads.
+     */
+    @Test
+    public void testConcurrent() {
+
+        final var issued = ConcurrentHashMap.<Long>newKeySet();
+        IntStream.range( 0, 100_000 ).parallel().forEach( i -> {
+            final var key = i % 1000;
+            final var stamp = dut.place( key );
+            assertThat( issued.add( stamp ) ).isTrue();
+            dut.remove( key, stamp );
+        } );
+
+        final var remaining = new HashSet<Long>();
+        for ( int key = 0; key < 1000; key++ ) {
+            final var stamp = dut.get( key );
+            if ( stamp != StampedMarkerMap.NONE ) {
+                assertThat( issued ).contains( stamp );
+                remaining.add( stamp );
+            }
+        }
+        assertThat( dut.size() ).isEqualTo( remaining.size() );
+
+    }
+
+}
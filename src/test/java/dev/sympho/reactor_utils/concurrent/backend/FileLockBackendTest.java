@@ -0,0 +1,77 @@
+package dev.sympho.reactor_utils.concurrent.backend;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test driver for {@link FileLockBackend}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class FileLockBackendTest {
+
+    /** The lock directory. */
+    @TempDir
+    Path directory;
+
+    /** The first node. */
+    private FileLockBackend<String> node1;
+
+    /** The second node. */
+    private FileLockBackend<String> node2;
+
+    /**
+     * Sets up the nodes.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        node1 = new FileLockBackend<>( directory );
+        node2 = new FileLockBackend<>( directory );
+
+    }
+
+    /**
+     * Tests that a key owned by one node cannot be acquired by the other until released.
+     */
+    @Test
+    public void testExclusion() {
+
+        assertThat( node1.tryAcquire( "key" ) ).isTrue();
+        assertThat( node2.tryAcquire( "key" ) ).isFalse();
+        assertThat( node2.tryAcquire( "other" ) ).isTrue();
+
+        node2.release( "key" ); // Not owned, no effect
+        assertThat( node2.tryAcquire( "key" ) ).isFalse();
+
+        node1.release( "key" );
+        assertThat( node2.tryAcquire( "key" ) ).isTrue();
+        assertThat( node1.tryAcquire( "key" ) ).isFalse();
+
+        node2.release( "key" );
+        node2.release( "other" );
+        assertThat( node1.tryAcquire( "other" ) ).isTrue();
+        node1.release( "other" );
+
+    }
+
+    /**
+     * Tests that keys are mapped to files in the lock directory.
+     */
+    @Test
+    public void testNaming() {
+
+        final var named = new FileLockBackend<String>( directory, key -> key + ".lck" );
+        assertThat( named.tryAcquire( "key" ) ).isTrue();
+        assertThat( directory.resolve( "key.lck" ) ).exists();
+        named.release( "key" );
+
+    }
+
+}
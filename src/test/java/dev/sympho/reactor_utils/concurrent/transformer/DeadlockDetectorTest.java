@@ -0,0 +1,313 @@
+package dev.sympho.reactor_utils.concurrent.transformer;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+
+import dev.sympho.reactor_utils.concurrent.AcquiredLock;
+import dev.sympho.reactor_utils.concurrent.AsyncLock;
+import dev.sympho.reactor_utils.concurrent.AsyncLockMap;
+import dev.sympho.reactor_utils.concurrent.DeadlockException;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.scheduler.Scheduler;
+import reactor.test.scheduler.VirtualTimeScheduler;
+import reactor.util.context.Context;
+
+/**
+ * Test driver for {@link DeadlockDetector}.
+ *
+ * @version 1.0
+ * @since 1.0
+ */
+public class DeadlockDetectorTest {
+
+    /** The check interval used for tests. */
+    private static final Duration INTERVAL = Duration.ofSeconds( 1 );
+
+    /** The clock used by the detector. */
+    private VirtualTimeScheduler clock;
+
+    /** The detector under test. */
+    private DeadlockDetector<String> dut;
+
+    /** The lock map that uses the detector. */
+    private AsyncLockMap<String> map;
+
+    /**
+     * Sets up the device under test.
+     */
+    @BeforeEach
+    public void setUp() {
+
+        clock = VirtualTimeScheduler.create();
+        dut = new DeadlockDetector<>( INTERVAL, clock );
+        map = new AsyncLockMap<>( dut );
+
+    }
+
+    /**
+     * Acquires a lock on behalf of an owner.
+     *
+     * @param key The key to acquire.
+     * @param owner The owner.
+     * @return The future for the acquisition.
+     */
+    private CompletableFuture<AcquiredLock> acquire( final String key, final String owner ) {
+
+        return map.acquire( key )
+                .contextWrite( Context.of( DeadlockDetector.OWNER_KEY, owner ) )
+                .toFuture();
+
+    }
+
+    /**
+     * Asserts that an acquisition failed due to a deadlock.
+     *
+     * @param acquisition The acquisition.
+     * @param keys The expected keys in the deadlock.
+     */
+    private static void assertDeadlock( final CompletableFuture<AcquiredLock> acquisition,
+            final String... keys ) {
+
+        assertThatThrownBy( acquisition::join )
+                .isInstanceOf( CompletionException.class )
+                .cause()
+                .isInstanceOfSatisfying( DeadlockException.class,
+                        e -> assertThat( e.getKeys() ).isEqualTo( List.of( keys ) ) );
+
+    }
+
+    /**
+     * Tests that a cycle between two owners is broken by failing one of them.
+     */
+    @Test
+    public void testCycle() {
+
+        final var heldA = acquire( "a", "A" ).join();
+        final var heldB = acquire( "b", "B" ).join();
+
+        final var waitA = acquire( "b", "A" );
+        final var waitB = acquire( "a", "B" );
+
+        clock.advanceTimeBy( INTERVAL.dividedBy( 2 ) );
+        assertThat( waitA ).isNotDone(); // Not checked yet
+        assertThat( waitB ).isNotDone();
+
+        clock.advanceTimeBy( INTERVAL );
+        assertDeadlock( waitA, "b", "a" );
+        assertThat( waitB ).isNotDone();
+
+        heldA.release(); // Victim backs off
+        assertThat( waitB ).isCompleted();
+
+        waitB.join().release();
+        heldB.release();
+        assertThat( map.tryAcquire( "a" ) ).isNotNull();
+
+    }
+
+    /**
+     * Tests that waiting for a lock that is held without a cycle is not reported.
+     */
+    @Test
+    public void testNoCycle() {
+
+        final var heldA = acquire( "a", "A" ).join();
+        final var heldB = acquire( "b", "B" ).join();
+
+        final var waitA = acquire( "b", "A" );
+        final var waitC = acquire( "a", "C" );
+
+        clock.advanceTimeBy( INTERVAL.multipliedBy( 5 ) );
+        assertThat( waitA ).isNotDone();
+        assertThat( waitC ).isNotDone();
+
+        heldB.release();
+        assertThat( waitA ).isCompleted();
+        waitA.join().release();
+        heldA.release();
+        assertThat( waitC ).isCompleted();
+        waitC.join().release();
+
+    }
+
+    /**
+     * Tests that an owner that acquires a lock it already holds is reported.
+     */
+    @Test
+    public void testSelf() {
+
+        final var held = acquire( "a", "A" ).join();
+        final var again = acquire( "a", "A" );
+
+        clock.advanceTimeBy( INTERVAL );
+        assertDeadlock( again, "a" );
+
+        held.release();
+        assertThat( map.tryAcquire( "a" ) ).isNotNull();
+
+    }
+
+    /**
+     * Tests that concurrent acquisitions by the same owner are all tracked, so finishing
+     * one of them does not hide a cycle through another.
+     */
+    @Test
+    public void testSameOwner() {
+
+        final var heldA = acquire( "a", "A" ).join();
+        final var heldB = acquire( "b", "B" ).join();
+        final var heldC = acquire( "c", "C" ).join();
+
+        final var waitAb = acquire( "b", "A" );
+        final var waitAc = acquire( "c", "A" );
+        final var waitB = acquire( "a", "B" );
+
+        clock.advanceTimeBy( INTERVAL.dividedBy( 2 ) );
+        heldC.release();
+        assertThat( waitAc ).isCompleted();
+
+        clock.advanceTimeBy( INTERVAL.dividedBy( 2 ) );
+        assertDeadlock( waitAb, "b", "a" );
+        assertThat( waitB ).isNotDone();
+
+        waitAc.join().release();
+        heldA.release();
+        assertThat( waitB ).isCompleted();
+        waitB.join().release();
+        heldB.release();
+
+    }
+
+    /**
+     * Tests that acquisitions that are issued the lock immediately do not start a check
+     * timer.
+     */
+    @Test
+    public void testUncontended() {
+
+        final var timers = new AtomicInteger();
+        final var counting = new Scheduler() {
+
+            @Override
+            public Disposable schedule( final Runnable task ) {
+                return clock.schedule( task );
+            }
+
+            @Override
+            public Disposable schedulePeriodically( final Runnable task, final long initialDelay,
+                    final long period, final TimeUnit unit ) {
+                timers.incrementAndGet();
+                return clock.schedulePeriodically( task, initialDelay, period, unit );
+            }
+
+            @Override
+            public Worker createWorker() {
+                return clock.createWorker();
+            }
+
+        };
+        map = new AsyncLockMap<>( new DeadlockDetector<>( INTERVAL, counting ) );
+
+        acquire( "a", "A" ).join().release();
+        acquire( "a", "A" ).join().release();
+        assertThat( timers ).hasValue( 0 );
+
+        final var held = acquire( "a", "A" ).join();
+        final var waiting = acquire( "a", "B" );
+        assertThat( timers ).hasValue( 1 );
+        held.release();
+        waiting.join().release();
+
+    }
+
+    /**
+     * Tests that an acquisition cancelled while subscribing does not leave a stale edge
+     * that would be reported as part of a deadlock.
+     */
+    @Test
+    public void testCancelOnSubscribe() {
+
+        final var heldA = acquire( "a", "A" ).join();
+        final var heldB = acquire( "b", "B" ).join();
+
+        map.acquire( "b" )
+                .contextWrite( Context.of( DeadlockDetector.OWNER_KEY, "A" ) )
+                .subscribe( new BaseSubscriber<>() {
+
+                    @Override
+                    protected void hookOnSubscribe( final Subscription subscription ) {
+                        subscription.cancel();
+                    }
+
+                } );
+
+        final var waitB = acquire( "a", "B" );
+        clock.advanceTimeBy( INTERVAL.multipliedBy( 2 ) );
+        assertThat( waitB ).isNotDone();
+
+        heldA.release();
+        assertThat( waitB ).isCompleted();
+        waitB.join().release();
+        heldB.release();
+
+    }
+
+    /**
+     * Tests that acquisitions without an owner are not tracked.
+     */
+    @Test
+    public void testNoOwner() {
+
+        final var held = map.acquire( "a" ).toFuture().join();
+        final var again = map.acquire( "a" ).toFuture();
+
+        clock.advanceTimeBy( INTERVAL.multipliedBy( 5 ) );
+        assertThat( again ).isNotDone();
+
+        held.release();
+        assertThat( again ).isCompleted();
+        again.join().release();
+
+    }
+
+    /**
+     * Tests that deadlocks spanning a lock and a lock map are detected.
+     */
+    @Test
+    public void testLock() {
+
+        final var lock = new AsyncLock( dut.forLock( "lock" ) );
+
+        final var heldA = lock.acquire()
+                .contextWrite( Context.of( DeadlockDetector.OWNER_KEY, "A" ) )
+                .toFuture()
+                .join();
+        final var heldB = acquire( "b", "B" ).join();
+
+        final var waitA = acquire( "b", "A" );
+        final var waitB = lock.acquire()
+                .contextWrite( Context.of( DeadlockDetector.OWNER_KEY, "B" ) )
+                .toFuture();
+
+        clock.advanceTimeBy( INTERVAL );
+        assertDeadlock( waitA, "b", "lock" );
+
+        heldA.release();
+        assertThat( waitB ).isCompleted();
+        waitB.join().release();
+        heldB.release();
+
+    }
+
+}